@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.api;
+
+import java.util.List;
+
+/**
+ * Sink which also accepts the tuples in batches, so the overhead of passing a tuple from one sink to the next is paid
+ * once per batch instead of once per tuple.<p>
+ * <br>
+ * A batch is delivered in the same position relative to the other tuples as if its tuples were put one at a time, in
+ * the order of the list. The list belongs to the caller which reuses it once putAll returns, so the sink must copy the
+ * tuples it wants to hold on to.
+ *
+ * @param <T> type of the tuples
+ * @since 2.2.0
+ */
+public interface BatchSink<T> extends Sink<T>
+{
+  /**
+   * Process the tuples in the list as a batch.
+   *
+   * @param tuples tuples to be processed by this sink.
+   */
+  public void putAll(List<? extends T> tuples);
+
+}
@@ -99,6 +99,11 @@ public interface Context
      * Number of tuples the poll buffer can cache without blocking the input stream to the port.
      */
     Attribute<Integer> QUEUE_CAPACITY = new Attribute<Integer>(1024);
+    /**
+     * Input port attribute. Kind of queue connecting the port to an upstream port deployed CONTAINER_LOCAL with it.
+     * The queue holds QUEUE_CAPACITY tuples.
+     */
+    Attribute<ReservoirType> RESERVOIR_TYPE = new Attribute<ReservoirType>(ReservoirType.CIRCULAR_BUFFER);
     /**
      * The amount of buffer memory this port requires. There is a buffer server in each container. This is used to calculate total buffer server memory for container.
      * Also due to the nature of the application, if buffer server needs to use more RAM, from time to time, this number may
@@ -109,6 +114,12 @@ public interface Context
      * Poll period in milliseconds when the port buffer reaches its limits.
      */
     Attribute<Integer> SPIN_MILLIS = new Attribute<Integer>(10);
+    /**
+     * Input port attribute. Deserialize the tuples received from the buffer server on a decoder thread of the stream
+     * instead of on the thread of the operator, so that the operator thread only processes the tuples. The tuples are
+     * still deserialized in the order they were sent, so the state of a stateful codec is applied in order.
+     */
+    Attribute<Boolean> ASYNC_DECODING = new Attribute<Boolean>(false);
     /**
      * Input port attribute. Extend partitioning of an upstream operator w/o intermediate merge.
      * Can be used to form parallel partitions that span a group of operators.
@@ -153,6 +164,23 @@ public interface Context
     Attribute<StreamCodec<?>> STREAM_CODEC = new Attribute<StreamCodec<?>>(new Object2String<StreamCodec<?>>());
     @SuppressWarnings("FieldNameHidesFieldInSuperclass")
     long serialVersionUID = AttributeMap.AttributeInitializer.initialize(PortContext.class);
+
+    /**
+     * Kinds of queues between operators deployed in the same container.
+     */
+    enum ReservoirType
+    {
+      /**
+       * Circular buffer which can be shared by any number of threads, publishing every tuple as it is added.
+       */
+      CIRCULAR_BUFFER,
+      /**
+       * Ring buffer for a single producer and a single consumer thread whose indices do not share cache lines,
+       * publishing batches of emitted tuples at once.
+       */
+      SPSC
+    }
+
   }
 
   public interface OperatorContext extends Context
@@ -235,6 +263,12 @@ public interface Context
      * The agent which can be used to checkpoint the windows.
      */
     Attribute<StorageAgent> STORAGE_AGENT = new Attribute<StorageAgent>(new Object2String<StorageAgent>());
+    /**
+     * When set and the {@link #STORAGE_AGENT} is an {@link StorageAgent.AsyncStorageAgent}, the operator thread only
+     * serializes the state of the operator in memory and a background thread writes it to the storage agent. The
+     * checkpoint is reported to the platform once the write completes.
+     */
+    Attribute<Boolean> ASYNC_CHECKPOINT = new Attribute<Boolean>(false);
     /**
      * The payload processing mode for this operator - at most once, exactly once, or default at least once.
      * If the processing mode for an operator is specified as AT_MOST_ONCE and no processing mode is specified for the downstream
@@ -360,6 +394,24 @@ public interface Context
      * Where to spool the data once the buffer server capacity is reached.
      */
     Attribute<Boolean> BUFFER_SPOOLING = new Attribute<Boolean>(true);
+    /**
+     * Size in megabytes of the memory mapped segment files the buffer server appends the spooled data to.
+     * Default value is 0, which spools each block to a file of its own.
+     */
+    Attribute<Integer> BUFFER_SPOOLING_SEGMENT_SIZE_MB = new Attribute<Integer>(0);
+    /**
+     * Number of event loops the buffer server of each container uses to serve the publishers and subscribers.
+     * Publishers are sharded across the loops and each subscriber is served by the loop of its upstream publisher.
+     * Default value is 1.
+     */
+    Attribute<Integer> BUFFER_SERVER_EVENT_LOOP_COUNT = new Attribute<Integer>(1);
+    /**
+     * Number of worker threads each container uses to run its operators. The workers run the operators as tasks which
+     * process the tuples available to them and yield once their input is drained, so that a container hosting many
+     * operators does not need as many threads. A negative value uses as many workers as the container has processors.
+     * Default value is 0, which runs each operator on a thread of its own.
+     */
+    Attribute<Integer> OPERATOR_SCHEDULER_THREADS = new Attribute<Integer>(0);
     /**
      * The streaming window size to use for the application. It is specified in milliseconds. Default value is 500ms.
      */
@@ -15,6 +15,8 @@
  */
 package com.datatorrent.api;
 
+import java.util.List;
+
 import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.Operator.InputPort;
 
@@ -26,16 +28,32 @@ import com.datatorrent.api.Operator.InputPort;
  * @param <T>
  * @since 0.3.2
  */
-public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
+public abstract class DefaultInputPort<T> implements InputPort<T>, BatchSink<T>
 {
   private int count;
   protected boolean connected = false;
+  /*
+   * whether the port processes the batches itself, else the tuples of a batch are put one at a time so that a port
+   * which overrides put still sees each of them.
+   */
+  private final boolean batchProcessing;
 
   /**
    * <p>Constructor for DefaultInputPort.</p>
    */
   public DefaultInputPort()
   {
+    batchProcessing = overridesProcessAll(getClass());
+  }
+
+  private static boolean overridesProcessAll(Class<?> clazz)
+  {
+    try {
+      return clazz.getMethod("processAll", List.class).getDeclaringClass() != DefaultInputPort.class;
+    }
+    catch (NoSuchMethodException ex) {
+      throw new IllegalStateException(ex);
+    }
   }
 
   /** {@inheritDoc} */
@@ -67,6 +85,21 @@ public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
     process(tuple);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void putAll(List<? extends T> tuples)
+  {
+    if (batchProcessing) {
+      count += tuples.size();
+      processAll(tuples);
+    }
+    else {
+      for (int i = 0; i < tuples.size(); i++) {
+        put(tuples.get(i));
+      }
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public int getCount(boolean reset)
@@ -98,4 +131,19 @@ public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
    */
   public abstract void process(T tuple);
 
+  /**
+   * Process a batch of tuples received by the port, by default each of them is passed to {@link #process(Object)}.
+   * Operators can override it to amortize the per tuple overhead over the batch, the batches are then passed here
+   * without going through {@link #put(Object)}; otherwise each tuple of a batch is put separately. The list is reused
+   * once the call returns, so the tuples which need to be retained have to be copied out of it.
+   *
+   * @param tuples tuples received by the port in the order they were emitted.
+   */
+  public void processAll(List<? extends T> tuples)
+  {
+    for (int i = 0; i < tuples.size(); i++) {
+      process(tuples.get(i));
+    }
+  }
+
 }
@@ -15,6 +15,8 @@
  */
 package com.datatorrent.api;
 
+import java.util.List;
+
 import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.Operator.Unifier;
 
@@ -29,6 +31,7 @@ import com.datatorrent.api.Operator.Unifier;
 public class DefaultOutputPort<T> implements Operator.OutputPort<T>
 {
   private transient Sink<Object> sink;
+  private transient BatchSink<Object> batchSink;
 
   /**
    * <p>Constructor for DefaultOutputPort.</p>
@@ -48,15 +51,35 @@ public class DefaultOutputPort<T> implements Operator.OutputPort<T>
     sink.put(tuple);
   }
 
+  /**
+   * Emit the given objects as payloads for downstream operators interested in this port. When the port is connected
+   * to a {@link BatchSink}, the objects are passed downstream as a batch, otherwise they are emitted one at a time.
+   *
+   * @param tuples payloads which need to be emitted, the list can be reused once the call returns.
+   */
+  public void emitAll(List<? extends T> tuples)
+  {
+    if (batchSink == null) {
+      for (int i = 0; i < tuples.size(); i++) {
+        sink.put(tuples.get(i));
+      }
+    }
+    else {
+      batchSink.putAll(tuples);
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
    * Called by execution engine to inject sink at deployment time.
    */
   @Override
+  @SuppressWarnings("unchecked")
   final public void setSink(Sink<Object> s)
   {
     this.sink = s == null? Sink.BLACKHOLE: s;
+    this.batchSink = s instanceof BatchSink ? (BatchSink<Object>)s : null;
   }
 
   /**
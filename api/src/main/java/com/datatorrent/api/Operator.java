@@ -95,6 +95,54 @@ public interface Operator extends Component<OperatorContext>
 
   }
 
+  /**
+   * A unifier whose output over several windows can be computed from partial aggregates of the individual windows.
+   *
+   * When the output port is unified over a sliding application window, the engine accumulates the tuples of every
+   * window into an aggregate and combines the aggregates of the windows covered by the sliding window, instead of
+   * caching all the tuples and passing them to {@link #process(Object)} again for every slide. The aggregates are
+   * checkpointed with the unifier, so they have to be serializable.
+   *
+   * @param <T> Type of the tuple emitted by the output port which is being unified
+   * @param <A> Type of the partial aggregate
+   * @since 2.2.0
+   */
+  interface CombiningUnifier<T, A> extends Unifier<T>
+  {
+    /**
+     * @return an aggregate of no tuples.
+     */
+    A newAggregate();
+
+    /**
+     * Add a tuple to the aggregate of a window.
+     *
+     * @param aggregate aggregate of the tuples received so far in the window, which may be modified.
+     * @param tuple tuple received in the window.
+     * @return the aggregate including the tuple.
+     */
+    A accumulate(A aggregate, T tuple);
+
+    /**
+     * Combine the aggregates of two consecutive runs of windows. The operation has to be associative but need not be
+     * commutative.
+     *
+     * @param earlier aggregate of the earlier windows, which must not be modified.
+     * @param later aggregate of the later windows, which must not be modified.
+     * @return a new aggregate of the windows of both.
+     */
+    A combine(A earlier, A later);
+
+    /**
+     * Emit the unified tuples for the aggregate of all the windows in the sliding window. It's called between
+     * {@link #beginWindow(long)} and {@link #endWindow()} of the last window in the sliding window.
+     *
+     * @param aggregate aggregate of all the windows in the sliding window, which must not be modified.
+     */
+    void emitAggregate(A aggregate);
+
+  }
+
   /**
    * A operator provides ports as a means to consume and produce data tuples.
    * Concrete ports implement derived interfaces.
@@ -241,6 +289,35 @@ public interface Operator extends Component<OperatorContext>
 
   }
 
+  /**
+   * Operators with large state may implement this interface so that the storage agents which support incremental
+   * checkpoints store only the part of the state which changed since the previous checkpoint.
+   *
+   * The storage agent periodically stores the complete operator as the base and the deltas returned by
+   * {@link #getDelta()} in between. On recovery it loads the base and applies the subsequent deltas in the order
+   * in which they were taken. The changes tracked to construct the delta should be kept in transient fields.
+   *
+   * @since 2.2.0
+   */
+  public static interface IncrementalCheckpoint
+  {
+    /**
+     * Get the changes made to the state since the previous call to this method and start tracking the changes anew.
+     * It's also called before the complete operator is stored, in which case the returned delta is discarded.
+     *
+     * @return serializable changes to the state.
+     */
+    public Object getDelta();
+
+    /**
+     * Apply the changes returned by {@link #getDelta()} to the state restored from the earlier checkpoints.
+     *
+     * @param delta changes to the state.
+     */
+    public void applyDelta(Object delta);
+
+  }
+
   /**
    * Interface operator must implement if it's interested in being notified when it's idling.
    *
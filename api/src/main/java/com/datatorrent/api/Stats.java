@@ -37,11 +37,19 @@ public interface Stats extends Serializable
   {
     public long checkpointStartTime;
     public long checkpointTime;
+    /**
+     * Time spent by the operator thread serializing the state when checkpointing asynchronously.
+     */
+    public long snapshotTime;
+    /**
+     * Time spent in the background making the serialized state durable when checkpointing asynchronously.
+     */
+    public long writeTime;
 
     @Override
     public String toString()
     {
-      return "CheckpointStats{" + "checkpointStartTime=" + checkpointStartTime + ", checkpointTime=" + checkpointTime + '}';
+      return "CheckpointStats{" + "checkpointStartTime=" + checkpointStartTime + ", checkpointTime=" + checkpointTime + ", snapshotTime=" + snapshotTime + ", writeTime=" + writeTime + '}';
     }
   }
   public static class OperatorStats implements Stats
@@ -71,7 +79,19 @@ public interface Stats extends Serializable
       public int tupleCount;
       public long endWindowTimestamp;
       public long bufferServerBytes;
+      /**
+       * Time the output port spent waiting for the buffer server connection to drain since the last report
+       */
+      public long bufferServerBlockedMillis;
       public int queueSize;
+      /**
+       * Number of data tuples queued on an input port
+       */
+      public int dataQueueSize;
+      /**
+       * Number of control tuples queued on an input port
+       */
+      public int controlQueueSize;
       /**
        * If there is a recording on the port, this contains the recording id, otherwise null
        */
@@ -85,7 +105,7 @@ public interface Stats extends Serializable
       @Override
       public String toString()
       {
-        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", queueSize = " + queueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
+        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", bufferServerBlockedMillis = " + bufferServerBlockedMillis + ", queueSize = " + queueSize + ", dataQueueSize = " + dataQueueSize + ", controlQueueSize = " + controlQueueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
       }
 
     }
@@ -74,4 +74,60 @@ public interface StorageAgent
    */
   public long[] getWindowIds(int operatorId) throws IOException;
 
+  /**
+   * Storage agent which can separate capturing the state of an object from making it durable.
+   *
+   * The engine takes the snapshot on the operator thread, where the state cannot change underneath it, and writes the
+   * snapshot from a background thread so that the operator can continue processing while the state is being stored.
+   *
+   * @since 2.2.0
+   */
+  public interface AsyncStorageAgent extends StorageAgent
+  {
+    /**
+     * Serialize the state of the object into memory.
+     *
+     * @param object - The operator whose state needs to be saved.
+     * @param operatorId - Identifier of the operator.
+     * @param windowId - Identifier for the specific state of the operator.
+     * @return the serialized state which can be passed to {@link #write(byte[], int, long)}.
+     * @throws IOException
+     */
+    public byte[] snapshot(Object object, int operatorId, long windowId) throws IOException;
+
+    /**
+     * Store the snapshot taken earlier, as if the object was passed to save with the same operatorId and windowId.
+     * The snapshot is durable and can be loaded once this call returns.
+     *
+     * @param snapshot - The state of the operator returned by snapshot.
+     * @param operatorId - Identifier of the operator.
+     * @param windowId - Identifier for the specific state of the operator.
+     * @throws IOException
+     */
+    public void write(byte[] snapshot, int operatorId, long windowId) throws IOException;
+
+  }
+
+  /**
+   * Storage agent which can delete the state saved for several windows of an operator in one call.
+   *
+   * The engine collects the windows of an operator that are no longer needed for recovery and deletes them together,
+   * which lets the agent locate the stored state once for all the windows rather than once per window.
+   *
+   * @since 2.2.0
+   */
+  public interface BulkDeleteStorageAgent extends StorageAgent
+  {
+    /**
+     * Delete the artifacts related to store calls of the operatorId for each of the windowIds, with the same effect as
+     * calling delete for every window. Windows for which no state is stored are ignored.
+     *
+     * @param operatorId - Identifier of the operator.
+     * @param windowIds - Identifiers of the states of the operator which will not be needed again.
+     * @throws IOException
+     */
+    public void delete(int operatorId, long[] windowIds) throws IOException;
+
+  }
+
 }
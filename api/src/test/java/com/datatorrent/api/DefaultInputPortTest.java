@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how the batches put to a {@link DefaultInputPort} reach the port.
+ */
+public class DefaultInputPortTest
+{
+  @Test
+  public void testPutAllThroughPut()
+  {
+    final List<Integer> put = new ArrayList<Integer>();
+    final List<Integer> processed = new ArrayList<Integer>();
+    DefaultInputPort<Integer> port = new DefaultInputPort<Integer>()
+    {
+      @Override
+      public void put(Integer tuple)
+      {
+        put.add(tuple);
+        super.put(tuple);
+      }
+
+      @Override
+      public void process(Integer tuple)
+      {
+        processed.add(tuple);
+      }
+
+    };
+
+    port.putAll(Arrays.asList(1, 2, 3));
+    assertEquals("tuples put", Arrays.asList(1, 2, 3), put);
+    assertEquals("tuples processed", Arrays.asList(1, 2, 3), processed);
+    assertEquals("count", 3, port.getCount(true));
+  }
+
+  @Test
+  public void testPutAllThroughProcessAll()
+  {
+    final List<List<Integer>> batches = new ArrayList<List<Integer>>();
+    DefaultInputPort<Integer> port = new DefaultInputPort<Integer>()
+    {
+      @Override
+      public void put(Integer tuple)
+      {
+        fail("batch put as single tuples");
+      }
+
+      @Override
+      public void process(Integer tuple)
+      {
+        fail("batch processed as single tuples");
+      }
+
+      @Override
+      public void processAll(List<? extends Integer> tuples)
+      {
+        batches.add(new ArrayList<Integer>(tuples));
+      }
+
+    };
+
+    port.putAll(Arrays.asList(1, 2, 3));
+    assertEquals("batches processed", Arrays.asList(Arrays.asList(1, 2, 3)), batches);
+    assertEquals("count", 3, port.getCount(true));
+  }
+
+}
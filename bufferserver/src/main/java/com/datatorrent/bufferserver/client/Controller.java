@@ -42,9 +42,21 @@ public abstract class Controller extends AuthClient
   }
 
   public void purge(String version, String sourceId, long windowId)
+  {
+    purge(version, sourceId, windowId, false);
+  }
+
+  /**
+   * @param version version of the protocol
+   * @param sourceId identifier of the publisher whose data is purged
+   * @param windowId last window to purge
+   * @param keepAlive whether the server keeps the connection open for further requests after responding, otherwise
+   * the server disconnects once it has responded
+   */
+  public void purge(String version, String sourceId, long windowId, boolean keepAlive)
   {
     sendAuthenticate();
-    write(PurgeRequestTuple.getSerializedRequest(version, sourceId, windowId));
+    write(PurgeRequestTuple.getSerializedRequest(version, sourceId, windowId, keepAlive));
     logger.debug("Sent purge request sourceId = {}, windowId = {}", sourceId, Codec.getStringWindowId(windowId));
   }
 
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded pool of the byte arrays backing the {@link DataList.Block}s<p>
+ * <br>
+ * The arrays freed when a block is spooled to the secondary storage or purged are parked here, so that the next
+ * block allocated by a DataList or a publisher can reuse them instead of allocating another blocksize array.
+ * Only arrays of exactly blocksize are pooled; at most capacity arrays are retained and the rest are left to the GC.
+ *
+ * @since 2.2.0
+ */
+public class BlockPool
+{
+  private final int blocksize;
+  private final int capacity;
+  private final ArrayDeque<byte[]> free;
+  private long hits;
+  private long misses;
+
+  public BlockPool(int blocksize, int capacity)
+  {
+    this.blocksize = blocksize;
+    this.capacity = capacity;
+    free = new ArrayDeque<byte[]>(capacity);
+  }
+
+  public int getBlockSize()
+  {
+    return blocksize;
+  }
+
+  /**
+   * Get an array of blocksize bytes, either from the pool or freshly allocated if the pool is empty.
+   * The contents of a pooled array are not cleared.
+   *
+   * @return array of blocksize bytes.
+   */
+  public byte[] acquire()
+  {
+    byte[] array;
+    synchronized (this) {
+      array = free.poll();
+      if (array == null) {
+        misses++;
+      }
+      else {
+        hits++;
+        return array;
+      }
+    }
+
+    return new byte[blocksize];
+  }
+
+  /**
+   * Return an array which is no longer referenced by any block to the pool.
+   *
+   * @param array array to be reused.
+   * @return true if the array was retained by the pool, false otherwise.
+   */
+  public synchronized boolean release(byte[] array)
+  {
+    if (array.length == blocksize && free.size() < capacity) {
+      free.push(array);
+      return true;
+    }
+
+    return false;
+  }
+
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  public synchronized int getFreeCount()
+  {
+    return free.size();
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "BlockPool{" + "blocksize=" + blocksize + ", capacity=" + capacity + ", free=" + getFreeCount() + ", hits=" + getHits() + ", misses=" + getMisses() + '}';
+  }
+
+}
@@ -18,6 +18,7 @@ package com.datatorrent.bufferserver.internal;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
@@ -25,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.packet.BeginWindowTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.ResetWindowTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.storage.Storage;
@@ -50,8 +52,13 @@ public class DataList
   protected Block first;
   protected Block last;
   protected Storage storage;
+  protected BlockPool pool;
   protected ExecutorService autoflushExecutor;
   protected ExecutorService storageExecutor;
+  /**
+   * filters of the partitioned iterators for which the offsets of the relevant messages in each block are indexed.
+   */
+  private volatile PartitionFilter[] partitionFilters = new PartitionFilter[0];
 
   public int getBlockSize()
   {
@@ -73,6 +80,9 @@ public class DataList
         this.baseSeconds = temp.rewind(longWindowId);
         processingOffset = temp.writingOffset;
         size = 0;
+        for (PartitionIndex index : temp.getIndices()) {
+          index.truncate(processingOffset);
+        }
       }
     }
 
@@ -119,10 +129,24 @@ public class DataList
         storage.discard(identifier, temp.uniqueIdentifier);
       }
 
+      if (pool != null && !isIterated(temp)) {
+        temp.recycle();
+      }
       prev = temp;
     }
   }
 
+  private boolean isIterated(Block block)
+  {
+    for (DataListIterator iterator : iterators.values()) {
+      if (iterator.da == block) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   /**
    * @return the identifier
    */
@@ -133,16 +157,37 @@ public class DataList
 
   public DataList(String identifier, int blocksize, int numberOfCacheBlocks, int refCount)
   {
-    this(identifier, blocksize, numberOfCacheBlocks);
+    this(identifier, blocksize, numberOfCacheBlocks, refCount, null);
+  }
+
+  public DataList(String identifier, int blocksize, int numberOfCacheBlocks, int refCount, BlockPool pool)
+  {
+    this(identifier, blocksize, numberOfCacheBlocks, pool);
     first.refCount = refCount;
   }
 
   public DataList(String identifier, int blocksize, int numberOfCacheBlocks)
   {
+    this(identifier, blocksize, numberOfCacheBlocks, null);
+  }
+
+  /**
+   * @param identifier identifier of the publisher whose data is maintained in this list.
+   * @param blocksize size of each of the blocks in bytes.
+   * @param numberOfCacheBlocks number of blocks kept in memory before they are spooled to the secondary storage.
+   * @param pool pool the blocks are drawn from and returned to once purged, null to always allocate new blocks.
+   */
+  public DataList(String identifier, int blocksize, int numberOfCacheBlocks, BlockPool pool)
+  {
+    if (pool != null && pool.getBlockSize() != blocksize) {
+      throw new IllegalArgumentException("Block size " + blocksize + " does not match the pool " + pool);
+    }
+
     this.MAX_COUNT_OF_INMEM_BLOCKS = numberOfCacheBlocks;
     this.identifier = identifier;
     this.blocksize = blocksize;
-    first = new Block(identifier, blocksize);
+    this.pool = pool;
+    first = new Block(identifier, newBuffer());
     last = first;
   }
 
@@ -159,6 +204,10 @@ public class DataList
   long baseSeconds;
   int size;
   int processingOffset;
+  /**
+   * offset of the length of the message being processed by flush.
+   */
+  int messageOffset;
 
   public void flush(final int writeOffset)
   {
@@ -166,6 +215,7 @@ public class DataList
     flush:
     do {
       while (size == 0) {
+        messageOffset = processingOffset;
         size = VarInt.read(last.data, processingOffset, writeOffset, nextOffset);
         switch (nextOffset.integer) {
           case -5:
@@ -207,6 +257,11 @@ public class DataList
             baseSeconds = (long)rwt.getBaseSeconds() << 32;
             break;
         }
+
+        PartitionFilter[] filters = partitionFilters;
+        if (filters.length > 0) {
+          index(filters);
+        }
         processingOffset += size;
         size = 0;
       }
@@ -236,6 +291,36 @@ public class DataList
     });
   }
 
+  /**
+   * Record the offset of the message being flushed in the indices of the filters interested in it.
+   * Payload tuples are indexed only for the filters their partition matches, all the control tuples are indexed for
+   * every filter.
+   */
+  private void index(PartitionFilter[] filters)
+  {
+    switch (last.data[processingOffset]) {
+      case MessageType.PAYLOAD_VALUE:
+        int partition = PayloadTuple.getPartition(last.data, processingOffset);
+        for (PartitionFilter filter : filters) {
+          PartitionIndex pi = filter.getIndex(last, messageOffset);
+          if (filter.matches(partition)) {
+            pi.add(messageOffset);
+          }
+        }
+        break;
+
+      case MessageType.NO_MESSAGE_VALUE:
+      case MessageType.NO_MESSAGE_ODD_VALUE:
+        break;
+
+      default:
+        for (PartitionFilter filter : filters) {
+          filter.getIndex(last, messageOffset).add(messageOffset);
+        }
+        break;
+    }
+  }
+
   public void setAutoflushExecutor(final ExecutorService es)
   {
     autoflushExecutor = es;
@@ -257,21 +342,53 @@ public class DataList
     return new DataListIterator(block);
   }
 
+  /**
+   * Get an iterator which may skip the payload tuples not belonging to any of the partitions.
+   *
+   * @param block block to start iterating from
+   * @param partitions partitions the consumer of the iterator is interested in
+   * @return iterator over the messages of the data list.
+   */
+  public DataListIterator getIterator(Block block, Collection<BitVector> partitions)
+  {
+    PartitionFilter filter = new PartitionFilter(partitions);
+    synchronized (this) {
+      PartitionFilter[] filters = Arrays.copyOf(partitionFilters, partitionFilters.length + 1);
+      filters[filters.length - 1] = filter;
+      partitionFilters = filters;
+    }
+    return new PartitionedDataListIterator(block, filter);
+  }
+
   public Iterator<SerializedData> newIterator(String identifier, long windowId)
+  {
+    return newIterator(identifier, windowId, null);
+  }
+
+  /**
+   * Get an iterator for a consumer which is interested in only some of the partitions of the data.
+   * The offsets of the messages relevant to such a consumer are indexed as the data is added to the list, so that
+   * the iterator can skip over the payload tuples which belong to other partitions instead of scanning them.
+   *
+   * @param identifier identifier of the consumer
+   * @param windowId window from which the consumer wants the data
+   * @param partitions partitions of the consumer, null or empty if the consumer is interested in all the data
+   * @return iterator over the messages of the data list.
+   */
+  public Iterator<SerializedData> newIterator(String identifier, long windowId, Collection<BitVector> partitions)
   {
     //logger.debug("request for a new iterator {} and {}", identifier, windowId);
+    Block block = last;
     for (Block temp = first; temp != null; temp = temp.next) {
       if (temp.starting_window >= windowId || temp.ending_window > windowId) {
-        DataListIterator dli = getIterator(temp);
-        iterators.put(identifier, dli);
-        //logger.debug("returning new iterator on temp = {}", temp);
-        return dli;
+        block = temp;
+        break;
       }
     }
 
-    DataListIterator dli = getIterator(last);
+    DataListIterator dli = partitions == null || partitions.isEmpty() ? getIterator(block) : getIterator(block, partitions);
     iterators.put(identifier, dli);
-    //logger.debug("returning new iterator on last = {}", last);
+    //logger.debug("returning new iterator on {}", block);
     return dli;
   }
 
@@ -291,6 +408,9 @@ public class DataList
           if (dli.da != null) {
             dli.da.release(false);
           }
+          if (dli instanceof PartitionedDataListIterator) {
+            removeFilter(((PartitionedDataListIterator)dli).filter);
+          }
           iterators.remove(e.getKey());
           released = true;
           break;
@@ -300,6 +420,16 @@ public class DataList
     return released;
   }
 
+  private synchronized void removeFilter(PartitionFilter filter)
+  {
+    ArrayList<PartitionFilter> filters = new ArrayList<PartitionFilter>(Arrays.asList(partitionFilters));
+    filters.remove(filter);
+    partitionFilters = filters.toArray(new PartitionFilter[filters.size()]);
+    for (Block temp = first; temp != null; temp = temp.next) {
+      temp.removeIndex(filter);
+    }
+  }
+
   public void addDataListener(DataListener dl)
   {
     all_listeners.add(dl);
@@ -351,6 +481,16 @@ public class DataList
     all_listeners.remove(dl);
   }
 
+  /**
+   * Get an array to be used for a new block of this list.
+   *
+   * @return array drawn from the pool if there is one, freshly allocated otherwise.
+   */
+  public byte[] newBuffer()
+  {
+    return pool == null ? new byte[blocksize] : pool.acquire();
+  }
+
   public void addBuffer(byte[] array)
   {
     last.next = new Block(identifier, array);
@@ -411,6 +551,10 @@ public class DataList
     public long numBytesWaiting = 0;
     public long numBytesAllocated = 0;
     public String slowestConsumer;
+    public long poolHits;
+    public long poolMisses;
+    public int poolFreeBlocks;
+    public int poolCapacity;
   }
 
   public Status getStatus()
@@ -458,6 +602,13 @@ public class DataList
       b = b.next;
       ++i;
     }
+
+    if (pool != null) {
+      status.poolHits = pool.getHits();
+      status.poolMisses = pool.getMisses();
+      status.poolFreeBlocks = pool.getFreeCount();
+      status.poolCapacity = pool.getCapacity();
+    }
     return status;
   }
 
@@ -501,6 +652,10 @@ public class DataList
      * how count of references to this block.
      */
     int refCount;
+    /**
+     * offsets of the messages in this block relevant to each of the partition filters, created with the first index.
+     */
+    volatile ConcurrentHashMap<PartitionFilter, PartitionIndex> indices;
 
     public Block(String id, int size)
     {
@@ -514,6 +669,39 @@ public class DataList
       refCount = 1;
     }
 
+    PartitionIndex getIndex(PartitionFilter filter)
+    {
+      ConcurrentHashMap<PartitionFilter, PartitionIndex> lIndices = indices;
+      return lIndices == null ? null : lIndices.get(filter);
+    }
+
+    Collection<PartitionIndex> getIndices()
+    {
+      ConcurrentHashMap<PartitionFilter, PartitionIndex> lIndices = indices;
+      return lIndices == null ? Collections.<PartitionIndex>emptyList() : lIndices.values();
+    }
+
+    /**
+     * Only the flush thread adds the indices, so the map is created without further synchronization.
+     */
+    void putIndex(PartitionFilter filter, PartitionIndex index)
+    {
+      ConcurrentHashMap<PartitionFilter, PartitionIndex> lIndices = indices;
+      if (lIndices == null) {
+        lIndices = new ConcurrentHashMap<PartitionFilter, PartitionIndex>();
+        indices = lIndices;
+      }
+      lIndices.put(filter, index);
+    }
+
+    void removeIndex(PartitionFilter filter)
+    {
+      ConcurrentHashMap<PartitionFilter, PartitionIndex> lIndices = indices;
+      if (lIndices != null) {
+        lIndices.remove(filter);
+      }
+    }
+
     void getNextData(SerializedData current)
     {
       if (current.offset < writingOffset) {
@@ -609,6 +797,13 @@ public class DataList
                 this.starting_window = bs | bwt.getWindowId();
                 this.readingOffset = sd.offset;
                 //logger.debug("assigned starting window id {}", this);
+
+                /*
+                 * the reset tuple is moved in front of the begin window, so the indices apply only after it.
+                 */
+                for (PartitionIndex index : getIndices()) {
+                  index.skipTo(sd.offset + lastReset.length);
+                }
               }
 
               break done;
@@ -634,6 +829,9 @@ public class DataList
           this.starting_window = this.ending_window = longWindowId;
           //logger.debug("=20140220= avoid the windowids {}", this);
         }
+        for (PartitionIndex index : getIndices()) {
+          index.skipTo(this.writingOffset);
+        }
 
 
         SerializedData sd = new SerializedData(this.data, readingOffset, 0);
@@ -668,11 +866,33 @@ public class DataList
         @Override
         public void run()
         {
-          byte[] lData = storage.retrieve(identifier, uniqueIdentifier);
+          byte[] lData;
+          int length;
+          if (storage instanceof Storage.MappedStorage) {
+            /*
+             * read the block straight from the mapping of the storage into an array drawn from the pool.
+             */
+            lData = newBuffer();
+            length = ((Storage.MappedStorage)storage).retrieve(identifier, uniqueIdentifier, lData);
+            if (length > lData.length) {
+              if (pool != null) {
+                pool.release(lData);
+              }
+              lData = storage.retrieve(identifier, uniqueIdentifier);
+            }
+          }
+          else {
+            lData = storage.retrieve(identifier, uniqueIdentifier);
+            length = lData.length;
+          }
           synchronized (Block.this) {
+            /*
+             * the retrieved data starts at what used to be the readingOffset, so the indexed offsets are stale.
+             */
+            indices = null;
             data = lData;
             readingOffset = 0;
-            writingOffset = data.length;
+            writingOffset = length;
             if (refCount > 1) {
               Block.this.notifyAll();
             }
@@ -682,6 +902,19 @@ public class DataList
       };
     }
 
+    /**
+     * Return the data of a block which was purged from the list to the pool.
+     * The data is recycled only when no iterator holds the block and it is not being spooled.
+     */
+    synchronized void recycle()
+    {
+      if (refCount == 1 && data != null) {
+        pool.release(data);
+        data = null;
+        refCount = 0;
+      }
+    }
+
     synchronized void acquire(boolean wait)
     {
       if (refCount++ == 0 && uniqueIdentifier > 0 && storage != null) {
@@ -890,5 +1123,207 @@ public class DataList
 
   }
 
+  /**
+   * Iterator which uses the per block indices of its partition filter to jump from one relevant message to the next.
+   * Wherever the index does not cover the data, e.g. the part of a block flushed before the iterator was created or a
+   * block retrieved from the secondary storage, it falls back to scanning all the messages like its super class.
+   */
+  class PartitionedDataListIterator extends DataListIterator
+  {
+    final PartitionFilter filter;
+    private PartitionIndex index;
+    private int position;
+
+    PartitionedDataListIterator(Block da, PartitionFilter filter)
+    {
+      super(da);
+      this.filter = filter;
+    }
+
+    @Override
+    public synchronized boolean hasNext()
+    {
+      while (size == 0) {
+        PartitionIndex pi = da.getIndex(filter);
+        if (pi == null || readOffset < pi.start) {
+          break;
+        }
+
+        if (pi != index) {
+          index = pi;
+          position = pi.lowerBound(readOffset);
+        }
+        else {
+          int count = pi.size();
+          while (position < count && pi.get(position) < readOffset) {
+            position++;
+          }
+        }
+
+        if (position < pi.size()) {
+          int offset = pi.get(position);
+          if (offset >= da.writingOffset) {
+            return false;
+          }
+
+          readOffset = offset;
+          size = VarInt.read(buffer, offset, da.writingOffset, nextOffset);
+          current = new SerializedData(buffer, offset, size + nextOffset.integer - offset);
+          current.dataOffset = nextOffset.integer;
+          return true;
+        }
+
+        if (da.writingOffset == buffer.length && da.next != null) {
+          da.release(false);
+          da.next.acquire(true);
+          da = da.next;
+          buffer = da.data;
+          readOffset = da.readingOffset;
+        }
+        else {
+          return false;
+        }
+      }
+
+      return super.hasNext();
+    }
+
+    @Override
+    void rewind(int processingOffset)
+    {
+      super.rewind(processingOffset);
+      index = null;
+    }
+
+  }
+
+  /**
+   * Flattened masks and bits of the partitions of a subscriber, also used as the key for its indices in the blocks.
+   */
+  static class PartitionFilter
+  {
+    private final int[] masks;
+    private final int[] bits;
+    /*
+     * last block and its index looked up by the flush thread.
+     */
+    private Block indexedBlock;
+    private PartitionIndex index;
+
+    PartitionFilter(Collection<BitVector> partitions)
+    {
+      masks = new int[partitions.size()];
+      bits = new int[partitions.size()];
+      int i = 0;
+      for (BitVector bv : partitions) {
+        masks[i] = bv.getMask();
+        bits[i] = bv.getBits();
+        i++;
+      }
+    }
+
+    boolean matches(int partition)
+    {
+      for (int i = masks.length; i-- > 0;) {
+        if ((partition & masks[i]) == bits[i]) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Get the index of the block being flushed, the index created for a block covers the messages from the given offset.
+     */
+    PartitionIndex getIndex(Block block, int offset)
+    {
+      if (block != indexedBlock) {
+        index = block.getIndex(this);
+        if (index == null) {
+          index = new PartitionIndex(offset);
+          block.putIndex(this, index);
+        }
+        indexedBlock = block;
+      }
+      return index;
+    }
+
+  }
+
+  /**
+   * Ascending offsets of the messages in a block which are relevant to a partition filter.<p>
+   * <br>
+   * Only the flush thread appends to the index; the offsets below start are not indexed and have to be scanned.
+   */
+  static class PartitionIndex
+  {
+    private int[] offsets = new int[64];
+    private volatile int size;
+    volatile int start;
+
+    PartitionIndex(int start)
+    {
+      this.start = start;
+    }
+
+    void add(int offset)
+    {
+      if (size == offsets.length) {
+        offsets = Arrays.copyOf(offsets, size << 1);
+      }
+      offsets[size] = offset;
+      size++;
+    }
+
+    int size()
+    {
+      return size;
+    }
+
+    int get(int position)
+    {
+      return offsets[position];
+    }
+
+    /**
+     * Ignore the offsets before the given offset, the data before it was purged or rearranged.
+     */
+    void skipTo(int offset)
+    {
+      if (offset > start) {
+        start = offset;
+      }
+    }
+
+    /**
+     * Forget the offsets at or after the given offset, the data after it was rewound.
+     */
+    void truncate(int offset)
+    {
+      size = lowerBound(offset);
+    }
+
+    /**
+     * @return position of the first offset which is not less than the given offset.
+     */
+    int lowerBound(int offset)
+    {
+      int low = 0;
+      int high = size;
+      int[] array = offsets;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (array[mid] < offset) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(DataList.class);
 }
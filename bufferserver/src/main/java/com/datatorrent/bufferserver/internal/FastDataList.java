@@ -15,11 +15,14 @@
  */
 package com.datatorrent.bufferserver.internal;
 
+import java.util.Collection;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.bufferserver.util.SerializedData;
 
 /**
@@ -44,6 +47,16 @@ public class FastDataList extends DataList
     super(identifier, blocksize, numberOfCacheBlocks, refCount);
   }
 
+  public FastDataList(String identifier, int blocksize, int numberOfCacheBlocks, BlockPool pool)
+  {
+    super(identifier, blocksize, numberOfCacheBlocks, pool);
+  }
+
+  public FastDataList(String identifier, int blocksize, int numberOfCacheBlocks, int refCount, BlockPool pool)
+  {
+    super(identifier, blocksize, numberOfCacheBlocks, refCount, pool);
+  }
+
 
   long item;
 
@@ -121,6 +134,16 @@ public class FastDataList extends DataList
     return new FastDataListIterator(block);
   }
 
+  /**
+   * The messages of the fast version are framed differently and are not indexed, so the partitions are ignored here
+   * and are matched by the consumer of the iterator instead.
+   */
+  @Override
+  public FastDataListIterator getIterator(Block block, Collection<BitVector> partitions)
+  {
+    return getIterator(block);
+  }
+
 
   /* TODO: Are these functions required?
    @Override
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.internal.DataList.DataListIterator;
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.policy.GiveAll;
 import com.datatorrent.bufferserver.policy.Policy;
@@ -48,6 +49,11 @@ public class LogicalNode implements DataListener
   private final String group;
   private final HashSet<PhysicalNode> physicalNodes;
   private final HashSet<BitVector> partitions;
+  /*
+   * flattened masks and bits of the partitions so that the payload can be matched without allocations.
+   */
+  private int[] partitionMasks = new int[0];
+  private int[] partitionBits = new int[0];
   private final Policy policy = GiveAll.getInstance();
   private final DataListIterator iterator;
   private final long skipWindowId;
@@ -129,7 +135,38 @@ public class LogicalNode implements DataListener
    */
   public void addPartition(int partition, int mask)
   {
-    partitions.add(new BitVector(partition, mask));
+    if (partitions.add(new BitVector(partition, mask))) {
+      int[] masks = new int[partitions.size()];
+      int[] bits = new int[partitions.size()];
+      int i = 0;
+      for (BitVector bv : partitions) {
+        masks[i] = bv.getMask();
+        bits[i++] = bv.getBits();
+      }
+      partitionMasks = masks;
+      partitionBits = bits;
+    }
+  }
+
+  /**
+   * Check whether the payload tuple serialized in the buffer belongs to any of the partitions of this node.
+   *
+   * @param buffer buffer containing the serialized tuple
+   * @param offset offset of the message type of the tuple in the buffer
+   * @return true if the partition of the tuple matches one of the partitions, false otherwise.
+   */
+  public boolean matchesPartition(byte[] buffer, int offset)
+  {
+    final int value = PayloadTuple.getPartition(buffer, offset);
+    final int[] masks = partitionMasks;
+    final int[] bits = partitionBits;
+    for (int i = 0; i < masks.length; i++) {
+      if ((value & masks[i]) == bits[i]) {
+        return true;
+      }
+    }
+
+    return false;
   }
 
   boolean ready = true;
@@ -267,13 +304,8 @@ public class LogicalNode implements DataListener
               SerializedData data = iterator.next();
               switch (data.buffer[data.dataOffset]) {
                 case MessageType.PAYLOAD_VALUE:
-                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, data.length - data.dataOffset + data.offset);
-                  int value = tuple.getPartition();
-                  for (BitVector bv : partitions) {
-                    if (bv.matches(value)) {
-                      ready = policy.distribute(physicalNodes, data);
-                      break;
-                    }
+                  if (matchesPartition(data.buffer, data.dataOffset)) {
+                    ready = policy.distribute(physicalNodes, data);
                   }
                   break;
 
@@ -282,7 +314,7 @@ public class LogicalNode implements DataListener
                   break;
 
                 case MessageType.RESET_WINDOW_VALUE:
-                  tuple = Tuple.getTuple(data.buffer, data.dataOffset, data.length - data.dataOffset + data.offset);
+                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, data.length - data.dataOffset + data.offset);
                   baseSeconds = (long)tuple.getBaseSeconds() << 32;
 
                 default:
@@ -37,6 +37,10 @@ public class GenericRequestTuple extends RequestTuple
   protected String identifier;
   protected int baseSeconds;
   protected int windowId;
+  /**
+   * offset following the fields of the generic request, where the fields particular to a request start.
+   */
+  protected int fieldsEndOffset;
 
   public GenericRequestTuple(byte[] buffer, int offset, int length)
   {
@@ -101,6 +105,7 @@ public class GenericRequestTuple extends RequestTuple
       while (buffer[dataOffset++] < 0) {
       }
 
+      fieldsEndOffset = dataOffset;
       valid = true;
     }
     catch (NumberFormatException nfe) {
@@ -37,6 +37,18 @@ public class PayloadTuple extends Tuple
 
   @Override
   public int getPartition()
+  {
+    return getPartition(buffer, offset);
+  }
+
+  /**
+   * Read the partition of the payload tuple serialized in the buffer without creating a tuple object.
+   *
+   * @param buffer buffer containing the serialized tuple
+   * @param offset offset of the message type of the tuple in the buffer
+   * @return partition of the tuple
+   */
+  public static int getPartition(byte[] buffer, int offset)
   {
     int p = buffer[offset + 1];
     p |= buffer[offset + 2] << 8;
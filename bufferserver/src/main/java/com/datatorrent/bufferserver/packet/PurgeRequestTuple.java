@@ -15,6 +15,10 @@
  */
 package com.datatorrent.bufferserver.packet;
 
+import java.util.Arrays;
+
+import com.datatorrent.bufferserver.util.Codec;
+
 /**
  * <p>PurgeRequestTuple class.</p>
  *
@@ -22,14 +26,54 @@ package com.datatorrent.bufferserver.packet;
  */
 public class PurgeRequestTuple extends GenericRequestTuple
 {
+  private boolean keepAlive;
+
   public PurgeRequestTuple(byte[] array, int offset, int length)
   {
     super(array, offset, length);
   }
 
+  @Override
+  public void parse()
+  {
+    super.parse();
+    /*
+     * the flag is optional so that the requests of the clients which do not send it are served as before.
+     */
+    if (valid && fieldsEndOffset < offset + length) {
+      keepAlive = buffer[fieldsEndOffset] != 0;
+    }
+  }
+
+  /**
+   * @return whether the connection should be kept open for further requests once the purge request is responded to.
+   */
+  public boolean isKeepAlive()
+  {
+    return keepAlive;
+  }
+
   public static byte[] getSerializedRequest(String version, String id, long windowId)
   {
     return GenericRequestTuple.getSerializedRequest(version, id, windowId, MessageType.PURGE_REQUEST_VALUE);
   }
 
+  public static byte[] getSerializedRequest(String version, String id, long windowId, boolean keepAlive)
+  {
+    byte[] request = getSerializedRequest(version, id, windowId);
+    if (!keepAlive) {
+      return request;
+    }
+
+    byte[] array = Arrays.copyOf(request, request.length + 1);
+    array[request.length] = 1;
+    return array;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "{" + "version=" + version + ", identifier=" + identifier + ", windowId=" + Codec.getStringWindowId((long)baseSeconds | windowId) + ", keepAlive=" + keepAlive + '}';
+  }
+
 }
@@ -15,6 +15,7 @@
  */
 package com.datatorrent.bufferserver.server;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -23,7 +24,6 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
@@ -31,15 +31,18 @@ import java.util.concurrent.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.bufferserver.internal.BlockPool;
 import com.datatorrent.bufferserver.internal.DataList;
 import com.datatorrent.bufferserver.internal.FastDataList;
 import com.datatorrent.bufferserver.internal.LogicalNode;
 import com.datatorrent.bufferserver.packet.*;
 import com.datatorrent.bufferserver.storage.Storage;
+import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.netlet.AbstractLengthPrependerClient;
 import com.datatorrent.netlet.DefaultEventLoop;
 import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.netlet.Listener;
 import com.datatorrent.netlet.Listener.ServerListener;
 import com.datatorrent.netlet.util.VarInt;
 
@@ -53,6 +56,7 @@ public class Server implements ServerListener
 {
   public static final int DEFAULT_BUFFER_SIZE = 64 * 1024 * 1024;
   public static final int DEFAULT_NUMBER_OF_CACHED_BLOCKS = 8;
+  public static final int DEFAULT_NUMBER_OF_EVENT_LOOPS = 1;
   private final int port;
   private String identity;
   private Storage storage;
@@ -60,6 +64,14 @@ public class Server implements ServerListener
   private InetSocketAddress address;
   private final ExecutorService serverHelperExecutor;
   private final ExecutorService storageHelperExecutor;
+  private final int numberOfEventLoops;
+  /**
+   * When the server runs more than one event loop, the publishers are sharded across these loops by their identifier
+   * and their subscribers are attached to the loop of the upstream publisher. Each loop has its own helper executor
+   * which fans the published data out to the subscribers.
+   */
+  private DefaultEventLoop[] shardEventloops;
+  private ExecutorService[] shardHelperExecutors;
 
   private byte[] authToken;
 
@@ -73,9 +85,26 @@ public class Server implements ServerListener
 
   public Server(int port, int blocksize, int numberOfCacheBlocks)
   {
+    this(port, blocksize, numberOfCacheBlocks, DEFAULT_NUMBER_OF_EVENT_LOOPS);
+  }
+
+  /**
+   * @param port - port number to bind to or 0 to auto select a free port
+   * @param blocksize - size of the blocks in which the published data is stored
+   * @param numberOfCacheBlocks - number of blocks per publisher kept in memory before spooling
+   * @param numberOfEventLoops - number of event loops across which the publishers and their subscribers are sharded
+   */
+  public Server(int port, int blocksize, int numberOfCacheBlocks, int numberOfEventLoops)
+  {
+    if (numberOfEventLoops < 1) {
+      throw new IllegalArgumentException("Number of event loops should be positive: " + numberOfEventLoops);
+    }
+
     this.port = port;
+    this.numberOfEventLoops = numberOfEventLoops;
     this.blockSize = blocksize;
     this.numberOfCacheBlocks = numberOfCacheBlocks;
+    blockPool = new BlockPool(blocksize, numberOfCacheBlocks);
     serverHelperExecutor = Executors.newSingleThreadExecutor(new NameableThreadFactory("ServerHelper"));
     storageHelperExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(numberOfCacheBlocks), new NameableThreadFactory("StorageHelper"), new ThreadPoolExecutor.CallerRunsPolicy());
   }
@@ -99,17 +128,47 @@ public class Server implements ServerListener
   {
     serverHelperExecutor.shutdown();
     storageHelperExecutor.shutdown();
+    if (shardEventloops != null) {
+      for (int i = 0; i < shardEventloops.length; i++) {
+        shardHelperExecutors[i].shutdown();
+        shardEventloops[i].stop();
+      }
+    }
     try {
       serverHelperExecutor.awaitTermination(5000, TimeUnit.MILLISECONDS);
+      storageHelperExecutor.awaitTermination(5000, TimeUnit.MILLISECONDS);
     }
     catch (InterruptedException ex) {
       logger.debug("Executor Termination", ex);
     }
+    if (storage instanceof Closeable) {
+      try {
+        ((Closeable)storage).close();
+      }
+      catch (IOException ex) {
+        logger.warn("Spool storage could not be closed", ex);
+      }
+    }
     logger.info("Server stopped listening at {}", address);
   }
 
   public synchronized InetSocketAddress run(EventLoop eventloop)
   {
+    if (numberOfEventLoops > 1 && shardEventloops == null) {
+      shardEventloops = new DefaultEventLoop[numberOfEventLoops];
+      shardHelperExecutors = new ExecutorService[numberOfEventLoops];
+      for (int i = 0; i < numberOfEventLoops; i++) {
+        try {
+          shardEventloops[i] = new DefaultEventLoop("BufferServerShard-" + i);
+        }
+        catch (IOException ex) {
+          throw new RuntimeException(ex);
+        }
+        shardEventloops[i].start();
+        shardHelperExecutors[i] = Executors.newSingleThreadExecutor(new NameableThreadFactory("ServerHelper-" + i));
+      }
+    }
+
     eventloop.start(null, port, this);
     while (address == null) {
       try {
@@ -124,6 +183,34 @@ public class Server implements ServerListener
     return address;
   }
 
+  private int getShard(String upstreamIdentifier)
+  {
+    return (upstreamIdentifier.hashCode() & Integer.MAX_VALUE) % numberOfEventLoops;
+  }
+
+  /**
+   * @param upstreamIdentifier identifier of the publisher
+   * @return the event loop which serves the publisher and its subscribers.
+   */
+  private EventLoop getEventLoop(String upstreamIdentifier)
+  {
+    return shardEventloops == null ? eventloop : shardEventloops[getShard(upstreamIdentifier)];
+  }
+
+  /**
+   * @param upstreamIdentifier identifier of the publisher
+   * @return the executor which distributes the data of the publisher to its subscribers.
+   */
+  private ExecutorService getHelperExecutor(String upstreamIdentifier)
+  {
+    return shardHelperExecutors == null ? serverHelperExecutor : shardHelperExecutors[getShard(upstreamIdentifier)];
+  }
+
+  public int getNumberOfEventLoops()
+  {
+    return numberOfEventLoops;
+  }
+
   public void setAuthToken(byte[] authToken)
   {
     this.authToken = authToken == null? null: Arrays.copyOf(authToken, authToken.length);
@@ -155,14 +242,15 @@ public class Server implements ServerListener
     return identity;
   }
 
-  private final HashMap<String, DataList> publisherBuffers = new HashMap<String, DataList>();
+  private final ConcurrentHashMap<String, DataList> publisherBuffers = new ConcurrentHashMap<String, DataList>();
   private final ConcurrentHashMap<String, LogicalNode> subscriberGroups = new ConcurrentHashMap<String, LogicalNode>();
   private final ConcurrentHashMap<String, AbstractLengthPrependerClient> publisherChannels = new ConcurrentHashMap<String, AbstractLengthPrependerClient>();
   private final ConcurrentHashMap<String, AbstractLengthPrependerClient> subscriberChannels = new ConcurrentHashMap<String, AbstractLengthPrependerClient>();
   private final int blockSize;
   private final int numberOfCacheBlocks;
+  private final BlockPool blockPool;
 
-  public void handlePurgeRequest(PurgeRequestTuple request, final AbstractLengthPrependerClient ctx) throws IOException
+  public void handlePurgeRequest(final PurgeRequestTuple request, final AbstractLengthPrependerClient ctx) throws IOException
   {
     DataList dl;
     dl = publisherBuffers.get(request.getIdentifier());
@@ -184,7 +272,12 @@ public class Server implements ServerListener
       public void run()
       {
         ctx.write(tuple);
-        eventloop.disconnect(ctx);
+        /*
+         * the client which asked for the connection to be kept alive disconnects once it is done with its requests.
+         */
+        if (!request.isKeepAlive()) {
+          eventloop.disconnect(ctx);
+        }
       }
 
     });
@@ -202,7 +295,7 @@ public class Server implements ServerListener
     else {
       AbstractLengthPrependerClient channel = publisherChannels.remove(request.getIdentifier());
       if (channel != null) {
-        eventloop.disconnect(channel);
+        getEventLoop(request.getIdentifier()).disconnect(channel);
       }
       dl.reset();
       message = ("Request sent for processing: " + request).getBytes();
@@ -243,11 +336,11 @@ public class Server implements ServerListener
        */
       AbstractLengthPrependerClient previous = subscriberChannels.put(identifier, connection);
       if (previous != null) {
-        eventloop.disconnect(previous);
+        getEventLoop(upstream_identifier).disconnect(previous);
       }
 
       ln = subscriberGroups.get(type);
-      ln.boot(eventloop);
+      ln.boot(getEventLoop(upstream_identifier));
       ln.addConnection(connection);
     }
     else {
@@ -262,22 +355,30 @@ public class Server implements ServerListener
         //logger.debug("old list = {}", dl);
       }
       else {
-        dl = Tuple.FAST_VERSION.equals(request.getVersion()) ? new FastDataList(upstream_identifier, blockSize, numberOfCacheBlocks, 0) : new DataList(upstream_identifier, blockSize, numberOfCacheBlocks, 0);
+        dl = Tuple.FAST_VERSION.equals(request.getVersion()) ? new FastDataList(upstream_identifier, blockSize, numberOfCacheBlocks, 0, blockPool) : new DataList(upstream_identifier, blockSize, numberOfCacheBlocks, 0, blockPool);
         publisherBuffers.put(upstream_identifier, dl);
         //logger.debug("new list = {}", dl);
       }
 
+      /*
+       * the partitions are known upfront, so the data list can index the tuples of this group for its iterator.
+       */
+      ArrayList<BitVector> partitions = new ArrayList<BitVector>();
+      int mask = request.getMask();
+      if (mask != 0) {
+        for (Integer bs : request.getPartitions()) {
+          partitions.add(new BitVector(bs, mask));
+        }
+      }
+
       long skipWindowId = (long)request.getBaseSeconds() << 32 | request.getWindowId();
       ln = new LogicalNode(upstream_identifier,
                            type,
-                           dl.newIterator(identifier, skipWindowId),
+                           dl.newIterator(identifier, skipWindowId, partitions),
                            skipWindowId);
 
-      int mask = request.getMask();
-      if (mask != 0) {
-        for (Integer bs : request.getPartitions()) {
-          ln.addPartition(bs, mask);
-        }
+      for (BitVector bv : partitions) {
+        ln.addPartition(bv.getBits(), bv.getMask());
       }
 
       subscriberGroups.put(type, ln);
@@ -306,7 +407,7 @@ public class Server implements ServerListener
        */
       AbstractLengthPrependerClient previous = publisherChannels.put(identifier, connection);
       if (previous != null) {
-        eventloop.disconnect(previous);
+        getEventLoop(identifier).disconnect(previous);
       }
 
       dl = publisherBuffers.get(identifier);
@@ -318,7 +419,7 @@ public class Server implements ServerListener
       }
     }
     else {
-      dl = Tuple.FAST_VERSION.equals(request.getVersion()) ? new FastDataList(identifier, blockSize, numberOfCacheBlocks) : new DataList(identifier, blockSize, numberOfCacheBlocks);
+      dl = Tuple.FAST_VERSION.equals(request.getVersion()) ? new FastDataList(identifier, blockSize, numberOfCacheBlocks, blockPool) : new DataList(identifier, blockSize, numberOfCacheBlocks, blockPool);
       publisherBuffers.put(identifier, dl);
     }
     dl.setSecondaryStorage(storage, storageHelperExecutor);
@@ -376,6 +477,64 @@ public class Server implements ServerListener
     }
   }
 
+  /**
+   * Create the server side of the connection of a publisher and prepare its data list.
+   */
+  private Publisher getPublisher(PublishRequestTuple request, AbstractLengthPrependerClient connection)
+  {
+    DataList dl = handlePublisherRequest(request, connection);
+    dl.setAutoflushExecutor(getHelperExecutor(request.getIdentifier()));
+
+    if (request.getVersion().equals(Tuple.FAST_VERSION)) {
+      return new Publisher(dl, (long)request.getBaseSeconds() << 32 | request.getWindowId())
+      {
+        @Override
+        public int readSize()
+        {
+          if (writeOffset - readOffset < 2) {
+            return -1;
+          }
+
+          short s = buffer[readOffset++];
+          return s | (buffer[readOffset++] << 8);
+        }
+
+      };
+    }
+
+    return new Publisher(dl, (long)request.getBaseSeconds() << 32 | request.getWindowId());
+  }
+
+  /**
+   * Create the server side of the connection of a subscriber.
+   */
+  private Subscriber getSubscriber(SubscribeRequestTuple request)
+  {
+//    /* for backward compatibility - set the buffer size to 16k - EXPERIMENTAL */
+    int bufferSize = request.getBufferSize();
+//    if (bufferSize == 0) {
+//      bufferSize = 16 * 1024;
+//    }
+    if (request.getVersion().equals(Tuple.FAST_VERSION)) {
+      return new Subscriber(request.getStreamType(), request.getMask(), request.getPartitions(), bufferSize);
+    }
+
+    return new Subscriber(request.getStreamType(), request.getMask(), request.getPartitions(), bufferSize)
+    {
+      @Override
+      public int readSize()
+      {
+        if (writeOffset - readOffset < 2) {
+          return -1;
+        }
+
+        short s = buffer[readOffset++];
+        return s | (buffer[readOffset++] << 8);
+      }
+
+    };
+  }
+
   class UnidentifiedClient extends SeedDataClient
   {
 
@@ -391,39 +550,44 @@ public class Server implements ServerListener
            */
           unregistered(key);
           logger.info("Received publisher request: {}", request);
-          PublishRequestTuple publisherRequest = (PublishRequestTuple)request;
+          final PublishRequestTuple publisherRequest = (PublishRequestTuple)request;
 
-          DataList dl = handlePublisherRequest(publisherRequest, this);
-          dl.setAutoflushExecutor(serverHelperExecutor);
+          int len = writeOffset - readOffset - size;
+          if (shardEventloops == null) {
+            Publisher publisher = getPublisher(publisherRequest, this);
+
+            key.attach(publisher);
+            key.interestOps(SelectionKey.OP_READ);
+            publisher.registered(key);
 
-          Publisher publisher;
-          if (publisherRequest.getVersion().equals(Tuple.FAST_VERSION)) {
-            publisher = new Publisher(dl, (long)request.getBaseSeconds() << 32 | request.getWindowId())
+            if (len > 0) {
+              publisher.transferBuffer(this.buffer, readOffset + size, len);
+            }
+          }
+          else {
+            /*
+             * The data list of the publisher is owned by the event loop of its shard, so the publisher is created
+             * there and the channel is moved over to that loop along with the data received so far. The data received
+             * so far is transferred before the channel is registered, otherwise the shard may read the data which
+             * follows it from the channel first.
+             */
+            final byte[] remaining = Arrays.copyOfRange(this.buffer, readOffset + size, readOffset + size + len);
+            final SocketChannel channel = detach();
+            final UnidentifiedClient connection = this;
+            final DefaultEventLoop shard = shardEventloops[getShard(publisherRequest.getIdentifier())];
+            shard.submit(new Runnable()
             {
               @Override
-              public int readSize()
+              public void run()
               {
-                if (writeOffset - readOffset < 2) {
-                  return -1;
+                Publisher publisher = getPublisher(publisherRequest, connection);
+                if (remaining.length > 0) {
+                  publisher.transferBuffer(remaining, 0, remaining.length);
                 }
-
-                short s = buffer[readOffset++];
-                return s | (buffer[readOffset++] << 8);
+                shard.register(channel, SelectionKey.OP_READ, publisher);
               }
 
-            };
-          }
-          else {
-            publisher = new Publisher(dl, (long)request.getBaseSeconds() << 32 | request.getWindowId());
-          }
-
-          key.attach(publisher);
-          key.interestOps(SelectionKey.OP_READ);
-          publisher.registered(key);
-
-          int len = writeOffset - readOffset - size;
-          if (len > 0) {
-            publisher.transferBuffer(this.buffer, readOffset + size, len);
+            });
           }
 
           /*
@@ -446,67 +610,82 @@ public class Server implements ServerListener
           discardReadBuffer();
           logger.info("Received subscriber request: {}", request);
 
-          SubscribeRequestTuple subscriberRequest = (SubscribeRequestTuple)request;
-          AbstractLengthPrependerClient subscriber;
-
-//          /* for backward compatibility - set the buffer size to 16k - EXPERIMENTAL */
-          int bufferSize = subscriberRequest.getBufferSize();
-//          if (bufferSize == 0) {
-//            bufferSize = 16 * 1024;
-//          }
-          if (subscriberRequest.getVersion().equals(Tuple.FAST_VERSION)) {
-            subscriber = new Subscriber(subscriberRequest.getStreamType(), subscriberRequest.getMask(), subscriberRequest.getPartitions(), bufferSize);
-          }
-          else {
-            subscriber = new Subscriber(subscriberRequest.getStreamType(), subscriberRequest.getMask(), subscriberRequest.getPartitions(), bufferSize)
+          final SubscribeRequestTuple subscriberRequest = (SubscribeRequestTuple)request;
+          final Subscriber subscriber = getSubscriber(subscriberRequest);
+          final String upstreamIdentifier = subscriberRequest.getUpstreamIdentifier();
+          Runnable subscribe = new Runnable()
+          {
+            @Override
+            public void run()
             {
-              @Override
-              public int readSize()
+              final LogicalNode logicalNode = handleSubscriberRequest(subscriberRequest, subscriber);
+              getHelperExecutor(upstreamIdentifier).submit(new Runnable()
               {
-                if (writeOffset - readOffset < 2) {
-                  return -1;
+                @Override
+                public void run()
+                {
+                  logicalNode.catchUp();
                 }
 
-                short s = buffer[readOffset++];
-                return s | (buffer[readOffset++] << 8);
-              }
+              });
+            }
 
-            };
+          };
+
+          if (shardEventloops == null) {
+            key.attach(subscriber);
+            key.interestOps(SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+            subscriber.registered(key);
+            subscribe.run();
+          }
+          else {
+            /*
+             * attach the subscriber to the event loop which owns the data list of the upstream publisher.
+             */
+            DefaultEventLoop shard = shardEventloops[getShard(upstreamIdentifier)];
+            shard.register(detach(), SelectionKey.OP_WRITE | SelectionKey.OP_READ, subscriber);
+            shard.submit(subscribe);
           }
-          key.attach(subscriber);
-          key.interestOps(SelectionKey.OP_WRITE | SelectionKey.OP_READ);
-          subscriber.registered(key);
+          break;
 
-          final LogicalNode logicalNode = handleSubscriberRequest(subscriberRequest, subscriber);
-          serverHelperExecutor.submit(new Runnable()
+        case PURGE_REQUEST:
+          logger.info("Received purge request: {}", request);
+          final PurgeRequestTuple purgeRequest = (PurgeRequestTuple)request;
+          final UnidentifiedClient purgeConnection = this;
+          submit(purgeRequest.getIdentifier(), new Runnable()
           {
             @Override
             public void run()
             {
-              logicalNode.catchUp();
+              try {
+                handlePurgeRequest(purgeRequest, purgeConnection);
+              }
+              catch (IOException io) {
+                throw new RuntimeException(io);
+              }
             }
 
           });
           break;
 
-        case PURGE_REQUEST:
-          logger.info("Received purge request: {}", request);
-          try {
-            handlePurgeRequest((PurgeRequestTuple)request, this);
-          }
-          catch (IOException io) {
-            throw new RuntimeException(io);
-          }
-          break;
-
         case RESET_REQUEST:
           logger.info("Received reset all request: {}", request);
-          try {
-            handleResetRequest((ResetRequestTuple)request, this);
-          }
-          catch (IOException io) {
-            throw new RuntimeException(io);
-          }
+          final ResetRequestTuple resetRequest = (ResetRequestTuple)request;
+          final UnidentifiedClient resetConnection = this;
+          submit(resetRequest.getIdentifier(), new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              try {
+                handleResetRequest(resetRequest, resetConnection);
+              }
+              catch (IOException io) {
+                throw new RuntimeException(io);
+              }
+            }
+
+          });
           break;
 
         default:
@@ -514,6 +693,30 @@ public class Server implements ServerListener
       }
     }
 
+    /**
+     * Stop serving the channel from the accepting event loop so that it can be registered with a shard.
+     * The key is cancelled so that the accepting selector drops the channel instead of holding it until it closes.
+     */
+    private SocketChannel detach()
+    {
+      key.attach(Listener.NOOP_CLIENT_LISTENER);
+      key.cancel();
+      return (SocketChannel)key.channel();
+    }
+
+    /**
+     * Run the task on the event loop which owns the data list of the publisher.
+     */
+    private void submit(String upstreamIdentifier, Runnable task)
+    {
+      if (shardEventloops == null) {
+        task.run();
+      }
+      else {
+        shardEventloops[getShard(upstreamIdentifier)].submit(task);
+      }
+    }
+
   }
 
   class Subscriber extends AbstractLengthPrependerClient
@@ -677,7 +880,7 @@ public class Server implements ServerListener
 
     public void switchToNewBuffer(byte[] array, int offset)
     {
-      byte[] newBuffer = new byte[datalist.getBlockSize()];
+      byte[] newBuffer = datalist.newBuffer();
       byteBuffer = ByteBuffer.wrap(newBuffer);
       if (array == null || array.length - offset == 0) {
         writeOffset = 0;
@@ -761,7 +964,7 @@ public class Server implements ServerListener
       }
 
       for (LogicalNode ln : list) {
-        ln.boot(eventloop);
+        ln.boot(getEventLoop(publisherIdentifier));
       }
     }
 
@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage which appends the spooled blocks to large preallocated segment files.<p>
+ * <br>
+ * Each segment file is memory mapped once when it is created, blocks are copied into the mapping back to back
+ * and are handed back as read only views of the mapping. Unlike {@link DiskStorage}, there is no file to open,
+ * write and close per block and no identity file to consult on every call. A segment is recycled as soon as every
+ * block stored in it has been discarded and no reader is copying a block out of it; up to maxFreeSegments of the
+ * recycled segments are kept mapped for reuse, the others are unmapped and deleted. The segments still open are
+ * unmapped and deleted when the storage is closed.
+ *
+ * @since 2.2.0
+ */
+public class SegmentedDiskStorage implements Storage.MappedStorage, Closeable
+{
+  private static final Logger logger = LoggerFactory.getLogger(SegmentedDiskStorage.class);
+  public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+  public static final int DEFAULT_MAX_FREE_SEGMENTS = 2;
+  /**
+   * Largest segment in megabytes, a MappedByteBuffer cannot map 2GB or more.
+   */
+  public static final int MAX_SEGMENT_SIZE_MB = Integer.MAX_VALUE >> 20;
+  final File directory;
+  final int segmentSize;
+  final int maxFreeSegments;
+  private final HashMap<Integer, Location> locations = new HashMap<Integer, Location>();
+  final ArrayDeque<Segment> freeSegments = new ArrayDeque<Segment>();
+  private Segment current;
+  private int segmentCount;
+  private int uniqueIdentifier;
+
+  public SegmentedDiskStorage(String baseDirectory, int segmentSize, int maxFreeSegments) throws IOException
+  {
+    File base = new File(baseDirectory);
+    directory = File.createTempFile("segments", "msp", base);
+    if (!directory.delete() || !directory.mkdir()) {
+      throw new IOException("directory " + directory.getAbsolutePath() + " could not be created!");
+    }
+    directory.deleteOnExit();
+
+    this.segmentSize = segmentSize;
+    this.maxFreeSegments = maxFreeSegments;
+    logger.info("Using {} as the directory for spooling segments of {} bytes.", directory, segmentSize);
+  }
+
+  public SegmentedDiskStorage(String baseDirectory) throws IOException
+  {
+    this(baseDirectory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_FREE_SEGMENTS);
+  }
+
+  public SegmentedDiskStorage() throws IOException
+  {
+    this(System.getProperty("java.io.tmpdir"));
+  }
+
+  /**
+   * Convert a segment size given in megabytes to bytes.
+   *
+   * @param megabytes size of the segments in megabytes.
+   * @return size of the segments in bytes.
+   * @throws IllegalArgumentException if the size is not between 1 and {@link #MAX_SEGMENT_SIZE_MB}
+   */
+  public static int getSegmentSize(int megabytes)
+  {
+    long bytes = megabytes * 1024L * 1024L;
+    if (bytes <= 0 || bytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Segment size of " + megabytes + "MB is not between 1 and " + MAX_SEGMENT_SIZE_MB + "MB!");
+    }
+
+    return (int)bytes;
+  }
+
+  @Override
+  public Storage getInstance() throws IOException
+  {
+    return new SegmentedDiskStorage(directory.getParent(), segmentSize, maxFreeSegments);
+  }
+
+  @Override
+  public int store(String identifier, byte[] bytes, int startingOffset, int endingOffset)
+  {
+    int length = endingOffset - startingOffset;
+    int lUniqueIdentifier;
+    Location location;
+    synchronized (this) {
+      try {
+        if (current == null || current.capacity - current.writingOffset < length) {
+          if (current != null && current.liveCount == 0 && current.readers == 0) {
+            recycle(current);
+          }
+          current = allocate(length);
+        }
+      }
+      catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+
+      location = new Location(identifier, current, current.writingOffset, length);
+      current.writingOffset += length;
+      current.liveCount++;
+      lUniqueIdentifier = ++uniqueIdentifier;
+      locations.put(lUniqueIdentifier, location);
+    }
+
+    ByteBuffer bb = location.segment.buffer.duplicate();
+    bb.position(location.offset);
+    bb.put(bytes, startingOffset, length);
+    return lUniqueIdentifier;
+  }
+
+  @Override
+  public byte[] retrieve(String identifier, int uniqueIdentifier)
+  {
+    Location location = acquire(identifier, uniqueIdentifier);
+    try {
+      byte[] data = new byte[location.length];
+      read(location, data);
+      return data;
+    }
+    finally {
+      release(location.segment);
+    }
+  }
+
+  @Override
+  public int retrieve(String identifier, int uniqueIdentifier, byte[] buffer)
+  {
+    Location location = acquire(identifier, uniqueIdentifier);
+    try {
+      if (location.length <= buffer.length) {
+        read(location, buffer);
+      }
+      return location.length;
+    }
+    finally {
+      release(location.segment);
+    }
+  }
+
+  @Override
+  public synchronized void discard(String identifier, int uniqueIdentifier)
+  {
+    Location location = get(identifier, uniqueIdentifier);
+    locations.remove(uniqueIdentifier);
+
+    Segment segment = location.segment;
+    if (--segment.liveCount == 0 && segment.readers == 0) {
+      free(segment);
+    }
+  }
+
+  /**
+   * Unmap and delete all the segments, including the ones which still hold blocks.
+   * The segments a reader is still copying from are deleted but left mapped until they are garbage collected.
+   */
+  @Override
+  public synchronized void close()
+  {
+    HashSet<Segment> segments = new HashSet<Segment>(freeSegments);
+    for (Location location : locations.values()) {
+      segments.add(location.segment);
+    }
+    if (current != null) {
+      segments.add(current);
+    }
+
+    for (Segment segment : segments) {
+      segment.delete(segment.readers == 0);
+    }
+
+    freeSegments.clear();
+    locations.clear();
+    current = null;
+    if (!directory.delete()) {
+      logger.warn("Directory {} could not be deleted!", directory);
+    }
+  }
+
+  private Location get(String identifier, int uniqueIdentifier)
+  {
+    Location location = locations.get(uniqueIdentifier);
+    if (location == null) {
+      throw new RuntimeException("Block " + uniqueIdentifier + " for " + identifier + " is not present in " + directory + "!");
+    }
+
+    if (!location.identifier.equals(identifier)) {
+      throw new RuntimeException("Collision in identifier name, block " + uniqueIdentifier + " was stored for [" + location.identifier + "] and requested for [" + identifier + "].");
+    }
+
+    return location;
+  }
+
+  /**
+   * Look up a block and pin its segment so that it is neither reused nor unmapped while the block is copied out
+   * of it, the segment must be released once the copy is done.
+   */
+  synchronized Location acquire(String identifier, int uniqueIdentifier)
+  {
+    Location location = get(identifier, uniqueIdentifier);
+    location.segment.readers++;
+    return location;
+  }
+
+  synchronized void release(Segment segment)
+  {
+    if (--segment.readers == 0 && segment.liveCount == 0) {
+      free(segment);
+    }
+  }
+
+  private static void read(Location location, byte[] buffer)
+  {
+    ByteBuffer bb = location.segment.buffer.duplicate();
+    bb.position(location.offset);
+    bb.get(buffer, 0, location.length);
+  }
+
+  /**
+   * Make a segment which holds no more blocks and has no readers available for new blocks.
+   */
+  private void free(Segment segment)
+  {
+    if (segment == current) {
+      segment.writingOffset = 0;
+    }
+    else {
+      recycle(segment);
+    }
+  }
+
+  private Segment allocate(int length) throws IOException
+  {
+    if (length <= segmentSize) {
+      Segment segment = freeSegments.poll();
+      if (segment != null) {
+        return segment;
+      }
+    }
+
+    return new Segment(new File(directory, String.valueOf(++segmentCount)), Math.max(length, segmentSize));
+  }
+
+  private void recycle(Segment segment)
+  {
+    segment.writingOffset = 0;
+    if (segment.capacity == segmentSize && freeSegments.size() < maxFreeSegments) {
+      freeSegments.add(segment);
+    }
+    else {
+      segment.delete(true);
+    }
+  }
+
+  /**
+   * Release the memory mapped by the buffer right away instead of when the buffer is garbage collected, otherwise
+   * neither the address space nor the disk space of a deleted segment is reclaimed until the next full GC.
+   */
+  static void unmap(MappedByteBuffer buffer)
+  {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    }
+    catch (Exception ex) {
+      logger.debug("Mapping could not be released explicitly, leaving it to the GC", ex);
+    }
+  }
+
+  /**
+   * Preallocated file which is mapped in memory for the life of the segment.
+   */
+  static class Segment
+  {
+    final File file;
+    final int capacity;
+    final MappedByteBuffer buffer;
+    int writingOffset;
+    int liveCount;
+    int readers;
+
+    Segment(File file, int capacity) throws IOException
+    {
+      this.file = file;
+      this.capacity = capacity;
+
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(capacity);
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+      }
+      finally {
+        raf.close();
+      }
+      file.deleteOnExit();
+    }
+
+    /**
+     * Delete the file and optionally release the mapping, the mapping must not be accessed after it is released.
+     */
+    void delete(boolean release)
+    {
+      if (release) {
+        unmap(buffer);
+      }
+      if (!file.delete()) {
+        logger.warn("Segment {} could not be deleted!", file);
+      }
+    }
+
+  }
+
+  /**
+   * Position of a stored block within its segment.
+   */
+  static class Location
+  {
+    final String identifier;
+    final Segment segment;
+    final int offset;
+    final int length;
+
+    Location(String identifier, Segment segment, int offset, int length)
+    {
+      this.identifier = identifier;
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+  }
+
+}
@@ -74,4 +74,23 @@ public interface Storage
    * @param uniqueIdentifier
    */
   public void discard(String identifier, int uniqueIdentifier);
+
+  /**
+   * Storage which keeps the stored blocks in memory mapped files and can hand them back as views of the mapping.
+   */
+  public interface MappedStorage extends Storage
+  {
+    /**
+     * Retrieve a block straight from the mapping into the passed array, without an intermediate copy.
+     * Nothing is copied if the block does not fit in the array.
+     *
+     * @param identifier primary identifier of the block which typically identifies the data source.
+     * @param uniqueIdentifier secondary and unique identifier of the block which needs to be retrived.
+     * @param buffer array the block is copied to, starting at offset 0.
+     * @return length of the block, the block was copied only if it is not larger than the array.
+     */
+    public int retrieve(String identifier, int uniqueIdentifier, byte[] buffer);
+
+  }
+
 }
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class BlockPoolTest
+{
+  @Test
+  public void testAcquireRelease()
+  {
+    BlockPool pool = new BlockPool(1024, 2);
+
+    byte[] first = pool.acquire();
+    byte[] second = pool.acquire();
+    byte[] third = pool.acquire();
+    assertEquals(first.length, 1024);
+    assertEquals(pool.getMisses(), 3);
+    assertEquals(pool.getHits(), 0);
+
+    assertTrue(pool.release(first));
+    assertTrue(pool.release(second));
+    assertFalse(pool.release(third), "pool is bounded");
+    assertFalse(pool.release(new byte[512]), "only arrays of blocksize are pooled");
+    assertEquals(pool.getFreeCount(), 2);
+
+    assertSame(pool.acquire(), second);
+    assertSame(pool.acquire(), first);
+    assertEquals(pool.getHits(), 2);
+    assertEquals(pool.getFreeCount(), 0);
+  }
+
+  @Test
+  public void testDataListStatus()
+  {
+    BlockPool pool = new BlockPool(1024, 4);
+    DataList dl = new DataList("1.out", 1024, 8, pool);
+    dl.addBuffer(dl.newBuffer());
+
+    DataList.Status status = dl.getStatus();
+    assertEquals(status.poolMisses, 2);
+    assertEquals(status.poolCapacity, 4);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBlockSizeMismatch()
+  {
+    new DataList("1.out", 2048, 8, new BlockPool(1024, 4));
+  }
+
+}
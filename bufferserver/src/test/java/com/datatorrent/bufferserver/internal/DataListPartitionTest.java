@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.util.BitVector;
+import com.datatorrent.bufferserver.util.SerializedData;
+import com.datatorrent.netlet.util.VarInt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks that the partitioned iterator of {@link DataList} returns the same tuples as a full scan filtered by partition.
+ */
+public class DataListPartitionTest
+{
+  static final int BLOCKSIZE = 1024;
+  static final int MASK = 0x03;
+  static final int WINDOW_COUNT = 20;
+  static final int TUPLES_PER_WINDOW = 100;
+
+  DataList dl;
+  ExecutorService executor;
+  byte[] buffer;
+  int writeOffset;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor = Executors.newSingleThreadExecutor();
+    dl = new DataList("upstream", BLOCKSIZE, 1000);
+    dl.setAutoflushExecutor(executor);
+    buffer = dl.getBuffer(0);
+    writeOffset = dl.getPosition();
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    executor.shutdown();
+  }
+
+  @Test
+  public void testIndexedFromStart()
+  {
+    List<BitVector> partitions = Arrays.asList(new BitVector(1, MASK), new BitVector(2, MASK));
+    Iterator<SerializedData> partitioned = dl.newIterator("partitioned", 0, partitions);
+    Iterator<SerializedData> full = dl.newIterator("full", 0);
+    publish(0, WINDOW_COUNT);
+
+    List<byte[]> actual = collect(partitioned, null);
+    assertEquals(actual.size(), 1 + WINDOW_COUNT * (2 + TUPLES_PER_WINDOW / 2), "only the relevant tuples are iterated");
+    assertEqualTuples(actual, collect(full, partitions));
+  }
+
+  @Test
+  public void testIndexedAfterStart()
+  {
+    publish(0, WINDOW_COUNT / 2);
+    List<BitVector> partitions = Arrays.asList(new BitVector(3, MASK));
+    Iterator<SerializedData> partitioned = dl.newIterator("partitioned", 0, partitions);
+    Iterator<SerializedData> full = dl.newIterator("full", 0);
+    publish(WINDOW_COUNT / 2, WINDOW_COUNT);
+
+    /* the data published before the iterator was created is scanned, the rest is skipped using the index */
+    List<byte[]> actual = collect(partitioned, null);
+    assertTrue(actual.size() < 1 + WINDOW_COUNT * (2 + TUPLES_PER_WINDOW), "tuples iterated " + actual.size());
+    assertEqualTuples(filter(actual, partitions), collect(full, partitions));
+    assertTrue(dl.delIterator(partitioned), "partitioned iterator released");
+  }
+
+  @Test
+  public void testIndicesCreatedOnDemand()
+  {
+    Iterator<SerializedData> full = dl.newIterator("full", 0);
+    publish(0, WINDOW_COUNT / 2);
+    for (DataList.Block block = dl.first; block != null; block = block.next) {
+      assertNull(block.indices, "block indexed without partition filters");
+    }
+
+    List<BitVector> partitions = Arrays.asList(new BitVector(3, MASK));
+    Iterator<SerializedData> partitioned = dl.newIterator("partitioned", 0, partitions);
+    publish(WINDOW_COUNT / 2, WINDOW_COUNT);
+    assertNotNull(dl.last.indices, "block indexed for the partition filter");
+    assertEqualTuples(filter(collect(partitioned, null), partitions), collect(full, partitions));
+  }
+
+  private void publish(int fromWindow, int toWindow)
+  {
+    if (fromWindow == 0) {
+      write(ResetWindowTuple.getSerializedTuple(0x7afebabe, 500));
+    }
+    for (int w = fromWindow; w < toWindow; w++) {
+      write(BeginWindowTuple.getSerializedTuple(w));
+      for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+        byte[] tuple = PayloadTuple.getSerializedTuple(i, 8);
+        tuple[tuple.length - 1] = (byte)w;
+        write(tuple);
+      }
+      write(EndWindowTuple.getSerializedTuple(w));
+    }
+    dl.flush(writeOffset);
+  }
+
+  /**
+   * Writes the tuple the way the publisher does, a tuple which does not fit the block is continued in the next block.
+   */
+  private void write(byte[] tuple)
+  {
+    byte[] message = new byte[VarInt.getSize(tuple.length) + tuple.length];
+    System.arraycopy(tuple, 0, message, VarInt.write(tuple.length, message, 0), tuple.length);
+
+    if (writeOffset + message.length > buffer.length) {
+      int partial = buffer.length - writeOffset;
+      System.arraycopy(message, 0, buffer, writeOffset, partial);
+      dl.flush(buffer.length);
+      buffer = dl.newBuffer();
+      dl.addBuffer(buffer);
+      writeOffset = 0;
+    }
+
+    System.arraycopy(message, 0, buffer, writeOffset, message.length);
+    writeOffset += message.length;
+  }
+
+  private static List<byte[]> collect(Iterator<SerializedData> iterator, List<BitVector> partitions)
+  {
+    ArrayList<byte[]> tuples = new ArrayList<byte[]>();
+    while (iterator.hasNext()) {
+      SerializedData sd = iterator.next();
+      /* the full scan yields an empty message where a tuple continues in the next block */
+      if (sd.dataOffset < sd.offset + sd.length) {
+        tuples.add(Arrays.copyOfRange(sd.buffer, sd.dataOffset, sd.offset + sd.length));
+      }
+    }
+    return partitions == null ? tuples : filter(tuples, partitions);
+  }
+
+  private static List<byte[]> filter(List<byte[]> tuples, List<BitVector> partitions)
+  {
+    ArrayList<byte[]> filtered = new ArrayList<byte[]>();
+    for (byte[] tuple : tuples) {
+      if (tuple[0] != MessageType.PAYLOAD_VALUE) {
+        filtered.add(tuple);
+      }
+      else {
+        for (BitVector bv : partitions) {
+          if (bv.matches(PayloadTuple.getPartition(tuple, 0))) {
+            filtered.add(tuple);
+            break;
+          }
+        }
+      }
+    }
+    return filtered;
+  }
+
+  private static void assertEqualTuples(List<byte[]> actual, List<byte[]> expected)
+  {
+    assertEquals(actual.size(), expected.size(), "number of tuples");
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(actual.get(i), expected.get(i), "tuple " + i);
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.util.BitVector;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Compares the allocation free partition matching of {@link LogicalNode} with matching through
+ * {@link Tuple#getTuple(byte[], int, int)} and a set of {@link BitVector}s.
+ */
+public class LogicalNodePartitionTest
+{
+  static final int MASK = 0x7f;
+  static final int TUPLE_SIZE = 16;
+  static final int TUPLE_COUNT = 100000;
+  static final int ITERATIONS = 20;
+
+  @Test
+  public void testMatchesPartition()
+  {
+    LogicalNode ln = newLogicalNode(8);
+    HashSet<BitVector> partitions = getPartitions(ln);
+    byte[] buffer = PayloadTuple.getSerializedTuple(0, 0);
+    for (int partition = -1024; partition < 1024; partition++) {
+      buffer[1] = (byte)partition;
+      buffer[2] = (byte)(partition >> 8);
+      buffer[3] = (byte)(partition >> 16);
+      buffer[4] = (byte)(partition >> 24);
+      assertEquals(ln.matchesPartition(buffer, 0), legacyMatches(partitions, buffer, 0, buffer.length), "partition " + partition);
+    }
+  }
+
+  @Test
+  public void benchmark()
+  {
+    byte[] buffer = new byte[TUPLE_COUNT * TUPLE_SIZE];
+    Random random = new Random(0);
+    for (int i = 0; i < TUPLE_COUNT; i++) {
+      byte[] tuple = PayloadTuple.getSerializedTuple(random.nextInt(), TUPLE_SIZE - 5);
+      System.arraycopy(tuple, 0, buffer, i * TUPLE_SIZE, TUPLE_SIZE);
+    }
+
+    for (int partitionCount : new int[] {1, 8, 64}) {
+      LogicalNode ln = newLogicalNode(partitionCount);
+      HashSet<BitVector> partitions = getPartitions(ln);
+
+      int legacy = 0;
+      int fast = 0;
+      long legacyNanos = 0;
+      long fastNanos = 0;
+      for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+        long start = System.nanoTime();
+        for (int offset = 0; offset < buffer.length; offset += TUPLE_SIZE) {
+          if (legacyMatches(partitions, buffer, offset, TUPLE_SIZE)) {
+            legacy++;
+          }
+        }
+        long middle = System.nanoTime();
+        for (int offset = 0; offset < buffer.length; offset += TUPLE_SIZE) {
+          if (ln.matchesPartition(buffer, offset)) {
+            fast++;
+          }
+        }
+        long end = System.nanoTime();
+
+        /* the first half of the iterations warms up the both paths */
+        if (iteration >= ITERATIONS / 2) {
+          legacyNanos += middle - start;
+          fastNanos += end - middle;
+        }
+      }
+
+      assertEquals(fast, legacy, "matched tuples with " + partitionCount + " partitions");
+      long tuples = (long)TUPLE_COUNT * (ITERATIONS - ITERATIONS / 2);
+      logger.info("{} partitions: Tuple and BitVector set {} ns/tuple, flattened masks {} ns/tuple",
+                  partitionCount, (double)legacyNanos / tuples, (double)fastNanos / tuples);
+    }
+  }
+
+  private static LogicalNode newLogicalNode(int partitionCount)
+  {
+    DataList dl = new DataList("upstream", 1024, 8);
+    LogicalNode ln = new LogicalNode("upstream", "group", dl.newIterator("group", 0), 0);
+    for (int i = 0; i < partitionCount; i++) {
+      ln.addPartition(i * (MASK + 1) / partitionCount, MASK);
+    }
+    return ln;
+  }
+
+  private static HashSet<BitVector> getPartitions(LogicalNode ln)
+  {
+    HashSet<BitVector> partitions = new HashSet<BitVector>();
+    ln.getPartitions(partitions);
+    return partitions;
+  }
+
+  /**
+   * The way the partitions were matched before the masks were flattened.
+   */
+  private static boolean legacyMatches(HashSet<BitVector> partitions, byte[] buffer, int offset, int length)
+  {
+    Tuple tuple = Tuple.getTuple(buffer, offset, length);
+    int value = tuple.getPartition();
+    for (BitVector bv : partitions) {
+      if (bv.matches(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(LogicalNodePartitionTest.class);
+}
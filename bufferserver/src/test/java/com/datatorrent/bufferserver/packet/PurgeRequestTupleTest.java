@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class PurgeRequestTupleTest
+{
+  @Test
+  public void testKeepAlive()
+  {
+    long windowId = 0xcafebabe000000ffL;
+    byte[] serial = PurgeRequestTuple.getSerializedRequest(null, "TestPublisher", windowId);
+    PurgeRequestTuple request = (PurgeRequestTuple)Tuple.getTuple(serial, 0, serial.length);
+    Assert.assertEquals(request.getIdentifier(), "TestPublisher", "Identifier");
+    Assert.assertEquals(Long.toHexString((long)request.getBaseSeconds() << 32 | request.getWindowId()), Long.toHexString(windowId), "Window");
+    Assert.assertFalse(request.isKeepAlive(), "Keep alive by default");
+
+    serial = PurgeRequestTuple.getSerializedRequest(null, "TestPublisher", windowId, true);
+    request = (PurgeRequestTuple)Tuple.getTuple(serial, 0, serial.length);
+    Assert.assertEquals(request.getIdentifier(), "TestPublisher", "Identifier");
+    Assert.assertEquals(Long.toHexString((long)request.getBaseSeconds() << 32 | request.getWindowId()), Long.toHexString(windowId), "Window");
+    Assert.assertTrue(request.isKeepAlive(), "Keep alive");
+  }
+
+}
@@ -524,5 +524,37 @@ public class ServerTest
     Assert.assertTrue(bss.resetPayloads.isEmpty());
   }
 
+  @Test
+  @SuppressWarnings("SleepWhileInLoop")
+  public void testPurgeKeepAlive() throws InterruptedException
+  {
+    Server server = new Server(0, 4096, 8);
+    InetSocketAddress serverAddress = server.run(eventloopServer);
+    try {
+      Controller controller = new Controller("MyController");
+      eventloopClient.connect(serverAddress.isUnresolved() ? new InetSocketAddress(serverAddress.getHostName(), serverAddress.getPort()) : serverAddress, controller);
+
+      for (int purge = 0; purge < 2; purge++) {
+        controller.purge(null, "MyPublisher", 0, true);
+        for (int i = 0; i < spinCount && controller.data == null; i++) {
+          Thread.sleep(10);
+        }
+        assertNotNull(controller.data, "response to purge " + purge);
+      }
+      Thread.sleep(100);
+      Assert.assertFalse(controller.disconnected, "connection kept alive");
+
+      controller.purge(null, "MyPublisher", 0);
+      for (int i = 0; i < spinCount && !controller.disconnected; i++) {
+        Thread.sleep(10);
+      }
+      assertNotNull(controller.data, "response to purge");
+      Assert.assertTrue(controller.disconnected, "connection closed after the response");
+    }
+    finally {
+      eventloopServer.stop(server);
+    }
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(ServerTest.class);
 }
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.server;
+
+import java.net.InetSocketAddress;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.support.Publisher;
+import com.datatorrent.bufferserver.support.Subscriber;
+import com.datatorrent.netlet.DefaultEventLoop;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Publishes through a server sharded across multiple event loops and checks that each of the subscribers receives
+ * all the data of its publisher in the order in which it was published.
+ */
+public class ShardedServerTest
+{
+  static final int NUMBER_OF_EVENT_LOOPS = 4;
+  static final int PUBLISHER_COUNT = 8;
+  static final int WINDOW_COUNT = 10;
+  static final int TUPLES_PER_WINDOW = 2000;
+  static final int spinCount = 6000;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidEventLoopCount()
+  {
+    new Server(0, 4096, 8, 0);
+  }
+
+  @Test
+  @SuppressWarnings("SleepWhileInLoop")
+  public void testShardedDelivery() throws Exception
+  {
+    DefaultEventLoop eventloopServer = new DefaultEventLoop("server");
+    eventloopServer.start();
+    DefaultEventLoop eventloopClient = new DefaultEventLoop("client");
+    eventloopClient.start();
+
+    Server instance = new Server(0, 1024 * 1024, 8, NUMBER_OF_EVENT_LOOPS);
+    InetSocketAddress address = instance.run(eventloopServer);
+    if (address.isUnresolved()) {
+      address = new InetSocketAddress(address.getHostName(), address.getPort());
+    }
+
+    Publisher[] publishers = new Publisher[PUBLISHER_COUNT];
+    SequenceSubscriber[] subscribers = new SequenceSubscriber[PUBLISHER_COUNT];
+    for (int i = 0; i < PUBLISHER_COUNT; i++) {
+      subscribers[i] = new SequenceSubscriber("Subscriber" + i);
+      eventloopClient.connect(address, subscribers[i]);
+      subscribers[i].activate(null, "BufferServerOutput/Subscriber" + i, "Publisher" + i, 0, null, 0L, 32 * 1024);
+
+      publishers[i] = new Publisher("Publisher" + i);
+      eventloopClient.connect(address, publishers[i]);
+      publishers[i].activate(null, 0x7afebabe, 0);
+    }
+
+    for (Publisher publisher : publishers) {
+      publish(publisher, ResetWindowTuple.getSerializedTuple(0x7afebabe, 500));
+    }
+    for (int w = 0; w < WINDOW_COUNT; w++) {
+      for (Publisher publisher : publishers) {
+        publish(publisher, BeginWindowTuple.getSerializedTuple(w));
+        for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+          byte[] buff = PayloadTuple.getSerializedTuple(0, 64);
+          buff[buff.length - 1] = (byte)i;
+          publish(publisher, buff);
+        }
+        publish(publisher, EndWindowTuple.getSerializedTuple(w));
+      }
+    }
+
+    final int expected = 1 + WINDOW_COUNT * (TUPLES_PER_WINDOW + 2);
+    for (int i = 0; i < spinCount; i++) {
+      int received = 0;
+      for (Subscriber subscriber : subscribers) {
+        received += subscriber.tupleCount.get();
+      }
+      if (received >= expected * PUBLISHER_COUNT) {
+        break;
+      }
+      Thread.sleep(10);
+    }
+
+    for (int i = 0; i < PUBLISHER_COUNT; i++) {
+      eventloopClient.disconnect(publishers[i]);
+      eventloopClient.disconnect(subscribers[i]);
+    }
+    eventloopServer.stop(instance);
+    eventloopClient.stop();
+    eventloopServer.stop();
+
+    for (SequenceSubscriber subscriber : subscribers) {
+      assertEquals(subscriber.tupleCount.get(), expected, "tuples received by " + subscriber.id);
+      assertEquals(subscriber.outOfSequence, 0, "tuples out of sequence at " + subscriber.id);
+      assertEquals(subscriber.windowCount, WINDOW_COUNT, "windows received by " + subscriber.id);
+    }
+  }
+
+  @SuppressWarnings("SleepWhileInLoop")
+  private static void publish(Publisher publisher, byte[] tuple) throws InterruptedException
+  {
+    while (!publisher.write(tuple)) {
+      Thread.sleep(1);
+    }
+  }
+
+  /**
+   * Counts the tuples which do not follow the ones before them in the order in which they were published.
+   */
+  static class SequenceSubscriber extends Subscriber
+  {
+    final String id;
+    int windowCount;
+    int payloadCount;
+    int outOfSequence;
+
+    SequenceSubscriber(String id)
+    {
+      super(id);
+      this.id = id;
+    }
+
+    @Override
+    public void onMessage(byte[] buffer, int offset, int size)
+    {
+      super.onMessage(buffer, offset, size);
+      switch (buffer[offset]) {
+        case MessageType.BEGIN_WINDOW_VALUE:
+          if (payloadCount != 0 || lastPayload.getWindowId() != windowCount) {
+            outOfSequence++;
+          }
+          break;
+
+        case MessageType.PAYLOAD_VALUE:
+          if (buffer[offset + size - 1] != (byte)payloadCount++) {
+            outOfSequence++;
+          }
+          break;
+
+        case MessageType.END_WINDOW_VALUE:
+          if (payloadCount != TUPLES_PER_WINDOW || lastPayload.getWindowId() != windowCount++) {
+            outOfSequence++;
+          }
+          payloadCount = 0;
+          break;
+
+        default:
+          break;
+      }
+    }
+
+  }
+
+}
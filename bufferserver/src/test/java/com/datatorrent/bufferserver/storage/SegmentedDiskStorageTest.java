@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ *
+ */
+public class SegmentedDiskStorageTest
+{
+  private static byte[] block(int size, int seed)
+  {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte)(seed + i);
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testStoreRetrieve() throws Exception
+  {
+    SegmentedDiskStorage storage = new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), 1024, 1);
+
+    int[] ids = new int[10];
+    for (int i = 0; i < ids.length; i++) {
+      byte[] bytes = block(400, i);
+      ids[i] = storage.store("1.out", bytes, 100, 400);
+      assertTrue(ids[i] > 0, "unique identifier");
+    }
+
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(storage.retrieve("1.out", ids[i]), Arrays.copyOfRange(block(400, i), 100, 400), "block " + i);
+    }
+
+    byte[] large = block(4096, 7);
+    int id = storage.store("2.out", large, 0, large.length);
+    assertEquals(storage.retrieve("2.out", id), large, "block larger than the segment");
+    storage.discard("2.out", id);
+  }
+
+  @Test(expectedExceptions = RuntimeException.class)
+  public void testIdentifierCollision() throws Exception
+  {
+    SegmentedDiskStorage storage = new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), 1024, 1);
+    int id = storage.store("1.out", block(16, 0), 0, 16);
+    storage.retrieve("2.out", id);
+  }
+
+  @Test
+  public void testSegmentRecycling() throws Exception
+  {
+    SegmentedDiskStorage storage = new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), 1024, 1);
+
+    for (int round = 0; round < 100; round++) {
+      int first = storage.store("1.out", block(512, round), 0, 512);
+      int second = storage.store("1.out", block(512, round + 1), 0, 512);
+      int third = storage.store("1.out", block(512, round + 2), 0, 512);
+      assertEquals(storage.retrieve("1.out", third), block(512, round + 2));
+      storage.discard("1.out", first);
+      storage.discard("1.out", second);
+      storage.discard("1.out", third);
+    }
+
+    assertTrue(storage.directory.list().length <= 2, "segments are reused " + Arrays.toString(storage.directory.list()));
+  }
+
+  @Test
+  public void testRetrieveIntoBuffer() throws Exception
+  {
+    SegmentedDiskStorage storage = new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), 1024, 1);
+    try {
+      int first = storage.store("1.out", block(400, 1), 100, 400);
+      int second = storage.store("1.out", block(400, 2), 0, 400);
+
+      byte[] buffer = new byte[512];
+      assertEquals(storage.retrieve("1.out", second, buffer), 400);
+      assertEquals(Arrays.copyOf(buffer, 400), block(400, 2));
+      assertEquals(storage.retrieve("1.out", first, buffer), 300);
+      assertEquals(Arrays.copyOf(buffer, 300), Arrays.copyOfRange(block(400, 1), 100, 400));
+
+      byte[] small = new byte[100];
+      assertEquals(storage.retrieve("1.out", second, small), 400, "length of a block which does not fit");
+      assertEquals(small, new byte[100], "nothing copied");
+    }
+    finally {
+      storage.close();
+    }
+  }
+
+  @Test
+  public void testDiscardWhileReading() throws Exception
+  {
+    SegmentedDiskStorage storage = new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), 1024, 1);
+    try {
+      int first = storage.store("1.out", block(1000, 1), 0, 1000);
+      storage.store("1.out", block(1000, 2), 0, 1000);
+
+      /* a reader holds the block of the first segment while the block is discarded */
+      SegmentedDiskStorage.Location location = storage.acquire("1.out", first);
+      storage.discard("1.out", first);
+      assertFalse(storage.freeSegments.contains(location.segment), "segment in use is not recycled");
+
+      for (int i = 3; i < 6; i++) {
+        storage.store("1.out", block(1000, i), 0, 1000);
+      }
+      byte[] bytes = new byte[1000];
+      location.segment.buffer.duplicate().get(bytes);
+      assertEquals(bytes, block(1000, 1), "block being read is not overwritten");
+
+      storage.release(location.segment);
+      assertTrue(storage.freeSegments.contains(location.segment), "segment recycled once the read is done");
+    }
+    finally {
+      storage.close();
+    }
+  }
+
+  @Test
+  public void testSegmentSize()
+  {
+    assertEquals(SegmentedDiskStorage.getSegmentSize(256), 256 * 1024 * 1024);
+    assertEquals(SegmentedDiskStorage.getSegmentSize(SegmentedDiskStorage.MAX_SEGMENT_SIZE_MB), 2047 * 1024 * 1024);
+    for (int megabytes : new int[] {0, 2048, 4096, -1}) {
+      try {
+        SegmentedDiskStorage.getSegmentSize(megabytes);
+        fail("segment size of " + megabytes + "MB");
+      }
+      catch (IllegalArgumentException ex) {
+        assertTrue(ex.getMessage().contains(megabytes + "MB"), ex.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testClose() throws Exception
+  {
+    SegmentedDiskStorage storage = new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), 1024, 2);
+    for (int i = 0; i < 4; i++) {
+      storage.store("1.out", block(1000, i), 0, 1000);
+    }
+    int id = storage.store("1.out", block(1000, 4), 0, 1000);
+    storage.discard("1.out", id);
+    assertTrue(storage.directory.list().length > 0, "segments " + Arrays.toString(storage.directory.list()));
+
+    storage.close();
+    assertFalse(storage.directory.exists(), "open segments are deleted");
+  }
+
+}
@@ -21,6 +21,7 @@ package com.datatorrent.bufferserver.support;
 public class Controller extends com.datatorrent.bufferserver.client.Controller
 {
   public String data;
+  public volatile boolean disconnected;
 
   public Controller(String id)
   {
@@ -28,10 +29,10 @@ public class Controller extends com.datatorrent.bufferserver.client.Controller
   }
 
   @Override
-  public void purge(String version, String sourceId, long windowId)
+  public void purge(String version, String sourceId, long windowId, boolean keepAlive)
   {
     data = null;
-    super.purge(version, sourceId, windowId);
+    super.purge(version, sourceId, windowId, keepAlive);
   }
 
   @Override
@@ -47,4 +48,11 @@ public class Controller extends com.datatorrent.bufferserver.client.Controller
     data = message;
   }
 
+  @Override
+  public void disconnected()
+  {
+    disconnected = true;
+    super.disconnected();
+  }
+
 }
@@ -17,11 +17,16 @@ package com.datatorrent.common.util;
 
 import java.io.*;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +34,7 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import com.datatorrent.api.StorageAgent;
 import com.datatorrent.api.annotation.Stateless;
@@ -38,27 +44,51 @@ import com.datatorrent.netlet.util.DTThrowable;
 /**
  * FSStorageAgent
  *
+ * The state can optionally be compressed with any Hadoop {@link CompressionCodec}, e.g. DefaultCodec, GzipCodec,
+ * BZip2Codec or, where the native libraries are available, SnappyCodec and Lz4Codec. The class name of the codec is
+ * recorded at the beginning of the compressed files, so the files written with any codec or without compression can
+ * be loaded irrespective of the codec currently configured. The codec can be set through the attribute string as
+ * <code>com.datatorrent.common.util.FSStorageAgent:path:compressionCodec=org.apache.hadoop.io.compress.DefaultCodec</code>
+ *
  * @since 0.3.2
  */
-public class FSStorageAgent implements StorageAgent, Serializable
+public class FSStorageAgent implements StorageAgent.AsyncStorageAgent, StorageAgent.BulkDeleteStorageAgent, Serializable
 {
   public static final String TMP_FILE = "._COPYING_";
   protected static final String STATELESS_CHECKPOINT_WINDOW_ID = Long.toHexString(Stateless.WINDOW_ID);
+  /**
+   * Marks the files which start with the class name of the codec used to compress the rest of the file.
+   */
+  private static final byte[] COMPRESSED_MAGIC = {(byte)0xdc, 'z', 'i', 'p'};
+  private static final ConcurrentHashMap<String, CompressionCodec> codecs = new ConcurrentHashMap<String, CompressionCodec>();
   public final String path;
   protected final transient FileContext fileContext;
-  protected static final transient Kryo kryo;
+  private String compressionCodec;
+  /**
+   * Kryo is not thread safe, so each thread saving or loading the state gets its own instance. The instance is reused
+   * by the later calls from the same thread along with the class registrations it has cached.
+   */
+  protected static final transient ThreadLocal<Kryo> kryo = new ThreadLocal<Kryo>()
+  {
+    @Override
+    protected Kryo initialValue()
+    {
+      return new Kryo();
+    }
 
-  static {
-    kryo = new Kryo();
-  }
+  };
 
-  @SuppressWarnings("unused")
-  private FSStorageAgent()
+  protected FSStorageAgent()
   {
     path = null;
     fileContext = null;
   }
 
+  public FSStorageAgent(String path)
+  {
+    this(path, null);
+  }
+
   public FSStorageAgent(String path, Configuration conf)
   {
     this.path = path;
@@ -79,9 +109,64 @@ public class FSStorageAgent implements StorageAgent, Serializable
     }
   }
 
-  @SuppressWarnings("ThrowFromFinallyBlock")
+  public String getCompressionCodec()
+  {
+    return compressionCodec;
+  }
+
+  /**
+   * Set the codec used to compress the state saved from now on.
+   *
+   * @param compressionCodec class name of the Hadoop compression codec, null to save the state uncompressed.
+   */
+  public void setCompressionCodec(String compressionCodec)
+  {
+    if (compressionCodec != null) {
+      getCodec(compressionCodec);
+    }
+    this.compressionCodec = compressionCodec;
+  }
+
+  private static CompressionCodec getCodec(String name)
+  {
+    CompressionCodec codec = codecs.get(name);
+    if (codec == null) {
+      try {
+        codec = (CompressionCodec)ReflectionUtils.newInstance(Thread.currentThread().getContextClassLoader().loadClass(name), new Configuration());
+      }
+      catch (ClassNotFoundException ex) {
+        throw new IllegalArgumentException("Compression codec " + name + " not found!", ex);
+      }
+      codecs.put(name, codec);
+    }
+    return codec;
+  }
+
   @Override
   public void save(Object object, int operatorId, long windowId) throws IOException
+  {
+    save(object, null, operatorId, windowId);
+  }
+
+  @Override
+  public byte[] snapshot(Object object, int operatorId, long windowId) throws IOException
+  {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    serialize(stream, object, operatorId, windowId);
+    return stream.toByteArray();
+  }
+
+  @Override
+  public void write(byte[] snapshot, int operatorId, long windowId) throws IOException
+  {
+    save(null, snapshot, operatorId, windowId);
+  }
+
+  /**
+   * Write either the object or its snapshot to the temporary file and rename it to the window once it is complete.
+   */
+  @SuppressWarnings("ThrowFromFinallyBlock")
+  private void save(Object object, byte[] snapshot, int operatorId, long windowId) throws IOException
   {
     String operatorIdStr = String.valueOf(operatorId);
     Path lPath = new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + TMP_FILE);
@@ -91,7 +176,12 @@ public class FSStorageAgent implements StorageAgent, Serializable
     try {
       stream = fileContext.create(lPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
         Options.CreateOpts.CreateParent.createParent());
-      store(stream, object);
+      if (snapshot == null) {
+        serialize(stream, object, operatorId, windowId);
+      }
+      else {
+        stream.write(snapshot);
+      }
       stateSaved = true;
     }
     catch (Throwable t) {
@@ -110,22 +200,118 @@ public class FSStorageAgent implements StorageAgent, Serializable
         throw new RuntimeException(ie);
       }
       finally {
-        if (stateSaved) {
-          logger.debug("Saving {}: {}", operatorId, window);
-          fileContext.rename(lPath, new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + window),
-            Options.Rename.OVERWRITE);
+        boolean committed = false;
+        try {
+          if (stateSaved) {
+            logger.debug("Saving {}: {}", operatorId, window);
+            fileContext.rename(lPath, new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + window),
+              Options.Rename.OVERWRITE);
+            committed = true;
+          }
+        }
+        finally {
+          saved(operatorId, windowId, committed);
         }
       }
     }
   }
 
+  /**
+   * Called once the state of the window has been renamed in place or has failed to be saved.
+   *
+   * @param operatorId identifier of the operator.
+   * @param windowId window after which the operator was checkpointed.
+   * @param committed whether the state of the window is durable.
+   */
+  protected void saved(int operatorId, long windowId, boolean committed)
+  {
+  }
+
+  /**
+   * Store the state of the operator compressing it with the configured codec if any.
+   */
+  private void serialize(OutputStream stream, Object object, int operatorId, long windowId) throws IOException
+  {
+    String codecName = compressionCodec;
+    if (codecName == null) {
+      store(stream, object, operatorId, windowId);
+      return;
+    }
+
+    DataOutputStream dos = new DataOutputStream(stream);
+    dos.write(COMPRESSED_MAGIC);
+    dos.writeUTF(codecName);
+    dos.flush();
+
+    CompressionCodec codec = getCodec(codecName);
+    Compressor compressor = CodecPool.getCompressor(codec);
+    try {
+      CompressionOutputStream cos = codec.createOutputStream(stream, compressor);
+      store(cos, object, operatorId, windowId);
+      cos.finish();
+    }
+    finally {
+      CodecPool.returnCompressor(compressor);
+    }
+  }
+
+  /**
+   * Open the stored state, the state is decompressed with the codec recorded in the file if it was compressed.
+   *
+   * @param lPath path of the stored state.
+   * @return stream from which the state can be retrieved.
+   * @throws IOException
+   */
+  protected InputStream openState(Path lPath) throws IOException
+  {
+    FSDataInputStream stream = fileContext.open(lPath);
+    try {
+      byte[] magic = new byte[COMPRESSED_MAGIC.length];
+      try {
+        stream.readFully(0, magic);
+      }
+      catch (EOFException ex) {
+        return stream;
+      }
+      if (!Arrays.equals(magic, COMPRESSED_MAGIC)) {
+        return stream;
+      }
+
+      stream.seek(magic.length);
+      CompressionCodec codec = getCodec(stream.readUTF());
+      final Decompressor decompressor = CodecPool.getDecompressor(codec);
+      return new FilterInputStream(codec.createInputStream(stream, decompressor))
+      {
+        @Override
+        public void close() throws IOException
+        {
+          try {
+            super.close();
+          }
+          finally {
+            CodecPool.returnDecompressor(decompressor);
+          }
+        }
+
+      };
+    }
+    catch (IOException ex) {
+      stream.close();
+      throw ex;
+    }
+    catch (RuntimeException ex) {
+      stream.close();
+      throw ex;
+    }
+  }
+
   @Override
   public Object load(int operatorId, long windowId) throws IOException
   {
     Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(windowId));
     logger.debug("Loading: {}", lPath);
 
-    FSDataInputStream stream = fileContext.open(lPath);
+    InputStream stream = openState(lPath);
     try {
       return retrieve(stream);
     }
@@ -143,6 +329,38 @@ public class FSStorageAgent implements StorageAgent, Serializable
     fileContext.delete(lPath, false);
   }
 
+  /**
+   * Deletes the windows found in a single listing of the directory of the operator.
+   */
+  @Override
+  public void delete(int operatorId, long[] windowIds) throws IOException
+  {
+    if (windowIds.length == 1) {
+      delete(operatorId, windowIds[0]);
+      return;
+    }
+
+    Set<String> windows = Sets.newHashSetWithExpectedSize(windowIds.length);
+    for (long windowId : windowIds) {
+      windows.add(Long.toHexString(windowId));
+    }
+
+    RemoteIterator<FileStatus> fileStatusRemoteIterator;
+    try {
+      fileStatusRemoteIterator = fileContext.listStatus(new Path(path + Path.SEPARATOR + String.valueOf(operatorId)));
+    }
+    catch (FileNotFoundException ex) {
+      return;
+    }
+    while (fileStatusRemoteIterator.hasNext()) {
+      Path lPath = fileStatusRemoteIterator.next().getPath();
+      if (windows.contains(lPath.getName())) {
+        logger.debug("Deleting: {}", lPath);
+        fileContext.delete(lPath, false);
+      }
+    }
+  }
+
   @Override
   public long[] getWindowIds(int operatorId) throws IOException
   {
@@ -169,28 +387,41 @@ public class FSStorageAgent implements StorageAgent, Serializable
     return windowIds;
   }
 
+  /**
+   * Serialize the state of the operator being checkpointed to the stream.
+   *
+   * @param stream stream to which the state is written.
+   * @param object operator being checkpointed.
+   * @param operatorId identifier of the operator.
+   * @param windowId window after which the operator is checkpointed.
+   * @throws IOException
+   */
+  protected void store(OutputStream stream, Object object, int operatorId, long windowId) throws IOException
+  {
+    store(stream, object);
+  }
+
   public static void store(OutputStream stream, Object operator)
   {
-    synchronized (kryo) {
-      Output output = new Output(4096, Integer.MAX_VALUE);
-      output.setOutputStream(stream);
-      kryo.writeClassAndObject(output, operator);
-      output.flush();
-    }
+    Output output = new Output(4096, Integer.MAX_VALUE);
+    output.setOutputStream(stream);
+    kryo.get().writeClassAndObject(output, operator);
+    output.flush();
   }
 
   public static Object retrieve(InputStream stream)
   {
-    synchronized (kryo) {
-      kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
-      Input input = new Input(stream);
-      return kryo.readClassAndObject(input);
-    }
+    Kryo lKryo = kryo.get();
+    lKryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    Input input = new Input(stream);
+    return lKryo.readClassAndObject(input);
   }
 
   public Object readResolve() throws ObjectStreamException
   {
-    return new FSStorageAgent(this.path, null);
+    FSStorageAgent agent = new FSStorageAgent(this.path, null);
+    agent.compressionCodec = compressionCodec;
+    return agent;
   }
 
   private static final long serialVersionUID = 201404031201L;
@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.Operator.IncrementalCheckpoint;
+import com.datatorrent.api.annotation.Stateless;
+
+/**
+ * FSStorageAgent which stores the operators implementing {@link IncrementalCheckpoint} as a base followed by deltas.<p>
+ * <br>
+ * Every file starts with a byte which tells whether it holds the complete operator or a delta, a delta is followed by
+ * the window id of the checkpoint it applies to. A base is written for the first checkpoint of an operator after it is
+ * loaded and after every maxDeltaCount deltas, which bounds the number of deltas applied when the operator is loaded.
+ * When a window is deleted, its file is renamed with the {@link #PURGED_SUFFIX} and it is removed only once none of the
+ * remaining checkpoints of the operator depends on it.
+ *
+ * @since 2.2.0
+ */
+public class IncrementalFSStorageAgent extends FSStorageAgent
+{
+  public static final int DEFAULT_MAX_DELTA_COUNT = 10;
+  public static final String PURGED_SUFFIX = ".purged";
+  static final byte BASE = 0;
+  static final byte DELTA = 1;
+  private int maxDeltaCount = DEFAULT_MAX_DELTA_COUNT;
+  /*
+   * last checkpoint of each operator durably saved through this agent, the next delta of the operator applies to it.
+   */
+  private final transient ConcurrentHashMap<Integer, Chain> chains = new ConcurrentHashMap<Integer, Chain>();
+  /*
+   * checkpoint of each operator which is serialized but not yet committed, it replaces the chain once it is saved.
+   */
+  private final transient ConcurrentHashMap<Integer, Chain> pendingChains = new ConcurrentHashMap<Integer, Chain>();
+
+  @SuppressWarnings("unused")
+  private IncrementalFSStorageAgent()
+  {
+    super();
+  }
+
+  public IncrementalFSStorageAgent(String path, Configuration conf)
+  {
+    super(path, conf);
+  }
+
+  public IncrementalFSStorageAgent(String path)
+  {
+    this(path, null);
+  }
+
+  public int getMaxDeltaCount()
+  {
+    return maxDeltaCount;
+  }
+
+  /**
+   * Set the number of deltas stored for an operator before its complete state is stored again.
+   *
+   * @param maxDeltaCount number of consecutive deltas.
+   */
+  public void setMaxDeltaCount(int maxDeltaCount)
+  {
+    this.maxDeltaCount = maxDeltaCount;
+  }
+
+  @Override
+  protected void store(OutputStream stream, Object object, int operatorId, long windowId) throws IOException
+  {
+    DataOutputStream dos = new DataOutputStream(stream);
+    if (object instanceof IncrementalCheckpoint) {
+      Object delta = ((IncrementalCheckpoint)object).getDelta();
+      /*
+       * a delta is written only on top of a committed checkpoint, if the previous one is still being written the
+       * delta could end up applying to a checkpoint which never makes it to the storage.
+       */
+      Chain chain = pendingChains.containsKey(operatorId) ? null : chains.get(operatorId);
+      if (chain != null && chain.deltaCount < maxDeltaCount) {
+        dos.writeByte(DELTA);
+        dos.writeLong(chain.windowId);
+        dos.flush();
+        store(stream, delta);
+        pendingChains.put(operatorId, new Chain(windowId, chain.deltaCount + 1));
+        return;
+      }
+
+      pendingChains.put(operatorId, new Chain(windowId, 0));
+    }
+
+    dos.writeByte(BASE);
+    dos.flush();
+    store(stream, object);
+  }
+
+  /**
+   * Advance the chain of the operator to the checkpoint once it is committed. When the checkpoint fails to be saved,
+   * the changes it carried are lost for the deltas to come, so the next checkpoint of the operator starts a new base.
+   */
+  @Override
+  protected void saved(int operatorId, long windowId, boolean committed)
+  {
+    Chain pending = pendingChains.get(operatorId);
+    if (pending != null && pending.windowId == windowId && pendingChains.remove(operatorId, pending)) {
+      if (committed) {
+        chains.put(operatorId, pending);
+      }
+      else {
+        chains.remove(operatorId);
+      }
+    }
+  }
+
+  @Override
+  public Object load(int operatorId, long windowId) throws IOException
+  {
+    /*
+     * the loaded operator may be modified without its changes being tracked, so the next checkpoint starts a new base.
+     */
+    chains.remove(operatorId);
+    pendingChains.remove(operatorId);
+
+    ArrayList<Object> deltas = Lists.newArrayList();
+    Object object;
+    long window = windowId;
+    while (true) {
+      Path lPath = getPath(operatorId, window);
+      logger.debug("Loading: {}", lPath);
+      DataInputStream stream = new DataInputStream(openState(lPath));
+      try {
+        if (stream.readByte() == BASE) {
+          object = retrieve(stream);
+          break;
+        }
+
+        window = stream.readLong();
+        deltas.add(retrieve(stream));
+      }
+      finally {
+        stream.close();
+      }
+    }
+
+    for (int i = deltas.size(); i-- > 0;) {
+      ((IncrementalCheckpoint)object).applyDelta(deltas.get(i));
+    }
+    return object;
+  }
+
+  @Override
+  public void delete(int operatorId, long windowId) throws IOException
+  {
+    Path lPath = new Path(getOperatorPath(operatorId), getName(windowId));
+    if (!fileContext.util().exists(lPath)) {
+      return;
+    }
+
+    logger.debug("Purging: {}", lPath);
+    fileContext.rename(lPath, new Path(lPath.toString() + PURGED_SUFFIX), Options.Rename.OVERWRITE);
+    deleteUnneeded(operatorId);
+  }
+
+  /**
+   * Purges all the windows before looking for the purged checkpoints that can be removed, so that the remaining
+   * checkpoints are read once rather than once per window.
+   */
+  @Override
+  public void delete(int operatorId, long[] windowIds) throws IOException
+  {
+    Set<Long> windows = Sets.newHashSetWithExpectedSize(windowIds.length);
+    for (long windowId : windowIds) {
+      windows.add(windowId);
+    }
+
+    boolean purged = false;
+    try {
+      for (long window : getWindowIds(operatorId, false)) {
+        if (windows.contains(window)) {
+          Path lPath = new Path(getOperatorPath(operatorId), getName(window));
+          logger.debug("Purging: {}", lPath);
+          fileContext.rename(lPath, new Path(lPath.toString() + PURGED_SUFFIX), Options.Rename.OVERWRITE);
+          purged = true;
+        }
+      }
+    }
+    catch (FileNotFoundException ex) {
+      return;
+    }
+
+    if (purged) {
+      deleteUnneeded(operatorId);
+    }
+  }
+
+  /**
+   * Remove the purged checkpoints which none of the remaining checkpoints depends on.
+   */
+  private void deleteUnneeded(int operatorId) throws IOException
+  {
+    Set<Long> needed = Sets.newHashSet();
+    for (long window : getWindowIds(operatorId, false)) {
+      while (needed.add(window)) {
+        DataInputStream stream = new DataInputStream(openState(getPath(operatorId, window)));
+        try {
+          if (stream.readByte() == BASE) {
+            break;
+          }
+          window = stream.readLong();
+        }
+        finally {
+          stream.close();
+        }
+      }
+    }
+
+    for (long window : getWindowIds(operatorId, true)) {
+      if (!needed.contains(window)) {
+        Path purgedPath = new Path(getOperatorPath(operatorId), getName(window) + PURGED_SUFFIX);
+        logger.debug("Deleting: {}", purgedPath);
+        fileContext.delete(purgedPath, false);
+      }
+    }
+  }
+
+  @Override
+  public long[] getWindowIds(int operatorId) throws IOException
+  {
+    long[] windowIds = getWindowIds(operatorId, false);
+    if (windowIds.length == 0) {
+      throw new IOException("Storage Agent has not saved anything yet!");
+    }
+    return windowIds;
+  }
+
+  private long[] getWindowIds(int operatorId, boolean purged) throws IOException
+  {
+    List<Long> lwindows = Lists.newArrayList();
+    RemoteIterator<FileStatus> fileStatusRemoteIterator = fileContext.listStatus(getOperatorPath(operatorId));
+    while (fileStatusRemoteIterator.hasNext()) {
+      String name = fileStatusRemoteIterator.next().getPath().getName();
+      if (name.equals(TMP_FILE) || name.endsWith(PURGED_SUFFIX) != purged) {
+        continue;
+      }
+      if (purged) {
+        name = name.substring(0, name.length() - PURGED_SUFFIX.length());
+      }
+      lwindows.add(STATELESS_CHECKPOINT_WINDOW_ID.equals(name) ? Stateless.WINDOW_ID : Long.parseLong(name, 16));
+    }
+
+    long[] windowIds = new long[lwindows.size()];
+    for (int i = 0; i < windowIds.length; i++) {
+      windowIds[i] = lwindows.get(i);
+    }
+    return windowIds;
+  }
+
+  private Path getOperatorPath(int operatorId)
+  {
+    return new Path(path + Path.SEPARATOR + String.valueOf(operatorId));
+  }
+
+  private static String getName(long windowId)
+  {
+    return Long.toHexString(windowId);
+  }
+
+  /**
+   * @return path of the checkpoint whether or not it was purged.
+   */
+  private Path getPath(int operatorId, long windowId) throws IOException
+  {
+    Path lPath = new Path(getOperatorPath(operatorId), getName(windowId));
+    if (fileContext.util().exists(lPath)) {
+      return lPath;
+    }
+    return new Path(lPath.toString() + PURGED_SUFFIX);
+  }
+
+  @Override
+  public Object readResolve() throws ObjectStreamException
+  {
+    IncrementalFSStorageAgent agent = new IncrementalFSStorageAgent(this.path, null);
+    agent.setMaxDeltaCount(maxDeltaCount);
+    agent.setCompressionCodec(getCompressionCodec());
+    return agent;
+  }
+
+  /**
+   * Last checkpoint of an operator and the number of deltas stored since its base.
+   */
+  private static class Chain
+  {
+    final long windowId;
+    final int deltaCount;
+
+    Chain(long windowId, int deltaCount)
+    {
+      this.windowId = windowId;
+      this.deltaCount = deltaCount;
+    }
+
+  }
+
+  private static final long serialVersionUID = 201509151201L;
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalFSStorageAgent.class);
+}
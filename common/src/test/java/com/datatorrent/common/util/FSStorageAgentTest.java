@@ -17,7 +17,9 @@ package com.datatorrent.common.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.*;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.fs.FileContext;
@@ -28,10 +30,16 @@ import org.junit.Test;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.Maps;
 
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.DAG;
+import com.datatorrent.api.StorageAgent;
+import com.datatorrent.api.StringCodec;
 
 public class FSStorageAgentTest
 {
@@ -85,6 +93,115 @@ public class FSStorageAgentTest
     Assert.assertEquals("dataOf1", data, decoded);
   }
 
+  @Test
+  public void testSnapshotWrite() throws IOException
+  {
+    Map<Integer, String> data = Maps.newHashMap();
+    data.put(1, "one");
+    data.put(2, "two");
+    byte[] snapshot = testMeta.storageAgent.snapshot(data, 1, 1);
+    data.put(3, "three");
+    testMeta.storageAgent.write(snapshot, 1, 1);
+    data.remove(3);
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>) testMeta.storageAgent.load(1, 1);
+    Assert.assertEquals("state at the time of the snapshot", data, decoded);
+  }
+
+  /**
+   * State which can be serialized only when all the other instances sharing the latch are being serialized too.
+   */
+  public static class OverlappingState implements KryoSerializable
+  {
+    static CountDownLatch latch;
+    int value;
+
+    @Override
+    public void write(Kryo kryo, Output output)
+    {
+      latch.countDown();
+      try {
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("checkpoints did not overlap");
+        }
+      }
+      catch (InterruptedException ex) {
+        throw new RuntimeException(ex);
+      }
+      output.writeInt(value);
+    }
+
+    @Override
+    public void read(Kryo kryo, Input input)
+    {
+      value = input.readInt();
+    }
+
+  }
+
+  @Test
+  public void testConcurrentSave() throws Exception
+  {
+    final int operatorCount = 8;
+    OverlappingState.latch = new CountDownLatch(operatorCount);
+    ExecutorService executor = Executors.newFixedThreadPool(operatorCount);
+    try {
+      Future<?>[] futures = new Future<?>[operatorCount];
+      for (int i = 0; i < operatorCount; i++) {
+        final int operatorId = i;
+        futures[i] = executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws IOException
+          {
+            OverlappingState state = new OverlappingState();
+            state.value = operatorId;
+            testMeta.storageAgent.save(state, operatorId, 1);
+            return null;
+          }
+
+        });
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    for (int i = 0; i < operatorCount; i++) {
+      Assert.assertEquals("operator " + i, i, ((OverlappingState)testMeta.storageAgent.load(i, 1)).value);
+    }
+  }
+
+  @Test
+  public void testCompression() throws IOException
+  {
+    Map<Integer, String> data = Maps.newHashMap();
+    for (int i = 0; i < 1000; i++) {
+      data.put(i, "value of the entry " + i);
+    }
+    testMeta.storageAgent.save(data, 1, 1);
+
+    FSStorageAgent agent = (FSStorageAgent)new StringCodec.Object2String<StorageAgent>().fromString(FSStorageAgent.class.getName() + ":" + testMeta.applicationPath + ":compressionCodec=org.apache.hadoop.io.compress.DefaultCodec");
+    Assert.assertEquals("codec", "org.apache.hadoop.io.compress.DefaultCodec", agent.getCompressionCodec());
+    agent.save(data, 1, 2);
+    agent.write(agent.snapshot(data, 1, 3), 1, 3);
+
+    FileContext fileContext = FileContext.getFileContext();
+    long uncompressed = fileContext.getFileStatus(new Path(testMeta.applicationPath + "/1/1")).getLen();
+    long compressed = fileContext.getFileStatus(new Path(testMeta.applicationPath + "/1/2")).getLen();
+    Assert.assertTrue("compressed " + compressed + " uncompressed " + uncompressed, compressed * 3 < uncompressed);
+    Assert.assertEquals("snapshot", compressed, fileContext.getFileStatus(new Path(testMeta.applicationPath + "/1/3")).getLen());
+
+    Assert.assertEquals("uncompressed with codec", data, agent.load(1, 1));
+    for (int windowId = 1; windowId <= 3; windowId++) {
+      Assert.assertEquals("window " + windowId + " without codec", data, testMeta.storageAgent.load(1, windowId));
+    }
+    Assert.assertEquals("windows", 3, agent.getWindowIds(1).length);
+  }
+
   @Test
   public void testLoad() throws IOException
   {
@@ -129,4 +246,23 @@ public class FSStorageAgentTest
     Assert.assertFalse("operator 1 window 1", fileContext.util().exists(new Path(appPath + "/" + 1 + "/" + 1)));
   }
 
+  @Test
+  public void testBulkDelete() throws IOException
+  {
+    for (long windowId = 1; windowId <= 20; windowId++) {
+      testMeta.storageAgent.save("window " + windowId, 1, windowId);
+    }
+
+    testMeta.storageAgent.delete(1, new long[] {1, 2, 3, 17, 21});
+    long[] windowIds = testMeta.storageAgent.getWindowIds(1);
+    Arrays.sort(windowIds);
+    Assert.assertEquals("remaining windows", 16, windowIds.length);
+    Assert.assertEquals("first remaining window", 4, windowIds[0]);
+    Assert.assertFalse("window 17", Arrays.binarySearch(windowIds, 17) >= 0);
+    Assert.assertEquals("window 20", "window 20", testMeta.storageAgent.load(1, 20));
+
+    // nothing saved for the operator
+    testMeta.storageAgent.delete(2, new long[] {1, 2});
+  }
+
 }
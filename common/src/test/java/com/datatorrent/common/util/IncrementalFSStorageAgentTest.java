@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import com.datatorrent.api.Operator.IncrementalCheckpoint;
+
+public class IncrementalFSStorageAgentTest
+{
+  private static class TestMeta extends TestWatcher
+  {
+    String applicationPath;
+    IncrementalFSStorageAgent storageAgent;
+
+    @Override
+    protected void starting(Description description)
+    {
+      super.starting(description);
+      applicationPath = "target/" + description.getClassName() + "/" + description.getMethodName();
+      try {
+        FileUtils.forceMkdir(new File("target/" + description.getClassName()));
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      storageAgent = new IncrementalFSStorageAgent(applicationPath, null);
+      storageAgent.setMaxDeltaCount(2);
+    }
+
+    @Override
+    protected void finished(Description description)
+    {
+      try {
+        FileUtils.deleteDirectory(new File("target/" + description.getClassName()));
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  public static class MapOperator implements IncrementalCheckpoint
+  {
+    HashMap<Integer, String> state = new HashMap<Integer, String>();
+    transient HashMap<Integer, String> changes = new HashMap<Integer, String>();
+
+    void put(Integer key, String value)
+    {
+      state.put(key, value);
+      changes.put(key, value);
+    }
+
+    @Override
+    public Object getDelta()
+    {
+      HashMap<Integer, String> delta = changes;
+      changes = new HashMap<Integer, String>();
+      return delta;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void applyDelta(Object delta)
+    {
+      state.putAll((HashMap<Integer, String>)delta);
+    }
+
+  }
+
+  @Test
+  public void testBaseAndDeltas() throws IOException
+  {
+    MapOperator operator = new MapOperator();
+    HashMap<Long, HashMap<Integer, String>> expected = new HashMap<Long, HashMap<Integer, String>>();
+    for (long windowId = 1; windowId <= 5; windowId++) {
+      operator.put((int)windowId, "window " + windowId);
+      operator.put(0, "last " + windowId);
+      testMeta.storageAgent.save(operator, 1, windowId);
+      expected.put(windowId, new HashMap<Integer, String>(operator.state));
+    }
+
+    Assert.assertEquals("window 1", IncrementalFSStorageAgent.BASE, getType(1, 1));
+    Assert.assertEquals("window 2", IncrementalFSStorageAgent.DELTA, getType(1, 2));
+    Assert.assertEquals("window 3", IncrementalFSStorageAgent.DELTA, getType(1, 3));
+    Assert.assertEquals("window 4", IncrementalFSStorageAgent.BASE, getType(1, 4));
+    Assert.assertEquals("window 5", IncrementalFSStorageAgent.DELTA, getType(1, 5));
+
+    for (long windowId = 1; windowId <= 5; windowId++) {
+      MapOperator loaded = (MapOperator)testMeta.storageAgent.load(1, windowId);
+      Assert.assertEquals("state of window " + windowId, expected.get(windowId), loaded.state);
+    }
+
+    MapOperator loaded = (MapOperator)testMeta.storageAgent.load(1, 3);
+    loaded.put(6, "window 6");
+    testMeta.storageAgent.save(loaded, 1, 6);
+    Assert.assertEquals("first checkpoint after load", IncrementalFSStorageAgent.BASE, getType(1, 6));
+  }
+
+  @Test
+  public void testPurge() throws IOException
+  {
+    MapOperator operator = new MapOperator();
+    for (long windowId = 1; windowId <= 5; windowId++) {
+      operator.put((int)windowId, "window " + windowId);
+      testMeta.storageAgent.save(operator, 1, windowId);
+    }
+
+    testMeta.storageAgent.delete(1, 1);
+    testMeta.storageAgent.delete(1, 2);
+    long[] windowIds = testMeta.storageAgent.getWindowIds(1);
+    Arrays.sort(windowIds);
+    Assert.assertArrayEquals("remaining windows", new long[] {3, 4, 5}, windowIds);
+    Assert.assertTrue("base of window 3 is retained", exists(1, "1" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertEquals("window 3 after purge", 3, ((MapOperator)testMeta.storageAgent.load(1, 3)).state.size());
+
+    testMeta.storageAgent.delete(1, 3);
+    Assert.assertFalse("window 1 is removed", exists(1, "1" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertFalse("window 2 is removed", exists(1, "2" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertFalse("window 3 is removed", exists(1, "3" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertEquals("window 5 after purge", 5, ((MapOperator)testMeta.storageAgent.load(1, 5)).state.size());
+  }
+
+  @Test
+  public void testBulkPurge() throws IOException
+  {
+    MapOperator operator = new MapOperator();
+    for (long windowId = 1; windowId <= 5; windowId++) {
+      operator.put((int)windowId, "window " + windowId);
+      testMeta.storageAgent.save(operator, 1, windowId);
+    }
+
+    testMeta.storageAgent.delete(1, new long[] {1, 2, 6});
+    long[] windowIds = testMeta.storageAgent.getWindowIds(1);
+    Arrays.sort(windowIds);
+    Assert.assertArrayEquals("remaining windows", new long[] {3, 4, 5}, windowIds);
+    Assert.assertTrue("base of window 3 is retained", exists(1, "1" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertEquals("window 3 after purge", 3, ((MapOperator)testMeta.storageAgent.load(1, 3)).state.size());
+
+    testMeta.storageAgent.delete(1, new long[] {3, 4});
+    Assert.assertArrayEquals("remaining windows", new long[] {5}, testMeta.storageAgent.getWindowIds(1));
+    Assert.assertTrue("base of window 5 is retained", exists(1, "4" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertFalse("window 1 is removed", exists(1, "1" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertFalse("window 3 is removed", exists(1, "3" + IncrementalFSStorageAgent.PURGED_SUFFIX));
+    Assert.assertEquals("window 5 after purge", 5, ((MapOperator)testMeta.storageAgent.load(1, 5)).state.size());
+  }
+
+  @Test
+  public void testAsyncWrites() throws IOException
+  {
+    IncrementalFSStorageAgent agent = testMeta.storageAgent;
+    MapOperator operator = new MapOperator();
+    operator.put(1, "window 1");
+    byte[] snapshot1 = agent.snapshot(operator, 1, 1);
+    operator.put(2, "window 2");
+    byte[] snapshot2 = agent.snapshot(operator, 1, 2);
+    agent.write(snapshot1, 1, 1);
+    agent.write(snapshot2, 1, 2);
+    Assert.assertEquals("window 1", IncrementalFSStorageAgent.BASE, getType(1, 1));
+    Assert.assertEquals("snapshot taken while window 1 was not written", IncrementalFSStorageAgent.BASE, getType(1, 2));
+
+    operator.put(3, "window 3");
+    agent.write(agent.snapshot(operator, 1, 3), 1, 3);
+    Assert.assertEquals("window 3", IncrementalFSStorageAgent.DELTA, getType(1, 3));
+    Assert.assertEquals("window 3 loaded", operator.state, ((MapOperator)agent.load(1, 3)).state);
+
+    /* the delta of window 4 is lost, so window 5 cannot be a delta on top of it */
+    operator.put(4, "window 4");
+    agent.snapshot(operator, 1, 4);
+    agent.saved(1, 4, false);
+    operator.put(5, "window 5");
+    agent.write(agent.snapshot(operator, 1, 5), 1, 5);
+    Assert.assertEquals("snapshot taken after window 4 failed", IncrementalFSStorageAgent.BASE, getType(1, 5));
+    Assert.assertEquals("window 5 loaded", operator.state, ((MapOperator)agent.load(1, 5)).state);
+  }
+
+  private byte getType(int operatorId, long windowId) throws IOException
+  {
+    FSDataInputStream stream = FileContext.getFileContext().open(new Path(testMeta.applicationPath + "/" + operatorId + "/" + Long.toHexString(windowId)));
+    try {
+      return stream.readByte();
+    }
+    finally {
+      stream.close();
+    }
+  }
+
+  private boolean exists(int operatorId, String name) throws IOException
+  {
+    return FileContext.getFileContext().util().exists(new Path(testMeta.applicationPath + "/" + operatorId + "/" + name));
+  }
+
+}
@@ -22,6 +22,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.client.Controller;
+import com.datatorrent.bufferserver.packet.PurgeRequestTuple;
+import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.netlet.EventLoop;
 
 /**
  * Encapsulates buffer server control interface, used by the master for purging data.
@@ -32,18 +35,82 @@ class BufferServerController extends Controller
    * Use a single thread group for all buffer server interactions.
    */
   InetSocketAddress addr;
+  /**
+   * Whether the connection is kept open for further purge requests once a response was received.
+   */
+  private final boolean reusable;
+  private boolean authenticated;
+  private volatile boolean closed;
 
   BufferServerController(String id)
+  {
+    this(id, false);
+  }
+
+  BufferServerController(String id, boolean reusable)
   {
     super(id);
+    this.reusable = reusable;
+  }
+
+  @Override
+  public void purge(String version, String sourceId, long windowId)
+  {
+    if (!reusable) {
+      super.purge(version, sourceId, windowId);
+      return;
+    }
+
+    // the server expects the token only as the first message of the connection
+    if (!authenticated) {
+      sendAuthenticate();
+      authenticated = true;
+    }
+    if (!write(PurgeRequestTuple.getSerializedRequest(version, sourceId, windowId, true))) {
+      throw new IllegalStateException("Send buffer full, dropping purge request for " + sourceId);
+    }
+    logger.debug("Sent purge request sourceId = {}, windowId = {}", sourceId, Codec.getStringWindowId(windowId));
   }
 
   @Override
   public void onMessage(String message)
   {
+    if (reusable) {
+      logger.debug("Controller received {}", message);
+      return;
+    }
     logger.debug("Controller received {}, now disconnecting.", message);
     StreamingContainer.eventloop.disconnect(this);
   }
 
+  @Override
+  public void disconnected()
+  {
+    closed = true;
+    super.disconnected();
+  }
+
+  @Override
+  public void handleException(Exception cce, EventLoop el)
+  {
+    closed = true;
+    super.handleException(cce, el);
+  }
+
+  @Override
+  public boolean isConnected()
+  {
+    // the key is only assigned once the event loop registered the connection
+    return key != null && super.isConnected();
+  }
+
+  /**
+   * @return whether the connection was lost or failed, in which case a new controller is needed for further requests.
+   */
+  boolean isClosed()
+  {
+    return closed;
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(BufferServerController.class);
 }
@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.datatorrent.api.StorageAgent;
+
+import com.datatorrent.netlet.EventLoop;
+
+/**
+ * Removes checkpoints and buffered stream data that are no longer needed for recovery, in the background.<p>
+ * <br>
+ * Requests are merged with those still pending for the same operator or buffer server, so each of them has at most
+ * one task queued on the executor no matter how far the purging falls behind. The windows of an operator are deleted
+ * together through {@link StorageAgent.BulkDeleteStorageAgent} when the storage agent supports it. The connection to
+ * each buffer server is kept open and reused by later purges until it is lost.
+ *
+ * @since 2.2.0
+ */
+class CheckpointPurger
+{
+  private final Executor executor;
+  private final EventLoop eventloop;
+  // guarded by this
+  private final Map<Integer, PendingDelete> pendingDeletes = new HashMap<Integer, PendingDelete>();
+  // guarded by this
+  private final Map<InetSocketAddress, PendingPurge> pendingPurges = new HashMap<InetSocketAddress, PendingPurge>();
+  @VisibleForTesting
+  final ConcurrentMap<InetSocketAddress, BufferServerController> controllers = new ConcurrentHashMap<InetSocketAddress, BufferServerController>();
+
+  CheckpointPurger(Executor executor, EventLoop eventloop)
+  {
+    this.executor = executor;
+    this.eventloop = eventloop;
+  }
+
+  /**
+   * Delete the state saved for the windows of the operator.
+   *
+   * @param agent storage agent of the operator
+   * @param operatorId operator whose state is deleted
+   * @param windowIds windows which are no longer needed
+   */
+  void delete(StorageAgent agent, final int operatorId, Collection<Long> windowIds)
+  {
+    synchronized (this) {
+      PendingDelete pending = pendingDeletes.get(operatorId);
+      if (pending != null) {
+        pending.agent = agent;
+        pending.windowIds.addAll(windowIds);
+        return;
+      }
+      pendingDeletes.put(operatorId, new PendingDelete(agent, windowIds));
+    }
+
+    executeDelete(operatorId);
+  }
+
+  private void executeDelete(final int operatorId)
+  {
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        deletePending(operatorId);
+      }
+
+    });
+  }
+
+  /**
+   * The pending entry stays in place while its windows are deleted, so that the windows requested in the meantime are
+   * left for a follow-up run instead of being deleted concurrently with the running one.
+   */
+  private void deletePending(int operatorId)
+  {
+    StorageAgent agent;
+    long[] windowIds;
+    synchronized (this) {
+      PendingDelete pending = pendingDeletes.get(operatorId);
+      agent = pending.agent;
+      windowIds = new long[pending.windowIds.size()];
+      int i = 0;
+      for (Long windowId : pending.windowIds) {
+        windowIds[i++] = windowId;
+      }
+      pending.windowIds.clear();
+    }
+
+    try {
+      if (agent instanceof StorageAgent.BulkDeleteStorageAgent) {
+        ((StorageAgent.BulkDeleteStorageAgent)agent).delete(operatorId, windowIds);
+      }
+      else {
+        for (long windowId : windowIds) {
+          agent.delete(operatorId, windowId);
+        }
+      }
+    }
+    catch (IOException ex) {
+      LOG.error("Failed to purge checkpoints for operator {} for windowIds {}", operatorId, Arrays.toString(windowIds), ex);
+    }
+    finally {
+      boolean followUp;
+      synchronized (this) {
+        followUp = !pendingDeletes.get(operatorId).windowIds.isEmpty();
+        if (!followUp) {
+          pendingDeletes.remove(operatorId);
+        }
+      }
+      if (followUp) {
+        executeDelete(operatorId);
+      }
+    }
+  }
+
+  /**
+   * Discard the data of the publisher on the buffer server up to and including the window.
+   *
+   * @param address address of the buffer server
+   * @param token token to authenticate with the buffer server, null when security is not enabled
+   * @param sourceIdentifier identifier of the publisher
+   * @param windowId last window to discard
+   */
+  void purge(final InetSocketAddress address, byte[] token, String sourceIdentifier, long windowId)
+  {
+    synchronized (this) {
+      PendingPurge pending = pendingPurges.get(address);
+      boolean queued = pending != null;
+      if (!queued) {
+        pending = new PendingPurge();
+        pendingPurges.put(address, pending);
+      }
+      pending.token = token;
+      Long pendingWindowId = pending.windowIds.get(sourceIdentifier);
+      if (pendingWindowId == null || pendingWindowId < windowId) {
+        pending.windowIds.put(sourceIdentifier, windowId);
+      }
+      if (queued) {
+        return;
+      }
+    }
+
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        purgePending(address);
+      }
+
+    });
+  }
+
+  private void purgePending(InetSocketAddress address)
+  {
+    PendingPurge pending;
+    synchronized (this) {
+      pending = pendingPurges.remove(address);
+    }
+
+    BufferServerController bsc = getController(address, pending.token);
+    // purges for the same buffer server queued after this one was taken may run concurrently
+    synchronized (bsc) {
+      for (Map.Entry<String, Long> e : pending.windowIds.entrySet()) {
+        try {
+          bsc.purge(null, e.getKey(), e.getValue());
+        }
+        catch (RuntimeException re) {
+          LOG.warn("Failed to purge {} {}", address, e.getKey(), re);
+          disconnect(address);
+          break;
+        }
+      }
+    }
+  }
+
+  private BufferServerController getController(InetSocketAddress address, byte[] token)
+  {
+    // drop the connections to the buffer servers which went away
+    Iterator<BufferServerController> it = controllers.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().isClosed()) {
+        it.remove();
+      }
+    }
+
+    BufferServerController bsc = controllers.get(address);
+    if (bsc == null) {
+      BufferServerController newBsc = new BufferServerController(CheckpointPurger.class.getSimpleName(), true);
+      newBsc.setToken(token);
+      newBsc.addr = address;
+      bsc = controllers.putIfAbsent(address, newBsc);
+      if (bsc == null) {
+        bsc = newBsc;
+        eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, bsc);
+      }
+    }
+    return bsc;
+  }
+
+  /**
+   * Close the connection to the buffer server, if any. Purges requested later open a new connection.
+   *
+   * @param address address of the buffer server
+   */
+  void disconnect(InetSocketAddress address)
+  {
+    BufferServerController bsc = controllers.remove(address);
+    if (bsc != null && !bsc.isClosed()) {
+      eventloop.disconnect(bsc);
+    }
+  }
+
+  /**
+   * Close the connections to all buffer servers.
+   */
+  void teardown()
+  {
+    for (InetSocketAddress address : controllers.keySet()) {
+      disconnect(address);
+    }
+  }
+
+  private static class PendingDelete
+  {
+    StorageAgent agent;
+    final Set<Long> windowIds;
+
+    PendingDelete(StorageAgent agent, Collection<Long> windowIds)
+    {
+      this.agent = agent;
+      this.windowIds = new TreeSet<Long>(windowIds);
+    }
+
+  }
+
+  private static class PendingPurge
+  {
+    byte[] token;
+    final Map<String, Long> windowIds = new LinkedHashMap<String, Long>();
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(CheckpointPurger.class);
+}
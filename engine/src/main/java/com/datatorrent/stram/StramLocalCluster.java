@@ -40,6 +40,7 @@ import com.datatorrent.api.LocalMode.Controller;
 import com.datatorrent.api.Operator;
 import com.datatorrent.bufferserver.server.Server;
 import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.SegmentedDiskStorage;
 import com.datatorrent.common.util.FSStorageAgent;
 import com.datatorrent.stram.StreamingContainerAgent.ContainerStartRequest;
 import com.datatorrent.stram.StreamingContainerManager.ContainerResource;
@@ -306,7 +307,13 @@ public class StramLocalCluster implements Runnable, Controller
     if (!perContainerBufferServer) {
       StreamingContainer.eventloop.start();
       bufferServer = new Server(0, 1024 * 1024,8);
-      bufferServer.setSpoolStorage(new DiskStorage());
+      int segmentSize = dag.getValue(LogicalPlan.BUFFER_SPOOLING_SEGMENT_SIZE_MB);
+      if (segmentSize > 0) {
+        bufferServer.setSpoolStorage(new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), SegmentedDiskStorage.getSegmentSize(segmentSize), SegmentedDiskStorage.DEFAULT_MAX_FREE_SEGMENTS));
+      }
+      else {
+        bufferServer.setSpoolStorage(new DiskStorage());
+      }
       SocketAddress bindAddr = bufferServer.run(StreamingContainer.eventloop);
       this.bufferServerAddress = ((InetSocketAddress)bindAddr);
       LOG.info("Buffer server started: {}", bufferServerAddress);
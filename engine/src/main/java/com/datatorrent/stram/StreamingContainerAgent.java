@@ -37,6 +37,7 @@ import com.datatorrent.api.StreamCodec;
 import com.datatorrent.api.annotation.Stateless;
 
 import com.datatorrent.stram.api.Checkpoint;
+import com.datatorrent.stram.api.HeartbeatStatsDelta;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.InputDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.OperatorType;
@@ -98,6 +99,11 @@ public class StreamingContainerAgent {
   long gcCollectionCount;
   long gcCollectionTime;
   final StreamingContainerManager dnmgr;
+  final HeartbeatStatsDelta.Decoder statsDecoder = new HeartbeatStatsDelta.Decoder();
+  /**
+   * End window stats reported by the container which are yet to be collected by the master main loop
+   */
+  final ConcurrentLinkedQueue<StreamingContainerManager.EndWindowStats> endWindowStats = new ConcurrentLinkedQueue<StreamingContainerManager.EndWindowStats>();
 
   private final ConcurrentLinkedQueue<StramToNodeRequest> operatorRequests = new ConcurrentLinkedQueue<StramToNodeRequest>();
 
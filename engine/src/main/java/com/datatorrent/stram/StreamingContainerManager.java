@@ -149,6 +149,13 @@ public class StreamingContainerManager implements PlanContext
   private long lastResourceRequest = 0;
   private final Map<String, StreamingContainerAgent> containers = new ConcurrentHashMap<String, StreamingContainerAgent>();
   private final List<Pair<PTOperator, Long>> purgeCheckpoints = new ArrayList<Pair<PTOperator, Long>>();
+  // operators that reported new checkpoints since the last checkpoint update
+  private final Set<PTOperator> checkpointChangedOperators = Collections.newSetFromMap(new ConcurrentHashMap<PTOperator, Boolean>());
+  private volatile boolean checkpointsInvalidated = true;
+  // position of each operator in the last full checkpoint traversal, downstream operators come first
+  private final Map<PTOperator, Integer> checkpointUpdateOrder = new HashMap<PTOperator, Integer>();
+  // number of operators by recovery window id, the first key is the committed window id
+  private final TreeMap<Long, MutableInt> recoveryWindowIds = new TreeMap<Long, MutableInt>();
   private CriticalPathInfo criticalPathInfo;
   private final ConcurrentMap<PTOperator, PTOperator> reportStats = Maps.newConcurrentMap();
   private final AtomicBoolean deployChangeInProgress = new AtomicBoolean();
@@ -156,13 +163,10 @@ public class StreamingContainerManager implements PlanContext
   private MBassador<StramEvent> eventBus; // event bus for publishing stram events
   final private Journal journal;
   private RecoveryHandler recoveryHandler;
-  // window id to node id to end window stats
-  private final ConcurrentSkipListMap<Long, Map<Integer, EndWindowStats>> endWindowStatsOperatorMap = new ConcurrentSkipListMap<Long, Map<Integer, EndWindowStats>>();
+  // window id to node id to end window stats, only accessed from the master main loop
+  private final TreeMap<Long, Map<Integer, EndWindowStats>> endWindowStatsOperatorMap = new TreeMap<Long, Map<Integer, EndWindowStats>>();
   private long committedWindowId;
-  // (operator id, port name) to timestamp
-  private final Map<Pair<Integer, String>, Long> operatorPortLastEndWindowTimestamps = Maps.newConcurrentMap();
-  private final Map<Integer, Long> operatorLastEndWindowTimestamps = Maps.newConcurrentMap();
-  private long lastStatsTimestamp = System.currentTimeMillis();
+  private volatile long lastStatsTimestamp = System.currentTimeMillis();
   private long currentEndWindowStatsWindowId;
   private long completeEndWindowStatsWindowId;
   private final ConcurrentHashMap<String, MovingAverageLong> rpcLatencies = new ConcurrentHashMap<String, MovingAverageLong>();
@@ -172,6 +176,7 @@ public class StreamingContainerManager implements PlanContext
   private final Cache<Long, Object> commandResponse = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.MINUTES).build();
   private long lastLatencyWarningTime;
   private transient ExecutorService poolExecutor;
+  private transient CheckpointPurger checkpointPurger;
 
   //logic operator name to a queue of logical metrics. this gets cleared periodically
   private final Map<String, Queue<Pair<Long, Map<String, Object>>>> logicalMetrics = Maps.newConcurrentMap();
@@ -205,12 +210,27 @@ public class StreamingContainerManager implements PlanContext
 
   private final long startTime = System.currentTimeMillis();
 
-  private static class EndWindowStats
+  /**
+   * Stats of an operator window which the heartbeat leaves with the container agent for the master main loop to fold
+   * into the stats across operators.
+   */
+  static class EndWindowStats
   {
+    final PTOperator operator;
+    final long windowId;
+    long tuplesProcessed;
+    long tuplesEmitted;
     long emitTimestamp = -1;
     HashMap<String, Long> dequeueTimestamps = new HashMap<String, Long>(); // input port name to end window dequeue time
     Object counters;
     Map<String, Object> metrics;
+
+    EndWindowStats(PTOperator operator, long windowId)
+    {
+      this.operator = operator;
+      this.windowId = windowId;
+    }
+
   }
 
   public static class CriticalPathInfo
@@ -323,6 +343,7 @@ public class StreamingContainerManager implements PlanContext
     this.clock = clock;
     this.vars = new FinalVars(dag, clock.getTime());
     poolExecutor = Executors.newFixedThreadPool(4);
+    checkpointPurger = new CheckpointPurger(poolExecutor, StreamingContainer.eventloop);
     // setup prior to plan creation for event recording
     if (enableEventRecording) {
       this.eventBus = new MBassador<StramEvent>(BusConfiguration.Default(1, 1, 1));
@@ -351,6 +372,7 @@ public class StreamingContainerManager implements PlanContext
     this.vars = checkpointedState.finals;
     this.clock = new SystemClock();
     poolExecutor = Executors.newFixedThreadPool(4);
+    checkpointPurger = new CheckpointPurger(poolExecutor, StreamingContainer.eventloop);
     this.plan = checkpointedState.physicalPlan;
     this.eventBus = new MBassador<StramEvent>(BusConfiguration.Default(1, 1, 1));
     setupWsClient();
@@ -500,6 +522,7 @@ public class StreamingContainerManager implements PlanContext
     if(poolExecutor != null) {
       poolExecutor.shutdown();
     }
+    checkpointPurger.teardown();
   }
 
   public void subscribeToEvents(Object listener)
@@ -698,6 +721,7 @@ public class StreamingContainerManager implements PlanContext
     processEvents();
 
     committedWindowId = updateCheckpoints(false);
+    foldEndWindowStats();
     calculateEndWindowStats();
     if (this.vars.enableStatsRecording) {
       recordStats(currentTms);
@@ -715,6 +739,46 @@ public class StreamingContainerManager implements PlanContext
     }
   }
 
+  /**
+   * Collect the end window stats the heartbeats left with the container agents. Heartbeats of different containers
+   * are processed concurrently and only update the state of the operators in the container, the stats across
+   * operators are updated here.
+   */
+  private void foldEndWindowStats()
+  {
+    for (StreamingContainerAgent sca : containers.values()) {
+      foldEndWindowStats(sca);
+    }
+  }
+
+  private void foldEndWindowStats(StreamingContainerAgent sca)
+  {
+    Set<Integer> allCurrentOperators = plan.getAllOperators().keySet();
+    EndWindowStats endWindowStats;
+    while ((endWindowStats = sca.endWindowStats.poll()) != null) {
+      PTOperator oper = endWindowStats.operator;
+      if (!oper.isUnifier()) {
+        LogicalOperatorStatus logicalStatus = oper.getOperatorMeta().getStatus();
+        logicalStatus.totalTuplesProcessed += endWindowStats.tuplesProcessed;
+        logicalStatus.totalTuplesEmitted += endWindowStats.tuplesEmitted;
+      }
+
+      if (endWindowStats.windowId > currentEndWindowStatsWindowId) {
+        Map<Integer, EndWindowStats> endWindowStatsMap = endWindowStatsOperatorMap.get(endWindowStats.windowId);
+        if (endWindowStatsMap == null) {
+          endWindowStatsMap = new HashMap<Integer, EndWindowStats>();
+          endWindowStatsOperatorMap.put(endWindowStats.windowId, endWindowStatsMap);
+        }
+        endWindowStatsMap.put(oper.getId(), endWindowStats);
+
+        if (endWindowStatsMap.size() == allCurrentOperators.size() && allCurrentOperators.containsAll(endWindowStatsMap.keySet())
+          && completeEndWindowStatsWindowId < endWindowStats.windowId) {
+          completeEndWindowStatsWindowId = endWindowStats.windowId;
+        }
+      }
+    }
+  }
+
   private void calculateEndWindowStats()
   {
     if (!endWindowStatsOperatorMap.isEmpty()) {
@@ -1114,6 +1178,7 @@ public class StreamingContainerManager implements PlanContext
     LOG.debug("Removing container agent {}", containerId);
     StreamingContainerAgent containerAgent = containers.remove(containerId);
     if (containerAgent != null) {
+      foldEndWindowStats(containerAgent);
       // record operator stop for this container
       for (PTOperator oper : containerAgent.container.getOperators()) {
         StramEvent ev = new StramEvent.StopOperatorEvent(oper.getName(), oper.getId(), containerId);
@@ -1327,6 +1392,8 @@ public class StreamingContainerManager implements PlanContext
           PTContainer container = oper.getContainer();
           LOG.debug("{} marking deployed: {} remote status {}", container.getExternalId(), oper, ds);
           oper.setState(PTOperator.State.ACTIVE);
+          // recovery checkpoint was frozen during deployment
+          checkpointChangedOperators.add(oper);
           oper.stats.lastHeartbeat = null; // reset on redeploy
           oper.stats.lastWindowIdChangeTms = clock.getTime();
           recordEventAsync(new StramEvent.StartOperatorEvent(oper.getName(), oper.getId(), container.getExternalId()));
@@ -1393,6 +1460,25 @@ public class StreamingContainerManager implements PlanContext
       return response;
     }
 
+    if (heartbeat.statsDelta != null) {
+      boolean decoded;
+      try {
+        decoded = sca.statsDecoder.decode(heartbeat.statsDelta, heartbeat.getContainerStats());
+      }
+      catch (IOException ex) {
+        LOG.warn("Cannot decode stats of container {}", heartbeat.getContainerId(), ex);
+        decoded = false;
+      }
+      if (!decoded) {
+        // the operators are not known without the stats, have the container send them again in full
+        ContainerHeartbeatResponse response = new ContainerHeartbeatResponse();
+        response.resetStatsDelta = true;
+        response.hasPendingRequests = true;
+        response.committedWindowId = committedWindowId;
+        return response;
+      }
+    }
+
     //LOG.debug("{} {} {}", new Object[]{sca.container.containerId, sca.container.bufferServerAddress, sca.container.getState()});
     if (sca.container.getState() == PTContainer.State.ALLOCATED) {
       // capture dynamically assigned address from container
@@ -1523,7 +1609,7 @@ public class StreamingContainerManager implements PlanContext
           /* report all the other stuff */
 
           // calculate the stats related to end window
-          EndWindowStats endWindowStats = new EndWindowStats(); // end window stats for a particular window id for a particular node
+          EndWindowStats endWindowStats = new EndWindowStats(oper, stats.windowId); // end window stats for a particular window id for a particular node
           Collection<ContainerStats.OperatorStats.PortStats> ports = stats.inputPorts;
           if (ports != null) {
             Set<String> currentInputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
@@ -1539,17 +1625,17 @@ public class StreamingContainerManager implements PlanContext
               ps.recordingId = s.recordingId;
 
               tuplesProcessed += s.tupleCount;
+              endWindowStats.tuplesProcessed += s.tupleCount;
               endWindowStats.dequeueTimestamps.put(s.id, s.endWindowTimestamp);
 
-              Pair<Integer, String> operatorPortName = new Pair<Integer, String>(oper.getId(), s.id);
-              long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.containsKey(operatorPortName) ? operatorPortLastEndWindowTimestamps.get(operatorPortName) : lastStatsTimestamp;
+              long lastEndWindowTimestamp = ps.lastEndWindowTimestamp == 0 ? lastStatsTimestamp : ps.lastEndWindowTimestamp;
               long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== PROCESSED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
+              //LOG.debug("=== PROCESSED TUPLE COUNT for {}: {}, {}, {}, {}", s.id, s.tupleCount, portElapsedMillis, ps.lastEndWindowTimestamp, lastStatsTimestamp);
               ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
               ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
               ps.queueSizeMA.add(s.queueSize);
 
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
+              ps.lastEndWindowTimestamp = s.endWindowTimestamp;
               if (maxEndWindowTimestamp < s.endWindowTimestamp) {
                 maxEndWindowTimestamp = s.endWindowTimestamp;
               }
@@ -1582,14 +1668,14 @@ public class StreamingContainerManager implements PlanContext
               ps.recordingId = s.recordingId;
 
               tuplesEmitted += s.tupleCount;
-              Pair<Integer, String> operatorPortName = new Pair<Integer, String>(oper.getId(), s.id);
+              endWindowStats.tuplesEmitted += s.tupleCount;
 
-              long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.containsKey(operatorPortName) ? operatorPortLastEndWindowTimestamps.get(operatorPortName) : lastStatsTimestamp;
+              long lastEndWindowTimestamp = ps.lastEndWindowTimestamp == 0 ? lastStatsTimestamp : ps.lastEndWindowTimestamp;
               long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== EMITTED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
+              //LOG.debug("=== EMITTED TUPLE COUNT for {}: {}, {}, {}, {}", s.id, s.tupleCount, portElapsedMillis, ps.lastEndWindowTimestamp, lastStatsTimestamp);
               ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
               ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
+              ps.lastEndWindowTimestamp = s.endWindowTimestamp;
               if (maxEndWindowTimestamp < s.endWindowTimestamp) {
                 maxEndWindowTimestamp = s.endWindowTimestamp;
               }
@@ -1628,31 +1714,12 @@ public class StreamingContainerManager implements PlanContext
             endWindowStats.metrics = stats.metrics;
           }
 
-          if (stats.windowId > currentEndWindowStatsWindowId) {
-            Map<Integer, EndWindowStats> endWindowStatsMap = endWindowStatsOperatorMap.get(stats.windowId);
-            if (endWindowStatsMap == null) {
-              endWindowStatsOperatorMap.putIfAbsent(stats.windowId, new ConcurrentSkipListMap<Integer, EndWindowStats>());
-              endWindowStatsMap = endWindowStatsOperatorMap.get(stats.windowId);
-            }
-            endWindowStatsMap.put(shb.getNodeId(), endWindowStats);
-
-            Set<Integer> allCurrentOperators = plan.getAllOperators().keySet();
-            int numOperators = plan.getAllOperators().size();
-            if (allCurrentOperators.containsAll(endWindowStatsMap.keySet()) && endWindowStatsMap.size() == numOperators) {
-              completeEndWindowStatsWindowId = stats.windowId;
-            }
-          }
+          sca.endWindowStats.add(endWindowStats);
         }
 
         status.totalTuplesProcessed.add(tuplesProcessed);
         status.totalTuplesEmitted.add(tuplesEmitted);
-        OperatorMeta logicalOperator = oper.getOperatorMeta();
-        LogicalOperatorStatus logicalStatus = logicalOperator.getStatus();
-        if (!oper.isUnifier()) {
-          logicalStatus.totalTuplesProcessed += tuplesProcessed;
-          logicalStatus.totalTuplesEmitted += tuplesEmitted;
-        }
-        long lastMaxEndWindowTimestamp = operatorLastEndWindowTimestamps.containsKey(oper.getId()) ? operatorLastEndWindowTimestamps.get(oper.getId()) : lastStatsTimestamp;
+        long lastMaxEndWindowTimestamp = status.lastMaxEndWindowTimestamp == 0 ? lastStatsTimestamp : status.lastMaxEndWindowTimestamp;
         if (maxEndWindowTimestamp >= lastMaxEndWindowTimestamp) {
           double tuplesProcessedPMSMA = 0.0;
           double tuplesEmittedPMSMA = 0.0;
@@ -1673,7 +1740,7 @@ public class StreamingContainerManager implements PlanContext
         else {
           //LOG.warn("This timestamp for {} is lower than the previous!! {} < {}", oper.getId(), maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
         }
-        operatorLastEndWindowTimestamps.put(oper.getId(), maxEndWindowTimestamp);
+        status.lastMaxEndWindowTimestamp = maxEndWindowTimestamp;
         status.listenerStats.add(statsList);
         this.reportStats.put(oper, oper);
 
@@ -1814,6 +1881,7 @@ public class StreamingContainerManager implements PlanContext
         node.checkpoints.add(checkpoint);
       }
     }
+    checkpointChangedOperators.add(node);
   }
 
   public static class UpdateCheckpointsContext
@@ -1847,6 +1915,13 @@ public class StreamingContainerManager implements PlanContext
    * @param ctx      Context into which to collect traversal info
    */
   public void updateRecoveryCheckpoints(PTOperator operator, UpdateCheckpointsContext ctx)
+  {
+    // the next update cannot rely on the recovery checkpoints seen by the last one
+    invalidateCheckpoints();
+    visitRecoveryCheckpoints(operator, ctx);
+  }
+
+  private void visitRecoveryCheckpoints(PTOperator operator, UpdateCheckpointsContext ctx)
   {
     if (operator.getRecoveryCheckpoint().windowId < ctx.committedWindowId.longValue()) {
       ctx.committedWindowId.setValue(operator.getRecoveryCheckpoint().windowId);
@@ -1859,24 +1934,13 @@ public class StreamingContainerManager implements PlanContext
       }
     }
 
-    long maxCheckpoint = operator.getRecentCheckpoint().windowId;
-    if (ctx.recovery && maxCheckpoint == Stateless.WINDOW_ID && operator.isOperatorStateLess()) {
-      long currentWindowId = WindowGenerator.getWindowId(ctx.currentTms, this.vars.windowStartMillis, this.getLogicalPlan().getValue(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS));
-      maxCheckpoint = currentWindowId;
-    }
-
     // DFS downstream operators
     for (PTOperator.PTOutput out : operator.getOutputs()) {
       for (PTOperator.PTInput sink : out.sinks) {
         PTOperator sinkOperator = sink.target;
         if (!ctx.visited.contains(sinkOperator)) {
           // downstream traversal
-          updateRecoveryCheckpoints(sinkOperator, ctx);
-        }
-        // recovery window id cannot move backwards
-        // when dynamically adding new operators
-        if (sinkOperator.getRecoveryCheckpoint().windowId >= operator.getRecoveryCheckpoint().windowId) {
-          maxCheckpoint = Math.min(maxCheckpoint, sinkOperator.getRecoveryCheckpoint().windowId);
+          visitRecoveryCheckpoints(sinkOperator, ctx);
         }
 
         if (ctx.blocked.contains(sinkOperator)) {
@@ -1888,6 +1952,36 @@ public class StreamingContainerManager implements PlanContext
       }
     }
 
+    updateRecoveryCheckpoint(operator, ctx);
+    ctx.visited.add(operator);
+  }
+
+  /**
+   * Select the recovery checkpoint for a single operator, given that the recovery checkpoints
+   * of its downstream operators are up to date, and queue older checkpoints for purging.
+   *
+   * @param operator Operator instance for which to find recovery checkpoint
+   * @param ctx      Context of the current update
+   */
+  private void updateRecoveryCheckpoint(PTOperator operator, UpdateCheckpointsContext ctx)
+  {
+    long maxCheckpoint = operator.getRecentCheckpoint().windowId;
+    if (ctx.recovery && maxCheckpoint == Stateless.WINDOW_ID && operator.isOperatorStateLess()) {
+      long currentWindowId = WindowGenerator.getWindowId(ctx.currentTms, this.vars.windowStartMillis, this.getLogicalPlan().getValue(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS));
+      maxCheckpoint = currentWindowId;
+    }
+
+    for (PTOperator.PTOutput out : operator.getOutputs()) {
+      for (PTOperator.PTInput sink : out.sinks) {
+        PTOperator sinkOperator = sink.target;
+        // recovery window id cannot move backwards
+        // when dynamically adding new operators
+        if (sinkOperator.getRecoveryCheckpoint().windowId >= operator.getRecoveryCheckpoint().windowId) {
+          maxCheckpoint = Math.min(maxCheckpoint, sinkOperator.getRecoveryCheckpoint().windowId);
+        }
+      }
+    }
+
     // checkpoint frozen during deployment
     if (ctx.recovery || operator.getState() != PTOperator.State.PENDING_DEPLOY) {
       // remove previous checkpoints
@@ -1916,8 +2010,6 @@ public class StreamingContainerManager implements PlanContext
     else {
       LOG.debug("Skipping checkpoint update {} during {}", operator, operator.getState());
     }
-
-    ctx.visited.add(operator);
   }
 
   public long windowIdToMillis(long windowId)
@@ -1932,20 +2024,20 @@ public class StreamingContainerManager implements PlanContext
   }
 
   /**
-   * Visit all operators to update current checkpoint based on updated downstream state.
+   * Update current checkpoints based on updated downstream state.
    * Purge older checkpoints that are no longer needed.
+   * All operators are visited on recovery or when the plan or deployment has changed since the last update,
+   * otherwise only operators that reported new checkpoints and the upstream operators they affect.
    */
-  private long updateCheckpoints(boolean recovery)
+  @VisibleForTesting
+  long updateCheckpoints(boolean recovery)
   {
     UpdateCheckpointsContext ctx = new UpdateCheckpointsContext(clock, recovery);
-    for (OperatorMeta logicalOperator : plan.getLogicalPlan().getRootOperators()) {
-      //LOG.debug("Updating checkpoints for operator {}", logicalOperator.getName());
-      List<PTOperator> operators = plan.getOperators(logicalOperator);
-      if (operators != null) {
-        for (PTOperator operator : operators) {
-          updateRecoveryCheckpoints(operator, ctx);
-        }
-      }
+    if (recovery || checkpointsInvalidated || hasWindowProcessingTimeout(ctx)) {
+      updateAllCheckpoints(ctx);
+    }
+    else {
+      updateChangedCheckpoints(ctx);
     }
     purgeCheckpoints();
 
@@ -1959,6 +2051,118 @@ public class StreamingContainerManager implements PlanContext
     return ctx.committedWindowId.longValue();
   }
 
+  /**
+   * Force the next checkpoint update to visit all operators.
+   */
+  void invalidateCheckpoints()
+  {
+    checkpointsInvalidated = true;
+  }
+
+  /**
+   * Visit all operators, starting from the roots. Records the traversal order and the recovery window ids
+   * for subsequent incremental updates.
+   */
+  private void updateAllCheckpoints(UpdateCheckpointsContext ctx)
+  {
+    // changes reported from here on will be picked up by the next update
+    checkpointsInvalidated = false;
+    checkpointChangedOperators.clear();
+    for (OperatorMeta logicalOperator : plan.getLogicalPlan().getRootOperators()) {
+      //LOG.debug("Updating checkpoints for operator {}", logicalOperator.getName());
+      List<PTOperator> operators = plan.getOperators(logicalOperator);
+      if (operators != null) {
+        for (PTOperator operator : operators) {
+          visitRecoveryCheckpoints(operator, ctx);
+        }
+      }
+    }
+
+    checkpointUpdateOrder.clear();
+    recoveryWindowIds.clear();
+    for (PTOperator operator : ctx.visited) {
+      // operators are visited after all their downstream operators
+      checkpointUpdateOrder.put(operator, checkpointUpdateOrder.size());
+      addRecoveryWindowId(operator.getRecoveryCheckpoint().windowId, 1);
+    }
+  }
+
+  /**
+   * Update operators that reported new checkpoints since the last update. When the recovery checkpoint of an
+   * operator moves, its upstream operators are updated next, in the order of the last full traversal so that
+   * every operator is updated after its downstream operators. The committed window id is the minimum recovery
+   * window id prior to the update, as with the full traversal.
+   */
+  private void updateChangedCheckpoints(UpdateCheckpointsContext ctx)
+  {
+    if (!recoveryWindowIds.isEmpty()) {
+      ctx.committedWindowId.setValue(recoveryWindowIds.firstKey());
+    }
+
+    PriorityQueue<PTOperator> queue = new PriorityQueue<PTOperator>(Math.max(1, checkpointChangedOperators.size()), new Comparator<PTOperator>()
+    {
+      @Override
+      public int compare(PTOperator o1, PTOperator o2)
+      {
+        return checkpointUpdateOrder.get(o1) - checkpointUpdateOrder.get(o2);
+      }
+
+    });
+    Iterator<PTOperator> it = checkpointChangedOperators.iterator();
+    while (it.hasNext()) {
+      PTOperator operator = it.next();
+      it.remove();
+      // operators not reached by the last full traversal are no longer part of the plan
+      if (checkpointUpdateOrder.containsKey(operator) && !ctx.visited.contains(operator)) {
+        ctx.visited.add(operator);
+        queue.add(operator);
+      }
+    }
+
+    PTOperator operator;
+    while ((operator = queue.poll()) != null) {
+      long windowId = operator.getRecoveryCheckpoint().windowId;
+      updateRecoveryCheckpoint(operator, ctx);
+      long recoveryWindowId = operator.getRecoveryCheckpoint().windowId;
+      if (recoveryWindowId != windowId) {
+        addRecoveryWindowId(windowId, -1);
+        addRecoveryWindowId(recoveryWindowId, 1);
+        for (PTOperator.PTInput input : operator.getInputs()) {
+          PTOperator upstream = input.source.source;
+          if (checkpointUpdateOrder.containsKey(upstream) && !ctx.visited.contains(upstream)) {
+            ctx.visited.add(upstream);
+            queue.add(upstream);
+          }
+        }
+      }
+    }
+  }
+
+  private void addRecoveryWindowId(long windowId, int delta)
+  {
+    MutableInt count = recoveryWindowIds.get(windowId);
+    if (count == null) {
+      recoveryWindowIds.put(windowId, count = new MutableInt());
+    }
+    count.add(delta);
+    if (count.intValue() == 0) {
+      recoveryWindowIds.remove(windowId);
+    }
+  }
+
+  /**
+   * Blocked operators are only detected by the full traversal.
+   */
+  private boolean hasWindowProcessingTimeout(UpdateCheckpointsContext ctx)
+  {
+    for (PTOperator operator : checkpointUpdateOrder.keySet()) {
+      if (operator.getState() == PTOperator.State.ACTIVE && (ctx.currentTms - operator.stats.lastWindowIdChangeTms) > operator.stats.windowProcessingTimeoutMillis) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private BufferServerController getBufferServerClient(PTOperator operator)
   {
     BufferServerController bsc = new BufferServerController(operator.getLogicalId());
@@ -1968,31 +2172,32 @@ public class StreamingContainerManager implements PlanContext
     return bsc;
   }
 
+  /**
+   * Hand the checkpoints no longer needed over to the purger, grouped by operator, along with the buffer server
+   * data of the operators preceding their first remaining checkpoint.
+   */
   private void purgeCheckpoints()
   {
+    Map<PTOperator, List<Long>> operatorWindowIds = new LinkedHashMap<PTOperator, List<Long>>();
     for (Pair<PTOperator, Long> p : purgeCheckpoints) {
-      final PTOperator operator = p.getFirst();
+      List<Long> windowIds = operatorWindowIds.get(p.getFirst());
+      if (windowIds == null) {
+        operatorWindowIds.put(p.getFirst(), windowIds = new ArrayList<Long>());
+      }
+      windowIds.add(p.getSecond());
+    }
+    purgeCheckpoints.clear();
+
+    for (Map.Entry<PTOperator, List<Long>> e : operatorWindowIds.entrySet()) {
+      PTOperator operator = e.getKey();
       if (!operator.isOperatorStateLess()) {
-        final long windowId = p.getSecond();
-        Runnable r = new Runnable()
-        {
-          @Override
-          public void run()
-          {
-            try {
-              operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT).delete(operator.getId(), windowId);
-            }
-            catch (IOException ex) {
-              LOG.error("Failed to purge checkpoint for operator {} for windowId {}", operator, windowId, ex);
-            }
-          }
-        };
-        poolExecutor.submit(r);
+        checkpointPurger.delete(operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT), operator.getId(), e.getValue());
       }
       // delete stream state when using buffer server
       for (PTOperator.PTOutput out : operator.getOutputs()) {
         if (!out.isDownStreamInline()) {
-          if (operator.getContainer().bufferServerAddress == null) {
+          InetSocketAddress address = operator.getContainer().bufferServerAddress;
+          if (address == null) {
             // address should be null only for a new container, in which case there should not be a purge request
             // TODO: logging added to find out how we got here
             LOG.warn("purge request w/o buffer server address source {} container {} checkpoints {}",
@@ -2006,18 +2211,11 @@ public class StreamingContainerManager implements PlanContext
             // following needs to match the concat logic in StreamingContainer
             String sourceIdentifier = Integer.toString(operator.getId()).concat(Component.CONCAT_SEPARATOR).concat(out.portName).concat(Component.CONCAT_SEPARATOR).concat(codecId.toString());
             // delete everything from buffer server prior to new checkpoint
-            BufferServerController bsc = getBufferServerClient(operator);
-            try {
-              bsc.purge(null, sourceIdentifier, operator.checkpoints.getFirst().windowId - 1);
-            }
-            catch (RuntimeException re) {
-              LOG.warn("Failed to purge {} {}", bsc.addr, sourceIdentifier, re);
-            }
+            checkpointPurger.purge(address, operator.getContainer().getBufferServerToken(), sourceIdentifier, operator.checkpoints.getFirst().windowId - 1);
           }
         }
       }
     }
-    purgeCheckpoints.clear();
   }
 
   /**
@@ -2067,6 +2265,7 @@ public class StreamingContainerManager implements PlanContext
   {
     try {
       this.deployChangeInProgress.set(true);
+      invalidateCheckpoints();
 
       Map<PTContainer, List<PTOperator>> undeployGroups = groupByContainer(undeploy);
 
@@ -2250,6 +2449,8 @@ public class StreamingContainerManager implements PlanContext
     if (os.checkpointStats != null) {
       oi.checkpointTime = os.checkpointStats.checkpointTime;
       oi.checkpointStartTime = os.checkpointStats.checkpointStartTime;
+      oi.checkpointSnapshotTime = os.checkpointStats.snapshotTime;
+      oi.checkpointWriteTime = os.checkpointStats.writeTime;
     }
     oi.checkpointTimeMA = os.checkpointTimeMA.getAvg();
     for (PortStatus ps : os.inputPortStatusList.values()) {
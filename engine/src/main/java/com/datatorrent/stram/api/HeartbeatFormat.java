@@ -0,0 +1,447 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.WritableUtils;
+
+import com.datatorrent.api.Stats.CheckpointStats;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat.DeployState;
+
+/**
+ * Binary encoding of the heartbeat exchanged between the containers and the application master.<p>
+ * <br>
+ * The heartbeat and the stats it carries are written field by field, integers mostly with variable length. Values of
+ * open types such as the auto metrics, the counters and the operator responses are tagged with their type when they
+ * are strings or boxed primitives and are Java serialized otherwise, as are the rarely sent deploy and node requests of
+ * the response.<br>
+ *
+ * @since 2.2.0
+ */
+public final class HeartbeatFormat
+{
+  /**
+   * Written in place of the length of the Java serialized fields which start the encoding of
+   * {@link com.datatorrent.stram.util.AbstractWritableAdapter}, which is never negative.
+   */
+  public static final int BINARY = -1;
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte FLOAT = 5;
+  private static final byte BOOLEAN = 6;
+  private static final byte CHECKPOINT = 7;
+  private static final byte SERIALIZED = 8;
+  private static final DeployState[] DEPLOY_STATES = DeployState.values();
+
+  private HeartbeatFormat()
+  {
+  }
+
+  public static void write(DataOutput out, ContainerHeartbeat heartbeat) throws IOException
+  {
+    out.writeInt(BINARY);
+    WritableUtils.writeString(out, heartbeat.bufferServerHost);
+    WritableUtils.writeVInt(out, heartbeat.bufferServerPort);
+    WritableUtils.writeString(out, heartbeat.jvmName);
+    WritableUtils.writeVInt(out, heartbeat.memoryMBFree);
+    out.writeBoolean(heartbeat.restartRequested);
+    WritableUtils.writeVLong(out, heartbeat.gcCollectionTime);
+    WritableUtils.writeVLong(out, heartbeat.gcCollectionCount);
+    out.writeLong(heartbeat.sentTms);
+    if (heartbeat.stats == null) {
+      out.writeBoolean(false);
+    }
+    else {
+      out.writeBoolean(true);
+      write(out, heartbeat.stats);
+    }
+    if (heartbeat.statsDelta == null) {
+      WritableUtils.writeVInt(out, -1);
+    }
+    else {
+      WritableUtils.writeVInt(out, heartbeat.statsDelta.length);
+      out.write(heartbeat.statsDelta);
+    }
+  }
+
+  /**
+   * Read the heartbeat following the {@link #BINARY} marker.
+   *
+   * @param in input
+   * @param heartbeat heartbeat to populate
+   * @throws IOException
+   */
+  public static void read(DataInput in, ContainerHeartbeat heartbeat) throws IOException
+  {
+    heartbeat.bufferServerHost = WritableUtils.readString(in);
+    heartbeat.bufferServerPort = WritableUtils.readVInt(in);
+    heartbeat.jvmName = WritableUtils.readString(in);
+    heartbeat.memoryMBFree = WritableUtils.readVInt(in);
+    heartbeat.restartRequested = in.readBoolean();
+    heartbeat.gcCollectionTime = WritableUtils.readVLong(in);
+    heartbeat.gcCollectionCount = WritableUtils.readVLong(in);
+    heartbeat.sentTms = in.readLong();
+    heartbeat.stats = in.readBoolean() ? readContainerStats(in) : null;
+    int length = WritableUtils.readVInt(in);
+    if (length < 0) {
+      heartbeat.statsDelta = null;
+    }
+    else {
+      heartbeat.statsDelta = new byte[length];
+      in.readFully(heartbeat.statsDelta);
+    }
+  }
+
+  public static void write(DataOutput out, ContainerHeartbeatResponse response) throws IOException
+  {
+    out.writeInt(BINARY);
+    out.writeBoolean(response.shutdown);
+    writeValue(out, response.nodeRequests);
+    out.writeBoolean(response.hasPendingRequests);
+    if (response.undeployRequest == null) {
+      WritableUtils.writeVInt(out, -1);
+    }
+    else {
+      WritableUtils.writeVInt(out, response.undeployRequest.size());
+      for (Integer operatorId : response.undeployRequest) {
+        WritableUtils.writeVInt(out, operatorId);
+      }
+    }
+    writeValue(out, response.deployRequest);
+    WritableUtils.writeVLong(out, response.committedWindowId);
+    out.writeBoolean(response.resetStatsDelta);
+  }
+
+  /**
+   * Read the heartbeat response following the {@link #BINARY} marker.
+   *
+   * @param in input
+   * @param response response to populate
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked")
+  public static void read(DataInput in, ContainerHeartbeatResponse response) throws IOException
+  {
+    response.shutdown = in.readBoolean();
+    response.nodeRequests = (List<StreamingContainerUmbilicalProtocol.StramToNodeRequest>)readValue(in);
+    response.hasPendingRequests = in.readBoolean();
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      response.undeployRequest = null;
+    }
+    else {
+      response.undeployRequest = new ArrayList<Integer>(size);
+      while (size-- > 0) {
+        response.undeployRequest.add(WritableUtils.readVInt(in));
+      }
+    }
+    response.deployRequest = (List<OperatorDeployInfo>)readValue(in);
+    response.committedWindowId = WritableUtils.readVLong(in);
+    response.resetStatsDelta = in.readBoolean();
+  }
+
+  private static void write(DataOutput out, ContainerStats stats) throws IOException
+  {
+    WritableUtils.writeString(out, stats.id);
+    if (stats.operators == null) {
+      WritableUtils.writeVInt(out, -1);
+    }
+    else {
+      WritableUtils.writeVInt(out, stats.operators.size());
+      for (OperatorHeartbeat operator : stats.operators) {
+        write(out, operator);
+      }
+    }
+  }
+
+  private static ContainerStats readContainerStats(DataInput in) throws IOException
+  {
+    ContainerStats stats = new ContainerStats(WritableUtils.readString(in));
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      stats.operators = null;
+    }
+    else {
+      stats.operators.ensureCapacity(size);
+      while (size-- > 0) {
+        stats.operators.add(readOperatorHeartbeat(in));
+      }
+    }
+    return stats;
+  }
+
+  private static void write(DataOutput out, OperatorHeartbeat heartbeat) throws IOException
+  {
+    WritableUtils.writeVInt(out, heartbeat.nodeId);
+    out.writeLong(heartbeat.generatedTms);
+    WritableUtils.writeVLong(out, heartbeat.intervalMs);
+    WritableUtils.writeVInt(out, heartbeat.state == null ? 0 : heartbeat.state.ordinal() + 1);
+    if (heartbeat.windowStats == null) {
+      WritableUtils.writeVInt(out, -1);
+    }
+    else {
+      WritableUtils.writeVInt(out, heartbeat.windowStats.size());
+      for (OperatorStats stats : heartbeat.windowStats) {
+        write(out, stats);
+      }
+    }
+    writeValue(out, heartbeat.requestResponse);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static OperatorHeartbeat readOperatorHeartbeat(DataInput in) throws IOException
+  {
+    OperatorHeartbeat heartbeat = new OperatorHeartbeat();
+    heartbeat.nodeId = WritableUtils.readVInt(in);
+    heartbeat.generatedTms = in.readLong();
+    heartbeat.intervalMs = WritableUtils.readVLong(in);
+    int state = WritableUtils.readVInt(in);
+    heartbeat.state = state == 0 ? null : DEPLOY_STATES[state - 1];
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      heartbeat.windowStats = null;
+    }
+    else {
+      heartbeat.windowStats.ensureCapacity(size);
+      while (size-- > 0) {
+        heartbeat.windowStats.add(readOperatorStats(in));
+      }
+    }
+    heartbeat.requestResponse = (ArrayList<com.datatorrent.api.StatsListener.OperatorResponse>)readValue(in);
+    return heartbeat;
+  }
+
+  private static void write(DataOutput out, OperatorStats stats) throws IOException
+  {
+    out.writeLong(stats.windowId);
+    writeValue(out, stats.checkpoint);
+    write(out, stats.inputPorts);
+    write(out, stats.outputPorts);
+    WritableUtils.writeVLong(out, stats.cpuTimeUsed);
+    if (stats.checkpointStats == null) {
+      out.writeBoolean(false);
+    }
+    else {
+      out.writeBoolean(true);
+      WritableUtils.writeVLong(out, stats.checkpointStats.checkpointStartTime);
+      WritableUtils.writeVLong(out, stats.checkpointStats.checkpointTime);
+      WritableUtils.writeVLong(out, stats.checkpointStats.snapshotTime);
+      WritableUtils.writeVLong(out, stats.checkpointStats.writeTime);
+    }
+    writeValue(out, stats.counters);
+    if (stats.metrics == null) {
+      WritableUtils.writeVInt(out, -1);
+    }
+    else {
+      WritableUtils.writeVInt(out, stats.metrics.size());
+      for (Map.Entry<String, Object> entry : stats.metrics.entrySet()) {
+        WritableUtils.writeString(out, entry.getKey());
+        writeValue(out, entry.getValue());
+      }
+    }
+    WritableUtils.writeString(out, stats.recordingId);
+  }
+
+  private static OperatorStats readOperatorStats(DataInput in) throws IOException
+  {
+    OperatorStats stats = new OperatorStats();
+    stats.windowId = in.readLong();
+    stats.checkpoint = (com.datatorrent.api.Stats.Checkpoint)readValue(in);
+    stats.inputPorts = readPortStats(in);
+    stats.outputPorts = readPortStats(in);
+    stats.cpuTimeUsed = WritableUtils.readVLong(in);
+    if (in.readBoolean()) {
+      stats.checkpointStats = new CheckpointStats();
+      stats.checkpointStats.checkpointStartTime = WritableUtils.readVLong(in);
+      stats.checkpointStats.checkpointTime = WritableUtils.readVLong(in);
+      stats.checkpointStats.snapshotTime = WritableUtils.readVLong(in);
+      stats.checkpointStats.writeTime = WritableUtils.readVLong(in);
+    }
+    stats.counters = readValue(in);
+    int size = WritableUtils.readVInt(in);
+    if (size >= 0) {
+      stats.metrics = new HashMap<String, Object>(size + (size >> 1) + 1);
+      while (size-- > 0) {
+        String key = WritableUtils.readString(in);
+        stats.metrics.put(key, readValue(in));
+      }
+    }
+    stats.recordingId = WritableUtils.readString(in);
+    return stats;
+  }
+
+  private static void write(DataOutput out, List<PortStats> ports) throws IOException
+  {
+    if (ports == null) {
+      WritableUtils.writeVInt(out, -1);
+      return;
+    }
+
+    WritableUtils.writeVInt(out, ports.size());
+    for (PortStats port : ports) {
+      WritableUtils.writeString(out, port.id);
+      WritableUtils.writeVInt(out, port.tupleCount);
+      out.writeLong(port.endWindowTimestamp);
+      WritableUtils.writeVLong(out, port.bufferServerBytes);
+      WritableUtils.writeVLong(out, port.bufferServerBlockedMillis);
+      WritableUtils.writeVInt(out, port.queueSize);
+      WritableUtils.writeVInt(out, port.dataQueueSize);
+      WritableUtils.writeVInt(out, port.controlQueueSize);
+      WritableUtils.writeString(out, port.recordingId);
+    }
+  }
+
+  private static ArrayList<PortStats> readPortStats(DataInput in) throws IOException
+  {
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      return null;
+    }
+
+    ArrayList<PortStats> ports = new ArrayList<PortStats>(size);
+    while (size-- > 0) {
+      PortStats port = new PortStats(WritableUtils.readString(in));
+      port.tupleCount = WritableUtils.readVInt(in);
+      port.endWindowTimestamp = in.readLong();
+      port.bufferServerBytes = WritableUtils.readVLong(in);
+      port.bufferServerBlockedMillis = WritableUtils.readVLong(in);
+      port.queueSize = WritableUtils.readVInt(in);
+      port.dataQueueSize = WritableUtils.readVInt(in);
+      port.controlQueueSize = WritableUtils.readVInt(in);
+      port.recordingId = WritableUtils.readString(in);
+      ports.add(port);
+    }
+    return ports;
+  }
+
+  static void writeValue(DataOutput out, Object value) throws IOException
+  {
+    if (value == null) {
+      out.writeByte(NULL);
+    }
+    else if (value instanceof String) {
+      out.writeByte(STRING);
+      WritableUtils.writeString(out, (String)value);
+    }
+    else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      WritableUtils.writeVInt(out, (Integer)value);
+    }
+    else if (value instanceof Long) {
+      out.writeByte(LONG);
+      WritableUtils.writeVLong(out, (Long)value);
+    }
+    else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double)value);
+    }
+    else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float)value);
+    }
+    else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    }
+    else if (value.getClass() == Checkpoint.class) {
+      Checkpoint checkpoint = (Checkpoint)value;
+      out.writeByte(CHECKPOINT);
+      out.writeLong(checkpoint.windowId);
+      WritableUtils.writeVInt(out, checkpoint.applicationWindowCount);
+      WritableUtils.writeVInt(out, checkpoint.checkpointWindowCount);
+    }
+    else {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(bos);
+      oos.writeObject(value);
+      oos.close();
+      out.writeByte(SERIALIZED);
+      WritableUtils.writeVInt(out, bos.size());
+      out.write(bos.toByteArray());
+    }
+  }
+
+  static Object readValue(DataInput in) throws IOException
+  {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+
+      case STRING:
+        return WritableUtils.readString(in);
+
+      case INTEGER:
+        return WritableUtils.readVInt(in);
+
+      case LONG:
+        return WritableUtils.readVLong(in);
+
+      case DOUBLE:
+        return in.readDouble();
+
+      case FLOAT:
+        return in.readFloat();
+
+      case BOOLEAN:
+        return in.readBoolean();
+
+      case CHECKPOINT:
+        long windowId = in.readLong();
+        int applicationWindowCount = WritableUtils.readVInt(in);
+        return new Checkpoint(windowId, applicationWindowCount, WritableUtils.readVInt(in));
+
+      case SERIALIZED:
+        byte[] bytes = new byte[WritableUtils.readVInt(in)];
+        in.readFully(bytes);
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+          return ois.readObject();
+        }
+        catch (ClassNotFoundException ex) {
+          throw new IOException(ex);
+        }
+        finally {
+          ois.close();
+        }
+
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+}
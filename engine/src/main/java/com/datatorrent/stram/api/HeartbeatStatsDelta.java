@@ -0,0 +1,687 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.WritableUtils;
+
+import com.datatorrent.api.Stats;
+import com.datatorrent.api.Stats.CheckpointStats;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.api.StatsListener;
+
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat.DeployState;
+
+/**
+ * Delta encoding of the operator stats a container reports with its heartbeats.<p>
+ * <br>
+ * Ports and metrics are referred to by integer ids which the container assigns when it reports them for the first time.
+ * Each window is encoded against the previous window of the operator, which for the first window of a heartbeat is the
+ * last window of the operator in the heartbeat acknowledged by the application master. Only the values which changed
+ * are sent.<br>
+ * <br>
+ * The application master keeps the stats decoded from the last two heartbeats of the container so that a heartbeat
+ * sent again is still decoded. When the heartbeat refers to stats it does not know, the master asks the container
+ * to {@link StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse#resetStatsDelta reset} the encoding
+ * and the same stats are sent again without reference to earlier ones.<br>
+ *
+ * @since 2.2.0
+ */
+public final class HeartbeatStatsDelta
+{
+  /*
+   * Fields of the operator stats present in the encoded window.
+   */
+  private static final int CHECKPOINT = 1;
+  private static final int CPU_TIME_USED = 1 << 1;
+  private static final int CHECKPOINT_STATS = 1 << 2;
+  private static final int COUNTERS = 1 << 3;
+  private static final int RECORDING_ID = 1 << 4;
+  private static final int INPUT_PORTS = 1 << 5;
+  private static final int OUTPUT_PORTS = 1 << 6;
+  private static final int METRICS = 1 << 7;
+  /*
+   * Fields of the port stats present in the encoded window.
+   */
+  private static final int TUPLE_COUNT = 1;
+  private static final int BUFFER_SERVER_BYTES = 1 << 1;
+  private static final int BUFFER_SERVER_BLOCKED_MILLIS = 1 << 2;
+  private static final int QUEUE_SIZE = 1 << 3;
+  private static final int DATA_QUEUE_SIZE = 1 << 4;
+  private static final int CONTROL_QUEUE_SIZE = 1 << 5;
+  private static final int PORT_RECORDING_ID = 1 << 6;
+  /**
+   * Encoding of a null value, values are compared in their encoded form as they may be mutable.
+   */
+  private static final byte[] NULL_VALUE = {0};
+  private static final PortState[] NO_PORTS = new PortState[0];
+  private static final PortState NO_PORT = new PortState(-1);
+  private static final OperatorState NO_OPERATOR = new OperatorState();
+  private static final DeployState[] DEPLOY_STATES = DeployState.values();
+
+  private HeartbeatStatsDelta()
+  {
+  }
+
+  /**
+   * Encodes the stats in the container.
+   */
+  public static class Encoder
+  {
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+    private Map<Integer, OperatorState> baseline = Collections.emptyMap();
+    private long baselineSequence = -1;
+    private Map<Integer, OperatorState> pending;
+    private long pendingSequence;
+    private long sequence;
+
+    /**
+     * Encode the stats against those of the last acknowledged heartbeat.
+     *
+     * @param stats stats of the container
+     * @return encoded stats
+     * @throws IOException
+     */
+    public byte[] encode(ContainerStats stats) throws IOException
+    {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bos);
+      pendingSequence = sequence++;
+      WritableUtils.writeVLong(out, pendingSequence);
+      WritableUtils.writeVLong(out, baselineSequence);
+
+      pending = new HashMap<Integer, OperatorState>(stats.operators.size() * 2);
+      WritableUtils.writeVInt(out, stats.operators.size());
+      long generatedTms = 0;
+      for (OperatorHeartbeat heartbeat : stats.operators) {
+        WritableUtils.writeVInt(out, heartbeat.nodeId);
+        WritableUtils.writeVLong(out, heartbeat.generatedTms - generatedTms);
+        generatedTms = heartbeat.generatedTms;
+        WritableUtils.writeVLong(out, heartbeat.intervalMs);
+        WritableUtils.writeVInt(out, heartbeat.state == null ? 0 : heartbeat.state.ordinal() + 1);
+        HeartbeatFormat.writeValue(out, heartbeat.requestResponse);
+
+        OperatorState state = baseline.get(heartbeat.nodeId);
+        if (state == null) {
+          state = NO_OPERATOR;
+        }
+        if (heartbeat.windowStats == null) {
+          WritableUtils.writeVInt(out, -1);
+        }
+        else {
+          WritableUtils.writeVInt(out, heartbeat.windowStats.size());
+          for (OperatorStats window : heartbeat.windowStats) {
+            state = write(out, window, state);
+          }
+        }
+        pending.put(heartbeat.nodeId, state);
+      }
+
+      out.close();
+      return bos.toByteArray();
+    }
+
+    /**
+     * Send the stats encoded with the heartbeat. When the application master cannot decode them, the same stats are
+     * sent again in full so that what they report, checkpoints in particular, is not lost with the heartbeat.
+     *
+     * @param umbilical protocol to the application master
+     * @param heartbeat heartbeat to send the stats with
+     * @param stats stats of the container
+     * @return response to the heartbeat which carried the stats
+     * @throws IOException
+     */
+    public ContainerHeartbeatResponse send(StreamingContainerUmbilicalProtocol umbilical, ContainerHeartbeat heartbeat, ContainerStats stats) throws IOException
+    {
+      heartbeat.setContainerStats(new ContainerStats(stats.id));
+      heartbeat.statsDelta = encode(stats);
+      ContainerHeartbeatResponse rsp = umbilical.processHeartbeat(heartbeat);
+      if (rsp.resetStatsDelta) {
+        reset();
+        heartbeat.setContainerStats(new ContainerStats(stats.id));
+        heartbeat.statsDelta = encode(stats);
+        rsp = umbilical.processHeartbeat(heartbeat);
+      }
+      if (rsp.resetStatsDelta) {
+        reset();
+      }
+      else {
+        acknowledge();
+      }
+      return rsp;
+    }
+
+    /**
+     * Encode the next heartbeat against the last encoded one once the application master received it.
+     */
+    public void acknowledge()
+    {
+      baseline = pending;
+      baselineSequence = pendingSequence;
+    }
+
+    /**
+     * Encode the next heartbeat without reference to the earlier ones.
+     */
+    public void reset()
+    {
+      names.clear();
+      baseline = Collections.emptyMap();
+      baselineSequence = -1;
+    }
+
+    private OperatorState write(DataOutput out, OperatorStats stats, OperatorState previous) throws IOException
+    {
+      OperatorState state = new OperatorState(previous);
+      state.windowId = stats.windowId;
+      state.checkpoint = toBytes(stats.checkpoint);
+      state.cpuTimeUsed = stats.cpuTimeUsed;
+      state.counters = toBytes(stats.counters);
+      state.recordingId = stats.recordingId;
+
+      int mask = 0;
+      if (!Arrays.equals(state.checkpoint, previous.checkpoint)) {
+        mask |= CHECKPOINT;
+      }
+      if (state.cpuTimeUsed != previous.cpuTimeUsed) {
+        mask |= CPU_TIME_USED;
+      }
+      if (stats.checkpointStats != null) {
+        mask |= CHECKPOINT_STATS;
+      }
+      if (!Arrays.equals(state.counters, previous.counters)) {
+        mask |= COUNTERS;
+      }
+      if (state.recordingId == null ? previous.recordingId != null : !state.recordingId.equals(previous.recordingId)) {
+        mask |= RECORDING_ID;
+      }
+      if (stats.inputPorts != null) {
+        mask |= INPUT_PORTS;
+      }
+      if (stats.outputPorts != null) {
+        mask |= OUTPUT_PORTS;
+      }
+      if (stats.metrics != null) {
+        mask |= METRICS;
+      }
+
+      WritableUtils.writeVLong(out, state.windowId - previous.windowId);
+      WritableUtils.writeVInt(out, mask);
+      if ((mask & CHECKPOINT) != 0) {
+        writeBytes(out, state.checkpoint);
+      }
+      if ((mask & CPU_TIME_USED) != 0) {
+        WritableUtils.writeVLong(out, state.cpuTimeUsed);
+      }
+      if ((mask & CHECKPOINT_STATS) != 0) {
+        WritableUtils.writeVLong(out, stats.checkpointStats.checkpointStartTime);
+        WritableUtils.writeVLong(out, stats.checkpointStats.checkpointTime);
+        WritableUtils.writeVLong(out, stats.checkpointStats.snapshotTime);
+        WritableUtils.writeVLong(out, stats.checkpointStats.writeTime);
+      }
+      if ((mask & COUNTERS) != 0) {
+        writeBytes(out, state.counters);
+      }
+      if ((mask & RECORDING_ID) != 0) {
+        WritableUtils.writeString(out, state.recordingId);
+      }
+      if ((mask & INPUT_PORTS) != 0) {
+        state.inputPorts = write(out, stats.inputPorts, previous.inputPorts);
+      }
+      if ((mask & OUTPUT_PORTS) != 0) {
+        state.outputPorts = write(out, stats.outputPorts, previous.outputPorts);
+      }
+      if ((mask & METRICS) != 0) {
+        state.metrics = new HashMap<Integer, byte[]>(stats.metrics.size() * 2);
+        WritableUtils.writeVInt(out, stats.metrics.size());
+        for (Map.Entry<String, Object> entry : stats.metrics.entrySet()) {
+          int name = writeName(out, entry.getKey());
+          byte[] value = toBytes(entry.getValue());
+          if (Arrays.equals(value, previous.metrics.get(name))) {
+            WritableUtils.writeVInt(out, 0);
+          }
+          else {
+            writeBytes(out, value);
+          }
+          state.metrics.put(name, value);
+        }
+      }
+      return state;
+    }
+
+    private PortState[] write(DataOutput out, List<PortStats> ports, PortState[] previous) throws IOException
+    {
+      PortState[] states = new PortState[ports.size()];
+      WritableUtils.writeVInt(out, states.length);
+      for (int i = 0; i < states.length; i++) {
+        PortStats port = ports.get(i);
+        PortState state = new PortState(writeName(out, port.id));
+        state.tupleCount = port.tupleCount;
+        state.endWindowTimestamp = port.endWindowTimestamp;
+        state.bufferServerBytes = port.bufferServerBytes;
+        state.bufferServerBlockedMillis = port.bufferServerBlockedMillis;
+        state.queueSize = port.queueSize;
+        state.dataQueueSize = port.dataQueueSize;
+        state.controlQueueSize = port.controlQueueSize;
+        state.recordingId = port.recordingId;
+
+        PortState last = find(previous, i, state.name);
+        int mask = 0;
+        if (state.tupleCount != last.tupleCount) {
+          mask |= TUPLE_COUNT;
+        }
+        if (state.bufferServerBytes != last.bufferServerBytes) {
+          mask |= BUFFER_SERVER_BYTES;
+        }
+        if (state.bufferServerBlockedMillis != last.bufferServerBlockedMillis) {
+          mask |= BUFFER_SERVER_BLOCKED_MILLIS;
+        }
+        if (state.queueSize != last.queueSize) {
+          mask |= QUEUE_SIZE;
+        }
+        if (state.dataQueueSize != last.dataQueueSize) {
+          mask |= DATA_QUEUE_SIZE;
+        }
+        if (state.controlQueueSize != last.controlQueueSize) {
+          mask |= CONTROL_QUEUE_SIZE;
+        }
+        if (state.recordingId == null ? last.recordingId != null : !state.recordingId.equals(last.recordingId)) {
+          mask |= PORT_RECORDING_ID;
+        }
+
+        WritableUtils.writeVInt(out, mask);
+        WritableUtils.writeVLong(out, state.endWindowTimestamp - last.endWindowTimestamp - last.endWindowInterval);
+        if (last != NO_PORT) {
+          state.endWindowInterval = state.endWindowTimestamp - last.endWindowTimestamp;
+        }
+        if ((mask & TUPLE_COUNT) != 0) {
+          WritableUtils.writeVInt(out, state.tupleCount);
+        }
+        if ((mask & BUFFER_SERVER_BYTES) != 0) {
+          WritableUtils.writeVLong(out, state.bufferServerBytes);
+        }
+        if ((mask & BUFFER_SERVER_BLOCKED_MILLIS) != 0) {
+          WritableUtils.writeVLong(out, state.bufferServerBlockedMillis);
+        }
+        if ((mask & QUEUE_SIZE) != 0) {
+          WritableUtils.writeVInt(out, state.queueSize);
+        }
+        if ((mask & DATA_QUEUE_SIZE) != 0) {
+          WritableUtils.writeVInt(out, state.dataQueueSize);
+        }
+        if ((mask & CONTROL_QUEUE_SIZE) != 0) {
+          WritableUtils.writeVInt(out, state.controlQueueSize);
+        }
+        if ((mask & PORT_RECORDING_ID) != 0) {
+          WritableUtils.writeString(out, state.recordingId);
+        }
+        states[i] = state;
+      }
+      return states;
+    }
+
+    /**
+     * Write the id of the name, followed by the name if it was not sent before.
+     */
+    private int writeName(DataOutput out, String name) throws IOException
+    {
+      Integer id = names.get(name);
+      if (id == null) {
+        id = names.size();
+        names.put(name, id);
+        WritableUtils.writeVInt(out, id << 1 | 1);
+        WritableUtils.writeString(out, name);
+      }
+      else {
+        WritableUtils.writeVInt(out, id << 1);
+      }
+      return id;
+    }
+
+  }
+
+  /**
+   * Decodes the stats of a container in the application master.
+   */
+  public static class Decoder
+  {
+    private final ArrayList<String> names = new ArrayList<String>();
+    private Map<Integer, OperatorState> last = Collections.emptyMap();
+    private long lastSequence = -1;
+    private Map<Integer, OperatorState> previous = Collections.emptyMap();
+    private long previousSequence = -1;
+
+    /**
+     * Decode the operator heartbeats into the container stats.
+     *
+     * @param delta encoded stats
+     * @param stats container stats to populate
+     * @return false if the stats were encoded against a heartbeat which is not known
+     * @throws IOException if the encoded stats are corrupt
+     */
+    public synchronized boolean decode(byte[] delta, ContainerStats stats) throws IOException
+    {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+      long sequence = WritableUtils.readVLong(in);
+      long baselineSequence = WritableUtils.readVLong(in);
+      Map<Integer, OperatorState> baseline;
+      if (baselineSequence < 0) {
+        names.clear();
+        baseline = Collections.emptyMap();
+      }
+      else if (baselineSequence == lastSequence) {
+        baseline = last;
+      }
+      else if (baselineSequence == previousSequence) {
+        baseline = previous;
+      }
+      else {
+        return false;
+      }
+
+      int size = WritableUtils.readVInt(in);
+      Map<Integer, OperatorState> current = new HashMap<Integer, OperatorState>(size * 2);
+      ArrayList<OperatorHeartbeat> operators = new ArrayList<OperatorHeartbeat>(size);
+      long generatedTms = 0;
+      while (size-- > 0) {
+        OperatorHeartbeat heartbeat = new OperatorHeartbeat();
+        heartbeat.nodeId = WritableUtils.readVInt(in);
+        heartbeat.generatedTms = generatedTms += WritableUtils.readVLong(in);
+        heartbeat.intervalMs = WritableUtils.readVLong(in);
+        int state = WritableUtils.readVInt(in);
+        heartbeat.state = state == 0 ? null : DEPLOY_STATES[state - 1];
+        @SuppressWarnings("unchecked")
+        ArrayList<StatsListener.OperatorResponse> requestResponse = (ArrayList<StatsListener.OperatorResponse>)HeartbeatFormat.readValue(in);
+        heartbeat.requestResponse = requestResponse;
+
+        OperatorState operatorState = baseline.get(heartbeat.nodeId);
+        if (operatorState == null) {
+          operatorState = NO_OPERATOR;
+        }
+        int windows = WritableUtils.readVInt(in);
+        if (windows < 0) {
+          heartbeat.windowStats = null;
+        }
+        else {
+          heartbeat.windowStats.ensureCapacity(windows);
+          while (windows-- > 0) {
+            OperatorStats window = new OperatorStats();
+            operatorState = read(in, window, operatorState);
+            heartbeat.windowStats.add(window);
+          }
+        }
+        current.put(heartbeat.nodeId, operatorState);
+        operators.add(heartbeat);
+      }
+
+      if (sequence != lastSequence) {
+        previous = last;
+        previousSequence = lastSequence;
+      }
+      last = current;
+      lastSequence = sequence;
+      stats.operators = operators;
+      return true;
+    }
+
+    private OperatorState read(DataInput in, OperatorStats stats, OperatorState previous) throws IOException
+    {
+      OperatorState state = new OperatorState(previous);
+      state.windowId = previous.windowId + WritableUtils.readVLong(in);
+      int mask = WritableUtils.readVInt(in);
+      if ((mask & CHECKPOINT) != 0) {
+        state.checkpoint = readBytes(in);
+      }
+      if ((mask & CPU_TIME_USED) != 0) {
+        state.cpuTimeUsed = WritableUtils.readVLong(in);
+      }
+      if ((mask & CHECKPOINT_STATS) != 0) {
+        stats.checkpointStats = new CheckpointStats();
+        stats.checkpointStats.checkpointStartTime = WritableUtils.readVLong(in);
+        stats.checkpointStats.checkpointTime = WritableUtils.readVLong(in);
+        stats.checkpointStats.snapshotTime = WritableUtils.readVLong(in);
+        stats.checkpointStats.writeTime = WritableUtils.readVLong(in);
+      }
+      if ((mask & COUNTERS) != 0) {
+        state.counters = readBytes(in);
+      }
+      if ((mask & RECORDING_ID) != 0) {
+        state.recordingId = WritableUtils.readString(in);
+      }
+      if ((mask & INPUT_PORTS) != 0) {
+        state.inputPorts = read(in, previous.inputPorts);
+        stats.inputPorts = toPortStats(state.inputPorts);
+      }
+      if ((mask & OUTPUT_PORTS) != 0) {
+        state.outputPorts = read(in, previous.outputPorts);
+        stats.outputPorts = toPortStats(state.outputPorts);
+      }
+      if ((mask & METRICS) != 0) {
+        int size = WritableUtils.readVInt(in);
+        state.metrics = new HashMap<Integer, byte[]>(size * 2);
+        stats.metrics = new HashMap<String, Object>(size * 2);
+        while (size-- > 0) {
+          int name = readName(in);
+          byte[] value = readBytes(in);
+          if (value.length == 0) {
+            value = previous.metrics.get(name);
+            if (value == null) {
+              throw new IOException("Unchanged metric " + names.get(name) + " was not reported before");
+            }
+          }
+          state.metrics.put(name, value);
+          stats.metrics.put(names.get(name), fromBytes(value));
+        }
+      }
+
+      stats.windowId = state.windowId;
+      stats.checkpoint = (Stats.Checkpoint)fromBytes(state.checkpoint);
+      stats.cpuTimeUsed = state.cpuTimeUsed;
+      stats.counters = fromBytes(state.counters);
+      stats.recordingId = state.recordingId;
+      return state;
+    }
+
+    private PortState[] read(DataInput in, PortState[] previous) throws IOException
+    {
+      PortState[] states = new PortState[WritableUtils.readVInt(in)];
+      for (int i = 0; i < states.length; i++) {
+        PortState state = new PortState(readName(in));
+        PortState last = find(previous, i, state.name);
+        int mask = WritableUtils.readVInt(in);
+        state.endWindowTimestamp = last.endWindowTimestamp + last.endWindowInterval + WritableUtils.readVLong(in);
+        if (last != NO_PORT) {
+          state.endWindowInterval = state.endWindowTimestamp - last.endWindowTimestamp;
+        }
+        state.tupleCount = (mask & TUPLE_COUNT) == 0 ? last.tupleCount : WritableUtils.readVInt(in);
+        state.bufferServerBytes = (mask & BUFFER_SERVER_BYTES) == 0 ? last.bufferServerBytes : WritableUtils.readVLong(in);
+        state.bufferServerBlockedMillis = (mask & BUFFER_SERVER_BLOCKED_MILLIS) == 0 ? last.bufferServerBlockedMillis : WritableUtils.readVLong(in);
+        state.queueSize = (mask & QUEUE_SIZE) == 0 ? last.queueSize : WritableUtils.readVInt(in);
+        state.dataQueueSize = (mask & DATA_QUEUE_SIZE) == 0 ? last.dataQueueSize : WritableUtils.readVInt(in);
+        state.controlQueueSize = (mask & CONTROL_QUEUE_SIZE) == 0 ? last.controlQueueSize : WritableUtils.readVInt(in);
+        state.recordingId = (mask & PORT_RECORDING_ID) == 0 ? last.recordingId : WritableUtils.readString(in);
+        states[i] = state;
+      }
+      return states;
+    }
+
+    private ArrayList<PortStats> toPortStats(PortState[] states)
+    {
+      ArrayList<PortStats> ports = new ArrayList<PortStats>(states.length);
+      for (PortState state : states) {
+        PortStats port = new PortStats(names.get(state.name));
+        port.tupleCount = state.tupleCount;
+        port.endWindowTimestamp = state.endWindowTimestamp;
+        port.bufferServerBytes = state.bufferServerBytes;
+        port.bufferServerBlockedMillis = state.bufferServerBlockedMillis;
+        port.queueSize = state.queueSize;
+        port.dataQueueSize = state.dataQueueSize;
+        port.controlQueueSize = state.controlQueueSize;
+        port.recordingId = state.recordingId;
+        ports.add(port);
+      }
+      return ports;
+    }
+
+    /**
+     * Read the id of a name and the name itself when it is sent for the first time.
+     */
+    private int readName(DataInput in) throws IOException
+    {
+      int ref = WritableUtils.readVInt(in);
+      int id = ref >>> 1;
+      if ((ref & 1) != 0) {
+        String name = WritableUtils.readString(in);
+        if (id == names.size()) {
+          names.add(name);
+        }
+        else if (id < names.size()) {
+          names.set(id, name);
+        }
+        else {
+          throw new IOException("Name " + name + " is out of sequence at " + id);
+        }
+      }
+      else if (id >= names.size()) {
+        throw new IOException("Unknown name " + id);
+      }
+      return id;
+    }
+
+  }
+
+  private static PortState find(PortState[] ports, int index, int name)
+  {
+    if (index < ports.length && ports[index].name == name) {
+      return ports[index];
+    }
+    for (PortState port : ports) {
+      if (port.name == name) {
+        return port;
+      }
+    }
+    return NO_PORT;
+  }
+
+  private static byte[] toBytes(Object value) throws IOException
+  {
+    if (value == null) {
+      return NULL_VALUE;
+    }
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(16);
+    DataOutputStream out = new DataOutputStream(bos);
+    HeartbeatFormat.writeValue(out, value);
+    out.close();
+    return bos.toByteArray();
+  }
+
+  private static Object fromBytes(byte[] bytes) throws IOException
+  {
+    return HeartbeatFormat.readValue(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException
+  {
+    WritableUtils.writeVInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException
+  {
+    byte[] bytes = new byte[WritableUtils.readVInt(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Values of an operator window which the next window is encoded against.
+   */
+  private static class OperatorState
+  {
+    long windowId;
+    byte[] checkpoint = NULL_VALUE;
+    long cpuTimeUsed;
+    byte[] counters = NULL_VALUE;
+    String recordingId;
+    PortState[] inputPorts = NO_PORTS;
+    PortState[] outputPorts = NO_PORTS;
+    Map<Integer, byte[]> metrics = Collections.emptyMap();
+
+    OperatorState()
+    {
+    }
+
+    OperatorState(OperatorState state)
+    {
+      windowId = state.windowId;
+      checkpoint = state.checkpoint;
+      cpuTimeUsed = state.cpuTimeUsed;
+      counters = state.counters;
+      recordingId = state.recordingId;
+      inputPorts = state.inputPorts;
+      outputPorts = state.outputPorts;
+      metrics = state.metrics;
+    }
+
+  }
+
+  /**
+   * Values of a port window which the next window is encoded against.
+   */
+  private static class PortState
+  {
+    final int name;
+    int tupleCount;
+    long endWindowTimestamp;
+    /**
+     * Time between the end of the previous window and this one, the end of the next window is encoded relative to
+     * the time it is expected at
+     */
+    long endWindowInterval;
+    long bufferServerBytes;
+    long bufferServerBlockedMillis;
+    int queueSize;
+    int dataQueueSize;
+    int controlQueueSize;
+    String recordingId;
+
+    PortState(int name)
+    {
+      this.name = name;
+    }
+
+  }
+
+}
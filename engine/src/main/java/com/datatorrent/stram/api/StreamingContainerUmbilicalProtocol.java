@@ -15,6 +15,8 @@
  */
 package com.datatorrent.stram.api;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -49,7 +51,7 @@ import com.datatorrent.stram.util.AbstractWritableAdapter;
 @InterfaceAudience.Private
 @InterfaceStability.Stable
 public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol {
-  public static final long versionID = 201208081755L;
+  public static final long versionID = 201510172245L;
 
   /**
    * Initialization parameters for StramChild container. Container
@@ -223,6 +225,11 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol {
 
     public ContainerStats stats;
 
+    /**
+     * Operator stats encoded by {@link HeartbeatStatsDelta} in place of the operators in the container stats.
+     */
+    public byte[] statsDelta;
+
     public long sentTms = System.currentTimeMillis();
 
     public ContainerStats getContainerStats() {
@@ -237,6 +244,24 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol {
       return stats.id;
     }
 
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      int len = in.readInt();
+      if (len == HeartbeatFormat.BINARY) {
+        HeartbeatFormat.read(in, this);
+      }
+      else {
+        readSerializedFields(in, len);
+      }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatFormat.write(out, this);
+    }
+
   }
 
   /**
@@ -355,6 +380,30 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol {
      * Set when dag purges a particular windowId as it's processed by all the operators.
      */
     public long committedWindowId = -1;
+
+    /**
+     * Set when the operator stats could not be decoded from the delta and the container needs to send them
+     * without reference to the earlier heartbeats.
+     */
+    public boolean resetStatsDelta;
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      int len = in.readInt();
+      if (len == HeartbeatFormat.BINARY) {
+        HeartbeatFormat.read(in, this);
+      }
+      else {
+        readSerializedFields(in, len);
+      }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatFormat.write(out, this);
+    }
   }
 
   /**
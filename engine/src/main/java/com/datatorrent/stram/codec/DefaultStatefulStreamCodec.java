@@ -27,7 +27,9 @@ import com.esotericsoftware.kryo.util.MapReferenceResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
 
 /**
  * Default implementation of the StreamCodec.
@@ -38,14 +40,33 @@ import com.datatorrent.netlet.util.Slice;
  *
  * Requires kryo and its dependencies in deployment
  *
+ * When used by the buffer server publisher, the tuples are serialized straight into the payload messages
+ * laid out in a shared buffer, see {@link MessageSerializer}.
+ *
  * @param <T>
  * @since 0.3.2
  */
-public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStreamCodec<T>
+public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStreamCodec<T>, StatefulStreamCodec.MessageSerializer<T>
 {
+  /**
+   * Size of the buffers into which the messages are serialized.
+   */
+  public static final int MESSAGE_BUFFER_SIZE = 64 * 1024;
+  /*
+   * room left for the length of the message in front of its header, a varint takes at most 5 bytes.
+   */
+  private static final int LENGTH_SIZE = 5;
+  private static final int PAYLOAD_HEADER_SIZE = 5;
+  private static final int STATE_HEADER_SIZE = 1;
+  private static final byte[] HEADER_ROOM = new byte[LENGTH_SIZE + PAYLOAD_HEADER_SIZE];
   private final Output data;
   private final Output state;
   private final Input input;
+  /*
+   * the messages already serialized in the buffer may still be waiting to be sent, so the buffer is replaced
+   * instead of being rewound once it fills up.
+   */
+  private Output messages;
 
   @SuppressWarnings("OverridableMethodCallInConstructor")
   public DefaultStatefulStreamCodec()
@@ -133,6 +154,56 @@ public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStrea
     return pair;
   }
 
+  @Override
+  public DataStatePair toMessagePair(T o, int partition)
+  {
+    if (messages == null || messages.getBuffer().length - messages.position() < MESSAGE_BUFFER_SIZE / 16) {
+      messages = new Output(new byte[MESSAGE_BUFFER_SIZE], Integer.MAX_VALUE);
+    }
+
+    DataStatePair pair = new DataStatePair();
+    int start = messages.position();
+    messages.writeBytes(HEADER_ROOM, 0, LENGTH_SIZE + PAYLOAD_HEADER_SIZE);
+    writeClassAndObject(messages, o);
+    pair.data = frame(start, MessageType.PAYLOAD_VALUE);
+    byte[] buffer = pair.data.buffer;
+    buffer[start + LENGTH_SIZE + 1] = (byte)partition;
+    buffer[start + LENGTH_SIZE + 2] = (byte)(partition >> 8);
+    buffer[start + LENGTH_SIZE + 3] = (byte)(partition >> 16);
+    buffer[start + LENGTH_SIZE + 4] = (byte)(partition >> 24);
+
+    if (!pairs.isEmpty()) {
+      start = messages.position();
+      messages.writeBytes(HEADER_ROOM, 0, LENGTH_SIZE + STATE_HEADER_SIZE);
+      for (ClassIdPair cip : pairs) {
+        writeClassAndObject(messages, cip);
+      }
+      pairs.clear();
+      pair.state = frame(start, MessageType.CODEC_STATE_VALUE);
+    }
+
+    return pair;
+  }
+
+  /**
+   * Write the type and the length of the message serialized after the room reserved at the given position.
+   *
+   * @param start position of the room reserved for the length
+   * @param type type of the message
+   * @return slice over the message including its length
+   */
+  private Slice frame(int start, byte type)
+  {
+    /* the buffer may have grown while the message was being serialized */
+    byte[] buffer = messages.getBuffer();
+    int header = start + LENGTH_SIZE;
+    int length = messages.position() - header;
+    int offset = header - VarInt.getSize(length);
+    VarInt.write(length, buffer, offset);
+    buffer[header] = type;
+    return new Slice(buffer, offset, messages.position() - offset);
+  }
+
   @Override
   public int getPartition(T o)
   {
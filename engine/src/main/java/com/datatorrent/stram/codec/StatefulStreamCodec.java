@@ -61,6 +61,32 @@ public interface StatefulStreamCodec<T> extends StreamCodec<T>
     public Slice state;
   }
 
+  /**
+   * A codec which serializes the tuples directly into the messages sent to the buffer server.
+   *
+   * The publisher otherwise copies the serialized tuple into a new message, so the codecs implementing
+   * this interface save an allocation and a copy per tuple.
+   *
+   * @param <T> type of the tuples
+   * @since 2.2.0
+   */
+  public interface MessageSerializer<T>
+  {
+    /**
+     * Serialize the tuple into a length prepended payload message of the buffer server.
+     *
+     * The slices returned hold complete messages which are ready to be sent as they are, if state is not null
+     * it holds the codec state message which has to be sent before the data. The bytes referred by the slices
+     * are not modified by the subsequent calls, so they may be queued for sending without copying them.
+     *
+     * @param object plain old java object
+     * @param partition partition of the object
+     * @return pair of the data message and the state message
+     */
+    DataStatePair toMessagePair(T object, int partition);
+
+  }
+
   /**
    * Create POJO from the byte array for consumption by the downstream.
    *
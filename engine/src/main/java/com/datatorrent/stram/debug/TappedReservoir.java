@@ -15,6 +15,8 @@
  */
 package com.datatorrent.stram.debug;
 
+import com.datatorrent.stram.engine.ReservoirSignal;
+import com.datatorrent.stram.engine.SignallingReservoir;
 import com.datatorrent.stram.engine.SweepableReservoir;
 import com.datatorrent.stram.tuple.Tuple;
 import com.datatorrent.api.Sink;
@@ -24,7 +26,7 @@ import com.datatorrent.api.Sink;
  *
  * @since 0.3.2
  */
-public class TappedReservoir extends MuxSink implements SweepableReservoir
+public class TappedReservoir extends MuxSink implements SignallingReservoir
 {
   public final SweepableReservoir reservoir;
   private Sink<Object> sink;
@@ -60,12 +62,30 @@ public class TappedReservoir extends MuxSink implements SweepableReservoir
     return reservoir.getCount(reset);
   }
 
+  @Override
+  public int getControlTupleCount()
+  {
+    return reservoir.getControlTupleCount();
+  }
+
   @Override
   public int size()
   {
     return reservoir.size();
   }
 
+  @Override
+  public boolean setSignal(ReservoirSignal signal)
+  {
+    return reservoir instanceof SignallingReservoir && ((SignallingReservoir)reservoir).setSignal(signal);
+  }
+
+  @Override
+  public boolean isIdle()
+  {
+    return ((SignallingReservoir)reservoir).isIdle();
+  }
+
   @Override
   public void put(Object tuple)
   {
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.AutoMetric;
+
+/**
+ * Reads the {@link AutoMetric} fields and getters of an operator through method handles which are bound to the
+ * operator once, so that collecting the metrics at the end of a window does not go through reflective access checks.
+ *
+ * @since 2.2.0
+ */
+public class AutoMetricCollector
+{
+  private static final MethodType METRIC_TYPE = MethodType.methodType(Object.class);
+  private final String[] names;
+  private final MethodHandle[] accessors;
+
+  public AutoMetricCollector(Object operator)
+  {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    List<String> metricNames = new ArrayList<String>();
+    List<MethodHandle> metricAccessors = new ArrayList<MethodHandle>();
+    try {
+      for (Field field : ReflectionUtils.getDeclaredFieldsIncludingInherited(operator.getClass())) {
+        if (field.isAnnotationPresent(AutoMetric.class)) {
+          field.setAccessible(true);
+          MethodHandle getter = lookup.unreflectGetter(field);
+          if (!Modifier.isStatic(field.getModifiers())) {
+            getter = getter.bindTo(operator);
+          }
+          metricNames.add(field.getName());
+          metricAccessors.add(getter.asType(METRIC_TYPE));
+        }
+      }
+
+      for (PropertyDescriptor pd : Introspector.getBeanInfo(operator.getClass()).getPropertyDescriptors()) {
+        Method readMethod = pd.getReadMethod();
+        if (readMethod != null && readMethod.getAnnotation(AutoMetric.class) != null) {
+          readMethod.setAccessible(true);
+          metricNames.add(pd.getName());
+          metricAccessors.add(lookup.unreflect(readMethod).bindTo(operator).asType(METRIC_TYPE));
+        }
+      }
+    }
+    catch (IntrospectionException e) {
+      throw new RuntimeException("introspecting " + operator.getClass(), e);
+    }
+    catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+
+    names = metricNames.toArray(new String[metricNames.size()]);
+    accessors = metricAccessors.toArray(new MethodHandle[metricAccessors.size()]);
+  }
+
+  /**
+   * @return number of metrics declared by the operator
+   */
+  public int size()
+  {
+    return names.length;
+  }
+
+  /**
+   * Read the current values of the metrics.
+   *
+   * @param metricsToSend names of the metrics to read, null to read all of them
+   * @return map from metric name to its value, sized for the metrics so that it does not rehash while being filled
+   */
+  public Map<String, Object> collect(Collection<String> metricsToSend)
+  {
+    Map<String, Object> metricValues = Maps.newHashMapWithExpectedSize(metricsToSend == null ? names.length : metricsToSend.size());
+    for (int i = 0; i < names.length; i++) {
+      if (metricsToSend == null || metricsToSend.contains(names[i])) {
+        metricValues.put(names[i], read(accessors[i]));
+      }
+    }
+    return metricValues;
+  }
+
+  private static Object read(MethodHandle accessor)
+  {
+    try {
+      return (Object)accessor.invokeExact();
+    }
+    catch (RuntimeException | Error e) {
+      throw e;
+    }
+    catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+}
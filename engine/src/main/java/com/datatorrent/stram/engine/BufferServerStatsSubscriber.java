@@ -18,6 +18,7 @@ package com.datatorrent.stram.engine;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.datatorrent.api.Stats.OperatorStats;
 import com.datatorrent.api.Stats.OperatorStats.PortStats;
@@ -28,6 +29,7 @@ import com.datatorrent.stram.api.ContainerEvent.StreamActivationEvent;
 import com.datatorrent.stram.api.ContainerEvent.StreamDeactivationEvent;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.stream.BufferServerPublisher;
 
 import net.engio.mbassy.listener.Handler;
 
@@ -104,11 +106,16 @@ public class BufferServerStatsSubscriber
         if (os.outputPorts != null) {
           for (PortStats ps : os.outputPorts) {
             List<ByteCounterStream> portStreams = outputStreams.get(ps.id);
-            if (outputStreams != null) {
+            if (portStreams != null) {
               ps.bufferServerBytes = 0;
+              long blockedNanos = 0;
               for (ByteCounterStream stream : portStreams) {
-                ps.bufferServerBytes = stream.getByteCount(true);
+                ps.bufferServerBytes += stream.getByteCount(true);
+                if (stream instanceof BufferServerPublisher) {
+                  blockedNanos += ((BufferServerPublisher)stream).getBlockedNanos(true);
+                }
               }
+              ps.bufferServerBlockedMillis = TimeUnit.NANOSECONDS.toMillis(blockedNanos);
             }
           }
         }
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import com.datatorrent.api.Operator.CombiningUnifier;
+
+/**
+ * Slider for the unifiers which implement {@link CombiningUnifier}, it keeps an aggregate per bucket of windows instead
+ * of the tuples of the bucket.<p>
+ * <br>
+ * The aggregates of the buckets in the sliding window are kept on two stacks. A new bucket is pushed on the back stack
+ * and combined into the aggregate of the whole back stack. Every entry of the front stack is the aggregate of its bucket
+ * combined with the newer buckets of the front stack, so the oldest buckets slide out by popping the front stack, which
+ * is refilled from the back stack once it is empty. The aggregate of the sliding window is the top of the front stack
+ * combined with the aggregate of the back stack, so each bucket is combined a constant number of times.
+ *
+ * @since 2.2.0
+ */
+public class CombiningSlider extends Slider
+{
+  private final CombiningUnifier<Object, Object> combiner;
+  private final ArrayDeque<Object> front;
+  private final ArrayList<Object> back;
+  private Object backAggregate;
+  private transient Object current;
+
+  private CombiningSlider()
+  {
+    super();
+    combiner = null;
+    front = null;
+    back = null;
+  }
+
+  public CombiningSlider(CombiningUnifier<Object, Object> unifier, int buckets, int numberOfSlideBuckets)
+  {
+    super(unifier, buckets, numberOfSlideBuckets, null);
+    combiner = unifier;
+    front = new ArrayDeque<Object>(buckets);
+    back = new ArrayList<Object>(buckets);
+  }
+
+  @Override
+  public void process(Object tuple)
+  {
+    current = combiner.accumulate(current, tuple);
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    combiner.beginWindow(windowId);
+    current = combiner.newAggregate();
+  }
+
+  @Override
+  public void endWindow()
+  {
+    back.add(current);
+    backAggregate = backAggregate == null ? current : combiner.combine(backAggregate, current);
+    current = null;
+
+    if (front.size() + back.size() == numberOfBuckets) {
+      combiner.emitAggregate(front.isEmpty() ? backAggregate : combiner.combine(front.peek(), backAggregate));
+      for (int i = numberOfSlideBuckets; i-- > 0;) {
+        slideOut();
+      }
+    }
+    combiner.endWindow();
+  }
+
+  /**
+   * Remove the oldest bucket from the sliding window.
+   */
+  private void slideOut()
+  {
+    if (front.isEmpty()) {
+      Object aggregate = null;
+      for (int i = back.size(); i-- > 0;) {
+        aggregate = aggregate == null ? back.get(i) : combiner.combine(back.get(i), aggregate);
+        front.push(aggregate);
+      }
+      back.clear();
+      backAggregate = null;
+    }
+    front.pop();
+  }
+
+  private static final long serialVersionUID = 201510171630L;
+}
@@ -16,6 +16,7 @@
 package com.datatorrent.stram.engine;
 
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 
 import com.datatorrent.netlet.util.CircularBuffer;
@@ -26,11 +27,19 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class DefaultReservoir extends CircularBuffer<Object> implements SweepableReservoir
+public class DefaultReservoir extends CircularBuffer<Object> implements SignallingReservoir
 {
   private Sink<Object> sink;
+  private BatchSink<Object> batchSink;
+  private final TupleBatch batch = new TupleBatch();
   private String id;
   private int count;
+  private volatile ReservoirSignal signal;
+  /*
+   * control tuples ever added to and removed from this reservoir, the difference being the ones queued.
+   */
+  private volatile int controlTuplesAdded;
+  private volatile int controlTuplesRemoved;
 
   public DefaultReservoir(String id, int capacity)
   {
@@ -39,6 +48,7 @@ public class DefaultReservoir extends CircularBuffer<Object> implements Sweepabl
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public Sink<Object> setSink(Sink<Object> sink)
   {
     try {
@@ -46,13 +56,95 @@ public class DefaultReservoir extends CircularBuffer<Object> implements Sweepabl
     }
     finally {
       this.sink = sink;
+      batchSink = sink instanceof BatchSink ? (BatchSink<Object>)sink : null;
+    }
+  }
+
+  @Override
+  public boolean add(Object e)
+  {
+    if (e instanceof Tuple) {
+      controlTuplesAdded++;
     }
+    super.add(e);
+    signal();
+    return true;
+  }
+
+  @Override
+  public boolean offer(Object e)
+  {
+    if (e instanceof Tuple) {
+      controlTuplesAdded++;
+      if (!super.offer(e)) {
+        controlTuplesAdded--;
+        return false;
+      }
+    }
+    else if (!super.offer(e)) {
+      return false;
+    }
+    signal();
+    return true;
+  }
+
+  @Override
+  public void put(Object e) throws InterruptedException
+  {
+    if (e instanceof Tuple) {
+      controlTuplesAdded++;
+    }
+    super.put(e);
+    signal();
+  }
+
+  private void signal()
+  {
+    ReservoirSignal rs = signal;
+    if (rs != null && size() == 1) {
+      rs.raise();
+    }
+  }
+
+  @Override
+  public Object remove()
+  {
+    Object o = super.remove();
+    if (o instanceof Tuple) {
+      controlTuplesRemoved++;
+    }
+    return o;
+  }
+
+  @Override
+  public int getControlTupleCount()
+  {
+    return controlTuplesAdded - controlTuplesRemoved;
+  }
+
+  @Override
+  public boolean setSignal(ReservoirSignal signal)
+  {
+    this.signal = signal;
+    return true;
+  }
+
+  @Override
+  public boolean isIdle()
+  {
+    return isEmpty();
   }
 
   @Override
   public Tuple sweep()
   {
     final int size = size();
+    if (batchSink != null) {
+      int drained = batch.drain(this, size, batchSink);
+      count += drained;
+      return drained < size ? (Tuple)peekUnsafe() : null;
+    }
+
     for (int i = 0; i < size; i++) {
       if (peekUnsafe() instanceof Tuple) {
         count += i;
@@ -27,13 +27,10 @@ import com.datatorrent.api.Operator;
 import com.datatorrent.api.Operator.IdleTimeHandler;
 import com.datatorrent.api.Operator.InputPort;
 import com.datatorrent.api.Operator.ProcessingMode;
-import com.datatorrent.api.Operator.ShutdownException;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.annotation.Stateless;
 
 import com.datatorrent.bufferserver.util.Codec;
-import com.datatorrent.netlet.util.DTThrowable;
-import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.debug.TappedReservoir;
 import com.datatorrent.stram.tuple.Tuple;
@@ -193,6 +190,18 @@ public class GenericNode extends Node<Operator>
     insideWindow = applicationWindowCount != 0;
   }
 
+  /*
+   * state of the processing loop shared by run and step.
+   */
+  private long spinMillis;
+  private boolean handleIdleTime;
+  private ReservoirSignal signal;
+  private int totalQueues;
+  private ArrayList<SweepableReservoir> activeQueues;
+  private int expectingBeginWindow;
+  private int receivedEndWindow;
+  private LinkedList<TupleTracker> resetTupleTracker;
+
   /**
    * Originally this method was defined in an attempt to implement the interface Runnable.
    *
@@ -201,355 +210,397 @@ public class GenericNode extends Node<Operator>
   @Override
   @SuppressWarnings({"SleepWhileInLoop", "UseSpecificCatch", "BroadCatchBlock", "TooBroadCatch"})
   public final void run()
+  {
+    startRun(new ReservoirSignal(Thread.currentThread()));
+
+    try {
+      do {
+        sweep();
+        if (alive && isQuiescent()) {
+          if (handleIdleTime) {
+            ((IdleTimeHandler) operator).handleIdleTime();
+          }
+          else if (!signal.await(activeQueues, spinMillis)) {
+            Thread.sleep(spinMillis);
+          }
+        }
+      }
+      while (alive);
+    }
+    catch (Throwable cause) {
+      handleRunException(cause);
+    }
+
+    finishRun();
+  }
+
+  @Override
+  public void startSteps(ReservoirSignal signal)
+  {
+    startRun(signal);
+  }
+
+  @Override
+  @SuppressWarnings({"UseSpecificCatch", "BroadCatchBlock", "TooBroadCatch"})
+  public final long step(int budget)
+  {
+    try {
+      for (int i = budget; i-- > 0 && alive;) {
+        sweep();
+        if (alive && isQuiescent()) {
+          if (handleIdleTime) {
+            ((IdleTimeHandler) operator).handleIdleTime();
+            return STEP_BUSY;
+          }
+          if (!signal.arm(activeQueues)) {
+            return spinMillis;
+          }
+          if (ReservoirSignal.isIdle(activeQueues)) {
+            return STEP_IDLE;
+          }
+          signal.disarm();
+        }
+      }
+    }
+    catch (Throwable cause) {
+      handleRunException(cause);
+    }
+
+    if (alive) {
+      return STEP_BUSY;
+    }
+
+    finishRun();
+    return STEP_DONE;
+  }
+
+  private void startRun(ReservoirSignal signal)
   {
     doCheckpoint = false;
 
-    long spinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
-    final boolean handleIdleTime = operator instanceof IdleTimeHandler;
-    int totalQueues = inputs.size();
+    spinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
+    handleIdleTime = operator instanceof IdleTimeHandler;
+    this.signal = signal;
+    totalQueues = inputs.size();
 
-    ArrayList<SweepableReservoir> activeQueues = new ArrayList<SweepableReservoir>();
+    activeQueues = new ArrayList<SweepableReservoir>();
     activeQueues.addAll(inputs.values());
 
-    int expectingBeginWindow = activeQueues.size();
-    int receivedEndWindow = 0;
+    expectingBeginWindow = activeQueues.size();
+    receivedEndWindow = 0;
 
-    TupleTracker tracker;
-    LinkedList<TupleTracker> resetTupleTracker = new LinkedList<TupleTracker>();
+    resetTupleTracker = new LinkedList<TupleTracker>();
+  }
 
-    try {
-      do {
-        Iterator<SweepableReservoir> buffers = activeQueues.iterator();
+  /**
+   * Sweep each of the active queues once, processing the data tuples till the next control tuple.
+   */
+  private void sweep()
+  {
+    TupleTracker tracker;
+    Iterator<SweepableReservoir> buffers = activeQueues.iterator();
   activequeue:
-        while (buffers.hasNext()) {
-          SweepableReservoir activePort = buffers.next();
-          Tuple t = activePort.sweep();
-          if (t != null) {
-            switch (t.getType()) {
-              case BEGIN_WINDOW:
-                if (expectingBeginWindow == totalQueues) {
-                  activePort.remove();
-                  expectingBeginWindow--;
-                  currentWindowId = t.getWindowId();
-                  for (int s = sinks.length; s-- > 0; ) {
-                    sinks[s].put(t);
-                  }
-                  controlTupleCount++;
+    while (buffers.hasNext()) {
+      SweepableReservoir activePort = buffers.next();
+      Tuple t = activePort.sweep();
+      if (t != null) {
+        switch (t.getType()) {
+          case BEGIN_WINDOW:
+            if (expectingBeginWindow == totalQueues) {
+              activePort.remove();
+              expectingBeginWindow--;
+              currentWindowId = t.getWindowId();
+              for (int s = sinks.length; s-- > 0; ) {
+                sinks[s].put(t);
+              }
+              controlTupleCount++;
+
+              if (applicationWindowCount == 0) {
+                insideWindow = true;
+                operator.beginWindow(currentWindowId);
+              }
+              receivedEndWindow = 0;
+            }
+            else if (t.getWindowId() == currentWindowId) {
+              activePort.remove();
+              expectingBeginWindow--;
+            }
+            else {
+              buffers.remove();
 
-                  if (applicationWindowCount == 0) {
-                    insideWindow = true;
-                    operator.beginWindow(currentWindowId);
-                  }
-                  receivedEndWindow = 0;
+              /* find the name of the port which got out of sequence tuple */
+              String port = null;
+              for (Entry<String, SweepableReservoir> e : inputs.entrySet()) {
+                if (e.getValue() == activePort) {
+                  port = e.getKey();
                 }
-                else if (t.getWindowId() == currentWindowId) {
-                  activePort.remove();
-                  expectingBeginWindow--;
+              }
+
+              assert (port != null); /* we should always find the port */
+
+              if (PROCESSING_MODE == ProcessingMode.AT_MOST_ONCE) {
+                if (t.getWindowId() < currentWindowId) {
+                  /*
+                   * we need to fast forward this stream till we find the current
+                   * window or the window which is bigger than the current window.
+                   */
+
+                  /* lets move the current reservoir in the background */
+                  Sink<Object> sink = activePort.setSink(Sink.BLACKHOLE);
+                  deferredInputConnections.add(0, new DeferredInputConnection(port, activePort));
+
+                  /* replace it with the reservoir which blocks the tuples in the past */
+                  WindowIdActivatedReservoir wiar = new WindowIdActivatedReservoir(port, activePort, currentWindowId);
+                  wiar.setSink(sink);
+                  inputs.put(port, wiar);
+                  activeQueues.add(wiar);
+                  break activequeue;
                 }
                 else {
-                  buffers.remove();
-
-                  /* find the name of the port which got out of sequence tuple */
-                  String port = null;
-                  for (Entry<String, SweepableReservoir> e : inputs.entrySet()) {
-                    if (e.getValue() == activePort) {
-                      port = e.getKey();
-                    }
-                  }
-
-                  assert (port != null); /* we should always find the port */
-
-                  if (PROCESSING_MODE == ProcessingMode.AT_MOST_ONCE) {
-                    if (t.getWindowId() < currentWindowId) {
-                      /*
-                       * we need to fast forward this stream till we find the current
-                       * window or the window which is bigger than the current window.
-                       */
-
-                      /* lets move the current reservoir in the background */
-                      Sink<Object> sink = activePort.setSink(Sink.BLACKHOLE);
-                      deferredInputConnections.add(0, new DeferredInputConnection(port, activePort));
-
-                      /* replace it with the reservoir which blocks the tuples in the past */
-                      WindowIdActivatedReservoir wiar = new WindowIdActivatedReservoir(port, activePort, currentWindowId);
-                      wiar.setSink(sink);
-                      inputs.put(port, wiar);
-                      activeQueues.add(wiar);
-                      break activequeue;
-                    }
-                    else {
-                      expectingBeginWindow--;
-                      if (++receivedEndWindow == totalQueues) {
-                        processEndWindow(null);
-                        activeQueues.addAll(inputs.values());
-                        expectingBeginWindow = activeQueues.size();
-                        break activequeue;
-                      }
-                    }
-                  }
-                  else {
-                    logger.error("Catastrophic Error: Out of sequence tuple {} on port {} while expecting {}", Codec.getStringWindowId(t.getWindowId()), port, Codec.getStringWindowId(currentWindowId));
-                    System.exit(2);
-                  }
-                }
-                break;
-
-              case END_WINDOW:
-                buffers.remove();
-                if (t.getWindowId() == currentWindowId) {
-                  activePort.remove();
-                  endWindowDequeueTimes.put(activePort, System.currentTimeMillis());
+                  expectingBeginWindow--;
                   if (++receivedEndWindow == totalQueues) {
-                    assert (activeQueues.isEmpty());
-                    processEndWindow(t);
+                    processEndWindow(null);
                     activeQueues.addAll(inputs.values());
                     expectingBeginWindow = activeQueues.size();
                     break activequeue;
                   }
                 }
-                break;
+              }
+              else {
+                logger.error("Catastrophic Error: Out of sequence tuple {} on port {} while expecting {}", Codec.getStringWindowId(t.getWindowId()), port, Codec.getStringWindowId(currentWindowId));
+                System.exit(2);
+              }
+            }
+            break;
+
+          case END_WINDOW:
+            buffers.remove();
+            if (t.getWindowId() == currentWindowId) {
+              activePort.remove();
+              endWindowDequeueTimes.put(activePort, System.currentTimeMillis());
+              if (++receivedEndWindow == totalQueues) {
+                assert (activeQueues.isEmpty());
+                processEndWindow(t);
+                activeQueues.addAll(inputs.values());
+                expectingBeginWindow = activeQueues.size();
+                break activequeue;
+              }
+            }
+            break;
+
+          case CHECKPOINT:
+            activePort.remove();
+            long checkpointWindow = t.getWindowId();
+            if (lastCheckpointWindowId < checkpointWindow) {
+              if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
+                lastCheckpointWindowId = checkpointWindow;
+              }
+              else if (!doCheckpoint) {
+                if (checkpointWindowCount == 0) {
+                  checkpoint(checkpointWindow);
+                  lastCheckpointWindowId = checkpointWindow;
+                }
+                else {
+                  doCheckpoint = true;
+                }
+              }
 
-              case CHECKPOINT:
-                activePort.remove();
-                long checkpointWindow = t.getWindowId();
-                if (lastCheckpointWindowId < checkpointWindow) {
-                  if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
-                    lastCheckpointWindowId = checkpointWindow;
-                  }
-                  else if (!doCheckpoint) {
-                    if (checkpointWindowCount == 0) {
-                      checkpoint(checkpointWindow);
-                      lastCheckpointWindowId = checkpointWindow;
-                    }
-                    else {
-                      doCheckpoint = true;
-                    }
-                  }
+              for (int s = sinks.length; s-- > 0; ) {
+                sinks[s].put(t);
+              }
+              controlTupleCount++;
+            }
+            break;
+
+          case RESET_WINDOW:
+            /**
+             * we will receive tuples which are equal to the number of input streams.
+             */
+            activePort.remove();
+            buffers.remove();
+
+            int baseSeconds = t.getBaseSeconds();
+            tracker = null;
+            Iterator<TupleTracker> trackerIterator = resetTupleTracker.iterator();
+            while (trackerIterator.hasNext()) {
+              tracker = trackerIterator.next();
+              if (tracker.tuple.getBaseSeconds() == baseSeconds) {
+                break;
+              }
+            }
 
-                  for (int s = sinks.length; s-- > 0; ) {
-                    sinks[s].put(t);
-                  }
-                  controlTupleCount++;
-                }
+            if (tracker == null) {
+              tracker = new TupleTracker(t, totalQueues);
+              resetTupleTracker.add(tracker);
+            }
+            int trackerIndex = 0;
+            while (trackerIndex < tracker.ports.length) {
+              if (tracker.ports[trackerIndex] == null) {
+                tracker.ports[trackerIndex++] = activePort;
                 break;
+              }
+              else if (tracker.ports[trackerIndex] == activePort) {
+                break;
+              }
 
-              case RESET_WINDOW:
-                /**
-                 * we will receive tuples which are equal to the number of input streams.
-                 */
-                activePort.remove();
-                buffers.remove();
-
-                int baseSeconds = t.getBaseSeconds();
-                tracker = null;
-                Iterator<TupleTracker> trackerIterator = resetTupleTracker.iterator();
-                while (trackerIterator.hasNext()) {
-                  tracker = trackerIterator.next();
-                  if (tracker.tuple.getBaseSeconds() == baseSeconds) {
-                    break;
-                  }
-                }
+              trackerIndex++;
+            }
 
-                if (tracker == null) {
-                  tracker = new TupleTracker(t, totalQueues);
-                  resetTupleTracker.add(tracker);
+            if (trackerIndex == totalQueues) {
+              trackerIterator = resetTupleTracker.iterator();
+              while (trackerIterator.hasNext()) {
+                if (trackerIterator.next().tuple.getBaseSeconds() <= baseSeconds) {
+                  trackerIterator.remove();
                 }
-                int trackerIndex = 0;
-                while (trackerIndex < tracker.ports.length) {
-                  if (tracker.ports[trackerIndex] == null) {
-                    tracker.ports[trackerIndex++] = activePort;
-                    break;
-                  }
-                  else if (tracker.ports[trackerIndex] == activePort) {
-                    break;
-                  }
-
-                  trackerIndex++;
+              }
+              for (int s = sinks.length; s-- > 0; ) {
+                sinks[s].put(t);
+              }
+              controlTupleCount++;
+
+              assert (activeQueues.isEmpty());
+              activeQueues.addAll(inputs.values());
+              expectingBeginWindow = activeQueues.size();
+              break activequeue;
+            }
+            break;
+
+          case END_STREAM:
+            activePort.remove();
+            buffers.remove();
+            for (Iterator<Entry<String, SweepableReservoir>> it = inputs.entrySet().iterator(); it.hasNext(); ) {
+              Entry<String, SweepableReservoir> e = it.next();
+              if (e.getValue() == activePort) {
+                if (!descriptor.inputPorts.isEmpty()) {
+                  descriptor.inputPorts.get(e.getKey()).component.setConnected(false);
                 }
-
-                if (trackerIndex == totalQueues) {
-                  trackerIterator = resetTupleTracker.iterator();
-                  while (trackerIterator.hasNext()) {
-                    if (trackerIterator.next().tuple.getBaseSeconds() <= baseSeconds) {
-                      trackerIterator.remove();
-                    }
-                  }
-                  for (int s = sinks.length; s-- > 0; ) {
-                    sinks[s].put(t);
+                it.remove();
+
+                /* check the deferred connection list for any new port that should be connected here */
+                Iterator<DeferredInputConnection> dici = deferredInputConnections.iterator();
+                while (dici.hasNext()) {
+                  DeferredInputConnection dic = dici.next();
+                  if (e.getKey().equals(dic.portname)) {
+                    connectInputPort(dic.portname, dic.reservoir);
+                    dici.remove();
+                    activeQueues.add(dic.reservoir);
+                    break activequeue;
                   }
-                  controlTupleCount++;
-
-                  assert (activeQueues.isEmpty());
-                  activeQueues.addAll(inputs.values());
-                  expectingBeginWindow = activeQueues.size();
-                  break activequeue;
                 }
+
                 break;
+              }
+            }
 
-              case END_STREAM:
-                activePort.remove();
-                buffers.remove();
-                for (Iterator<Entry<String, SweepableReservoir>> it = inputs.entrySet().iterator(); it.hasNext(); ) {
-                  Entry<String, SweepableReservoir> e = it.next();
-                  if (e.getValue() == activePort) {
-                    if (!descriptor.inputPorts.isEmpty()) {
-                      descriptor.inputPorts.get(e.getKey()).component.setConnected(false);
-                    }
-                    it.remove();
-
-                    /* check the deferred connection list for any new port that should be connected here */
-                    Iterator<DeferredInputConnection> dici = deferredInputConnections.iterator();
-                    while (dici.hasNext()) {
-                      DeferredInputConnection dic = dici.next();
-                      if (e.getKey().equals(dic.portname)) {
-                        connectInputPort(dic.portname, dic.reservoir);
-                        dici.remove();
-                        activeQueues.add(dic.reservoir);
-                        break activequeue;
-                      }
-                    }
+            /**
+             * We are not going to receive begin window on this ever!
+             */
+            expectingBeginWindow--;
+
+            /**
+             * Since one of the operators we care about it gone, we should relook at our ports.
+             * We need to make sure that the END_STREAM comes outside of the window.
+             */
+            totalQueues--;
+
+            boolean break_activequeue = false;
+            if (totalQueues == 0) {
+              alive = false;
+              break_activequeue = true;
+            }
+            else if (activeQueues.isEmpty()) {
+              assert (!inputs.isEmpty());
+              processEndWindow(null);
+              activeQueues.addAll(inputs.values());
+              expectingBeginWindow = activeQueues.size();
+              break_activequeue = true;
+            }
 
-                    break;
+            /**
+             * also make sure that we update the reset tuple tracker if this stream had delivered any reset tuples.
+             * Check all the reset buffers to see if current input port has already delivered reset tuple. If it has
+             * then we are waiting for something else to deliver the reset tuple, so just clear current reservoir
+             * from the list of tracked reservoirs. If the current input port has not delivered the reset tuple, and
+             * it's the only one which has not, then we consider it delivered and release the reset tuple downstream.
+             */
+            Tuple tuple = null;
+            for (trackerIterator = resetTupleTracker.iterator(); trackerIterator.hasNext(); ) {
+              tracker = trackerIterator.next();
+
+              trackerIndex = 0;
+              while (trackerIndex < tracker.ports.length) {
+                if (tracker.ports[trackerIndex] == activePort) {
+                  SweepableReservoir[] ports = new SweepableReservoir[totalQueues];
+                  System.arraycopy(tracker.ports, 0, ports, 0, trackerIndex);
+                  if (trackerIndex < totalQueues) {
+                    System.arraycopy(tracker.ports, trackerIndex + 1, ports, trackerIndex, tracker.ports.length - trackerIndex - 1);
                   }
+                  tracker.ports = ports;
+                  break;
                 }
-
-                /**
-                 * We are not going to receive begin window on this ever!
-                 */
-                expectingBeginWindow--;
-
-                /**
-                 * Since one of the operators we care about it gone, we should relook at our ports.
-                 * We need to make sure that the END_STREAM comes outside of the window.
-                 */
-                totalQueues--;
-
-                boolean break_activequeue = false;
-                if (totalQueues == 0) {
-                  alive = false;
-                  break_activequeue = true;
-                }
-                else if (activeQueues.isEmpty()) {
-                  assert (!inputs.isEmpty());
-                  processEndWindow(null);
-                  activeQueues.addAll(inputs.values());
-                  expectingBeginWindow = activeQueues.size();
-                  break_activequeue = true;
-                }
-
-                /**
-                 * also make sure that we update the reset tuple tracker if this stream had delivered any reset tuples.
-                 * Check all the reset buffers to see if current input port has already delivered reset tuple. If it has
-                 * then we are waiting for something else to deliver the reset tuple, so just clear current reservoir
-                 * from the list of tracked reservoirs. If the current input port has not delivered the reset tuple, and
-                 * it's the only one which has not, then we consider it delivered and release the reset tuple downstream.
-                 */
-                Tuple tuple = null;
-                for (trackerIterator = resetTupleTracker.iterator(); trackerIterator.hasNext(); ) {
-                  tracker = trackerIterator.next();
-
-                  trackerIndex = 0;
-                  while (trackerIndex < tracker.ports.length) {
-                    if (tracker.ports[trackerIndex] == activePort) {
-                      SweepableReservoir[] ports = new SweepableReservoir[totalQueues];
-                      System.arraycopy(tracker.ports, 0, ports, 0, trackerIndex);
-                      if (trackerIndex < totalQueues) {
-                        System.arraycopy(tracker.ports, trackerIndex + 1, ports, trackerIndex, tracker.ports.length - trackerIndex - 1);
-                      }
-                      tracker.ports = ports;
-                      break;
-                    }
-                    else if (tracker.ports[trackerIndex] == null) {
-                      if (trackerIndex == totalQueues) { /* totalQueues is already adjusted above */
-                        if (tuple == null || tuple.getBaseSeconds() < tracker.tuple.getBaseSeconds()) {
-                          tuple = tracker.tuple;
-                        }
-
-                        trackerIterator.remove();
-                      }
-                      break;
+                else if (tracker.ports[trackerIndex] == null) {
+                  if (trackerIndex == totalQueues) { /* totalQueues is already adjusted above */
+                    if (tuple == null || tuple.getBaseSeconds() < tracker.tuple.getBaseSeconds()) {
+                      tuple = tracker.tuple;
                     }
-                    else {
-                      tracker.ports = Arrays.copyOf(tracker.ports, totalQueues);
-                    }
-
-                    trackerIndex++;
-                  }
-                }
 
-                /*
-                 * Since we were waiting for a reset tuple on this stream, we should not any longer.
-                 */
-                if (tuple != null) {
-                  for (int s = sinks.length; s-- > 0; ) {
-                    sinks[s].put(tuple);
+                    trackerIterator.remove();
                   }
-                  controlTupleCount++;
+                  break;
                 }
-
-                if (break_activequeue) {
-                  break activequeue;
+                else {
+                  tracker.ports = Arrays.copyOf(tracker.ports, totalQueues);
                 }
-                break;
 
-              default:
-                throw new UnhandledException("Unrecognized Control Tuple", new IllegalArgumentException(t.toString()));
+                trackerIndex++;
+              }
             }
-          }
-        }
 
-        if (activeQueues.isEmpty() && alive) {
-          logger.error("Catastrophic Error: Invalid State - the operator blocked forever!");
-          System.exit(2);
-        }
-        else {
-          boolean need2sleep = true;
-          for (SweepableReservoir cb : activeQueues) {
-            if (cb.size() > 0) {
-              need2sleep = false;
-              break;
+            /*
+             * Since we were waiting for a reset tuple on this stream, we should not any longer.
+             */
+            if (tuple != null) {
+              for (int s = sinks.length; s-- > 0; ) {
+                sinks[s].put(tuple);
+              }
+              controlTupleCount++;
             }
-          }
 
-          if (need2sleep) {
-            if (handleIdleTime) {
-              ((IdleTimeHandler) operator).handleIdleTime();
-            }
-            else {
-              Thread.sleep(spinMillis);
+            if (break_activequeue) {
+              break activequeue;
             }
-          }
+            break;
+
+          default:
+            throw new UnhandledException("Unrecognized Control Tuple", new IllegalArgumentException(t.toString()));
         }
       }
-      while (alive);
-    }
-    catch (ShutdownException se) {
-      logger.debug("Shutdown requested by the operator when alive = {}.", alive);
-      alive = false;
     }
-    catch (Throwable cause) {
-      synchronized (this) {
-        if (alive) {
-          DTThrowable.rethrow(cause);
-        }
-      }
+  }
 
-      Throwable rootCause = cause;
-      while (rootCause != null) {
-        if (rootCause instanceof InterruptedException) {
-          break;
-        }
-        rootCause = rootCause.getCause();
-      }
+  /**
+   * @return true if none of the active queues has tuples to be processed
+   */
+  private boolean isQuiescent()
+  {
+    if (activeQueues.isEmpty()) {
+      logger.error("Catastrophic Error: Invalid State - the operator blocked forever!");
+      System.exit(2);
+    }
 
-      if (rootCause == null) {
-        DTThrowable.rethrow(cause);
-      }
-      else {
-        logger.debug("Ignoring InterruptedException after shutdown", cause);
+    for (SweepableReservoir cb : activeQueues) {
+      if (cb.size() > 0) {
+        return false;
       }
     }
+    return true;
+  }
 
+  /**
+   * Wrap up the window the node was in when it stopped running.
+   */
+  private void finishRun()
+  {
     if (insideWindow) {
       endWindowEmitTime = System.currentTimeMillis();
       operator.endWindow();
@@ -564,13 +615,16 @@ public class GenericNode extends Node<Operator>
         }
       }
 
+      /*
+       * this is the last report of the node, so the checkpoint still being written has to make it in.
+       */
+      completeCheckpoint(true);
       ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
       fixEndWindowDequeueTimesBeforeDeactivate();
       reportStats(stats, currentWindowId);
       stats.metrics = collectMetrics();
       handleRequests(currentWindowId);
     }
-
   }
 
   /**
@@ -594,17 +648,10 @@ public class GenericNode extends Node<Operator>
     for (Entry<String, SweepableReservoir> e : inputs.entrySet()) {
       SweepableReservoir ar = e.getValue();
       ContainerStats.OperatorStats.PortStats portStats = new ContainerStats.OperatorStats.PortStats(e.getKey());
-      portStats.queueSize = ar.size();
-      if(DATA_TUPLE_AWARE) {
-        if (ar instanceof CircularBuffer) {
-          Iterator iterator = ((CircularBuffer) ar).getFrozenIterator();
-          while (iterator.hasNext()) {
-            if (iterator.next() instanceof Tuple) {
-              portStats.queueSize--;
-            }
-          }
-        }
-      }
+      int size = ar.size();
+      portStats.controlQueueSize = Math.min(ar.getControlTupleCount(), size);
+      portStats.dataQueueSize = size - portStats.controlQueueSize;
+      portStats.queueSize = DATA_TUPLE_AWARE ? portStats.dataQueueSize : size;
       portStats.tupleCount = ar.getCount(true);
       portStats.endWindowTimestamp = endWindowDequeueTimes.get(e.getValue());
       ipstats.add(portStats);
@@ -16,6 +16,8 @@
 package com.datatorrent.stram.engine;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,9 +25,7 @@ import org.slf4j.LoggerFactory;
 import com.datatorrent.api.InputOperator;
 import com.datatorrent.api.Operator.IdleTimeHandler;
 import com.datatorrent.api.Operator.ProcessingMode;
-import com.datatorrent.api.Operator.ShutdownException;
 import com.datatorrent.api.Sink;
-import com.datatorrent.netlet.util.DTThrowable;
 
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.tuple.Tuple;
@@ -59,158 +59,213 @@ public class InputNode extends Node<InputOperator>
     }
   }
 
+  /*
+   * state of the processing loop shared by run and step.
+   */
+  private long spinMillis;
+  private boolean handleIdleTime;
+  private ReservoirSignal signal;
+  private boolean insideWindow;
+  private boolean doCheckpoint;
+
   @Override
   @SuppressWarnings(value = {"SleepWhileInLoop", "BroadCatchBlock", "TooBroadCatch"})
   public final void run()
   {
-    long spinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
-    final boolean handleIdleTime = operator instanceof IdleTimeHandler;
-
-    boolean insideWindow = applicationWindowCount != 0;
-    boolean doCheckpoint = false;
+    startRun(new ReservoirSignal(Thread.currentThread()));
 
     try {
       while (alive) {
-        Tuple t = controlTuples.sweep();
-        if (t == null) {
+        if (!process()) {
           if (insideWindow) {
-            int generatedTuples = 0;
-
-            for (Sink<Object> cs : sinks) {
-              generatedTuples -= cs.getCount(false);
-            }
-
-            operator.emitTuples();
-
-            for (Sink<Object> cs : sinks) {
-              generatedTuples += cs.getCount(false);
+            if (handleIdleTime) {
+              ((IdleTimeHandler)operator).handleIdleTime();
             }
-
-            if (generatedTuples == 0) {
-              if (handleIdleTime) {
-                ((IdleTimeHandler)operator).handleIdleTime();
-              }
-              else {
-                Thread.sleep(spinMillis);
-              }
+            else if (!signal.await(Collections.singletonList(controlTuples), spinMillis)) {
+              Thread.sleep(spinMillis);
             }
           }
-          else {
+          else if (!signal.await(Collections.singletonList(controlTuples), spinMillis)) {
             Thread.sleep(0);
           }
         }
-        else {
-          controlTuples.remove();
-          switch (t.getType()) {
-            case BEGIN_WINDOW:
-              for (int i = sinks.length; i-- > 0;) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
-              currentWindowId = t.getWindowId();
-              if (applicationWindowCount == 0) {
-                insideWindow = true;
-                operator.beginWindow(currentWindowId);
-              }
-              operator.emitTuples(); /* give at least one chance to emit the tuples */
-
-              break;
-
-            case END_WINDOW:
-              endWindowEmitTime = System.currentTimeMillis();
-              if (++applicationWindowCount == APPLICATION_WINDOW_COUNT) {
-                insideWindow = false;
-                operator.endWindow();
-                applicationWindowCount = 0;
-              }
-
-              for (int i = sinks.length; i-- > 0;) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
-
-              if (++checkpointWindowCount == CHECKPOINT_WINDOW_COUNT) {
-                checkpointWindowCount = 0;
-                if (doCheckpoint) {
-                  checkpoint(currentWindowId);
-                  doCheckpoint = false;
-                }
-                else if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
-                  checkpoint(currentWindowId);
-                }
-              }
-
-              ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
-              reportStats(stats, currentWindowId);
-              if(!insideWindow){
-                stats.metrics = collectMetrics();
-              }
-              handleRequests(currentWindowId);
-              break;
-
-            case CHECKPOINT:
-              if (checkpointWindowCount == 0 && PROCESSING_MODE != ProcessingMode.EXACTLY_ONCE) {
-                checkpoint(currentWindowId);
-              }
-              else {
-                doCheckpoint = true;
-              }
-              for (int i = sinks.length; i-- > 0;) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
-              break;
-
-            case END_STREAM:
-              if (deferredInputConnections.isEmpty()) {
-                for (int i = sinks.length; i-- > 0;) {
-                  sinks[i].put(t);
-                }
-                controlTupleCount++;
-                alive = false;
-              }
-              else {
-                controlTuples = deferredInputConnections.remove(0);
-              }
-              break;
-
-            default:
-              for (int i = sinks.length; i-- > 0;) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
-              break;
+      }
+    }
+    catch (Throwable cause) {
+      handleRunException(cause);
+    }
+
+    finishRun();
+  }
+
+  @Override
+  public void startSteps(ReservoirSignal signal)
+  {
+    startRun(signal);
+  }
+
+  @Override
+  @SuppressWarnings(value = {"BroadCatchBlock", "TooBroadCatch"})
+  public final long step(int budget)
+  {
+    try {
+      for (int i = budget; i-- > 0 && alive;) {
+        if (!process()) {
+          if (insideWindow && handleIdleTime) {
+            ((IdleTimeHandler)operator).handleIdleTime();
+            return STEP_BUSY;
+          }
+
+          List<SweepableReservoir> reservoirs = Collections.singletonList(controlTuples);
+          if (!signal.arm(reservoirs)) {
+            return spinMillis;
           }
+          if (ReservoirSignal.isIdle(reservoirs)) {
+            /* inside the window the operator is given another chance to emit tuples after the spin time */
+            return insideWindow ? spinMillis : STEP_IDLE;
+          }
+          signal.disarm();
         }
       }
     }
-    catch (ShutdownException se) {
-      logger.debug("Shutdown requested by the operator when alive = {}.", alive);
-      alive = false;
-    }
     catch (Throwable cause) {
-      synchronized (this) {
-        if (alive) {
-          DTThrowable.rethrow(cause);
+      handleRunException(cause);
+    }
+
+    if (alive) {
+      return STEP_BUSY;
+    }
+
+    finishRun();
+    return STEP_DONE;
+  }
+
+  private void startRun(ReservoirSignal signal)
+  {
+    spinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
+    handleIdleTime = operator instanceof IdleTimeHandler;
+    this.signal = signal;
+
+    insideWindow = applicationWindowCount != 0;
+    doCheckpoint = false;
+  }
+
+  /**
+   * Process the next control tuple, or let the operator emit tuples if there is none and the node is inside a window.
+   *
+   * @return false if there was no control tuple and the operator did not emit any tuple
+   */
+  private boolean process()
+  {
+    Tuple t = controlTuples.sweep();
+    if (t == null) {
+      if (insideWindow) {
+        int generatedTuples = 0;
+
+        for (Sink<Object> cs : sinks) {
+          generatedTuples -= cs.getCount(false);
         }
-      }
 
-      Throwable rootCause = cause;
-      while (rootCause != null) {
-        if (rootCause instanceof InterruptedException) {
-          break;
+        operator.emitTuples();
+
+        for (Sink<Object> cs : sinks) {
+          generatedTuples += cs.getCount(false);
         }
-        rootCause = rootCause.getCause();
-      }
 
-      if (rootCause == null) {
-        DTThrowable.rethrow(cause);
-      }
-      else {
-        logger.debug("Ignoring InterruptedException after shutdown", cause);
+        return generatedTuples != 0;
       }
+      return false;
+    }
+
+    controlTuples.remove();
+    switch (t.getType()) {
+      case BEGIN_WINDOW:
+        for (int i = sinks.length; i-- > 0;) {
+          sinks[i].put(t);
+        }
+        controlTupleCount++;
+        currentWindowId = t.getWindowId();
+        if (applicationWindowCount == 0) {
+          insideWindow = true;
+          operator.beginWindow(currentWindowId);
+        }
+        operator.emitTuples(); /* give at least one chance to emit the tuples */
+
+        break;
+
+      case END_WINDOW:
+        endWindowEmitTime = System.currentTimeMillis();
+        if (++applicationWindowCount == APPLICATION_WINDOW_COUNT) {
+          insideWindow = false;
+          operator.endWindow();
+          applicationWindowCount = 0;
+        }
+
+        for (int i = sinks.length; i-- > 0;) {
+          sinks[i].put(t);
+        }
+        controlTupleCount++;
+
+        if (++checkpointWindowCount == CHECKPOINT_WINDOW_COUNT) {
+          checkpointWindowCount = 0;
+          if (doCheckpoint) {
+            checkpoint(currentWindowId);
+            doCheckpoint = false;
+          }
+          else if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
+            checkpoint(currentWindowId);
+          }
+        }
+
+        ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
+        reportStats(stats, currentWindowId);
+        if(!insideWindow){
+          stats.metrics = collectMetrics();
+        }
+        handleRequests(currentWindowId);
+        break;
+
+      case CHECKPOINT:
+        if (checkpointWindowCount == 0 && PROCESSING_MODE != ProcessingMode.EXACTLY_ONCE) {
+          checkpoint(currentWindowId);
+        }
+        else {
+          doCheckpoint = true;
+        }
+        for (int i = sinks.length; i-- > 0;) {
+          sinks[i].put(t);
+        }
+        controlTupleCount++;
+        break;
+
+      case END_STREAM:
+        if (deferredInputConnections.isEmpty()) {
+          for (int i = sinks.length; i-- > 0;) {
+            sinks[i].put(t);
+          }
+          controlTupleCount++;
+          alive = false;
+        }
+        else {
+          controlTuples = deferredInputConnections.remove(0);
+        }
+        break;
+
+      default:
+        for (int i = sinks.length; i-- > 0;) {
+          sinks[i].put(t);
+        }
+        controlTupleCount++;
+        break;
     }
+    return true;
+  }
 
+  /**
+   * Wrap up the window the node was in when it stopped running.
+   */
+  private void finishRun()
+  {
     if (insideWindow) {
       endWindowEmitTime = System.currentTimeMillis();
       operator.endWindow();
@@ -224,6 +279,10 @@ public class InputNode extends Node<InputOperator>
         }
       }
 
+      /*
+       * this is the last report of the node, so the checkpoint still being written has to make it in.
+       */
+      completeCheckpoint(true);
       ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
       reportStats(stats, currentWindowId);
       stats.metrics = collectMetrics();
@@ -16,6 +16,7 @@
 package com.datatorrent.stram.engine;
 
 import com.datatorrent.stram.tuple.Tuple;
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.netlet.util.CircularBuffer;
 import java.util.HashMap;
@@ -70,17 +71,85 @@ public abstract class MuxReservoir
 
   public abstract Reservoir getMasterReservoir();
 
-  class SubReservoir extends CircularBuffer<Object> implements SweepableReservoir
+  /**
+   * Wake up the nodes waiting on the reservoirs, called after tuples are added to the master reservoir.
+   */
+  protected void raiseSignals()
+  {
+    for (SubReservoir r : reservoirs) {
+      ReservoirSignal rs = r.signal;
+      if (rs != null) {
+        rs.raise();
+      }
+    }
+  }
+
+  class SubReservoir extends CircularBuffer<Object> implements SignallingReservoir
   {
     int count;
     private Sink<Object> sink;
+    private BatchSink<Object> batchSink;
+    private final TupleBatch batch = new TupleBatch();
+    private volatile ReservoirSignal signal;
+    /*
+     * control tuples ever added to and removed from this reservoir, the difference being the ones queued.
+     */
+    private volatile int controlTuplesAdded;
+    private volatile int controlTuplesRemoved;
 
     SubReservoir(int capacity)
     {
       super(capacity);
     }
 
+    /*
+     * the tuples are moved from the master reservoir to all the reservoirs by whichever node sweeps first.
+     */
+    @Override
+    public boolean add(Object e)
+    {
+      if (e instanceof Tuple) {
+        controlTuplesAdded++;
+      }
+      super.add(e);
+      ReservoirSignal rs = signal;
+      if (rs != null && size() == 1) {
+        rs.raise();
+      }
+      return true;
+    }
+
+    @Override
+    public Object remove()
+    {
+      Object o = super.remove();
+      if (o instanceof Tuple) {
+        controlTuplesRemoved++;
+      }
+      return o;
+    }
+
+    @Override
+    public int getControlTupleCount()
+    {
+      return controlTuplesAdded - controlTuplesRemoved;
+    }
+
     @Override
+    public boolean setSignal(ReservoirSignal signal)
+    {
+      this.signal = signal;
+      return true;
+    }
+
+    @Override
+    public boolean isIdle()
+    {
+      return isEmpty() && getMasterReservoir().size() == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
     public Sink<Object> setSink(Sink<Object> sink)
     {
       try {
@@ -88,6 +157,7 @@ public abstract class MuxReservoir
       }
       finally {
         this.sink = sink;
+        batchSink = sink instanceof BatchSink ? (BatchSink<Object>)sink : null;
       }
     }
 
@@ -96,12 +166,21 @@ public abstract class MuxReservoir
     {
       final int size = size();
       if (size > 0) {
-        for (int i = 0; i < size; i++) {
-          if (peekUnsafe() instanceof Tuple) {
-            count += i;
+        if (batchSink == null) {
+          for (int i = 0; i < size; i++) {
+            if (peekUnsafe() instanceof Tuple) {
+              count += i;
+              return (Tuple)peekUnsafe();
+            }
+            sink.put(pollUnsafe());
+          }
+        }
+        else {
+          int drained = batch.drain(this, size, batchSink);
+          if (drained < size) {
+            count += drained;
             return (Tuple)peekUnsafe();
           }
-          sink.put(pollUnsafe());
         }
 
         count += size;
@@ -15,27 +15,17 @@
  */
 package com.datatorrent.stram.engine;
 
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.*;
 
-import org.apache.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.math.IntMath;
 
 import com.datatorrent.api.*;
@@ -46,6 +36,8 @@ import com.datatorrent.api.Operator.Unifier;
 import com.datatorrent.api.StatsListener.OperatorRequest;
 
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.common.util.NameableThreadFactory;
+import com.datatorrent.netlet.util.DTThrowable;
 import com.datatorrent.stram.api.Checkpoint;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
@@ -97,9 +89,21 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   protected int controlTupleCount;
   public final OperatorContext context;
   public final BlockingQueue<StatsListener.OperatorResponse> commandResponse;
-  private final List<Field> metricFields;
-  private final Map<String, Method> metricMethods;
+  private final AutoMetricCollector metricCollector;
   protected Stats.CheckpointStats checkpointStats;
+  /*
+   * state of the asynchronous checkpoint whose snapshot is being written by the checkpointWriter.
+   */
+  private ExecutorService checkpointWriter;
+  private Future<?> pendingWrite;
+  private Checkpoint pendingCheckpoint;
+  private Stats.CheckpointStats pendingCheckpointStats;
+  /*
+   * a node run by the NodeScheduler shares the workers with the other nodes, so its cpu time is accumulated around its
+   * steps instead of being read from the thread it happens to run on.
+   */
+  private boolean scheduled;
+  private long stepCpuTime;
 
   public Node(OPERATOR operator, OperatorContext context)
   {
@@ -115,28 +119,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     tmb = ManagementFactory.getThreadMXBean();
     commandResponse = new LinkedBlockingQueue<StatsListener.OperatorResponse>();
 
-    metricFields = Lists.newArrayList();
-    for (Field field : ReflectionUtils.getDeclaredFieldsIncludingInherited(operator.getClass())) {
-      if (field.isAnnotationPresent(AutoMetric.class)) {
-        metricFields.add(field);
-        field.setAccessible(true);
-      }
-    }
-
-    metricMethods = Maps.newHashMap();
-    try {
-      for (PropertyDescriptor pd : Introspector.getBeanInfo(operator.getClass()).getPropertyDescriptors()) {
-        Method readMethod = pd.getReadMethod();
-        if (readMethod != null) {
-          AutoMetric rfa = readMethod.getAnnotation(AutoMetric.class);
-          if (rfa != null) {
-            metricMethods.put(pd.getName(), readMethod);
-          }
-        }
-      }
-    } catch (IntrospectionException e) {
-      throw new RuntimeException("introspecting {}", e);
-    }
+    metricCollector = new AutoMetricCollector(operator);
   }
 
   public Operator getOperator()
@@ -174,6 +157,13 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
 
     operator.teardown();
+
+    if (checkpointWriter != null) {
+      /* the pending write, if any, is allowed to complete but it is no longer reported */
+      checkpointWriter.shutdown();
+      checkpointWriter = null;
+      pendingWrite = null;
+    }
   }
 
   public PortMappingDescriptor getPortMappingDescriptor()
@@ -298,6 +288,89 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
   }
 
+  /**
+   * Value returned by {@link #step(int)} once the node stopped running.
+   */
+  public static final long STEP_DONE = -1;
+  /**
+   * Value returned by {@link #step(int)} when the node has more tuples to process.
+   */
+  public static final long STEP_BUSY = 0;
+  /**
+   * Value returned by {@link #step(int)} when the node waits for the signal it armed to be raised.
+   */
+  public static final long STEP_IDLE = Long.MAX_VALUE;
+
+  /**
+   * Prepare the node to be run through {@link #step(int)} by the {@link NodeScheduler} instead of {@link #run()}.
+   *
+   * @param signal signal armed by the node when it runs out of tuples to process
+   */
+  public abstract void startSteps(ReservoirSignal signal);
+
+  /**
+   * Process the tuples available to the node without waiting for more. The node does what {@link #run()} does
+   * including the wrap up of the last window, but it returns instead of sleeping when it is idle.
+   *
+   * @param budget maximum number of times the node sweeps its input before it yields
+   * @return {@link #STEP_DONE}, {@link #STEP_BUSY}, {@link #STEP_IDLE} or the number of milliseconds after which the
+   * node has to be stepped again even if the signal is not raised.
+   */
+  public abstract long step(int budget);
+
+  /**
+   * Mark the node as run by the {@link NodeScheduler} rather than on a thread of its own.
+   */
+  void setScheduled()
+  {
+    scheduled = true;
+  }
+
+  /**
+   * Account the cpu time a worker of the {@link NodeScheduler} spent stepping the node.
+   *
+   * @param cpuTime cpu time of the step in nanoseconds
+   */
+  void addStepCpuTime(long cpuTime)
+  {
+    stepCpuTime += cpuTime;
+  }
+
+  /**
+   * Handle the exception which ended the processing loop of the node.
+   *
+   * @param cause exception thrown while the node was running
+   */
+  protected void handleRunException(Throwable cause)
+  {
+    if (cause instanceof Operator.ShutdownException) {
+      logger.debug("Shutdown requested by the operator when alive = {}.", alive);
+      alive = false;
+      return;
+    }
+
+    synchronized (this) {
+      if (alive) {
+        DTThrowable.rethrow(cause);
+      }
+    }
+
+    Throwable rootCause = cause;
+    while (rootCause != null) {
+      if (rootCause instanceof InterruptedException) {
+        break;
+      }
+      rootCause = rootCause.getCause();
+    }
+
+    if (rootCause == null) {
+      DTThrowable.rethrow(cause);
+    }
+    else {
+      logger.debug("Ignoring InterruptedException after shutdown", cause);
+    }
+  }
+
   @Override
   public String toString()
   {
@@ -361,27 +434,9 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     if (context.areMetricsListed() && (context.metricsToSend == null || context.metricsToSend.isEmpty())) {
       return null;
     }
-    Map<String, Object> metricValues = Maps.newHashMap();
-    try {
-      for (Field field : metricFields) {
-        if (context.metricsToSend != null && !context.metricsToSend.contains(field.getName())) {
-          continue;
-        }
-        metricValues.put(field.getName(), field.get(operator));
-      }
-
-      for (Map.Entry<String, Method> methodEntry : metricMethods.entrySet()) {
-        if (context.metricsToSend != null && !context.metricsToSend.contains(methodEntry.getKey())) {
-          continue;
-        }
-        metricValues.put(methodEntry.getKey(), methodEntry.getValue().invoke(operator));
-      }
-
-      context.clearMetrics();
-      return metricValues;
-    } catch (IllegalAccessException | InvocationTargetException iae) {
-      throw new RuntimeException(iae);
-    }
+    Map<String, Object> metricValues = metricCollector.collect(context.metricsToSend);
+    context.clearMetrics();
+    return metricValues;
   }
 
   protected void reportStats(ContainerStats.OperatorStats stats, long windowId)
@@ -395,10 +450,11 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
     controlTupleCount = 0;
 
-    long currentCpuTime = tmb.getCurrentThreadCpuTime();
+    long currentCpuTime = scheduled ? stepCpuTime : tmb.getCurrentThreadCpuTime();
     stats.cpuTimeUsed = currentCpuTime - lastSampleCpuTime;
     lastSampleCpuTime = currentCpuTime;
 
+    completeCheckpoint(false);
     if (checkpoint != null) {
       stats.checkpoint = checkpoint;
       stats.checkpointStats = checkpointStats;
@@ -435,6 +491,11 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   {
     if (!context.stateless) {
       StorageAgent ba = context.getValue(OperatorContext.STORAGE_AGENT);
+      if (ba instanceof StorageAgent.AsyncStorageAgent && context.getValue(OperatorContext.ASYNC_CHECKPOINT)) {
+        checkpointAsync((StorageAgent.AsyncStorageAgent)ba, windowId);
+        return;
+      }
+
       if (ba != null) {
         try {
           checkpointStats = new Stats.CheckpointStats();
@@ -462,6 +523,94 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
   }
 
+  /**
+   * Serialize the state of the operator on the operator thread and write it using the background writer.
+   * The checkpoint is reported by {@link #completeCheckpoint(boolean)} once the write completes. Only one snapshot is
+   * allowed to wait for the writer, so a new checkpoint waits for the previous one to complete.
+   */
+  private void checkpointAsync(final StorageAgent.AsyncStorageAgent agent, final long windowId)
+  {
+    completeCheckpoint(true);
+
+    final Stats.CheckpointStats stats = new Stats.CheckpointStats();
+    stats.checkpointStartTime = System.currentTimeMillis();
+    final byte[] snapshot;
+    try {
+      snapshot = agent.snapshot(operator, id, windowId);
+    }
+    catch (IOException ie) {
+      throw new RuntimeException(ie);
+    }
+    stats.snapshotTime = System.currentTimeMillis() - stats.checkpointStartTime;
+
+    if (checkpointWriter == null) {
+      checkpointWriter = Executors.newSingleThreadExecutor(new NameableThreadFactory("CheckpointWriter-" + id));
+    }
+    pendingCheckpoint = new Checkpoint(windowId, applicationWindowCount, checkpointWindowCount);
+    pendingCheckpointStats = stats;
+    pendingWrite = checkpointWriter.submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws IOException
+      {
+        long writeStartTime = System.currentTimeMillis();
+        try {
+          agent.write(snapshot, id, windowId);
+        }
+        catch (IOException ie) {
+          try {
+            logger.warn("Rolling back checkpoint {} for Operator {} due to the exception {}",
+              Codec.getStringWindowId(windowId), operator, ie);
+            agent.delete(id, windowId);
+          }
+          catch (IOException ex) {
+            logger.warn("Error while rolling back checkpoint", ex);
+          }
+          throw ie;
+        }
+
+        long endTime = System.currentTimeMillis();
+        stats.writeTime = endTime - writeStartTime;
+        stats.checkpointTime = endTime - stats.checkpointStartTime;
+        return null;
+      }
+
+    });
+  }
+
+  /**
+   * Make the asynchronous checkpoint available for reporting once its state is durable.
+   *
+   * @param wait whether to wait for the pending write to complete.
+   */
+  protected void completeCheckpoint(boolean wait)
+  {
+    if (pendingWrite == null || !(wait || pendingWrite.isDone())) {
+      return;
+    }
+
+    try {
+      pendingWrite.get();
+    }
+    catch (InterruptedException ex) {
+      throw new RuntimeException(ex);
+    }
+    catch (ExecutionException ex) {
+      throw new RuntimeException(ex.getCause());
+    }
+    finally {
+      pendingWrite = null;
+    }
+
+    checkpoint = pendingCheckpoint;
+    checkpointStats = pendingCheckpointStats;
+    pendingCheckpoint = null;
+    pendingCheckpointStats = null;
+    if (operator instanceof Operator.CheckpointListener) {
+      ((Operator.CheckpointListener) operator).checkpointed(checkpoint.windowId);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public static Node<?> retrieveNode(Object operator, OperatorContext context, OperatorDeployInfo.OperatorType type)
   {
@@ -530,7 +679,10 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
       CHECKPOINT_WINDOW_COUNT = 1;
     }
 
-    context.setThread(Thread.currentThread());
+    /*
+     * the worker which activates a scheduled node runs the other nodes too, so it is not recorded as the node thread.
+     */
+    context.setThread(scheduled ? null : Thread.currentThread());
     activateSinks();
     if (operator instanceof Operator.ActivationListener) {
       ((Operator.ActivationListener<OperatorContext>) operator).activate(context);
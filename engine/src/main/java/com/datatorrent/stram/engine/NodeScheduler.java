@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.common.util.NameableThreadFactory;
+
+/**
+ * Runs the nodes of a container as cooperative tasks on a fixed pool of workers instead of a thread per node.<p>
+ * <br>
+ * A task steps its node till the node runs out of tuples or the {@link #STEP_BUDGET} is used up, and then it yields
+ * the worker to the other tasks. An idle node arms its {@link ReservoirSignal} before it yields, and the task is
+ * resubmitted when one of the input reservoirs of the node receives tuples or when the spin time the node asked for
+ * expires. The workers run the tasks in the submission order, and a worker blocked on a full inline stream lets the
+ * pool start another worker, so the downstream node which drains the stream is not starved.
+ *
+ * @since 2.2.0
+ */
+public class NodeScheduler
+{
+  /**
+   * Number of times a node sweeps its input before it yields the worker to the other nodes.
+   */
+  public static final int STEP_BUDGET = 64;
+  private final ForkJoinPool pool;
+  private final ScheduledExecutorService timer;
+
+  /**
+   * @param name prefix of the names of the worker threads
+   * @param workers number of workers running the nodes
+   */
+  public NodeScheduler(final String name, int workers)
+  {
+    pool = new ForkJoinPool(workers, new ForkJoinWorkerThreadFactory()
+    {
+      @Override
+      public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+      {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName(name + "-" + thread.getPoolIndex());
+        return thread;
+      }
+
+    }, null, true);
+    timer = Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory(name + "-Timer", true));
+  }
+
+  /**
+   * Start running the task on the workers.
+   *
+   * @param task task to run
+   */
+  public void schedule(final Task task)
+  {
+    task.node.setScheduled();
+    task.scheduler = this;
+    task.signal = new ReservoirSignal(null)
+    {
+      @Override
+      protected void wakeUp()
+      {
+        task.wakeUp();
+      }
+
+    };
+    task.wakeUp();
+  }
+
+  /**
+   * Stop the workers, the tasks which did not finish yet are abandoned.
+   */
+  public void shutdown()
+  {
+    timer.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  public int getWorkerCount()
+  {
+    return pool.getParallelism();
+  }
+
+  /**
+   * Node run by the scheduler along with the setup before its first step and the teardown after its last one.
+   */
+  public abstract static class Task implements Runnable
+  {
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int RUNNING = 2;
+    private static final int RERUN = 3;
+    private static final int FINISHED = 4;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    protected final Node<?> node;
+    private Node<?>[] chainedNodes = new Node<?>[0];
+    private NodeScheduler scheduler;
+    private ReservoirSignal signal;
+    private ScheduledFuture<?> timeout;
+    private boolean started;
+    private final Runnable timeoutCommand = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        wakeUp();
+      }
+
+    };
+
+    protected Task(Node<?> node)
+    {
+      this.node = node;
+    }
+
+    /**
+     * Add a thread local downstream node of the node, which processes its tuples within the steps of the node.
+     * The cpu time of each step is split evenly across the node and the chained nodes.
+     *
+     * @param chainedNode node processing the tuples of the node inline
+     */
+    public void chain(Node<?> chainedNode)
+    {
+      chainedNode.setScheduled();
+      Node<?>[] nodes = Arrays.copyOf(chainedNodes, chainedNodes.length + 1);
+      nodes[chainedNodes.length] = chainedNode;
+      chainedNodes = nodes;
+    }
+
+    /**
+     * Called on a worker before the first step of the node.
+     *
+     * @throws Exception if the node could not be set up, in which case it is not stepped
+     */
+    protected abstract void setup() throws Exception;
+
+    /**
+     * Called on a worker after the last step of the node.
+     *
+     * @param cause the cause of the failure if the node failed, null if it stopped running
+     */
+    protected abstract void teardown(Throwable cause);
+
+    /**
+     * Submit the task to the workers unless it is already submitted, a task woken up while it is running is submitted
+     * again once the running step ends.
+     */
+    public void wakeUp()
+    {
+      while (true) {
+        switch (state.get()) {
+          case IDLE:
+            if (state.compareAndSet(IDLE, SCHEDULED)) {
+              submit();
+              return;
+            }
+            break;
+
+          case RUNNING:
+            if (state.compareAndSet(RUNNING, RERUN)) {
+              return;
+            }
+            break;
+
+          default:
+            return;
+        }
+      }
+    }
+
+    @Override
+    @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
+    public final void run()
+    {
+      state.set(RUNNING);
+      if (timeout != null) {
+        timeout.cancel(false);
+        timeout = null;
+      }
+
+      long result;
+      long cpuTime = node.tmb.getCurrentThreadCpuTime();
+      try {
+        if (!started) {
+          started = true;
+          setup();
+          node.startSteps(signal);
+        }
+        result = node.step(STEP_BUDGET);
+      }
+      catch (Throwable cause) {
+        finish(cause);
+        return;
+      }
+      finally {
+        cpuTime = node.tmb.getCurrentThreadCpuTime() - cpuTime;
+        long share = cpuTime / (chainedNodes.length + 1);
+        for (Node<?> chainedNode : chainedNodes) {
+          chainedNode.addStepCpuTime(share);
+        }
+        node.addStepCpuTime(cpuTime - share * chainedNodes.length);
+      }
+
+      if (result == Node.STEP_DONE) {
+        finish(null);
+      }
+      else if (result == Node.STEP_BUSY) {
+        resubmit();
+      }
+      else {
+        if (result != Node.STEP_IDLE) {
+          timeout = scheduler.timer.schedule(timeoutCommand, result, TimeUnit.MILLISECONDS);
+        }
+
+        /* the signal was raised while the node was running, the tuples it announced may not have been processed */
+        if (!state.compareAndSet(RUNNING, IDLE)) {
+          resubmit();
+        }
+      }
+    }
+
+    private void resubmit()
+    {
+      state.set(SCHEDULED);
+      submit();
+    }
+
+    private void submit()
+    {
+      try {
+        scheduler.pool.execute(this);
+      }
+      catch (RejectedExecutionException ex) {
+        logger.warn("Abandoning node {} as the scheduler is shut down.", node, ex);
+        state.set(FINISHED);
+        finished.countDown();
+      }
+    }
+
+    private void finish(Throwable cause)
+    {
+      try {
+        teardown(cause);
+      }
+      finally {
+        state.set(FINISHED);
+        finished.countDown();
+      }
+    }
+
+    public boolean isFinished()
+    {
+      return finished.getCount() == 0;
+    }
+
+    /**
+     * Wait for the task to finish.
+     *
+     * @param millis maximum time to wait
+     * @return true if the task finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean join(long millis) throws InterruptedException
+    {
+      return finished.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Task{" + "node=" + node + ", state=" + state + '}';
+    }
+
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(NodeScheduler.class);
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parks the thread of a node while its input reservoirs are idle.<p>
+ * <br>
+ * The {@link SignallingReservoir}s raise the signal when they receive tuples, which unparks the thread right away,
+ * so the node does not add the spin time to the latency of a quiet stream and does not spin either. The nodes run by
+ * the {@link NodeScheduler} only arm the signal, and the scheduler overrides {@link #wakeUp()} to resume them.
+ *
+ * @since 2.2.0
+ */
+public class ReservoirSignal
+{
+  private final Thread thread;
+  private volatile boolean waiting;
+
+  /**
+   * @param thread thread consuming the reservoirs
+   */
+  public ReservoirSignal(Thread thread)
+  {
+    this.thread = thread;
+  }
+
+  /**
+   * Wake the consumer up if it is waiting for tuples, called by the producer after it added tuples to an empty reservoir.
+   */
+  public void raise()
+  {
+    if (waiting) {
+      waiting = false;
+      wakeUp();
+    }
+  }
+
+  /**
+   * Resume the consumer of the reservoirs once the armed signal is raised.
+   */
+  protected void wakeUp()
+  {
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Register the signal with the reservoirs, so that it is raised when any of them receives tuples.
+   *
+   * @param reservoirs reservoirs to wait on
+   * @return false if one of the reservoirs can not signal, in which case the caller has to fall back to polling
+   */
+  public boolean arm(Collection<? extends SweepableReservoir> reservoirs)
+  {
+    /* the reservoirs are checked after the flag is set, so a tuple added after the check finds the consumer waiting */
+    waiting = true;
+    for (SweepableReservoir reservoir : reservoirs) {
+      if (!(reservoir instanceof SignallingReservoir) || !((SignallingReservoir)reservoir).setSignal(this)) {
+        waiting = false;
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stop waiting for the signal armed with {@link #arm(Collection)}.
+   */
+  public void disarm()
+  {
+    waiting = false;
+  }
+
+  /**
+   * @param reservoirs reservoirs the signal is armed with
+   * @return true if none of the reservoirs has tuples to be consumed
+   */
+  public static boolean isIdle(Collection<? extends SweepableReservoir> reservoirs)
+  {
+    for (SweepableReservoir reservoir : reservoirs) {
+      if (!((SignallingReservoir)reservoir).isIdle()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Park the calling thread till one of the reservoirs receives tuples or the timeout expires.
+   *
+   * @param reservoirs reservoirs to wait on
+   * @param timeoutMillis maximum time to park
+   * @return false if one of the reservoirs can not signal, in which case the caller has to fall back to polling
+   * @throws InterruptedException if the thread is interrupted while parked
+   */
+  public boolean await(Collection<? extends SweepableReservoir> reservoirs, long timeoutMillis) throws InterruptedException
+  {
+    if (!arm(reservoirs)) {
+      return false;
+    }
+
+    try {
+      if (isIdle(reservoirs)) {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+      return true;
+    }
+    finally {
+      waiting = false;
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "ReservoirSignal{" + "thread=" + (thread == null ? null : thread.getName()) + ", waiting=" + waiting + '}';
+  }
+
+}
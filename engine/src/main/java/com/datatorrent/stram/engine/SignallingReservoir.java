@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+/**
+ * A reservoir which wakes up the node consuming it when tuples are added to it.<p>
+ * <br>
+ * When all of its input reservoirs are idle, a node parks its thread on a {@link ReservoirSignal} instead of
+ * sleeping for the spin time, and the reservoir raises the signal when it turns from empty to non-empty.
+ *
+ * @since 2.2.0
+ */
+public interface SignallingReservoir extends SweepableReservoir
+{
+  /**
+   * Set the signal raised when tuples are added to this reservoir while it is empty.
+   *
+   * @param signal signal of the node consuming this reservoir
+   * @return true if the signal will be raised, false if the reservoir has to be polled
+   */
+  public boolean setSignal(ReservoirSignal signal);
+
+  /**
+   * Check whether there are tuples in the reservoir or on their way to it.
+   *
+   * @return true if a sweep would not find any tuple
+   */
+  public boolean isIdle();
+
+}
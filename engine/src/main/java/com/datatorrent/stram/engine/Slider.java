@@ -29,8 +29,8 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
   private List<List<Object>> cache;
   private transient List<Object> currentList;
   private final Unifier<Object> unifier;
-  private final int numberOfBuckets;
-  private final int numberOfSlideBuckets;
+  protected final int numberOfBuckets;
+  protected final int numberOfSlideBuckets;
   private transient int spinMillis;
   public final transient DefaultOutputPort<Object> outputPort = new DefaultOutputPort<Object>();
   private transient int cacheSize;
@@ -40,7 +40,7 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
     return unifier;
   }
 
-  private Slider()
+  protected Slider()
   {
     unifier = null;
     numberOfBuckets = -1;
@@ -48,9 +48,17 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
   }
 
   public Slider(Unifier<Object> uniOperator, int buckets, int numberOfSlideBuckets)
+  {
+    this(uniOperator, buckets, numberOfSlideBuckets, new LinkedList<List<Object>>());
+  }
+
+  /**
+   * @param cache tuples of the buckets in the sliding window, null for subclasses which keep the buckets themselves
+   */
+  protected Slider(Unifier<Object> uniOperator, int buckets, int numberOfSlideBuckets, List<List<Object>> cache)
   {
     unifier = uniOperator;
-    cache = new LinkedList<List<Object>>();
+    this.cache = cache;
     this.numberOfBuckets = buckets;
     this.numberOfSlideBuckets = numberOfSlideBuckets;
   }
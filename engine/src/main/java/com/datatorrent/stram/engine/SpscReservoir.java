@@ -0,0 +1,318 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import com.datatorrent.api.BatchSink;
+import com.datatorrent.api.Sink;
+
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Reservoir for exactly one producer thread and one consumer thread. It is backed by a ring buffer whose producer and
+ * consumer indices are padded onto cache lines of their own, so that the two threads do not invalidate each other's
+ * cache line with every tuple as they do with the indices of a {@link DefaultReservoir}.<p>
+ * <br>
+ * The producer publishes its index once per {@link #offer(List, int)} batch and the consumer drains the reservoir in
+ * chunks, handing back the consumed slots to the producer once per chunk.<br>
+ *
+ * @since 2.2.0
+ */
+public class SpscReservoir implements SignallingReservoir
+{
+  /**
+   * time the producer waits before it retries to add a tuple to the full reservoir.
+   */
+  protected static final long BLOCKED_PUT_NANOS = 100000;
+  private static final AtomicLongFieldUpdater<Index> INDEX = AtomicLongFieldUpdater.newUpdater(Index.class, "value");
+  private final Object[] buffer;
+  private final int mask;
+  private final int chunk;
+  /*
+   * the producer owns the index of the next slot to fill, the consumer the index of the next slot to drain.
+   */
+  private final Index producer = new Index();
+  private final Index consumer = new Index();
+  private final TupleBatch batch = new TupleBatch();
+  private Sink<Object> sink;
+  private BatchSink<Object> batchSink;
+  private String id;
+  private int count;
+  private volatile ReservoirSignal signal;
+  /*
+   * control tuples ever added to and removed from this reservoir, the difference being the ones queued.
+   */
+  private volatile int controlTuplesAdded;
+  private volatile int controlTuplesRemoved;
+
+  public SpscReservoir(String id, int capacity)
+  {
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    buffer = new Object[size];
+    mask = size - 1;
+    chunk = Math.max(size >> 2, 1);
+    this.id = id;
+  }
+
+  /**
+   * Add the tuple to the reservoir if there is space for it. Called only by the producer.
+   *
+   * @param e tuple
+   * @return true if the tuple was added, false if the reservoir is full
+   */
+  public boolean offer(Object e)
+  {
+    final long tail = producer.value;
+    if (tail - producer.cache == buffer.length && tail - (producer.cache = consumer.value) == buffer.length) {
+      return false;
+    }
+
+    if (e instanceof Tuple) {
+      controlTuplesAdded++;
+    }
+    buffer[(int)tail & mask] = e;
+    publish(tail + 1);
+    return true;
+  }
+
+  /**
+   * Add as many tuples of the list as there is space for, starting at the offset, and make them visible to the consumer
+   * at once. Called only by the producer.
+   *
+   * @param tuples list of tuples
+   * @param offset index of the first tuple in the list to add
+   * @return number of tuples added
+   */
+  public int offer(List<?> tuples, int offset)
+  {
+    final long tail = producer.value;
+    int n = tuples.size() - offset;
+    if (n <= 0) {
+      return 0;
+    }
+
+    if (tail - producer.cache > buffer.length - n) {
+      producer.cache = consumer.value;
+      n = Math.min(n, buffer.length - (int)(tail - producer.cache));
+      if (n == 0) {
+        return 0;
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      Object e = tuples.get(offset + i);
+      if (e instanceof Tuple) {
+        controlTuplesAdded++;
+      }
+      buffer[(int)(tail + i) & mask] = e;
+    }
+    publish(tail + n);
+    return n;
+  }
+
+  /**
+   * Add the tuple to the reservoir, waiting for space if the reservoir is full. Called only by the producer.
+   *
+   * @param e tuple
+   * @throws InterruptedException if the producer is interrupted while waiting
+   */
+  public void put(Object e) throws InterruptedException
+  {
+    while (!offer(e)) {
+      LockSupport.parkNanos(this, BLOCKED_PUT_NANOS);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  private void publish(long tail)
+  {
+    producer.value = tail;
+    ReservoirSignal rs = signal;
+    if (rs != null) {
+      rs.raise();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Sink<Object> setSink(Sink<Object> sink)
+  {
+    try {
+      return this.sink;
+    }
+    finally {
+      this.sink = sink;
+      batchSink = sink instanceof BatchSink ? (BatchSink<Object>)sink : null;
+    }
+  }
+
+  @Override
+  public Tuple sweep()
+  {
+    final long start = consumer.value;
+    final long tail = consumer.cache = producer.value;
+    long head = start;
+    Tuple control = null;
+    while (control == null && head < tail) {
+      final long end = Math.min(tail, head + chunk);
+      if (batchSink == null) {
+        for (; head < end; head++) {
+          final int i = (int)head & mask;
+          if (buffer[i] instanceof Tuple) {
+            control = (Tuple)buffer[i];
+            break;
+          }
+          sink.put(buffer[i]);
+          buffer[i] = null;
+        }
+        INDEX.lazySet(consumer, head);
+      }
+      else {
+        for (; head < end; head++) {
+          final int i = (int)head & mask;
+          if (buffer[i] instanceof Tuple) {
+            control = (Tuple)buffer[i];
+            break;
+          }
+          batch.add(buffer[i]);
+          buffer[i] = null;
+        }
+        /* the slots are free as soon as the tuples are in the batch */
+        INDEX.lazySet(consumer, head);
+        if (!batch.isEmpty()) {
+          try {
+            batchSink.putAll(batch);
+          }
+          finally {
+            batch.clear();
+          }
+        }
+      }
+    }
+
+    count += (int)(head - start);
+    return control;
+  }
+
+  @Override
+  public Object remove()
+  {
+    final long head = consumer.value;
+    if (head == consumer.cache && head == (consumer.cache = producer.value)) {
+      throw new IllegalStateException("Collection is empty");
+    }
+
+    final int i = (int)head & mask;
+    Object o = buffer[i];
+    buffer[i] = null;
+    INDEX.lazySet(consumer, head + 1);
+    if (o instanceof Tuple) {
+      controlTuplesRemoved++;
+    }
+    return o;
+  }
+
+  @Override
+  public int size()
+  {
+    final long head = consumer.value;
+    return (int)Math.min(producer.value - head, buffer.length);
+  }
+
+  /**
+   * @return the number of tuples the reservoir can hold
+   */
+  public int capacity()
+  {
+    return buffer.length;
+  }
+
+  @Override
+  public int getControlTupleCount()
+  {
+    return controlTuplesAdded - controlTuplesRemoved;
+  }
+
+  @Override
+  public boolean setSignal(ReservoirSignal signal)
+  {
+    this.signal = signal;
+    return true;
+  }
+
+  @Override
+  public boolean isIdle()
+  {
+    return consumer.value == producer.value;
+  }
+
+  @Override
+  public int getCount(boolean reset)
+  {
+    try {
+      return count;
+    }
+    finally {
+      if (reset) {
+        count = 0;
+      }
+    }
+  }
+
+  /**
+   * @return the id
+   */
+  public String getId()
+  {
+    return id;
+  }
+
+  /**
+   * @param id the id to set
+   */
+  public void setId(String id)
+  {
+    this.id = id;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "SpscReservoir{" + "sink=" + sink + ", id=" + id + ", count=" + count + '}';
+  }
+
+  /**
+   * Index owned by one side of the reservoir along with the last index of the other side it saw. The padding keeps it
+   * off the cache lines of the other side's index.
+   */
+  @SuppressWarnings("unused")
+  static final class Index
+  {
+    long p0, p1, p2, p3, p4, p5, p6;
+    volatile long value;
+    long cache;
+    long p7, p8, p9, p10, p11, p12, p13;
+  }
+
+}
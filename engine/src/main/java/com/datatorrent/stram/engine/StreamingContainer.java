@@ -58,10 +58,10 @@ import com.datatorrent.api.annotation.Stateless;
 
 import com.datatorrent.bufferserver.server.Server;
 import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.SegmentedDiskStorage;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.common.util.ScheduledThreadPoolExecutor;
 import com.datatorrent.netlet.DefaultEventLoop;
-import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.ComponentContextPair;
 import com.datatorrent.stram.RecoverableRpcProxy;
 import com.datatorrent.stram.StramUtils.YarnContainerMain;
@@ -116,12 +116,21 @@ public class StreamingContainer extends YarnContainerMain
   private com.datatorrent.bufferserver.server.Server bufferServer;
   private int checkpointWindowCount;
   private boolean fastPublisherSubscriber;
+  private HeartbeatStatsDelta.Encoder statsEncoder;
   private StreamingContainerContext containerContext;
   private List<StramToNodeRequest> nodeRequests;
   private final HashMap<String, Object> singletons;
   private final MBassador<ContainerEvent> eventBus; // event bus for publishing container events
   HashSet<Component<ContainerContext>> components;
   private RequestFactory requestFactory;
+  /**
+   * scheduler running the nodes when the container is not configured to run each node on a thread of its own.
+   */
+  private NodeScheduler scheduler;
+  /**
+   * tasks running the nodes on the scheduler, the nodes in an OiO group share the task of the owning node.
+   */
+  private final Map<Integer, NodeScheduler.Task> tasks = new ConcurrentHashMap<Integer, NodeScheduler.Task>();
 
   static {
     try {
@@ -160,10 +169,19 @@ public class StreamingContainer extends YarnContainerMain
     checkpointWindowCount = ctx.getValue(Context.DAGContext.CHECKPOINT_WINDOW_COUNT);
 
     fastPublisherSubscriber = ctx.getValue(LogicalPlan.FAST_PUBLISHER_SUBSCRIBER);
+    if (ctx.getValue(LogicalPlan.HEARTBEAT_STATS_DELTA)) {
+      statsEncoder = new HeartbeatStatsDelta.Encoder();
+    }
 
     Map<Class<?>, Class<? extends StringCodec<?>>> codecs = ctx.getValue(Context.DAGContext.STRING_CODECS);
     StringCodecs.loadConverters(codecs);
 
+    int schedulerThreads = ctx.getValue(Context.DAGContext.OPERATOR_SCHEDULER_THREADS);
+    if (schedulerThreads != 0) {
+      scheduler = new NodeScheduler("NodeScheduler", schedulerThreads < 0 ? Runtime.getRuntime().availableProcessors() : schedulerThreads);
+      logger.debug("running operators on {} workers", scheduler.getWorkerCount());
+    }
+
     try {
       if (ctx.deployBufferServer) {
         eventloop.start();
@@ -184,10 +202,16 @@ public class StreamingContainer extends YarnContainerMain
           blockCount = bufferServerRAM / blocksize;
         }
         // start buffer server, if it was not set externally
-        bufferServer = new Server(0, blocksize * 1024 * 1024, blockCount);
+        bufferServer = new Server(0, blocksize * 1024 * 1024, blockCount, ctx.getValue(Context.DAGContext.BUFFER_SERVER_EVENT_LOOP_COUNT));
         bufferServer.setAuthToken(ctx.getValue(StreamingContainerContext.BUFFER_SERVER_TOKEN));
         if (ctx.getValue(Context.DAGContext.BUFFER_SPOOLING)) {
-          bufferServer.setSpoolStorage(new DiskStorage());
+          int segmentSize = ctx.getValue(Context.DAGContext.BUFFER_SPOOLING_SEGMENT_SIZE_MB);
+          if (segmentSize > 0) {
+            bufferServer.setSpoolStorage(new SegmentedDiskStorage(System.getProperty("java.io.tmpdir"), SegmentedDiskStorage.getSegmentSize(segmentSize), SegmentedDiskStorage.DEFAULT_MAX_FREE_SEGMENTS));
+          }
+          else {
+            bufferServer.setSpoolStorage(new DiskStorage());
+          }
         }
         SocketAddress bindAddr = bufferServer.run(eventloop);
         logger.debug("Buffer server started: {}", bindAddr);
@@ -305,28 +329,24 @@ public class StreamingContainer extends YarnContainerMain
 
   public synchronized void deactivate()
   {
-    ArrayList<Thread> activeThreads = new ArrayList<Thread>();
+    ArrayList<Node<?>> activeNodes = new ArrayList<Node<?>>();
     ArrayList<Integer> activeOperators = new ArrayList<Integer>();
 
     for (Map.Entry<Integer, Node<?>> e : nodes.entrySet()) {
-      Thread t = e.getValue().context.getThread();
-      if (t == null || !t.isAlive()) {
+      if (!isRunning(e.getValue())) {
         disconnectNode(e.getKey());
       }
       else {
-        activeThreads.add(t);
+        activeNodes.add(e.getValue());
         activeOperators.add(e.getKey());
-        e.getValue().shutdown();
+        shutdownNode(e.getValue());
       }
     }
 
     try {
       Iterator<Integer> iterator = activeOperators.iterator();
-      for (Thread t : activeThreads) {
-        t.join(1000);
-        if (!t.getState().equals(State.TERMINATED)) {
-          t.interrupt();
-        }
+      for (Node<?> node : activeNodes) {
+        awaitNode(node, 1000);
         disconnectNode(iterator.next());
       }
     }
@@ -513,27 +533,24 @@ public class StreamingContainer extends YarnContainerMain
       }
     }
 
-    ArrayList<Thread> joinList = new ArrayList<Thread>();
+    ArrayList<Node<?>> joinList = new ArrayList<Node<?>>();
     ArrayList<Integer> discoList = new ArrayList<Integer>();
     for (Integer operatorId : nodeList) {
-      Thread t = nodes.get(operatorId).context.getThread();
-      if (t == null || !t.isAlive()) {
+      Node<?> node = nodes.get(operatorId);
+      if (!isRunning(node)) {
         disconnectNode(operatorId);
       }
       else {
-        joinList.add(t);
+        joinList.add(node);
         discoList.add(operatorId);
-        nodes.get(operatorId).shutdown();
+        shutdownNode(node);
       }
     }
 
     try {
       Iterator<Integer> iterator = discoList.iterator();
-      for (Thread t : joinList) {
-        t.join(1000);
-        if (!t.getState().equals(State.TERMINATED)) {
-          t.interrupt();
-        }
+      for (Node<?> node : joinList) {
+        awaitNode(node, 1000);
         disconnectNode(iterator.next());
       }
       logger.info("Undeploy complete.");
@@ -544,6 +561,63 @@ public class StreamingContainer extends YarnContainerMain
 
     for (Integer operatorId : nodeList) {
       nodes.remove(operatorId);
+      tasks.remove(operatorId);
+    }
+  }
+
+  /**
+   * @param node node to check
+   * @return true if the node was activated and did not stop running yet
+   */
+  private boolean isRunning(Node<?> node)
+  {
+    if (scheduler == null) {
+      Thread t = node.context.getThread();
+      return t != null && t.isAlive();
+    }
+
+    NodeScheduler.Task task = tasks.get(node.getId());
+    return task != null && !task.isFinished();
+  }
+
+  /**
+   * @param node node to check
+   * @return true if the node was activated and stopped running
+   */
+  private boolean isTerminated(Node<?> node)
+  {
+    if (scheduler == null) {
+      Thread t = node.context.getThread();
+      return t != null && t.getState() == Thread.State.TERMINATED;
+    }
+
+    NodeScheduler.Task task = tasks.get(node.getId());
+    return task != null && task.isFinished();
+  }
+
+  private void shutdownNode(Node<?> node)
+  {
+    node.shutdown();
+    if (scheduler != null) {
+      /* an idle node has to be stepped to notice that it is no longer alive */
+      tasks.get(node.getId()).wakeUp();
+    }
+  }
+
+  /**
+   * Wait for the node to stop running, the thread of a node which does not stop in time is interrupted.
+   */
+  private void awaitNode(Node<?> node, long millis) throws InterruptedException
+  {
+    if (scheduler == null) {
+      Thread t = node.context.getThread();
+      t.join(millis);
+      if (!t.getState().equals(State.TERMINATED)) {
+        t.interrupt();
+      }
+    }
+    else if (!tasks.get(node.getId()).join(millis)) {
+      logger.warn("Node {} did not stop running in {} ms.", node, millis);
     }
   }
 
@@ -558,6 +632,10 @@ public class StreamingContainer extends YarnContainerMain
     eventBus.shutdown();
 
     nodes.clear();
+    tasks.clear();
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
 
     HashSet<WindowGenerator> gens = new HashSet<WindowGenerator>();
     gens.addAll(generators.values());
@@ -648,7 +726,7 @@ public class StreamingContainer extends YarnContainerMain
           OperatorContext context = e.getValue().context;
           context.drainStats(hb.getOperatorStatsContainer());
 
-          if (context.getThread() == null || context.getThread().getState() != Thread.State.TERMINATED) {
+          if (!isTerminated(e.getValue())) {
             hb.setState(DeployState.ACTIVE);
           }
           else if (failedNodes.contains(hb.nodeId)) {
@@ -668,12 +746,16 @@ public class StreamingContainer extends YarnContainerMain
          */
         eventBus.publish(new ContainerStatsEvent(stats));
 
-        msg.setContainerStats(stats);
-
         // heartbeat call and follow-up processing
         //logger.debug("Sending heartbeat for {} operators.", msg.getContainerStats().size());
         msg.sentTms = System.currentTimeMillis();
-        rsp = umbilical.processHeartbeat(msg);
+        if (statsEncoder == null) {
+          msg.setContainerStats(stats);
+          rsp = umbilical.processHeartbeat(msg);
+        }
+        else {
+          rsp = statsEncoder.send(umbilical, msg, stats);
+        }
         processHeartbeatResponse(rsp);
         if (rsp.hasPendingRequests) {
           logger.info("Waiting for pending request.");
@@ -714,8 +796,7 @@ public class StreamingContainer extends YarnContainerMain
         continue;
       }
 
-      Thread thread = node.context.getThread();
-      if (thread == null || !thread.isAlive()) {
+      if (!isRunning(node)) {
         if (flagInvalid) {
           logger.warn("Received request with invalid operator id {} ({})", req.getOperatorId(), req);
           req.setDeleted(true);
@@ -745,8 +826,7 @@ public class StreamingContainer extends YarnContainerMain
       lastCommittedWindowId = rsp.committedWindowId;
       OperatorRequest nr = null;
       for (Entry<Integer, Node<?>> e : nodes.entrySet()) {
-        final Thread thread = e.getValue().context.getThread();
-        if (thread == null || !thread.isAlive()) {
+        if (!isRunning(e.getValue())) {
           continue;
         }
 
@@ -1106,6 +1186,7 @@ public class StreamingContainer extends YarnContainerMain
             context.setPortId(nidi.portName);
             context.put(StreamContext.CODEC, streamCodec);
             context.put(StreamContext.EVENT_LOOP, eventloop);
+            context.put(PortContext.ASYNC_DECODING, getValue(PortContext.ASYNC_DECODING, nidi, ndi));
             context.setPartitions(nidi.partitionMask, nidi.partitionKeys);
             //context.setSourceId(sourceIdentifier);
             context.setSourceId(connIdentifier);
@@ -1139,7 +1220,12 @@ public class StreamingContainer extends YarnContainerMain
                   queueCapacity = outputQueueCapacity;
                 }
 
-                stream = new InlineStream(queueCapacity);
+                if (getValue(PortContext.RESERVOIR_TYPE, nidi, ndi) == PortContext.ReservoirType.SPSC) {
+                  stream = new SpscInlineStream(queueCapacity);
+                }
+                else {
+                  stream = new InlineStream(queueCapacity);
+                }
                 if (checkpoint.windowId >= 0) {
                   node.connectInputPort(nidi.portName, new WindowIdActivatedReservoir(sinkIdentifier, (SweepableReservoir) stream, checkpoint.windowId));
                 }
@@ -1184,7 +1270,7 @@ public class StreamingContainer extends YarnContainerMain
                * generally speaking we do not have partitions on the inline streams so the control should not
                * come here but if it comes, then we are ready to handle it using the partition aware streams.
                */
-              PartitionAwareSink<Object> pas = new PartitionAwareSink<Object>(streamCodec == null ? nonSerializingStreamCodec : (StreamCodec<Object>) streamCodec, nidi.partitionKeys, nidi.partitionMask, stream);
+              PartitionAwareSink<Object> pas = new PartitionAwareSink<Object>((StreamCodec<Object>) streamCodec, nidi.partitionKeys, nidi.partitionMask, stream);
               ((Stream.MultiSinkCapableStream) pair.component).setSink(sinkIdentifier, pas);
             }
 
@@ -1334,103 +1420,66 @@ public class StreamingContainer extends YarnContainerMain
       }
 
       final Node<?> node = nodes.get(ndi.id);
-      new Thread(Integer.toString(ndi.id).concat("/").concat(ndi.name).concat(":").concat(node.getOperator().getClass().getSimpleName()))
-      {
-        @Override
-        public void run()
+      final NodeActivation activation = new NodeActivation(ndi, nodeMap, signal);
+      if (scheduler == null) {
+        new Thread(Integer.toString(ndi.id).concat("/").concat(ndi.name).concat(":").concat(node.getOperator().getClass().getSimpleName()))
         {
-          HashSet<OperatorDeployInfo> setOperators = new HashSet<OperatorDeployInfo>();
-          OperatorDeployInfo currentdi = ndi;
-          try {
-            /* primary operator initialization */
-            setupNode(currentdi);
-            setOperators.add(currentdi);
-
-            /* lets go for OiO operator initialization */
-            List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
-            if (oioNodeIdList != null) {
-              for (Integer oioNodeId : oioNodeIdList) {
-                currentdi = nodeMap.get(oioNodeId);
-                setupNode(currentdi);
-                setOperators.add(currentdi);
-              }
+          @Override
+          public void run()
+          {
+            try {
+              activation.setup();
+              node.run(); /* this is a blocking call */
             }
-
-            currentdi = null;
-
-            for (int i = setOperators.size(); i-- > 0; ) {
-              signal.countDown();
+            catch (Error error) {
+              activation.handleError(error);
             }
-
-            node.run(); /* this is a blocking call */
-          }
-          catch (Error error) {
-            int[] operators;
-            if (currentdi == null) {
-              logger.error("Voluntary container termination due to an error in operator set {}.", setOperators, error);
-              operators = new int[setOperators.size()];
-              int i = 0;
-              for (Iterator<OperatorDeployInfo> it = setOperators.iterator(); it.hasNext(); i++) {
-                operators[i] = it.next().id;
-              }
+            catch (Exception ex) {
+              activation.handleException(ex);
             }
-            else {
-              logger.error("Voluntary container termination due to an error in operator {}.", currentdi, error);
-              operators = new int[]{currentdi.id};
+            finally {
+              activation.teardown();
             }
-            umbilical.reportError(containerId, operators, "Voluntary container termination due to an error. " + ExceptionUtils.getStackTrace(error));
-            System.exit(1);
           }
-          catch (Exception ex) {
-            if (currentdi == null) {
-              failedNodes.add(ndi.id);
-              logger.error("Operator set {} stopped running due to an exception.", setOperators, ex);
-              int[] operators = new int[]{ndi.id};
-              umbilical.reportError(containerId, operators, "Stopped running due to an exception. " + ExceptionUtils.getStackTrace(ex));
-            }
-            else {
-              failedNodes.add(currentdi.id);
-              logger.error("Abandoning deployment of operator {} due to setup failure.", currentdi, ex);
-              int[] operators = new int[]{currentdi.id};
-              umbilical.reportError(containerId, operators, "Abandoning deployment due to setup failure. " + ExceptionUtils.getStackTrace(ex));
-            }
+
+        }.start();
+      }
+      else {
+        NodeScheduler.Task task = new NodeScheduler.Task(node)
+        {
+          @Override
+          protected void setup() throws Exception
+          {
+            activation.setup();
           }
-          finally {
-            if (setOperators.contains(ndi)) {
-              try {
-                teardownNode(ndi);
+
+          @Override
+          protected void teardown(Throwable cause)
+          {
+            try {
+              if (cause instanceof Exception) {
+                activation.handleException((Exception)cause);
               }
-              catch (Exception ex) {
-                failedNodes.add(ndi.id);
-                logger.error("Shutdown of operator {} failed due to an exception.", ndi, ex);
+              else if (cause != null) {
+                activation.handleError(cause);
               }
             }
-            else {
-              signal.countDown();
+            finally {
+              activation.teardown();
             }
+          }
 
-            List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
-            if (oioNodeIdList != null) {
-              for (Integer oioNodeId : oioNodeIdList) {
-                OperatorDeployInfo oiodi = nodeMap.get(oioNodeId);
-                if (setOperators.contains(oiodi)) {
-                  try {
-                    teardownNode(oiodi);
-                  }
-                  catch (Exception ex) {
-                    failedNodes.add(oiodi.id);
-                    logger.error("Shutdown of operator {} failed due to an exception.", oiodi, ex);
-                  }
-                }
-                else {
-                  signal.countDown();
-                }
-              }
-            }
+        };
+        tasks.put(ndi.id, task);
+        List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+        if (oioNodeIdList != null) {
+          for (Integer oioNodeId : oioNodeIdList) {
+            task.chain(nodes.get(oioNodeId));
+            tasks.put(oioNodeId, task);
           }
         }
-
-      }.start();
+        scheduler.schedule(task);
+      }
     }
 
     /**
@@ -1459,6 +1508,121 @@ public class StreamingContainer extends YarnContainerMain
     }
   }
 
+  /**
+   * Sets up the node along with the nodes in its OiO group before it runs, and reports the failures and tears the nodes
+   * down once it stopped running, whether the node runs on a thread of its own or on the {@link NodeScheduler}.
+   */
+  private class NodeActivation
+  {
+    final OperatorDeployInfo ndi;
+    final Map<Integer, OperatorDeployInfo> nodeMap;
+    final CountDownLatch signal;
+    final HashSet<OperatorDeployInfo> setOperators = new HashSet<OperatorDeployInfo>();
+    OperatorDeployInfo currentdi;
+
+    NodeActivation(OperatorDeployInfo ndi, Map<Integer, OperatorDeployInfo> nodeMap, CountDownLatch signal)
+    {
+      this.ndi = ndi;
+      this.nodeMap = nodeMap;
+      this.signal = signal;
+      currentdi = ndi;
+    }
+
+    void setup()
+    {
+      /* primary operator initialization */
+      setupNode(currentdi);
+      setOperators.add(currentdi);
+
+      /* lets go for OiO operator initialization */
+      List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+      if (oioNodeIdList != null) {
+        for (Integer oioNodeId : oioNodeIdList) {
+          currentdi = nodeMap.get(oioNodeId);
+          setupNode(currentdi);
+          setOperators.add(currentdi);
+        }
+      }
+
+      currentdi = null;
+
+      for (int i = setOperators.size(); i-- > 0; ) {
+        signal.countDown();
+      }
+    }
+
+    void handleError(Throwable error)
+    {
+      int[] operators;
+      if (currentdi == null) {
+        logger.error("Voluntary container termination due to an error in operator set {}.", setOperators, error);
+        operators = new int[setOperators.size()];
+        int i = 0;
+        for (Iterator<OperatorDeployInfo> it = setOperators.iterator(); it.hasNext(); i++) {
+          operators[i] = it.next().id;
+        }
+      }
+      else {
+        logger.error("Voluntary container termination due to an error in operator {}.", currentdi, error);
+        operators = new int[]{currentdi.id};
+      }
+      umbilical.reportError(containerId, operators, "Voluntary container termination due to an error. " + ExceptionUtils.getStackTrace(error));
+      System.exit(1);
+    }
+
+    void handleException(Exception ex)
+    {
+      if (currentdi == null) {
+        failedNodes.add(ndi.id);
+        logger.error("Operator set {} stopped running due to an exception.", setOperators, ex);
+        int[] operators = new int[]{ndi.id};
+        umbilical.reportError(containerId, operators, "Stopped running due to an exception. " + ExceptionUtils.getStackTrace(ex));
+      }
+      else {
+        failedNodes.add(currentdi.id);
+        logger.error("Abandoning deployment of operator {} due to setup failure.", currentdi, ex);
+        int[] operators = new int[]{currentdi.id};
+        umbilical.reportError(containerId, operators, "Abandoning deployment due to setup failure. " + ExceptionUtils.getStackTrace(ex));
+      }
+    }
+
+    void teardown()
+    {
+      if (setOperators.contains(ndi)) {
+        try {
+          teardownNode(ndi);
+        }
+        catch (Exception ex) {
+          failedNodes.add(ndi.id);
+          logger.error("Shutdown of operator {} failed due to an exception.", ndi, ex);
+        }
+      }
+      else {
+        signal.countDown();
+      }
+
+      List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+      if (oioNodeIdList != null) {
+        for (Integer oioNodeId : oioNodeIdList) {
+          OperatorDeployInfo oiodi = nodeMap.get(oioNodeId);
+          if (setOperators.contains(oiodi)) {
+            try {
+              teardownNode(oiodi);
+            }
+            catch (Exception ex) {
+              failedNodes.add(oiodi.id);
+              logger.error("Shutdown of operator {} failed due to an exception.", oiodi, ex);
+            }
+          }
+          else {
+            signal.countDown();
+          }
+        }
+      }
+    }
+
+  }
+
   private void groupInputStreams(HashMap<String, ArrayList<String>> groupedInputStreams, OperatorDeployInfo ndi)
   {
     for (OperatorDeployInfo.InputDeployInfo nidi : ndi.inputs) {
@@ -1586,26 +1750,5 @@ public class StreamingContainer extends YarnContainerMain
     DTLoggerFactory.getInstance().changeLoggersLevel(request.getTargetChanges());
   }
 
-  private final StreamCodec<Object> nonSerializingStreamCodec = new StreamCodec<Object>()
-  {
-    @Override
-    public Object fromByteArray(Slice fragment)
-    {
-      return null;
-    }
-
-    @Override
-    public Slice toByteArray(Object o)
-    {
-      return null;
-    }
-
-    @Override
-    public int getPartition(Object o)
-    {
-      return o.hashCode();
-    }
-  };
-
   private static final Logger logger = LoggerFactory.getLogger(StreamingContainer.class);
 }
@@ -48,4 +48,11 @@ public interface SweepableReservoir extends Reservoir
    */
   public int getCount(boolean reset);
 
+  /**
+   * Get the number of control tuples currently in the reservoir, the rest of its {@link #size()} being data tuples.
+   *
+   * @return the count of control tuples
+   */
+  public int getControlTupleCount();
+
 }
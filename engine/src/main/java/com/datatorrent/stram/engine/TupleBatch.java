@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.ArrayList;
+
+import com.datatorrent.api.BatchSink;
+
+import com.datatorrent.netlet.util.CircularBuffer;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Reusable list through which a reservoir hands the data tuples at its head to a {@link BatchSink} with a single call.
+ *
+ * @since 2.2.0
+ */
+public class TupleBatch extends ArrayList<Object>
+{
+  /**
+   * Move the data tuples at the head of the buffer, up to the first control tuple, to the sink.
+   *
+   * @param buffer buffer holding the tuples
+   * @param size number of tuples to look at, not more than the size of the buffer
+   * @param sink sink receiving the data tuples
+   * @return number of data tuples moved to the sink
+   */
+  public int drain(CircularBuffer<Object> buffer, int size, BatchSink<Object> sink)
+  {
+    int i = 0;
+    while (i < size && !(buffer.peekUnsafe() instanceof Tuple)) {
+      add(buffer.pollUnsafe());
+      i++;
+    }
+
+    if (i > 0) {
+      try {
+        sink.putAll(this);
+      }
+      finally {
+        clear();
+      }
+    }
+    return i;
+  }
+
+  private static final long serialVersionUID = 201510171201L;
+}
@@ -29,7 +29,7 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class WindowIdActivatedReservoir implements SweepableReservoir
+public class WindowIdActivatedReservoir implements SignallingReservoir
 {
   private Sink<Object> sink;
   private final String identifier;
@@ -99,6 +99,24 @@ public class WindowIdActivatedReservoir implements SweepableReservoir
     return 0;
   }
 
+  @Override
+  public int getControlTupleCount()
+  {
+    return reservoir.getControlTupleCount();
+  }
+
+  @Override
+  public boolean setSignal(ReservoirSignal signal)
+  {
+    return reservoir instanceof SignallingReservoir && ((SignallingReservoir)reservoir).setSignal(signal);
+  }
+
+  @Override
+  public boolean isIdle()
+  {
+    return est == null && ((SignallingReservoir)reservoir).isIdle();
+  }
+
   @Override
   public String toString()
   {
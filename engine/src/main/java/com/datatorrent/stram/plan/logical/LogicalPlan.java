@@ -37,6 +37,7 @@ import com.google.common.collect.Sets;
 
 import com.datatorrent.api.*;
 import com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap;
+import com.datatorrent.api.Operator.CombiningUnifier;
 import com.datatorrent.api.Operator.InputPort;
 import com.datatorrent.api.Operator.OutputPort;
 import com.datatorrent.api.Operator.Unifier;
@@ -44,6 +45,7 @@ import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 import com.datatorrent.api.annotation.OperatorAnnotation;
 import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
 
+import com.datatorrent.bufferserver.storage.SegmentedDiskStorage;
 import com.datatorrent.common.experimental.AppData;
 import com.datatorrent.common.metric.MetricsAggregator;
 import com.datatorrent.common.metric.SingleMetricAggregator;
@@ -51,6 +53,7 @@ import com.datatorrent.common.metric.sum.DoubleSumAggregator;
 import com.datatorrent.common.metric.sum.LongSumAggregator;
 import com.datatorrent.common.util.BaseOperator;
 import com.datatorrent.common.util.FSStorageAgent;
+import com.datatorrent.stram.engine.CombiningSlider;
 import com.datatorrent.stram.engine.DefaultUnifier;
 import com.datatorrent.stram.engine.Slider;
 
@@ -99,6 +102,10 @@ public class LogicalPlan implements Serializable, DAG
    * Then it can be moved back to DAGContext.
    */
   public static Attribute<Boolean> FAST_PUBLISHER_SUBSCRIBER = new Attribute<Boolean>(false);
+  /**
+   * Whether containers report the operator stats as changes to those in the previous heartbeat.
+   */
+  public static Attribute<Boolean> HEARTBEAT_STATS_DELTA = new Attribute<Boolean>(true);
   public static Attribute<Long> HDFS_TOKEN_LIFE_TIME = new Attribute<Long>(604800000l);
   public static Attribute<Long> RM_TOKEN_LIFE_TIME = new Attribute<Long>(YarnConfiguration.DELEGATION_TOKEN_MAX_LIFETIME_DEFAULT);
   public static Attribute<String> KEY_TAB_FILE = new Attribute<String>((String) null, new StringCodec.String2String());
@@ -288,8 +295,11 @@ public class LogicalPlan implements Serializable, DAG
     public OperatorMeta getSlidingUnifier(int numberOfBuckets, int slidingApplicationWindowCount, int numberOfSlidingWindows)
     {
       if (sliderMeta == null) {
+        Unifier<?> unifier = getUnifier();
         @SuppressWarnings("unchecked")
-        Slider slider = new Slider((Unifier<Object>) getUnifier(), numberOfBuckets, numberOfSlidingWindows);
+        Slider slider = unifier instanceof CombiningUnifier
+                        ? new CombiningSlider((CombiningUnifier<Object, Object>)unifier, numberOfBuckets, numberOfSlidingWindows)
+                        : new Slider((Unifier<Object>)unifier, numberOfBuckets, numberOfSlidingWindows);
         try {
           sliderMeta = new OperatorMeta(operatorMeta.getName() + '.' + fieldName + "#slider", slider, getUnifierMeta().attributes.clone());
         }
@@ -1218,6 +1228,12 @@ public class LogicalPlan implements Serializable, DAG
       validateProcessingMode(om, visited);
     }
 
+    int segmentSize = getValue(BUFFER_SPOOLING_SEGMENT_SIZE_MB);
+    if (segmentSize < 0 || segmentSize > SegmentedDiskStorage.MAX_SEGMENT_SIZE_MB) {
+      throw new ValidationException(String.format("%s of %d is not between 0 and %d", BUFFER_SPOOLING_SEGMENT_SIZE_MB.getSimpleName(),
+                                                  segmentSize, SegmentedDiskStorage.MAX_SEGMENT_SIZE_MB));
+    }
+
   }
 
   /*
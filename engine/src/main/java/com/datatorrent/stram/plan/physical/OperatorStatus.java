@@ -52,6 +52,10 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
     public final TimedMovingAverageLong tuplesPMSMA;
     public final TimedMovingAverageLong bufferServerBytesPMSMA;
     public final MovingAverageLong queueSizeMA;
+    /**
+     * End window timestamp of the last window reported for the port, 0 when not known
+     */
+    public long lastEndWindowTimestamp;
 
     public PortStatus()
     {
@@ -79,6 +83,10 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
   public List<OperatorStats> lastWindowedStats = Collections.emptyList();
   public final ConcurrentLinkedQueue<List<OperatorStats>> listenerStats = new ConcurrentLinkedQueue<List<OperatorStats>>();
   public volatile long lastWindowIdChangeTms = 0;
+  /**
+   * Latest end window timestamp across the ports in the last reported stats, 0 when not known
+   */
+  public long lastMaxEndWindowTimestamp;
   public final int windowProcessingTimeoutMillis;
   public List<StatsListener.OperatorResponse> operatorResponses;
 
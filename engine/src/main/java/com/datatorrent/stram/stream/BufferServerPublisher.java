@@ -15,8 +15,12 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,14 +31,14 @@ import com.datatorrent.bufferserver.client.Publisher;
 import com.datatorrent.bufferserver.packet.*;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.netlet.Listener.ClientListener;
+import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 import com.datatorrent.stram.engine.ByteCounterStream;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.tuple.Tuple;
 
-import static java.lang.Thread.sleep;
-
 /**
  * Implements tuple flow of node to then buffer server in a logical stream<p>
  * <br>
@@ -47,16 +51,29 @@ import static java.lang.Thread.sleep;
  */
 public class BufferServerPublisher extends Publisher implements ByteCounterStream
 {
+  /**
+   * Upper bound on how long the producer parks before retrying a write on its own, in case a wake up is missed.
+   */
+  static final long MAX_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
   private StreamCodec<Object> serde;
   private final AtomicLong publishedByteCount;
   private EventLoop eventloop;
   private int count;
   private StatefulStreamCodec<Object> statefulSerde;
+  private StatefulStreamCodec.MessageSerializer<Object> messageSerde;
+  private final AtomicLong blockedNanos;
+  private volatile Thread blockedProducer;
+  /**
+   * The connection is registered with the event loop through this listener so that the producer is woken up as soon
+   * as the event loop writes out some of the send buffer.
+   */
+  private final ClientListener drainListener = new DrainSignallingListener();
 
   public BufferServerPublisher(String sourceId, int queueCapacity)
   {
     super(sourceId, queueCapacity);
     this.publishedByteCount = new AtomicLong(0);
+    this.blockedNanos = new AtomicLong(0);
   }
 
   /**
@@ -64,7 +81,6 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
    * @param payload
    */
   @Override
-  @SuppressWarnings("SleepWhileInLoop")
   public void put(Object payload)
   {
     count++;
@@ -102,6 +118,14 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
           throw new UnsupportedOperationException("this data type is not handled in the stream");
       }
     }
+    else if (messageSerde != null) {
+      DataStatePair dsp = messageSerde.toMessagePair(payload, statefulSerde.getPartition(payload));
+      if (dsp.state != null) {
+        send(dsp.state);
+      }
+      send(dsp.data);
+      return;
+    }
     else {
       if (statefulSerde == null) {
         array = PayloadTuple.getSerializedTuple(serde.getPartition(payload), serde.toByteArray(payload));
@@ -121,17 +145,72 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
       }
     }
 
-    try {
-      while (!write(array)) {
-        sleep(5);
+    if (!write(array)) {
+      long start = System.nanoTime();
+      blockedProducer = Thread.currentThread();
+      try {
+        while (!write(array)) {
+          park();
+        }
+      }
+      finally {
+        blockedProducer = null;
+        blockedNanos.addAndGet(System.nanoTime() - start);
       }
-      publishedByteCount.addAndGet(array.length);
     }
-    catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
+    publishedByteCount.addAndGet(array.length);
+  }
+
+  /**
+   * Send the message which already has its length prepended.
+   *
+   * @param message length prepended message
+   */
+  private void send(Slice message)
+  {
+    if (!send(message.buffer, message.offset, message.length)) {
+      long start = System.nanoTime();
+      blockedProducer = Thread.currentThread();
+      try {
+        while (!send(message.buffer, message.offset, message.length)) {
+          park();
+        }
+      }
+      finally {
+        blockedProducer = null;
+        blockedNanos.addAndGet(System.nanoTime() - start);
+      }
+    }
+    publishedByteCount.addAndGet(message.length);
+  }
+
+  /**
+   * Parks the producer until the event loop drains some of the send buffer. The producer registers itself
+   * in blockedProducer before retrying the write so that a drain racing with the failed write still unparks it.
+   */
+  private void park()
+  {
+    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+    if (Thread.interrupted()) {
+      throw new RuntimeException(new InterruptedException());
     }
   }
 
+  private void wakeProducer()
+  {
+    Thread producer = blockedProducer;
+    if (producer != null) {
+      LockSupport.unpark(producer);
+    }
+  }
+
+  @Override
+  public void unregistered(SelectionKey key)
+  {
+    super.unregistered(key);
+    wakeProducer();
+  }
+
   /**
    *
    * @param context
@@ -143,7 +222,7 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     setToken(context.get(StreamContext.BUFFER_SERVER_TOKEN));
     InetSocketAddress address = context.getBufferServerAddress();
     eventloop = context.get(StreamContext.EVENT_LOOP);
-    eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, this);
+    eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, drainListener);
 
     logger.debug("Registering publisher: {} {} windowId={} server={}", new Object[] {context.getSourceId(), context.getId(), Codec.getStringWindowId(context.getFinishedWindowId()), context.getBufferServerAddress()});
     super.activate(null, context.getFinishedWindowId());
@@ -153,7 +232,7 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
   public void deactivate()
   {
     setToken(null);
-    eventloop.disconnect(this);
+    eventloop.disconnect(drainListener);
   }
 
   @Override
@@ -176,6 +255,10 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     else {
       serde = (StreamCodec<Object>)codec;
     }
+
+    if (statefulSerde instanceof StatefulStreamCodec.MessageSerializer) {
+      messageSerde = (StatefulStreamCodec.MessageSerializer<Object>)statefulSerde;
+    }
   }
 
   @Override
@@ -193,6 +276,21 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     return publishedByteCount.get();
   }
 
+  /**
+   * Time the producer spent waiting for the connection to drain.
+   *
+   * @param reset whether to reset the accumulated time
+   * @return blocked time in nanoseconds
+   */
+  public long getBlockedNanos(boolean reset)
+  {
+    if (reset) {
+      return blockedNanos.getAndSet(0);
+    }
+
+    return blockedNanos.get();
+  }
+
   @Override
   public int getCount(boolean reset)
   {
@@ -206,5 +304,62 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     }
   }
 
+  /**
+   * Hands the events of the connection to the publisher and wakes up the blocked producer every time the publisher
+   * has written out data from its send buffer.
+   */
+  private class DrainSignallingListener implements ClientListener
+  {
+    @Override
+    public void read() throws IOException
+    {
+      BufferServerPublisher.this.read();
+    }
+
+    @Override
+    public void write() throws IOException
+    {
+      BufferServerPublisher.this.write();
+      wakeProducer();
+    }
+
+    @Override
+    public void connected()
+    {
+      BufferServerPublisher.this.connected();
+    }
+
+    @Override
+    public void disconnected()
+    {
+      BufferServerPublisher.this.disconnected();
+    }
+
+    @Override
+    public void handleException(Exception cce, EventLoop el)
+    {
+      BufferServerPublisher.this.handleException(cce, el);
+    }
+
+    @Override
+    public void registered(SelectionKey key)
+    {
+      BufferServerPublisher.this.registered(key);
+    }
+
+    @Override
+    public void unregistered(SelectionKey key)
+    {
+      BufferServerPublisher.this.unregistered(key);
+    }
+
+    @Override
+    public String toString()
+    {
+      return BufferServerPublisher.this.toString();
+    }
+
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(BufferServerPublisher.class);
 }
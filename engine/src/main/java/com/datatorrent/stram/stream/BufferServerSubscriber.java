@@ -18,16 +18,21 @@ package com.datatorrent.stram.stream;
 import java.net.InetSocketAddress;
 import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 
 import com.datatorrent.bufferserver.client.Subscriber;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.netlet.util.DTThrowable;
 import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.util.CircularBuffer;
@@ -35,7 +40,10 @@ import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 import com.datatorrent.stram.engine.ByteCounterStream;
 import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.engine.ReservoirSignal;
+import com.datatorrent.stram.engine.SignallingReservoir;
 import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.engine.TupleBatch;
 import com.datatorrent.stram.engine.WindowGenerator;
 import com.datatorrent.stram.tuple.*;
 
@@ -61,6 +69,12 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
   private final ArrayDeque<CircularBuffer<Slice>> backlog;
   private int lastWindowId = WindowGenerator.MAX_WINDOW_ID;
   private final AtomicLong readByteCount;
+  private boolean asyncDecoding;
+  private volatile Decoder decoder;
+  /*
+   * failure which stopped the decoder, it is rethrown to the nodes sweeping the reservoirs.
+   */
+  private volatile Throwable decoderFailure;
 
   public BufferServerSubscriber(String id, int queueCapacity)
   {
@@ -87,12 +101,28 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     setToken(context.get(StreamContext.BUFFER_SERVER_TOKEN));
     InetSocketAddress address = context.getBufferServerAddress();
     eventloop = context.get(StreamContext.EVENT_LOOP);
+    startDecoder(context);
     eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, this);
 
     logger.debug("Registering subscriber: id={} upstreamId={} streamLogicalName={} windowId={} mask={} partitions={} server={}", new Object[] {context.getSinkId(), context.getSourceId(), context.getId(), Codec.getStringWindowId(context.getFinishedWindowId()), context.getPartitionMask(), context.getPartitions(), context.getBufferServerAddress()});
     activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity());
   }
 
+  /**
+   * Start the decoder if the port asked for {@link PortContext#ASYNC_DECODING}, it has to run before the subscriber
+   * receives the fragments it decodes.
+   *
+   * @param context context of the stream being activated
+   */
+  protected void startDecoder(StreamContext context)
+  {
+    decoderFailure = null;
+    if (asyncDecoding) {
+      decoder = new Decoder("Decoder:" + context.getId() + '/' + context.getSinkId());
+      decoder.start();
+    }
+  }
+
   @Override
   public void onMessage(byte[] buffer, int offset, int length)
   {
@@ -118,6 +148,17 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
         offeredFragments.add(f);
       }
     }
+    else if (offeredFragments.size() == 1) {
+      Decoder d = decoder;
+      if (d == null) {
+        for (BufferReservoir r : reservoirs) {
+          r.signal();
+        }
+      }
+      else {
+        d.wakeUp();
+      }
+    }
   }
 
   @Override
@@ -135,6 +176,7 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
       serde = (StreamCodec<Object>)codec;
     }
     baseSeconds = context.getFinishedWindowId() & 0xffffffff00000000L;
+    asyncDecoding = context.getValue(PortContext.ASYNC_DECODING);
   }
 
   @Override
@@ -142,6 +184,27 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
   {
     eventloop.disconnect(this);
     setToken(null);
+    stopDecoder();
+  }
+
+  /**
+   * Stop the decoder if one is running, the fragments it did not decode yet are decoded by the nodes sweeping the
+   * reservoirs.
+   */
+  protected void stopDecoder()
+  {
+    Decoder d = decoder;
+    if (d != null) {
+      decoder = null;
+      d.decoding = false;
+      LockSupport.unpark(d);
+      try {
+        d.join();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
   @Override
@@ -200,6 +263,100 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     return 0;
   }
 
+  /**
+   * Deserialize as many fragments as all the reservoirs have room for, the caller holds the lock on the backlog.
+   *
+   * @return number of fragments consumed
+   */
+  private int decodeFragments()
+  {
+    /* find out the minimum remaining capacity in all the other buffers and consume those many tuples from bufferserver */
+    int min = polledFragments.size();
+    if (min == 0) {
+      if (offeredFragments == polledFragments) {
+        if (suspended) {
+          resumeRead();
+          suspended = false;
+        }
+        return 0;
+      }
+      polledFragments = backlog.remove();
+      min = polledFragments.size();
+    }
+
+    for (int i = reservoirs.length; i-- > 0;) {
+      if (reservoirs[i].remainingCapacity() < min) {
+        min = reservoirs[i].remainingCapacity();
+      }
+    }
+
+    int consumed = min;
+    while (min-- > 0) {
+      Slice fm = polledFragments.pollUnsafe();
+      com.datatorrent.bufferserver.packet.Tuple data = com.datatorrent.bufferserver.packet.Tuple.getTuple(fm.buffer, fm.offset, fm.length);
+      Object o;
+      switch (data.getType()) {
+        case NO_MESSAGE:
+          freeFragments.offer(fm);
+          continue;
+
+        case CODEC_STATE:
+          dsp.state = data.getData();
+          freeFragments.offer(fm);
+          continue;
+
+        case RESET_WINDOW:
+          baseSeconds = (long)data.getBaseSeconds() << 32;
+          if (lastWindowId < WindowGenerator.MAX_WINDOW_ID) {
+            freeFragments.offer(fm);
+            continue;
+          }
+          o = new ResetWindowTuple(baseSeconds | data.getWindowWidth());
+          break;
+
+        case PAYLOAD:
+          if (statefulSerde == null) {
+            o = serde.fromByteArray(data.getData());
+          }
+          else {
+            dsp.data = data.getData();
+            o = statefulSerde.fromDataStatePair(dsp);
+          }
+          break;
+
+        case CHECKPOINT:
+          if (statefulSerde != null) {
+            statefulSerde.resetState();
+          }
+          o = new CheckpointTuple(baseSeconds | data.getWindowId());
+          break;
+
+        case END_WINDOW:
+          //logger.debug("received {}", data);
+          o = new EndWindowTuple(baseSeconds | (lastWindowId = data.getWindowId()));
+          break;
+
+        case END_STREAM:
+          o = new EndStreamTuple(baseSeconds | data.getWindowId());
+          break;
+
+        case BEGIN_WINDOW:
+          o = new Tuple(data.getType(), baseSeconds | data.getWindowId());
+          break;
+
+        default:
+          throw new IllegalArgumentException("Unhandled Message Type " + data.getType());
+      }
+
+      freeFragments.offer(fm);
+      for (int i = reservoirs.length; i-- > 0;) {
+        reservoirs[i].add(o);
+      }
+    }
+
+    return consumed;
+  }
+
   @Override
   public long getByteCount(boolean reset)
   {
@@ -210,17 +367,86 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     return readByteCount.get();
   }
 
-  class BufferReservoir extends CircularBuffer<Object> implements SweepableReservoir
+  class BufferReservoir extends CircularBuffer<Object> implements SignallingReservoir
   {
     private Sink<Object> sink;
+    private BatchSink<Object> batchSink;
+    private final TupleBatch batch = new TupleBatch();
     int count;
+    private volatile ReservoirSignal signal;
+    /*
+     * control tuples ever added to and removed from this reservoir, the difference being the ones queued.
+     */
+    private volatile int controlTuplesAdded;
+    private volatile int controlTuplesRemoved;
 
     BufferReservoir(int capacity)
     {
       super(capacity);
     }
 
+    /*
+     * the fragments are deserialized into all the reservoirs by the decoder if there is one, else by whichever node
+     * sweeps first.
+     */
+    @Override
+    public boolean add(Object e)
+    {
+      if (e instanceof Tuple) {
+        controlTuplesAdded++;
+      }
+      super.add(e);
+      if (size() == 1) {
+        signal();
+      }
+      return true;
+    }
+
+    void signal()
+    {
+      ReservoirSignal rs = signal;
+      if (rs != null) {
+        rs.raise();
+      }
+    }
+
     @Override
+    public Object remove()
+    {
+      Object o = super.remove();
+      if (o instanceof Tuple) {
+        controlTuplesRemoved++;
+      }
+      return o;
+    }
+
+    @Override
+    public int getControlTupleCount()
+    {
+      return controlTuplesAdded - controlTuplesRemoved;
+    }
+
+    @Override
+    public boolean setSignal(ReservoirSignal signal)
+    {
+      this.signal = signal;
+      return true;
+    }
+
+    @Override
+    public boolean isIdle()
+    {
+      if (!isEmpty()) {
+        return false;
+      }
+
+      synchronized (backlog) {
+        return offeredFragments == polledFragments && polledFragments.isEmpty();
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
     public Sink<Object> setSink(Sink<Object> sink)
     {
       try {
@@ -228,6 +454,7 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
       }
       finally {
         this.sink = sink;
+        batchSink = sink instanceof BatchSink ? (BatchSink<Object>)sink : null;
       }
     }
 
@@ -236,101 +463,39 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     {
       final int size = size();
       if (size > 0) {
-        for (int i = 0; i < size; i++) {
-          if (peekUnsafe() instanceof Tuple) {
-            count += i;
+        if (batchSink == null) {
+          for (int i = 0; i < size; i++) {
+            if (peekUnsafe() instanceof Tuple) {
+              count += i;
+              return (Tuple)peekUnsafe();
+            }
+            sink.put(pollUnsafe());
+          }
+        }
+        else {
+          int drained = batch.drain(this, size, batchSink);
+          if (drained < size) {
+            count += drained;
             return (Tuple)peekUnsafe();
           }
-          sink.put(pollUnsafe());
         }
 
         count += size;
       }
 
-      synchronized (backlog) {
-        /* find out the minimum remaining capacity in all the other buffers and consume those many tuples from bufferserver */
-        int min = polledFragments.size();
-        if (min == 0) {
-          if (offeredFragments == polledFragments) {
-            if (suspended) {
-              resumeRead();
-              suspended = false;
-            }
-            return null;
-          }
-          polledFragments = backlog.remove();
-          min = polledFragments.size();
-        }
-
-        for (int i = reservoirs.length; i-- > 0;) {
-          if (reservoirs[i].remainingCapacity() < min) {
-            min = reservoirs[i].remainingCapacity();
-          }
+      Decoder d = decoder;
+      if (d == null) {
+        Throwable failure = decoderFailure;
+        if (failure != null) {
+          DTThrowable.rethrow(failure);
         }
-
-        while (min-- > 0) {
-          Slice fm = polledFragments.pollUnsafe();
-          com.datatorrent.bufferserver.packet.Tuple data = com.datatorrent.bufferserver.packet.Tuple.getTuple(fm.buffer, fm.offset, fm.length);
-          Object o;
-          switch (data.getType()) {
-            case NO_MESSAGE:
-              freeFragments.offer(fm);
-              continue;
-
-            case CODEC_STATE:
-              dsp.state = data.getData();
-              freeFragments.offer(fm);
-              continue;
-
-            case RESET_WINDOW:
-              baseSeconds = (long)data.getBaseSeconds() << 32;
-              if (lastWindowId < WindowGenerator.MAX_WINDOW_ID) {
-                freeFragments.offer(fm);
-                continue;
-              }
-              o = new ResetWindowTuple(baseSeconds | data.getWindowWidth());
-              break;
-
-            case PAYLOAD:
-              if (statefulSerde == null) {
-                o = serde.fromByteArray(data.getData());
-              }
-              else {
-                dsp.data = data.getData();
-                o = statefulSerde.fromDataStatePair(dsp);
-              }
-              break;
-
-            case CHECKPOINT:
-              if (statefulSerde != null) {
-                statefulSerde.resetState();
-              }
-              o = new CheckpointTuple(baseSeconds | data.getWindowId());
-              break;
-
-            case END_WINDOW:
-              //logger.debug("received {}", data);
-              o = new EndWindowTuple(baseSeconds | (lastWindowId = data.getWindowId()));
-              break;
-
-            case END_STREAM:
-              o = new EndStreamTuple(baseSeconds | data.getWindowId());
-              break;
-
-            case BEGIN_WINDOW:
-              o = new Tuple(data.getType(), baseSeconds | data.getWindowId());
-              break;
-
-            default:
-              throw new IllegalArgumentException("Unhandled Message Type " + data.getType());
-          }
-
-          freeFragments.offer(fm);
-          for (int i = reservoirs.length; i-- > 0;) {
-            reservoirs[i].add(o);
-          }
+        synchronized (backlog) {
+          decodeFragments();
         }
       }
+      else if (size > 0) {
+        d.wakeUp();
+      }
 
       return null;
     }
@@ -350,5 +515,60 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
 
   }
 
+  /**
+   * Deserializes the fragments into the reservoirs ahead of the nodes sweeping them, so the nodes spend their time
+   * processing the tuples. There is one decoder per subscriber as the codec state carried by the stream requires the
+   * fragments to be decoded in the order they were received.
+   */
+  class Decoder extends Thread
+  {
+    volatile boolean decoding = true;
+    private volatile boolean waiting;
+
+    Decoder(String name)
+    {
+      super(name);
+      setDaemon(true);
+    }
+
+    void wakeUp()
+    {
+      if (waiting) {
+        LockSupport.unpark(this);
+      }
+    }
+
+    @Override
+    @SuppressWarnings({"BroadCatchBlock", "TooBroadCatch"})
+    public void run()
+    {
+      try {
+        while (decoding) {
+          /* announce the wait before looking for the fragments so that a wake up while decoding is not lost */
+          waiting = true;
+          int decoded;
+          synchronized (backlog) {
+            decoded = decodeFragments();
+          }
+          if (decoded == 0) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+          }
+          waiting = false;
+        }
+      }
+      catch (Throwable th) {
+        logger.error("Decoder for {} failed.", BufferServerSubscriber.this, th);
+        /* the nodes no longer wait for the decoder, the next one sweeping a reservoir fails with the cause */
+        decoderFailure = th;
+        decoder = null;
+        for (BufferReservoir r : reservoirs) {
+          r.signal();
+        }
+      }
+    }
+
+  }
+
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
   private static final Logger logger = LoggerFactory.getLogger(BufferServerSubscriber.class);
 }
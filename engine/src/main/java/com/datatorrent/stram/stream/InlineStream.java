@@ -15,6 +15,10 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.LockSupport;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +36,11 @@ import com.datatorrent.stram.engine.SweepableReservoir;
  */
 public class InlineStream extends DefaultReservoir implements Stream, SweepableReservoir
 {
+  /**
+   * time a worker of the NodeScheduler waits before it retries to add a tuple to the full stream.
+   */
+  private static final long BLOCKED_PUT_NANOS = 100000;
+
   public InlineStream(int capacity)
   {
     super("InlineStream", capacity);
@@ -76,7 +85,15 @@ public class InlineStream extends DefaultReservoir implements Stream, SweepableR
   public void put(Object tuple)
   {
     try {
-      super.put(tuple);
+      if (ForkJoinTask.inForkJoinPool()) {
+        /* a worker of the NodeScheduler blocked on the full stream lets the pool start another worker for the consumer */
+        if (!offer(tuple)) {
+          ForkJoinPool.managedBlock(new FullStreamBlocker(tuple));
+        }
+      }
+      else {
+        super.put(tuple);
+      }
     }
     catch (InterruptedException ie) {
       logger.debug("Interrupted", ie);
@@ -90,5 +107,38 @@ public class InlineStream extends DefaultReservoir implements Stream, SweepableR
     return "InlineStream{" + super.toString() + '}';
   }
 
+  private class FullStreamBlocker implements ForkJoinPool.ManagedBlocker
+  {
+    final Object tuple;
+    boolean added;
+
+    FullStreamBlocker(Object tuple)
+    {
+      this.tuple = tuple;
+    }
+
+    @Override
+    public boolean block() throws InterruptedException
+    {
+      while (!isReleasable()) {
+        LockSupport.parkNanos(this, BLOCKED_PUT_NANOS);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable()
+    {
+      if (!added) {
+        added = offer(tuple);
+      }
+      return added;
+    }
+
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(InlineStream.class);
 }
@@ -17,10 +17,12 @@ package com.datatorrent.stram.stream;
 
 import java.lang.reflect.Array;
 import java.util.HashMap;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 
 import com.datatorrent.stram.engine.Stream;
@@ -31,7 +33,7 @@ import com.datatorrent.stram.engine.StreamContext;
  *
  * @since 0.3.2
  */
-public class MuxStream implements Stream.MultiSinkCapableStream
+public class MuxStream implements Stream.MultiSinkCapableStream, BatchSink<Object>
 {
   public static final String MULTI_SINK_ID_CONCAT_SEPARATOR = ", ";
   private HashMap<String, Sink<Object>> outputs = new HashMap<String, Sink<Object>>();
@@ -118,6 +120,29 @@ public class MuxStream implements Stream.MultiSinkCapableStream
     }
   }
 
+  /**
+   * Pass the batch to each of the sinks, as a batch to the ones which accept batches.
+   *
+   * @param payloads
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public void putAll(List<? extends Object> payloads)
+  {
+    count += payloads.size();
+    for (int i = sinks.length; i-- > 0;) {
+      Sink<Object> s = sinks[i];
+      if (s instanceof BatchSink) {
+        ((BatchSink<Object>)s).putAll(payloads);
+      }
+      else {
+        for (int j = 0; j < payloads.size(); j++) {
+          s.put(payloads.get(j));
+        }
+      }
+    }
+  }
+
   @Override
   public int getCount(boolean reset)
   {
@@ -15,6 +15,9 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.util.List;
+
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.stram.engine.Stream;
 import com.datatorrent.stram.engine.StreamContext;
@@ -26,9 +29,10 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.5
  */
-public class OiOStream implements Stream, SweepableReservoir
+public class OiOStream implements Stream, SweepableReservoir, BatchSink<Object>
 {
   private Sink<Object> sink;
+  private BatchSink<Object> batchSink;
   private Sink<Tuple> control;
   private int count;
 
@@ -69,6 +73,20 @@ public class OiOStream implements Stream, SweepableReservoir
     }
   }
 
+  @Override
+  public void putAll(List<? extends Object> tuples)
+  {
+    count += tuples.size();
+    if (batchSink == null) {
+      for (int i = 0; i < tuples.size(); i++) {
+        sink.put(tuples.get(i));
+      }
+    }
+    else {
+      batchSink.putAll(tuples);
+    }
+  }
+
   @Override
   public int getCount(boolean reset)
   {
@@ -83,6 +101,7 @@ public class OiOStream implements Stream, SweepableReservoir
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public Sink<Object> setSink(Sink<Object> sink)
   {
     try {
@@ -90,6 +109,7 @@ public class OiOStream implements Stream, SweepableReservoir
     }
     finally {
       this.sink = sink;
+      batchSink = sink instanceof BatchSink ? (BatchSink<Object>)sink : null;
     }
   }
 
@@ -109,6 +129,12 @@ public class OiOStream implements Stream, SweepableReservoir
     return 1;
   }
 
+  @Override
+  public int getControlTupleCount()
+  {
+    return 0;
+  }
+
   @Override
   public Object remove()
   {
@@ -15,38 +15,123 @@
  */
 package com.datatorrent.stram.stream;
 
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
 import com.datatorrent.stram.tuple.Tuple;
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * <p>PartitionAwareSink class.</p>
  *
+ * Passes on the control tuples and the payloads whose partition, masked with the partition mask, is one of the
+ * partitions of the sink. The partitions are looked up in a bitmap indexed by the masked partition, or in an open
+ * addressing hash table of ints when the mask is too wide for a bitmap.
+ *
  * @param <T>
  * @since 0.3.2
  */
-public class PartitionAwareSink<T> implements Sink<T>
+public class PartitionAwareSink<T> implements BatchSink<T>
 {
+  /**
+   * widest mask for which the partitions are kept in a bitmap, the bitmap then takes 8KB.
+   */
+  static final int MAX_BITMAP_MASK = 0xffff;
+  /**
+   * marks the free slots of the hash table.
+   */
+  private static final int FREE = Integer.MIN_VALUE;
   private final StreamCodec<T> serde;
-  private final Set<Integer> partitions;
+  private final boolean hashPartitioned;
   private final int mask;
+  private final long[] bitmap;
+  private final int[] table;
+  private final int shift;
+  private final boolean matchesFree;
   private volatile Sink<T> output;
   private int count;
+  private final ArrayList<T> batch = new ArrayList<T>();
 
   /**
    *
-   * @param serde
+   * @param serde codec which partitions the payloads, null to partition them by their hashCode
    * @param partitions
    * @param mask
    * @param output
    */
-  public PartitionAwareSink(StreamCodec<T> serde, Set<Integer> partitions, int mask, Sink<T> output)
+  public PartitionAwareSink(StreamCodec<T> serde, Collection<Integer> partitions, int mask, Sink<T> output)
   {
     this.serde = serde;
-    this.partitions = partitions;
+    /* the default codec partitions by hashCode, which can be called without going through the codec */
+    this.hashPartitioned = serde == null || serde.getClass() == DefaultStatefulStreamCodec.class;
     this.output = output;
     this.mask = mask;
+
+    if (mask >= 0 && mask <= MAX_BITMAP_MASK) {
+      bitmap = new long[(mask >> 6) + 1];
+      for (int partition : partitions) {
+        /* a partition with bits outside of the mask never matches */
+        if ((partition & mask) == partition) {
+          bitmap[partition >> 6] |= 1L << partition;
+        }
+      }
+      table = null;
+      shift = 0;
+      matchesFree = false;
+    }
+    else {
+      bitmap = null;
+      /* at most half of the slots are taken so that the probes are short */
+      int capacity = Integer.highestOneBit(Math.max(partitions.size(), 1)) << 2;
+      table = new int[capacity];
+      Arrays.fill(table, FREE);
+      shift = Integer.numberOfLeadingZeros(capacity) + 1;
+      boolean free = false;
+      for (int partition : partitions) {
+        if ((partition & mask) != partition) {
+          continue;
+        }
+        if (partition == FREE) {
+          free = true;
+          continue;
+        }
+        int i = slot(partition);
+        while (table[i] != FREE && table[i] != partition) {
+          i = (i + 1) & (capacity - 1);
+        }
+        table[i] = partition;
+      }
+      matchesFree = free;
+    }
+  }
+
+  private int slot(int partition)
+  {
+    return (partition * 0x9E3779B9) >>> shift;
+  }
+
+  private boolean matches(T payload)
+  {
+    final int partition = (hashPartitioned ? payload.hashCode() : serde.getPartition(payload)) & mask;
+    if (bitmap != null) {
+      return (bitmap[partition >>> 6] & (1L << partition)) != 0;
+    }
+
+    if (partition == FREE) {
+      return matchesFree;
+    }
+    for (int i = slot(partition);; i = (i + 1) & (table.length - 1)) {
+      if (table[i] == partition) {
+        return true;
+      }
+      if (table[i] == FREE) {
+        return false;
+      }
+    }
   }
 
   /**
@@ -60,12 +145,49 @@ public class PartitionAwareSink<T> implements Sink<T>
       count++;
       output.put(payload);
     }
-    else if (partitions.contains(serde.getPartition(payload) & mask)) {
+    else if (matches(payload)) {
       count++;
       output.put(payload);
     }
   }
 
+  /**
+   * Pass the payloads which belong to the partitions on to the output, as a batch if the output accepts batches.
+   *
+   * @param payloads
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public void putAll(List<? extends T> payloads)
+  {
+    for (int i = 0; i < payloads.size(); i++) {
+      T payload = payloads.get(i);
+      if (payload instanceof Tuple || matches(payload)) {
+        batch.add(payload);
+      }
+    }
+
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    count += batch.size();
+    try {
+      Sink<T> sink = output;
+      if (sink instanceof BatchSink) {
+        ((BatchSink<T>)sink).putAll(batch);
+      }
+      else {
+        for (int i = 0; i < batch.size(); i++) {
+          sink.put(batch.get(i));
+        }
+      }
+    }
+    finally {
+      batch.clear();
+    }
+  }
+
   @Override
   public int getCount(boolean reset)
   {
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.BatchSink;
+
+import com.datatorrent.stram.engine.SpscReservoir;
+import com.datatorrent.stram.engine.Stream;
+import com.datatorrent.stram.engine.StreamContext;
+
+/**
+ * Alternative to {@link InlineStream} between 2 operators deployed in the same container, backed by an
+ * {@link SpscReservoir}. Batches of tuples emitted by the upstream operator are published to the downstream operator
+ * at once.
+ *
+ * @since 2.2.0
+ */
+public class SpscInlineStream extends SpscReservoir implements Stream, BatchSink<Object>
+{
+  public SpscInlineStream(int capacity)
+  {
+    super("SpscInlineStream", capacity);
+  }
+
+  @Override
+  public void setup(StreamContext context)
+  {
+    setId(context.getId());
+  }
+
+  @Override
+  public void activate(StreamContext context)
+  {
+  }
+
+  @Override
+  public void deactivate()
+  {
+  }
+
+  @Override
+  public void teardown()
+  {
+  }
+
+  @Override
+  public void put(Object tuple)
+  {
+    if (!offer(tuple)) {
+      awaitOffer(tuple);
+    }
+  }
+
+  @Override
+  public void putAll(List<? extends Object> tuples)
+  {
+    int offset = 0;
+    while ((offset += offer(tuples, offset)) < tuples.size()) {
+      /* wait for room for the next tuple and then try to publish the rest of the batch in one go */
+      awaitOffer(tuples.get(offset++));
+    }
+  }
+
+  private void awaitOffer(Object tuple)
+  {
+    try {
+      if (ForkJoinTask.inForkJoinPool()) {
+        /* a worker of the NodeScheduler blocked on the full stream lets the pool start another worker for the consumer */
+        ForkJoinPool.managedBlock(new FullStreamBlocker(tuple));
+      }
+      else {
+        super.put(tuple);
+      }
+    }
+    catch (InterruptedException ie) {
+      logger.debug("Interrupted", ie);
+      throw new RuntimeException(ie);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "SpscInlineStream{" + super.toString() + '}';
+  }
+
+  private class FullStreamBlocker implements ForkJoinPool.ManagedBlocker
+  {
+    final Object tuple;
+    boolean added;
+
+    FullStreamBlocker(Object tuple)
+    {
+      this.tuple = tuple;
+    }
+
+    @Override
+    public boolean block() throws InterruptedException
+    {
+      while (!isReleasable()) {
+        LockSupport.parkNanos(this, BLOCKED_PUT_NANOS);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable()
+    {
+      if (!added) {
+        added = offer(tuple);
+      }
+      return added;
+    }
+
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SpscInlineStream.class);
+}
@@ -34,7 +34,18 @@ public abstract class AbstractWritableAdapter implements Writable, Serializable
   @Override
   public void readFields(DataInput arg0) throws IOException
   {
-    int len = arg0.readInt();
+    readSerializedFields(arg0, arg0.readInt());
+  }
+
+  /**
+   * Read the Java serialized public fields following their length.
+   *
+   * @param arg0 input
+   * @param len length of the serialized fields
+   * @throws IOException
+   */
+  protected void readSerializedFields(DataInput arg0, int len) throws IOException
+  {
     byte[] bytes = new byte[len];
     arg0.readFully(bytes);
     try {
@@ -59,6 +70,17 @@ public abstract class AbstractWritableAdapter implements Writable, Serializable
 
   @Override
   public void write(DataOutput arg0) throws IOException
+  {
+    writeSerializedFields(arg0);
+  }
+
+  /**
+   * Write the length of the Java serialized public fields followed by the fields.
+   *
+   * @param arg0 output
+   * @throws IOException
+   */
+  protected void writeSerializedFields(DataOutput arg0) throws IOException
   {
     ByteArrayOutputStream bos = new ByteArrayOutputStream();
     ObjectOutputStream oos = new ObjectOutputStream(bos);
@@ -86,6 +86,10 @@ public class OperatorInfo
   public long checkpointTime;
   @RecordField(type="stats")
   public long checkpointTimeMA;
+  @RecordField(type="stats")
+  public long checkpointSnapshotTime;
+  @RecordField(type="stats")
+  public long checkpointWriteTime;
   /**
    *
    * @param info
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.StorageAgent;
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.netlet.DefaultEventLoop;
+
+public class CheckpointPurgerTest
+{
+  private static class QueueingExecutor implements Executor
+  {
+    final List<Runnable> tasks = Lists.newArrayList();
+
+    @Override
+    public void execute(Runnable command)
+    {
+      tasks.add(command);
+    }
+
+    void runAll()
+    {
+      List<Runnable> queued = Lists.newArrayList(tasks);
+      tasks.clear();
+      for (Runnable task : queued) {
+        task.run();
+      }
+    }
+
+  }
+
+  private static class RecordingStorageAgent implements StorageAgent
+  {
+    final List<String> deletes = Lists.newArrayList();
+
+    @Override
+    public void save(Object object, int operatorId, long windowId) throws IOException
+    {
+    }
+
+    @Override
+    public Object load(int operatorId, long windowId) throws IOException
+    {
+      return null;
+    }
+
+    @Override
+    public void delete(int operatorId, long windowId) throws IOException
+    {
+      deletes.add(operatorId + ":" + windowId);
+    }
+
+    @Override
+    public long[] getWindowIds(int operatorId) throws IOException
+    {
+      return new long[0];
+    }
+
+  }
+
+  private static class RecordingBulkStorageAgent extends RecordingStorageAgent implements StorageAgent.BulkDeleteStorageAgent
+  {
+    @Override
+    public void delete(int operatorId, long[] windowIds) throws IOException
+    {
+      deletes.add(operatorId + ":" + Arrays.toString(windowIds));
+    }
+
+  }
+
+  @Test
+  public void testDelete()
+  {
+    QueueingExecutor executor = new QueueingExecutor();
+    CheckpointPurger purger = new CheckpointPurger(executor, null);
+    RecordingBulkStorageAgent bulkAgent = new RecordingBulkStorageAgent();
+    RecordingStorageAgent agent = new RecordingStorageAgent();
+
+    purger.delete(bulkAgent, 1, Arrays.asList(2L, 1L));
+    purger.delete(bulkAgent, 1, Arrays.asList(3L));
+    purger.delete(agent, 2, Arrays.asList(1L));
+    purger.delete(agent, 2, Arrays.asList(2L));
+    Assert.assertEquals("tasks per operator", 2, executor.tasks.size());
+    executor.runAll();
+    Assert.assertEquals("bulk deletes", Arrays.asList("1:[1, 2, 3]"), bulkAgent.deletes);
+    Assert.assertEquals("deletes", Arrays.asList("2:1", "2:2"), agent.deletes);
+
+    purger.delete(bulkAgent, 1, Arrays.asList(4L));
+    Assert.assertEquals("tasks after completion", 1, executor.tasks.size());
+    executor.runAll();
+    Assert.assertEquals("bulk deletes", Arrays.asList("1:[1, 2, 3]", "1:[4]"), bulkAgent.deletes);
+  }
+
+  @Test
+  public void testDeleteWhileDeleting()
+  {
+    final QueueingExecutor executor = new QueueingExecutor();
+    final CheckpointPurger purger = new CheckpointPurger(executor, null);
+    final List<Integer> queuedWhileDeleting = Lists.newArrayList();
+    RecordingBulkStorageAgent agent = new RecordingBulkStorageAgent()
+    {
+      @Override
+      public void delete(int operatorId, long[] windowIds) throws IOException
+      {
+        super.delete(operatorId, windowIds);
+        if (deletes.size() == 1) {
+          purger.delete(this, operatorId, Arrays.asList(3L));
+          queuedWhileDeleting.add(executor.tasks.size());
+        }
+      }
+
+    };
+
+    purger.delete(agent, 1, Arrays.asList(1L, 2L));
+    executor.runAll();
+    Assert.assertEquals("tasks queued while deleting", Arrays.asList(0), queuedWhileDeleting);
+    Assert.assertEquals("follow-up tasks", 1, executor.tasks.size());
+
+    purger.delete(agent, 1, Arrays.asList(4L));
+    Assert.assertEquals("merged into follow-up", 1, executor.tasks.size());
+    executor.runAll();
+    Assert.assertEquals("bulk deletes", Arrays.asList("1:[1, 2]", "1:[3, 4]"), agent.deletes);
+    Assert.assertTrue("no more tasks", executor.tasks.isEmpty());
+
+    purger.delete(agent, 1, Arrays.asList(5L));
+    Assert.assertEquals("tasks after completion", 1, executor.tasks.size());
+  }
+
+  @Test
+  @SuppressWarnings("SleepWhileInLoop")
+  public void testPurgeConnectionReuse() throws Exception
+  {
+    DefaultEventLoop eventloop = new DefaultEventLoop("CheckpointPurgerTest");
+    eventloop.start();
+    Server server = new Server(0);
+    try {
+      InetSocketAddress address = server.run(eventloop);
+      QueueingExecutor executor = new QueueingExecutor();
+      CheckpointPurger purger = new CheckpointPurger(executor, eventloop);
+
+      purger.purge(address, null, "1.out.1", 1);
+      purger.purge(address, null, "2.out.1", 2);
+      Assert.assertEquals("tasks per buffer server", 1, executor.tasks.size());
+      executor.runAll();
+      BufferServerController bsc = purger.controllers.get(address);
+      Assert.assertNotNull("connection", bsc);
+      for (int i = 0; i < 100 && !bsc.isConnected(); i++) {
+        Thread.sleep(20);
+      }
+      Assert.assertTrue("connected", bsc.isConnected());
+
+      purger.purge(address, null, "1.out.1", 3);
+      executor.runAll();
+      // the buffer server closes the connection after responding to a purge request unless asked to keep it alive
+      Thread.sleep(500);
+      Assert.assertSame("connection reused", bsc, purger.controllers.get(address));
+      Assert.assertFalse("connection open", bsc.isClosed());
+
+      purger.teardown();
+      Assert.assertTrue("connections closed", purger.controllers.isEmpty());
+    }
+    finally {
+      eventloop.stop(server);
+      eventloop.stop();
+    }
+  }
+
+}
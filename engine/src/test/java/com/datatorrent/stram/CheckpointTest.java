@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -37,6 +38,8 @@ import com.datatorrent.api.DAG.Locality;
 import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
 import com.datatorrent.api.annotation.Stateless;
 
+import com.datatorrent.common.partitioner.StatelessPartitioner;
+
 import com.datatorrent.stram.MockContainer.MockOperatorStats;
 import com.datatorrent.stram.StreamingContainerManager.UpdateCheckpointsContext;
 import com.datatorrent.stram.api.Checkpoint;
@@ -470,4 +473,93 @@ public class CheckpointTest
   }
 
 
+  private static LogicalPlan newRandomDAG(Random random, String dir)
+  {
+    LogicalPlan dag = new LogicalPlan();
+    dag.setAttribute(LogicalPlan.APPLICATION_PATH, dir);
+    dag.setAttribute(com.datatorrent.api.Context.OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    // single container, no buffer server to purge
+    dag.setAttribute(LogicalPlan.CONTAINERS_MAX_COUNT, 1);
+
+    List<GenericTestOperator> operators = Lists.newArrayList();
+    Map<DefaultOutputPort<Object>, DAG.StreamMeta> streams = Maps.newHashMap();
+    int operatorCount = 2 + random.nextInt(10);
+    for (int i = 0; i < operatorCount; i++) {
+      GenericTestOperator o = dag.addOperator("o" + i, GenericTestOperator.class);
+      if (random.nextInt(3) == 0) {
+        dag.setAttribute(o, com.datatorrent.api.Context.OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(2 + random.nextInt(2)));
+      }
+      if (i > 0) {
+        List<Operator.InputPort<Object>> inputs = Lists.newArrayList(o.inport1);
+        if (random.nextBoolean()) {
+          inputs.add(o.inport2);
+        }
+        for (Operator.InputPort<Object> input : inputs) {
+          GenericTestOperator source = operators.get(random.nextInt(i));
+          DefaultOutputPort<Object> output = random.nextBoolean() ? source.outport1 : source.outport2;
+          DAG.StreamMeta stream = streams.get(output);
+          if (stream == null) {
+            streams.put(output, dag.addStream("s" + streams.size(), output, input));
+          }
+          else {
+            stream.addSink(input);
+          }
+        }
+      }
+      operators.add(o);
+    }
+    return dag;
+  }
+
+  /**
+   * The incremental checkpoint update needs to arrive at the same checkpoints as visiting all operators.
+   */
+  @Test
+  public void testIncrementalUpdateCheckpoints() throws Exception
+  {
+    MockClock clock = new MockClock();
+    for (int seed = 0; seed < 20; seed++) {
+      StreamingContainerManager scm = new StreamingContainerManager(newRandomDAG(new Random(seed), testMeta.dir), clock);
+      Collection<PTOperator> operators = scm.getPhysicalPlan().getAllOperators().values();
+      for (PTOperator oper : operators) {
+        oper.setState(PTOperator.State.ACTIVE);
+      }
+
+      Random random = new Random(seed);
+      for (int round = 0; round < 50; round++) {
+        for (PTOperator oper : operators) {
+          if (random.nextInt(3) == 0) {
+            scm.addCheckpoint(oper, new Checkpoint(oper.getRecentCheckpoint().windowId + 1 + random.nextInt(3), 0, 0));
+          }
+        }
+
+        Map<PTOperator, Checkpoint> recoveryCheckpoints = Maps.newHashMap();
+        Map<PTOperator, List<Checkpoint>> checkpoints = Maps.newHashMap();
+        for (PTOperator oper : operators) {
+          recoveryCheckpoints.put(oper, oper.getRecoveryCheckpoint());
+          checkpoints.put(oper, new ArrayList<Checkpoint>(oper.checkpoints));
+        }
+        long committedWindowId = scm.updateCheckpoints(false);
+
+        Map<PTOperator, Checkpoint> updatedRecoveryCheckpoints = Maps.newHashMap();
+        Map<PTOperator, List<Checkpoint>> updatedCheckpoints = Maps.newHashMap();
+        for (PTOperator oper : operators) {
+          updatedRecoveryCheckpoints.put(oper, oper.getRecoveryCheckpoint());
+          updatedCheckpoints.put(oper, new ArrayList<Checkpoint>(oper.checkpoints));
+          // repeat from the same state visiting all operators
+          oper.setRecoveryCheckpoint(recoveryCheckpoints.get(oper));
+          oper.checkpoints.clear();
+          oper.checkpoints.addAll(checkpoints.get(oper));
+        }
+        scm.invalidateCheckpoints();
+        Assert.assertEquals("committed window id seed " + seed + " round " + round, scm.updateCheckpoints(false), committedWindowId);
+
+        for (PTOperator oper : operators) {
+          Assert.assertEquals("recovery checkpoint " + oper + " seed " + seed + " round " + round, oper.getRecoveryCheckpoint(), updatedRecoveryCheckpoints.get(oper));
+          Assert.assertEquals("checkpoints " + oper + " seed " + seed + " round " + round, oper.checkpoints, updatedCheckpoints.get(oper));
+        }
+      }
+    }
+  }
+
 }
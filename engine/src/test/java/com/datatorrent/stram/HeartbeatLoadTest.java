@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+
+import com.datatorrent.common.partitioner.StatelessPartitioner;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.engine.GenericTestOperator;
+import com.datatorrent.stram.engine.TestGeneratorInputOperator;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.plan.physical.PTContainer;
+import com.datatorrent.stram.plan.physical.PTOperator;
+import com.datatorrent.stram.support.StramTestSupport.MemoryStorageAgent;
+import com.datatorrent.stram.support.StramTestSupport.TestMeta;
+
+/**
+ * Drives the heartbeat processing of the container manager with hundreds of simulated containers reporting
+ * concurrently while the master main loop collects the stats.
+ */
+public class HeartbeatLoadTest
+{
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  @Test
+  public void testConcurrentHeartbeats() throws Exception
+  {
+    final int partitionCount = 50;
+    final int threadCount = 4;
+    final int windowCount = 20;
+    final long baseWindowId = 0x561f8e2a00000000L;
+
+    LogicalPlan dag = new LogicalPlan();
+    dag.setAttribute(com.datatorrent.api.Context.DAGContext.APPLICATION_PATH, testMeta.dir);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    TestGeneratorInputOperator o1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
+    dag.setAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<TestGeneratorInputOperator>(partitionCount));
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.setInputPortAttribute(o2.inport1, PortContext.PARTITION_PARALLEL, true);
+    dag.addStream("o1.outport", o1.outport, o2.inport1);
+
+    final StreamingContainerManager scm = new StreamingContainerManager(dag);
+    List<PTContainer> containers = scm.getPhysicalPlan().getContainers();
+    Assert.assertEquals("containers", 2 * partitionCount, containers.size());
+
+    List<MockContainer> mockContainers = Lists.newArrayList();
+    for (PTContainer container : containers) {
+      mockContainers.add(new MockContainer(scm, container));
+    }
+    for (MockContainer container : mockContainers) {
+      container.deploy();
+    }
+    for (MockContainer container : mockContainers) {
+      scm.processHeartbeat(newHeartbeat(container, baseWindowId));
+    }
+    for (PTOperator operator : scm.getPhysicalPlan().getAllOperators().values()) {
+      Assert.assertEquals("state " + operator, PTOperator.State.ACTIVE, operator.getState());
+    }
+
+    final List<List<MockContainer>> shards = Lists.newArrayList();
+    for (int i = 0; i < threadCount; i++) {
+      shards.add(new ArrayList<MockContainer>());
+    }
+    for (int i = 0; i < mockContainers.size(); i++) {
+      shards.get(i % threadCount).add(mockContainers.get(i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    final AtomicBoolean done = new AtomicBoolean();
+    List<Future<?>> futures = Lists.newArrayList();
+    long start = System.nanoTime();
+    for (final List<MockContainer> shard : shards) {
+      futures.add(executor.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          for (int window = 1; window <= windowCount; window++) {
+            for (MockContainer container : shard) {
+              scm.processHeartbeat(newHeartbeat(container, baseWindowId + window));
+            }
+          }
+        }
+
+      }));
+    }
+
+    int monitorCount = 0;
+    while (!done.get()) {
+      scm.monitorHeartbeat();
+      monitorCount++;
+      done.set(true);
+      for (Future<?> future : futures) {
+        if (!future.isDone()) {
+          done.set(false);
+        }
+      }
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    executor.shutdown();
+    scm.monitorHeartbeat();
+
+    int heartbeats = mockContainers.size() * windowCount;
+    logger.info("Processed {} heartbeats of {} containers with {} threads in {} ms ({} heartbeats/s, {} master loop iterations)",
+      heartbeats, mockContainers.size(), threadCount, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+      heartbeats * TimeUnit.SECONDS.toNanos(1) / elapsedNanos, monitorCount);
+
+    long reportedTuples = (long)partitionCount * (windowCount + 1);
+    Assert.assertEquals("tuples emitted by o1", reportedTuples, dag.getMeta(o1).getStatus().totalTuplesEmitted);
+    Assert.assertEquals("tuples processed by o2", reportedTuples, dag.getMeta(o2).getStatus().totalTuplesProcessed);
+    for (PTOperator operator : scm.getPhysicalPlan().getAllOperators().values()) {
+      Assert.assertEquals("window " + operator, baseWindowId + windowCount, operator.stats.currentWindowId.get());
+      Assert.assertEquals("tuples " + operator, windowCount + 1, operator.stats.totalTuplesEmitted.get() + operator.stats.totalTuplesProcessed.get());
+    }
+    Assert.assertNotNull("critical path", scm.getCriticalPathInfo());
+  }
+
+  private static ContainerHeartbeat newHeartbeat(MockContainer container, long windowId)
+  {
+    ContainerHeartbeat heartbeat = new ContainerHeartbeat();
+    heartbeat.setContainerStats(new ContainerStats(container.container.getExternalId()));
+    long now = System.currentTimeMillis();
+    for (PTOperator operator : container.container.getOperators()) {
+      OperatorHeartbeat operatorHeartbeat = new OperatorHeartbeat();
+      operatorHeartbeat.setNodeId(operator.getId());
+      operatorHeartbeat.setState(OperatorHeartbeat.DeployState.ACTIVE);
+      operatorHeartbeat.setGeneratedTms(now);
+      OperatorStats stats = new OperatorStats();
+      stats.windowId = windowId;
+      stats.inputPorts = Lists.newArrayList();
+      stats.outputPorts = Lists.newArrayList();
+      PortStats port;
+      if (operator.getInputs().isEmpty()) {
+        port = new PortStats(TestGeneratorInputOperator.OUTPUT_PORT);
+        stats.outputPorts.add(port);
+      }
+      else {
+        port = new PortStats(GenericTestOperator.IPORT1);
+        stats.inputPorts.add(port);
+      }
+      port.tupleCount = 1;
+      port.endWindowTimestamp = now;
+      operatorHeartbeat.windowStats.add(stats);
+      heartbeat.getContainerStats().operators.add(operatorHeartbeat);
+    }
+    return heartbeat;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(HeartbeatLoadTest.class);
+}
@@ -28,6 +28,9 @@ import org.apache.hadoop.io.DataOutputByteBuffer;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -47,9 +50,11 @@ import com.datatorrent.stram.StreamingContainerManager.ContainerResource;
 import com.datatorrent.stram.api.AppDataSource;
 import com.datatorrent.stram.api.Checkpoint;
 import com.datatorrent.stram.api.ContainerContext;
+import com.datatorrent.stram.api.HeartbeatStatsDelta;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.InputDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.OutputDeployInfo;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
@@ -619,6 +624,75 @@ public class StreamingContainerManagerTest {
     return scm.assignContainer(new ContainerResource(0, containerId, "localhost", 1024, 0,null), InetSocketAddress.createUnresolved(containerId+"Host", 0));
   }
 
+  /**
+   * Stats which the master cannot decode are sent again in full, the checkpoint they report is not lost.
+   */
+  @Test
+  public void testStatsDeltaReset() throws Exception
+  {
+    LogicalPlan dag = new LogicalPlan();
+    dag.setAttribute(LogicalPlan.APPLICATION_PATH, testMeta.dir);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+
+    final StreamingContainerManager scm = new StreamingContainerManager(dag);
+    PhysicalPlan plan = scm.getPhysicalPlan();
+    PTOperator o1p1 = plan.getOperators(dag.getMeta(o1)).get(0);
+    MockContainer mc = new MockContainer(scm, o1p1.getContainer());
+    mc.deploy();
+    mc.stats(o1p1.getId()).deployState(OperatorHeartbeat.DeployState.ACTIVE).currentWindowId(1).checkpointWindowId(1);
+    mc.sendHeartbeat();
+    Assert.assertEquals("state " + o1p1, PTOperator.State.ACTIVE, o1p1.getState());
+    Assert.assertEquals("checkpoints " + o1p1, Lists.newArrayList(new Checkpoint(1, 0, 0)), o1p1.checkpoints);
+
+    final List<ContainerHeartbeatResponse> responses = Lists.newArrayList();
+    StreamingContainerUmbilicalProtocol umbilical = Mockito.mock(StreamingContainerUmbilicalProtocol.class);
+    Mockito.doAnswer(new Answer<ContainerHeartbeatResponse>()
+    {
+      @Override
+      public ContainerHeartbeatResponse answer(InvocationOnMock invocation)
+      {
+        ContainerHeartbeatResponse rsp = scm.processHeartbeat((ContainerHeartbeat)invocation.getArguments()[0]);
+        responses.add(rsp);
+        return rsp;
+      }
+
+    }).when(umbilical).processHeartbeat(Mockito.any(ContainerHeartbeat.class));
+
+    // encode against stats the master never received
+    HeartbeatStatsDelta.Encoder encoder = new HeartbeatStatsDelta.Encoder();
+    encoder.encode(newOperatorStats(mc, o1p1, 2, 1));
+    encoder.acknowledge();
+
+    ContainerHeartbeat hb = new ContainerHeartbeat();
+    ContainerHeartbeatResponse rsp = encoder.send(umbilical, hb, newOperatorStats(mc, o1p1, 4, 3));
+    Assert.assertEquals("heartbeats", 2, responses.size());
+    Assert.assertTrue("reset", responses.get(0).resetStatsDelta);
+    Assert.assertFalse("reset", rsp.resetStatsDelta);
+    Assert.assertEquals("window " + o1p1, 4, o1p1.stats.currentWindowId.get());
+    Assert.assertEquals("checkpoints " + o1p1, Lists.newArrayList(new Checkpoint(1, 0, 0), new Checkpoint(3, 0, 0)), o1p1.checkpoints);
+
+    // the encoding continues against the stats sent in full
+    rsp = encoder.send(umbilical, hb, newOperatorStats(mc, o1p1, 6, 5));
+    Assert.assertEquals("heartbeats", 3, responses.size());
+    Assert.assertFalse("reset", rsp.resetStatsDelta);
+    Assert.assertEquals("checkpoints " + o1p1, Lists.newArrayList(new Checkpoint(1, 0, 0), new Checkpoint(3, 0, 0), new Checkpoint(5, 0, 0)), o1p1.checkpoints);
+  }
+
+  private static ContainerStats newOperatorStats(MockContainer mc, PTOperator oper, long windowId, long checkpointWindowId)
+  {
+    ContainerStats cstats = new ContainerStats(mc.container.getExternalId());
+    OperatorHeartbeat ohb = new OperatorHeartbeat();
+    ohb.setNodeId(oper.getId());
+    ohb.setState(OperatorHeartbeat.DeployState.ACTIVE);
+    OperatorStats stats = new OperatorStats();
+    stats.windowId = windowId;
+    stats.checkpoint = new Checkpoint(checkpointWindowId, 0, 0);
+    ohb.windowStats = Lists.newArrayList(stats);
+    cstats.operators.add(ohb);
+    return cstats;
+  }
+
   @Test
   public void testValidGenericOperatorDeployInfoType()
   {
@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.io.DataInputByteBuffer;
+import org.apache.hadoop.io.DataOutputByteBuffer;
+import org.apache.hadoop.io.Writable;
+
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.api.Stats.CheckpointStats;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
+import com.datatorrent.stram.engine.OperatorResponse;
+
+/**
+ * Tests the binary heartbeat encoding against the Java serialized one.
+ */
+public class HeartbeatFormatTest
+{
+  /**
+   * Classes of which every public field has to be populated by the samples so that a field missing from the
+   * encoding does not go unnoticed.
+   */
+  private static final List<Class<?>> ENCODED_CLASSES = Arrays.<Class<?>>asList(ContainerHeartbeat.class, ContainerHeartbeatResponse.class, ContainerStats.class, OperatorHeartbeat.class, OperatorStats.class, PortStats.class, CheckpointStats.class, Checkpoint.class);
+
+  @Test
+  public void testHeartbeat() throws Exception
+  {
+    ContainerHeartbeat heartbeat = newHeartbeat(3, 2);
+    ContainerHeartbeat clone = roundTrip(heartbeat, new ContainerHeartbeat());
+    assertFields("heartbeat", heartbeat, clone);
+  }
+
+  @Test
+  public void testLegacyHeartbeat() throws Exception
+  {
+    LegacyContainerHeartbeat heartbeat = new LegacyContainerHeartbeat();
+    heartbeat.bufferServerHost = "localhost";
+    heartbeat.stats = newHeartbeat(1, 1).stats;
+    ContainerHeartbeat clone = roundTrip(heartbeat, new ContainerHeartbeat());
+    Assert.assertEquals("host", heartbeat.bufferServerHost, clone.bufferServerHost);
+    Assert.assertEquals("container", heartbeat.stats.id, clone.stats.id);
+    Assert.assertEquals("operators", 1, clone.stats.operators.size());
+  }
+
+  @Test
+  public void testEmptyHeartbeat() throws Exception
+  {
+    ContainerHeartbeat heartbeat = new ContainerHeartbeat();
+    ContainerHeartbeat clone = roundTrip(heartbeat, new ContainerHeartbeat());
+    Assert.assertNull("stats", clone.stats);
+    Assert.assertNull("host", clone.bufferServerHost);
+    Assert.assertEquals("sent", heartbeat.sentTms, clone.sentTms);
+
+    heartbeat.stats = new ContainerStats("container_1");
+    heartbeat.stats.operators.add(new OperatorHeartbeat());
+    clone = roundTrip(heartbeat, new ContainerHeartbeat());
+    OperatorHeartbeat operator = clone.stats.operators.get(0);
+    Assert.assertNull("state", operator.state);
+    Assert.assertNull("response", operator.requestResponse);
+    Assert.assertTrue("window stats", operator.windowStats.isEmpty());
+  }
+
+  @Test
+  public void testResponse() throws Exception
+  {
+    ContainerHeartbeatResponse response = newResponse();
+    ContainerHeartbeatResponse clone = roundTrip(response, new ContainerHeartbeatResponse());
+    assertFields("response", response, clone);
+
+    ContainerHeartbeatResponse empty = roundTrip(new ContainerHeartbeatResponse(), new ContainerHeartbeatResponse());
+    Assert.assertNull("deploy", empty.deployRequest);
+    Assert.assertNull("undeploy", empty.undeployRequest);
+    Assert.assertEquals("committed", -1, empty.committedWindowId);
+  }
+
+  /**
+   * Compares the time to encode and decode a heartbeat and the encoded size with the Java serialized format. The
+   * heartbeat carries only the stats and metrics every operator reports, as operator responses and metrics of other
+   * types are rare and Java serialized by both formats.
+   */
+  @Test
+  public void testBenchmark() throws Exception
+  {
+    int iterations = 2000;
+    ContainerHeartbeat heartbeat = newHeartbeat(10, 2);
+    for (OperatorHeartbeat operator : heartbeat.stats.operators) {
+      operator.requestResponse = null;
+      for (OperatorStats stats : operator.windowStats) {
+        stats.metrics.remove("sizes");
+      }
+    }
+    LegacyContainerHeartbeat legacy = new LegacyContainerHeartbeat();
+    legacy.stats = heartbeat.stats;
+    legacy.bufferServerHost = heartbeat.bufferServerHost;
+    legacy.jvmName = heartbeat.jvmName;
+    heartbeat.statsDelta = null;
+
+    for (int warmup = 0; warmup < 2; warmup++) {
+      long[] binary = benchmark(heartbeat, new ContainerHeartbeat(), iterations);
+      long[] serialized = benchmark(legacy, new LegacyContainerHeartbeat(), iterations);
+      if (warmup > 0) {
+        logger.info("Binary heartbeat: {} bytes, encode {} us, decode {} us", binary[0], binary[1] / 1000, binary[2] / 1000);
+        logger.info("Serialized heartbeat: {} bytes, encode {} us, decode {} us", serialized[0], serialized[1] / 1000, serialized[2] / 1000);
+        Assert.assertTrue("binary is smaller", binary[0] < serialized[0]);
+      }
+    }
+  }
+
+  private static long[] benchmark(Writable heartbeat, Writable clone, int iterations) throws IOException
+  {
+    DataOutputByteBuffer out = new DataOutputByteBuffer();
+    long encodeNanos = 0;
+    long decodeNanos = 0;
+    int bytes = 0;
+    for (int i = 0; i < iterations; i++) {
+      out.reset();
+      long start = System.nanoTime();
+      heartbeat.write(out);
+      long encoded = System.nanoTime();
+      bytes = out.getLength();
+      DataInputByteBuffer in = new DataInputByteBuffer();
+      in.reset(out.getData());
+      long decode = System.nanoTime();
+      clone.readFields(in);
+      decodeNanos += System.nanoTime() - decode;
+      encodeNanos += encoded - start;
+    }
+    return new long[] {bytes, encodeNanos / iterations, decodeNanos / iterations};
+  }
+
+  private static <T extends Writable> T roundTrip(Writable writable, T clone) throws IOException
+  {
+    DataOutputByteBuffer out = new DataOutputByteBuffer();
+    writable.write(out);
+    DataInputByteBuffer in = new DataInputByteBuffer();
+    in.reset(out.getData());
+    clone.readFields(in);
+    return clone;
+  }
+
+  static ContainerHeartbeat newHeartbeat(int operatorCount, int windowCount)
+  {
+    ContainerHeartbeat heartbeat = new ContainerHeartbeat();
+    heartbeat.bufferServerHost = "node17.cluster.local";
+    heartbeat.bufferServerPort = 50123;
+    heartbeat.jvmName = "12345@node17.cluster.local";
+    heartbeat.memoryMBFree = 1024;
+    heartbeat.restartRequested = true;
+    heartbeat.gcCollectionTime = 1500;
+    heartbeat.gcCollectionCount = 12;
+    heartbeat.stats = new ContainerStats("container_1444000000000_0001_01_000002");
+    heartbeat.statsDelta = new byte[] {1, 2, 3};
+
+    long windowId = 0x561f8e2a00001234L;
+    for (int operator = 1; operator <= operatorCount; operator++) {
+      OperatorHeartbeat operatorHeartbeat = new OperatorHeartbeat();
+      operatorHeartbeat.nodeId = operator;
+      operatorHeartbeat.generatedTms = heartbeat.sentTms;
+      operatorHeartbeat.intervalMs = 1000;
+      operatorHeartbeat.state = OperatorHeartbeat.DeployState.ACTIVE;
+      operatorHeartbeat.requestResponse = new ArrayList<StatsListener.OperatorResponse>();
+      operatorHeartbeat.requestResponse.add(new OperatorResponse(operator, "done"));
+
+      for (int window = 0; window < windowCount; window++) {
+        OperatorStats stats = new OperatorStats();
+        stats.windowId = windowId + window;
+        stats.checkpoint = new Checkpoint(windowId - 60, 1, 60);
+        stats.inputPorts = new ArrayList<PortStats>();
+        stats.inputPorts.add(newPortStats("input", window));
+        stats.outputPorts = new ArrayList<PortStats>();
+        stats.outputPorts.add(newPortStats("output", window));
+        stats.cpuTimeUsed = 2500000;
+        stats.checkpointStats = new CheckpointStats();
+        stats.checkpointStats.checkpointStartTime = heartbeat.sentTms - 100;
+        stats.checkpointStats.checkpointTime = 20;
+        stats.checkpointStats.snapshotTime = 15;
+        stats.checkpointStats.writeTime = 5;
+        stats.counters = 42L;
+        stats.metrics = new HashMap<String, Object>();
+        stats.metrics.put("tuplesPerSecond", 12345.5);
+        stats.metrics.put("latencyMillis", 17);
+        stats.metrics.put("name", "metric");
+        stats.metrics.put("sizes", new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+        stats.recordingId = "recording";
+        operatorHeartbeat.windowStats.add(stats);
+      }
+      heartbeat.stats.operators.add(operatorHeartbeat);
+    }
+    return heartbeat;
+  }
+
+  private static PortStats newPortStats(String id, int window)
+  {
+    PortStats stats = new PortStats(id);
+    stats.tupleCount = 1000 + window;
+    stats.endWindowTimestamp = System.currentTimeMillis();
+    stats.bufferServerBytes = 64000;
+    stats.bufferServerBlockedMillis = 3;
+    stats.queueSize = 12;
+    stats.dataQueueSize = 10;
+    stats.controlQueueSize = 2;
+    stats.recordingId = "recording";
+    return stats;
+  }
+
+  private static ContainerHeartbeatResponse newResponse()
+  {
+    ContainerHeartbeatResponse response = new ContainerHeartbeatResponse();
+    response.shutdown = true;
+    StramToNodeRequest request = new StramToNodeRequest();
+    request.operatorId = 2;
+    request.requestType = StramToNodeRequest.RequestType.START_RECORDING;
+    request.portName = "output";
+    response.nodeRequests = new ArrayList<StramToNodeRequest>();
+    response.nodeRequests.add(request);
+    response.hasPendingRequests = true;
+    response.undeployRequest = Arrays.asList(4, 5);
+    OperatorDeployInfo ndi = new OperatorDeployInfo();
+    ndi.id = 6;
+    ndi.name = "operator";
+    response.deployRequest = Collections.singletonList(ndi);
+    response.committedWindowId = 0x561f8e2a00001234L;
+    response.resetStatsDelta = true;
+    return response;
+  }
+
+  /**
+   * Compares the public fields recursively. Fields of the encoded classes have to be populated in the expected object.
+   */
+  static void assertFields(String path, Object expected, Object actual) throws IllegalAccessException
+  {
+    assertFields(path, expected, actual, true);
+  }
+
+  static void assertFields(String path, Object expected, Object actual, boolean populated) throws IllegalAccessException
+  {
+    if (expected == null) {
+      Assert.assertNull(path, actual);
+      return;
+    }
+    Assert.assertNotNull(path, actual);
+
+    if (expected instanceof List) {
+      List<?> expectedList = (List<?>)expected;
+      List<?> actualList = (List<?>)actual;
+      Assert.assertEquals(path + ".size", expectedList.size(), actualList.size());
+      for (int i = 0; i < expectedList.size(); i++) {
+        assertFields(path + "[" + i + "]", expectedList.get(i), actualList.get(i), populated);
+      }
+    }
+    else if (expected instanceof byte[]) {
+      Assert.assertArrayEquals(path, (byte[])expected, (byte[])actual);
+    }
+    else if (expected instanceof Map) {
+      Map<?, ?> expectedMap = (Map<?, ?>)expected;
+      Map<?, ?> actualMap = (Map<?, ?>)actual;
+      Assert.assertEquals(path + ".keys", expectedMap.keySet(), actualMap.keySet());
+      for (Map.Entry<?, ?> entry : expectedMap.entrySet()) {
+        assertFields(path + "[" + entry.getKey() + "]", entry.getValue(), actualMap.get(entry.getKey()), populated);
+      }
+    }
+    else if (expected.getClass().getName().startsWith("com.datatorrent.") && !expected.getClass().isEnum()) {
+      Assert.assertEquals(path + ".class", expected.getClass(), actual.getClass());
+      boolean encoded = populated && ENCODED_CLASSES.contains(expected.getClass()) || expected instanceof LegacyContainerHeartbeat;
+      int compared = 0;
+      for (Field field : expected.getClass().getFields()) {
+        if (Modifier.isStatic(field.getModifiers())) {
+          continue;
+        }
+        Object value = field.get(expected);
+        if (encoded) {
+          Assert.assertFalse(path + "." + field.getName() + " is populated", value == null || Boolean.FALSE.equals(value) || value instanceof Number && ((Number)value).longValue() == 0);
+        }
+        assertFields(path + "." + field.getName(), value, field.get(actual), populated);
+        compared++;
+      }
+      if (compared == 0) {
+        Assert.assertEquals(path, expected.toString(), actual.toString());
+      }
+    }
+    else {
+      Assert.assertEquals(path, expected, actual);
+    }
+  }
+
+  /**
+   * Heartbeat sent by a container which predates the binary encoding.
+   */
+  public static class LegacyContainerHeartbeat extends ContainerHeartbeat
+  {
+    private static final long serialVersionUID = 201510171830L;
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      writeSerializedFields(out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      readSerializedFields(in, in.readInt());
+    }
+
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(HeartbeatFormatTest.class);
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.io.DataOutputByteBuffer;
+
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+
+/**
+ * Tests the delta encoding of the operator stats across heartbeats.
+ */
+public class HeartbeatStatsDeltaTest
+{
+  private static final String CONTAINER_ID = "container_1444000000000_0001_01_000002";
+
+  @Test
+  public void testDelta() throws Exception
+  {
+    HeartbeatStatsDelta.Encoder encoder = new HeartbeatStatsDelta.Encoder();
+    HeartbeatStatsDelta.Decoder decoder = new HeartbeatStatsDelta.Decoder();
+    for (int i = 0; i < 5; i++) {
+      ContainerStats stats = newStats(3, 2, i);
+      if (i == 3) {
+        stats.operators.remove(1);
+        stats.operators.get(0).windowStats.get(0).metrics.remove("name");
+        stats.operators.get(0).windowStats.get(1).outputPorts.add(0, new PortStats("output2"));
+      }
+      ContainerStats decoded = new ContainerStats(stats.id);
+      Assert.assertTrue("decoded " + i, decoder.decode(encoder.encode(stats), decoded));
+      encoder.acknowledge();
+      HeartbeatFormatTest.assertFields("stats" + i, stats, decoded, i != 3);
+    }
+  }
+
+  @Test
+  public void testRetry() throws Exception
+  {
+    HeartbeatStatsDelta.Encoder encoder = new HeartbeatStatsDelta.Encoder();
+    HeartbeatStatsDelta.Decoder decoder = new HeartbeatStatsDelta.Decoder();
+    Assert.assertTrue(decoder.decode(encoder.encode(newStats(2, 1, 0)), new ContainerStats(CONTAINER_ID)));
+    encoder.acknowledge();
+
+    ContainerStats stats = newStats(2, 1, 1);
+    byte[] delta = encoder.encode(stats);
+    Assert.assertTrue(decoder.decode(delta, new ContainerStats(CONTAINER_ID)));
+    ContainerStats decoded = new ContainerStats(CONTAINER_ID);
+    Assert.assertTrue("decoded again", decoder.decode(delta, decoded));
+    HeartbeatFormatTest.assertFields("stats", stats, decoded);
+    encoder.acknowledge();
+
+    stats = newStats(2, 1, 2);
+    decoded = new ContainerStats(CONTAINER_ID);
+    Assert.assertTrue(decoder.decode(encoder.encode(stats), decoded));
+    HeartbeatFormatTest.assertFields("stats", stats, decoded);
+  }
+
+  @Test
+  public void testReset() throws Exception
+  {
+    HeartbeatStatsDelta.Encoder encoder = new HeartbeatStatsDelta.Encoder();
+    encoder.encode(newStats(2, 1, 0));
+    encoder.acknowledge();
+
+    HeartbeatStatsDelta.Decoder decoder = new HeartbeatStatsDelta.Decoder();
+    Assert.assertFalse("unknown baseline", decoder.decode(encoder.encode(newStats(2, 1, 1)), new ContainerStats(CONTAINER_ID)));
+    encoder.reset();
+
+    ContainerStats stats = newStats(2, 1, 2);
+    ContainerStats decoded = new ContainerStats(CONTAINER_ID);
+    Assert.assertTrue("decoded after reset", decoder.decode(encoder.encode(stats), decoded));
+    HeartbeatFormatTest.assertFields("stats", stats, decoded);
+  }
+
+  /**
+   * Compares the size of a heartbeat with full stats to one with the stats encoded against the previous heartbeat.
+   */
+  @Test
+  public void testSize() throws Exception
+  {
+    int operators = 100;
+    HeartbeatStatsDelta.Encoder encoder = new HeartbeatStatsDelta.Encoder();
+    ContainerStats previous = newStats(operators, 2, 0);
+    for (OperatorHeartbeat operator : previous.operators) {
+      operator.requestResponse = null;
+    }
+    encoder.encode(previous);
+    encoder.acknowledge();
+
+    ContainerHeartbeat full = HeartbeatFormatTest.newHeartbeat(1, 1);
+    full.statsDelta = null;
+    full.stats = newStats(operators, 2, 1);
+    for (OperatorHeartbeat operator : full.stats.operators) {
+      operator.requestResponse = null;
+      for (OperatorStats windowStats : operator.windowStats) {
+        windowStats.checkpointStats = null;
+      }
+    }
+    DataOutputByteBuffer out = new DataOutputByteBuffer();
+    full.write(out);
+    int fullBytes = out.getLength();
+
+    ContainerHeartbeat delta = HeartbeatFormatTest.newHeartbeat(1, 1);
+    delta.statsDelta = encoder.encode(full.stats);
+    delta.stats = new ContainerStats(full.stats.id);
+    out = new DataOutputByteBuffer();
+    delta.write(out);
+    int deltaBytes = out.getLength();
+
+    logger.info("Heartbeat of {} operators: {} bytes with full stats, {} bytes with delta", operators, fullBytes, deltaBytes);
+    Assert.assertTrue("delta is smaller", deltaBytes * 4 < fullBytes);
+  }
+
+  /**
+   * Stats of the heartbeat following the given number of heartbeats, each reporting the given number of windows.
+   */
+  private static ContainerStats newStats(int operatorCount, int windowCount, int heartbeat)
+  {
+    ContainerStats stats = HeartbeatFormatTest.newHeartbeat(operatorCount, windowCount).stats;
+    for (OperatorHeartbeat operator : stats.operators) {
+      operator.generatedTms = 1444000000000L + heartbeat * 1000;
+      int window = heartbeat * windowCount;
+      for (OperatorStats windowStats : operator.windowStats) {
+        windowStats.windowId = 0x561f8e2a00000000L + window;
+        windowStats.cpuTimeUsed = 2500000 + window * 1000;
+        windowStats.metrics.remove("sizes");
+        windowStats.metrics.put("tuplesPerSecond", 12345.5 + window % 3);
+        for (PortStats port : windowStats.inputPorts) {
+          port.endWindowTimestamp = 1444000000000L + window * 500;
+        }
+        for (PortStats port : windowStats.outputPorts) {
+          port.endWindowTimestamp = 1444000000000L + window * 500 + 2;
+        }
+        window++;
+      }
+    }
+    return stats;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(HeartbeatStatsDeltaTest.class);
+}
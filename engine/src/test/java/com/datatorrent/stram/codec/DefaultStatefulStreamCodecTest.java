@@ -16,6 +16,8 @@
 package com.datatorrent.stram.codec;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.esotericsoftware.kryo.DefaultSerializer;
 import com.esotericsoftware.kryo.Kryo;
@@ -26,7 +28,10 @@ import com.esotericsoftware.kryo.serializers.JavaSerializer;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
 import com.datatorrent.stram.codec.DefaultStatefulStreamCodec.ClassIdPair;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 
@@ -146,6 +151,48 @@ public class DefaultStatefulStreamCodecTest
     Assert.assertEquals(dsp1.state, dsp2.state);
   }
 
+  @Test
+  public void testMessagePair()
+  {
+    DefaultStatefulStreamCodec<Object> coder = new DefaultStatefulStreamCodec<Object>();
+    DefaultStatefulStreamCodec<Object> decoder = new DefaultStatefulStreamCodec<Object>();
+
+    List<Object> tuples = new ArrayList<Object>();
+    List<DataStatePair> messages = new ArrayList<DataStatePair>();
+    /* enough tuples to fill several message buffers, some of them larger than a buffer */
+    for (int i = 0; i < 10000; i++) {
+      Object tuple = i % 1000 == 0 ? new String(new char[DefaultStatefulStreamCodec.MESSAGE_BUFFER_SIZE]) : new TestClass("tuple " + i, i);
+      tuples.add(tuple);
+      messages.add(coder.toMessagePair(tuple, i));
+    }
+
+    Assert.assertNotNull("state of the first custom tuple", messages.get(1).state);
+    for (int i = 0; i < tuples.size(); i++) {
+      DataStatePair message = messages.get(i);
+      DataStatePair dsp = new DataStatePair();
+      if (message.state != null) {
+        dsp.state = unframe(message.state, MessageType.CODEC_STATE_VALUE, 1);
+      }
+      Slice data = unframe(message.data, MessageType.PAYLOAD_VALUE, 5);
+      Assert.assertEquals("partition of tuple " + i, PayloadTuple.getPartition(PayloadTuple.getSerializedTuple(i, 0), 0),
+                          PayloadTuple.getPartition(data.buffer, data.offset - 5));
+      dsp.data = data;
+      Assert.assertEquals("tuple " + i, tuples.get(i), decoder.fromDataStatePair(dsp));
+    }
+  }
+
+  /**
+   * Check the length and the type of the message and return its content.
+   */
+  private static Slice unframe(Slice message, byte type, int headerSize)
+  {
+    VarInt.MutableInt offset = new VarInt.MutableInt();
+    int length = VarInt.read(message.buffer, message.offset, message.offset + message.length, offset);
+    Assert.assertEquals("length", message.offset + message.length - offset.integer, length);
+    Assert.assertEquals("type", type, message.buffer[offset.integer]);
+    return new Slice(message.buffer, offset.integer + headerSize, length - headerSize);
+  }
+
   public static class TestTuple
   {
     final Integer finalField;
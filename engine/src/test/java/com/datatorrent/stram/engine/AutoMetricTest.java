@@ -390,4 +390,29 @@ public class AutoMetricTest
     Assert.assertEquals("myMetric", 3, ((Integer) aggregator.result.get("myMetric")).intValue());
     lc.shutdown();
   }
+
+  public static class OperatorWithPrivateMetric extends OperatorWithMetricMethod
+  {
+    @AutoMetric
+    private long processed = 7;
+  }
+
+  @Test
+  public void testCollector()
+  {
+    OperatorWithPrivateMetric operator = new OperatorWithPrivateMetric();
+    AutoMetricCollector collector = new AutoMetricCollector(operator);
+    Assert.assertEquals("metrics", 3, collector.size());
+
+    Map<String, Object> metrics = collector.collect(null);
+    Assert.assertEquals("all metrics", 3, metrics.size());
+    Assert.assertEquals("private field", 7L, metrics.get("processed"));
+    Assert.assertEquals("inherited field", 0, metrics.get("progress"));
+    Assert.assertEquals("getter", 3, metrics.get("myMetric"));
+
+    operator.endWindow();
+    metrics = collector.collect(Lists.newArrayList("progress"));
+    Assert.assertEquals("listed metrics", 1, metrics.size());
+    Assert.assertEquals("updated field", 1, metrics.get("progress"));
+  }
 }
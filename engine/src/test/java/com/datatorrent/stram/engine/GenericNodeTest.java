@@ -16,6 +16,8 @@
 package com.datatorrent.stram.engine;
 
 import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Assert;
 
@@ -26,6 +28,7 @@ import com.datatorrent.api.*;
 import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.tuple.EndStreamTuple;
 import com.datatorrent.stram.tuple.EndWindowTuple;
 import com.datatorrent.stram.tuple.Tuple;
@@ -208,4 +211,151 @@ public class GenericNodeTest
     Assert.assertEquals(Thread.State.TERMINATED, t.getState());
   }
 
+  @Test
+  public void testWakeUpOnTuple() throws InterruptedException
+  {
+    final long spinMillis = 60000;
+    DefaultAttributeMap attributes = new DefaultAttributeMap();
+    attributes.put(Context.OperatorContext.SPIN_MILLIS, (int)spinMillis);
+    GenericOperator go = new GenericOperator();
+    final GenericNode gn = new GenericNode(go, new com.datatorrent.stram.engine.OperatorContext(0, attributes, null));
+    gn.setId(1);
+    DefaultReservoir reservoir1 = new DefaultReservoir("ip1Res", 1024);
+    DefaultReservoir reservoir2 = new DefaultReservoir("ip2Res", 1024);
+    final LinkedBlockingQueue<Object> output = new LinkedBlockingQueue<Object>();
+    gn.connectInputPort("ip1", reservoir1);
+    gn.connectInputPort("ip2", reservoir2);
+    gn.connectOutputPort("op", new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        output.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+
+    });
+
+    Thread t = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        gn.activate();
+        gn.run();
+        gn.deactivate();
+      }
+
+    };
+    t.start();
+
+    /* give the node time to park on its idle reservoirs */
+    Thread.sleep(100);
+    long start = System.currentTimeMillis();
+    reservoir1.add(new Tuple(MessageType.BEGIN_WINDOW, 0x1L));
+    reservoir2.add(new Tuple(MessageType.BEGIN_WINDOW, 0x1L));
+    Assert.assertNotNull("begin window", output.poll(spinMillis / 2, TimeUnit.MILLISECONDS));
+
+    Thread.sleep(100);
+    reservoir1.add("tuple");
+    Assert.assertEquals("tuple", output.poll(spinMillis / 2, TimeUnit.MILLISECONDS));
+    Assert.assertTrue("woken up before the spin time", System.currentTimeMillis() - start < spinMillis / 2);
+
+    reservoir1.add(new EndWindowTuple(0x1L));
+    reservoir2.add(new EndWindowTuple(0x1L));
+    reservoir1.add(new EndStreamTuple(0L));
+    reservoir2.add(new EndStreamTuple(0L));
+    t.join(spinMillis / 2);
+    Assert.assertEquals(Thread.State.TERMINATED, t.getState());
+  }
+
+  @Test
+  public void testFinalAsyncCheckpointReported() throws InterruptedException
+  {
+    final NodeTest.AsyncStorageAgentImpl agent = new NodeTest.AsyncStorageAgentImpl();
+    DefaultAttributeMap attributes = new DefaultAttributeMap();
+    attributes.put(Context.OperatorContext.STORAGE_AGENT, agent);
+    attributes.put(Context.OperatorContext.ASYNC_CHECKPOINT, true);
+    attributes.put(Context.OperatorContext.PROCESSING_MODE, Operator.ProcessingMode.EXACTLY_ONCE);
+    GenericOperator go = new GenericOperator();
+    final GenericNode gn = new GenericNode(go, new com.datatorrent.stram.engine.OperatorContext(0, attributes, null));
+    gn.setId(1);
+    DefaultReservoir reservoir1 = new DefaultReservoir("ip1Res", 1024);
+    gn.connectInputPort("ip1", reservoir1);
+
+    Thread t = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        gn.activate();
+        gn.run();
+        gn.deactivate();
+      }
+
+    };
+    t.start();
+
+    reservoir1.add(new Tuple(MessageType.BEGIN_WINDOW, 0x1L));
+    while (go.beginWindowId != 0x1L) {
+      Thread.sleep(10);
+    }
+
+    /* the node checkpoints the window it stops in while the write of the snapshot is still blocked */
+    gn.shutdown();
+    Thread.sleep(100);
+    agent.writable.countDown();
+    t.join(10000);
+    Assert.assertEquals(Thread.State.TERMINATED, t.getState());
+
+    ArrayList<ContainerStats.OperatorStats> stats = new ArrayList<ContainerStats.OperatorStats>();
+    gn.context.drainStats(stats);
+    Assert.assertFalse("stats reported", stats.isEmpty());
+    ContainerStats.OperatorStats last = stats.get(stats.size() - 1);
+    Assert.assertNotNull("final checkpoint reported", last.checkpoint);
+    Assert.assertEquals("final checkpoint window", 0x1L, last.checkpoint.getWindowId());
+  }
+
+  @Test
+  public void testQueueSizeStats()
+  {
+    GenericOperator go = new GenericOperator();
+    GenericNode gn = new GenericNode(go, new com.datatorrent.stram.engine.OperatorContext(0, new DefaultAttributeMap(), null));
+    gn.setId(1);
+    DefaultReservoir reservoir1 = new DefaultReservoir("ip1Res", 1024);
+    DefaultReservoir reservoir2 = new DefaultReservoir("ip2Res", 1024);
+    gn.connectInputPort("ip1", reservoir1);
+    gn.connectInputPort("ip2", reservoir2);
+    gn.endWindowDequeueTimes.put(reservoir1, 0L);
+    gn.endWindowDequeueTimes.put(reservoir2, 0L);
+
+    reservoir1.add(new Tuple(MessageType.BEGIN_WINDOW, 0x1L));
+    reservoir1.add("tuple1");
+    reservoir1.add("tuple2");
+    reservoir1.add(new EndWindowTuple(0x1L));
+    reservoir2.offer(new Tuple(MessageType.BEGIN_WINDOW, 0x1L));
+    Assert.assertEquals("removed", MessageType.BEGIN_WINDOW, ((Tuple)reservoir2.remove()).getType());
+    reservoir2.offer("tuple3");
+
+    Stats.OperatorStats stats = new Stats.OperatorStats();
+    gn.reportStats(stats, 0x1L);
+    for (Stats.OperatorStats.PortStats ps : stats.inputPorts) {
+      if (ps.id.equals("ip1")) {
+        Assert.assertEquals("ip1 queue", 4, ps.queueSize);
+        Assert.assertEquals("ip1 data", 2, ps.dataQueueSize);
+        Assert.assertEquals("ip1 control", 2, ps.controlQueueSize);
+      }
+      else {
+        Assert.assertEquals("ip2 queue", 1, ps.queueSize);
+        Assert.assertEquals("ip2 data", 1, ps.dataQueueSize);
+        Assert.assertEquals("ip2 control", 0, ps.controlQueueSize);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.plan.logical.LogicalPlan.StreamMeta;
+import com.datatorrent.stram.stream.OiOStream;
+import com.datatorrent.stram.tuple.EndStreamTuple;
+import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Runs a container hosting many operators with a thread per operator and with the {@link NodeScheduler}, and compares
+ * the throughput of the two.
+ */
+public class NodeSchedulerTest
+{
+  static final int CHAIN_COUNT = 15;
+  static final int CHAIN_LENGTH = 10;
+  static final int TUPLE_COUNT = 20000;
+  static final AtomicInteger receivedTuples = new AtomicInteger();
+  static final AtomicInteger windowErrors = new AtomicInteger();
+  static final AtomicLong startNanos = new AtomicLong();
+  static final AtomicLong endNanos = new AtomicLong();
+
+  public static class NumberInputOperator extends BaseOperator implements InputOperator
+  {
+    public final transient DefaultOutputPort<Integer> output = new DefaultOutputPort<Integer>();
+    private int emitted;
+
+    @Override
+    public void emitTuples()
+    {
+      if (emitted == 0) {
+        startNanos.set(System.nanoTime());
+      }
+      else if (emitted == TUPLE_COUNT) {
+        BaseOperator.shutdown();
+      }
+
+      for (int i = Math.min(1000, TUPLE_COUNT - emitted); i-- > 0;) {
+        output.emit(emitted++);
+      }
+    }
+
+  }
+
+  public static class PassThroughOperator extends BaseOperator
+  {
+    public final transient DefaultOutputPort<Integer> output = new DefaultOutputPort<Integer>();
+    public final transient DefaultInputPort<Integer> input = new DefaultInputPort<Integer>()
+    {
+      @Override
+      public void process(Integer tuple)
+      {
+        output.emit(tuple);
+      }
+
+    };
+  }
+
+  public static class CountingOutputOperator extends BaseOperator
+  {
+    private transient boolean insideWindow;
+    public final transient DefaultInputPort<Integer> input = new DefaultInputPort<Integer>()
+    {
+      @Override
+      public void process(Integer tuple)
+      {
+        if (!insideWindow) {
+          windowErrors.incrementAndGet();
+        }
+        if (receivedTuples.incrementAndGet() == TUPLE_COUNT * CHAIN_COUNT) {
+          endNanos.set(System.nanoTime());
+        }
+      }
+
+    };
+
+    @Override
+    public void beginWindow(long windowId)
+    {
+      if (insideWindow) {
+        windowErrors.incrementAndGet();
+      }
+      insideWindow = true;
+    }
+
+    @Override
+    public void endWindow()
+    {
+      if (!insideWindow) {
+        windowErrors.incrementAndGet();
+      }
+      insideWindow = false;
+    }
+
+  }
+
+  @Test
+  public void testThroughput() throws Exception
+  {
+    long threads = throughput(0);
+    long scheduled = throughput(Runtime.getRuntime().availableProcessors());
+    logger.info("{} operators in a container process {} tuples/s with a thread each and {} tuples/s on {} workers",
+                2 + CHAIN_COUNT * (CHAIN_LENGTH + 1), threads, scheduled, Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  public void testStepCpuTime() throws Exception
+  {
+    NodeScheduler scheduler = new NodeScheduler("NodeSchedulerTest", 2);
+    final GenericNode node = new GenericNode(new GenericNodeTest.GenericOperator(), new OperatorContext(1, new DefaultAttributeMap(), null));
+    node.setId(1);
+    DefaultReservoir reservoir = new DefaultReservoir("ip1Res", 1024);
+    node.connectInputPort("ip1", reservoir);
+    NodeScheduler.Task task = new NodeScheduler.Task(node)
+    {
+      @Override
+      protected void setup()
+      {
+        node.activate();
+      }
+
+      @Override
+      protected void teardown(Throwable cause)
+      {
+        node.deactivate();
+      }
+
+    };
+    scheduler.schedule(task);
+
+    for (long windowId = 1; windowId <= 10; windowId++) {
+      reservoir.put(new Tuple(MessageType.BEGIN_WINDOW, windowId));
+      for (int i = 0; i < 1000; i++) {
+        reservoir.put(i);
+      }
+      reservoir.put(new EndWindowTuple(windowId));
+    }
+    reservoir.put(new EndStreamTuple(0L));
+    Assert.assertTrue("node finished", task.join(10000));
+    scheduler.shutdown();
+
+    Assert.assertNull("worker is not recorded as the node thread", node.context.getThread());
+    Assert.assertTrue("cpu time used by the steps", getCpuTime(node) > 0);
+  }
+
+  @Test
+  public void testChainedStepCpuTime() throws Exception
+  {
+    NodeScheduler scheduler = new NodeScheduler("NodeSchedulerTest", 2);
+    final GenericNode node = new GenericNode(new GenericNodeTest.GenericOperator(), new OperatorContext(1, new DefaultAttributeMap(), null));
+    node.setId(1);
+    final OiONode oioNode = new OiONode(new GenericNodeTest.GenericOperator(), new OperatorContext(2, new DefaultAttributeMap(), null));
+    oioNode.setId(2);
+    DefaultReservoir reservoir = new DefaultReservoir("ip1Res", 1024);
+    node.connectInputPort("ip1", reservoir);
+    OiOStream stream = new OiOStream();
+    node.connectOutputPort("op", stream);
+    oioNode.connectInputPort("ip1", stream);
+    NodeScheduler.Task task = new NodeScheduler.Task(node)
+    {
+      @Override
+      protected void setup()
+      {
+        oioNode.activate();
+        node.activate();
+      }
+
+      @Override
+      protected void teardown(Throwable cause)
+      {
+        node.deactivate();
+        oioNode.deactivate();
+      }
+
+    };
+    task.chain(oioNode);
+    scheduler.schedule(task);
+
+    for (long windowId = 1; windowId <= 10; windowId++) {
+      reservoir.put(new Tuple(MessageType.BEGIN_WINDOW, windowId));
+      for (int i = 0; i < 1000; i++) {
+        reservoir.put(i);
+      }
+      reservoir.put(new EndWindowTuple(windowId));
+    }
+    reservoir.put(new EndStreamTuple(0L));
+    Assert.assertTrue("node finished", task.join(10000));
+    scheduler.shutdown();
+
+    Assert.assertNull("worker is not recorded as the chained node thread", oioNode.context.getThread());
+    Assert.assertTrue("cpu time used by the steps", getCpuTime(node) > 0);
+    Assert.assertTrue("cpu time used by the chained node", getCpuTime(oioNode) > 0);
+  }
+
+  /**
+   * @return cpu time reported by the node for all its windows so far.
+   */
+  private static long getCpuTime(Node<?> node)
+  {
+    ArrayList<ContainerStats.OperatorStats> stats = new ArrayList<ContainerStats.OperatorStats>();
+    node.context.drainStats(stats);
+    Assert.assertFalse("windows reported by " + node, stats.isEmpty());
+    long cpuTime = 0;
+    for (ContainerStats.OperatorStats s : stats) {
+      Assert.assertTrue("cpu time of window " + s.windowId, s.cpuTimeUsed >= 0);
+      cpuTime += s.cpuTimeUsed;
+    }
+    return cpuTime;
+  }
+
+  private long throughput(int schedulerThreads) throws Exception
+  {
+    receivedTuples.set(0);
+    windowErrors.set(0);
+    startNanos.set(0);
+    endNanos.set(0);
+
+    LogicalPlan dag = new LogicalPlan();
+    dag.setAttribute(Context.DAGContext.OPERATOR_SCHEDULER_THREADS, schedulerThreads);
+    NumberInputOperator input = dag.addOperator("input", NumberInputOperator.class);
+    StreamMeta fanout = dag.addStream("fanout", input.output).setLocality(Locality.CONTAINER_LOCAL);
+    for (int c = 0; c < CHAIN_COUNT; c++) {
+      PassThroughOperator head = dag.addOperator("chain" + c + "_0", PassThroughOperator.class);
+      fanout.addSink(head.input);
+      PassThroughOperator tail = head;
+      for (int i = 1; i < CHAIN_LENGTH; i++) {
+        PassThroughOperator next = dag.addOperator("chain" + c + "_" + i, PassThroughOperator.class);
+        dag.addStream("chain" + c + "_" + i, tail.output, next.input).setLocality(Locality.CONTAINER_LOCAL);
+        tail = next;
+      }
+      CountingOutputOperator output = dag.addOperator("output" + c, CountingOutputOperator.class);
+      dag.addStream("output" + c, tail.output, output.input).setLocality(Locality.CONTAINER_LOCAL);
+    }
+
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.setHeartbeatMonitoringEnabled(false);
+    lc.run(60000);
+
+    Assert.assertEquals("received tuples with " + schedulerThreads + " scheduler threads", TUPLE_COUNT * CHAIN_COUNT, receivedTuples.get());
+    Assert.assertEquals("tuples outside window with " + schedulerThreads + " scheduler threads", 0, windowErrors.get());
+    return (long)TUPLE_COUNT * CHAIN_COUNT * 1000000000L / Math.max(endNanos.get() - startNanos.get(), 1);
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(NodeSchedulerTest.class);
+}
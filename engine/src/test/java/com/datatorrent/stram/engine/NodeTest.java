@@ -17,6 +17,7 @@ package com.datatorrent.stram.engine;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -152,8 +153,11 @@ public class NodeTest
   {
     static class Call
     {
+      final String calltype;
+
       Call(String calltype, int operatorId, long windowId)
       {
+        this.calltype = calltype;
       }
 
     }
@@ -209,6 +213,18 @@ public class NodeTest
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
       }
 
+      @Override
+      public void startSteps(ReservoirSignal signal)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+      @Override
+      public long step(int budget)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
     };
 
     synchronized (StorageAgentImpl.calls) {
@@ -238,6 +254,18 @@ public class NodeTest
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
       }
 
+      @Override
+      public void startSteps(ReservoirSignal signal)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+      @Override
+      public long step(int budget)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
     };
 
     synchronized (StorageAgentImpl.calls) {
@@ -247,4 +275,89 @@ public class NodeTest
     }
   }
 
+  public static class AsyncStorageAgentImpl extends StorageAgentImpl implements StorageAgent.AsyncStorageAgent
+  {
+    final CountDownLatch writable = new CountDownLatch(1);
+
+    @Override
+    public byte[] snapshot(Object object, int operatorId, long windowId) throws IOException
+    {
+      calls.add(new Call("snapshot", operatorId, windowId));
+      return new byte[0];
+    }
+
+    @Override
+    public void write(byte[] snapshot, int operatorId, long windowId) throws IOException
+    {
+      try {
+        writable.await();
+      }
+      catch (InterruptedException ex) {
+        throw new IOException(ex);
+      }
+      synchronized (calls) {
+        calls.add(new Call("write", operatorId, windowId));
+      }
+    }
+
+  }
+
+  @Test
+  public void testAsyncOperatorCheckpointing()
+  {
+    DefaultAttributeMap attributeMap = new DefaultAttributeMap();
+    AsyncStorageAgentImpl agent = new AsyncStorageAgentImpl();
+    attributeMap.put(OperatorContext.STORAGE_AGENT, agent);
+    attributeMap.put(OperatorContext.ASYNC_CHECKPOINT, true);
+    Node<TestGenericOperator> node = new Node<TestGenericOperator>(new TestGenericOperator(),
+                                                                   new com.datatorrent.stram.engine.OperatorContext(0, attributeMap, null))
+    {
+      @Override
+      public void connectInputPort(String port, SweepableReservoir reservoir)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+      @Override
+      public void run()
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+      @Override
+      public void startSteps(ReservoirSignal signal)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+      @Override
+      public long step(int budget)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+    };
+
+    synchronized (StorageAgentImpl.calls) {
+      StorageAgentImpl.calls.clear();
+      node.checkpoint(0);
+      Assert.assertEquals("Calls to StorageAgent", 1, StorageAgentImpl.calls.size());
+      Assert.assertEquals("Snapshot taken", "snapshot", StorageAgentImpl.calls.get(0).calltype);
+    }
+
+    node.completeCheckpoint(false);
+    Assert.assertNull("checkpoint is not reported before it is written", node.checkpoint);
+
+    agent.writable.countDown();
+    node.completeCheckpoint(true);
+    Assert.assertEquals("checkpoint reported", 0, node.checkpoint.windowId);
+    Assert.assertNotNull("checkpoint stats reported", node.checkpointStats);
+    Assert.assertTrue("write time", node.checkpointStats.checkpointTime >= node.checkpointStats.writeTime);
+    synchronized (StorageAgentImpl.calls) {
+      Assert.assertEquals("Calls to StorageAgent", 2, StorageAgentImpl.calls.size());
+      Assert.assertEquals("Snapshot written", "write", StorageAgentImpl.calls.get(1).calltype);
+    }
+    node.teardown();
+  }
+
 }
@@ -76,10 +76,15 @@ public class SliderTest
       @Override
       public Unifier<Integer> getUnifier()
       {
-        return new Sum();
+        return newUnifier();
       }
     };
 
+    protected Sum newUnifier()
+    {
+      return new Sum();
+    }
+
     @Override
     public void process(Integer tuple)
     {
@@ -95,6 +100,40 @@ public class SliderTest
     }
   }
 
+  public static class CombiningSum extends Sum implements Operator.CombiningUnifier<Integer, Integer>
+  {
+    @Override
+    protected Sum newUnifier()
+    {
+      return new CombiningSum();
+    }
+
+    @Override
+    public Integer newAggregate()
+    {
+      return 0;
+    }
+
+    @Override
+    public Integer accumulate(Integer aggregate, Integer tuple)
+    {
+      return aggregate + tuple;
+    }
+
+    @Override
+    public Integer combine(Integer earlier, Integer later)
+    {
+      return earlier + later;
+    }
+
+    @Override
+    public void emitAggregate(Integer aggregate)
+    {
+      sum = aggregate;
+    }
+
+  }
+
   public static class Validator extends BaseOperator
   {
     public static int numbersValidated;
@@ -131,11 +170,16 @@ public class SliderTest
   }
 
   private void test(int applicationWindowCount, int slideByWindowCount) throws Exception
+  {
+    test(new Sum(), applicationWindowCount, slideByWindowCount);
+  }
+
+  private void test(Sum sumOperator, int applicationWindowCount, int slideByWindowCount) throws Exception
   {
     LogicalPlan dag = new LogicalPlan();
     dag.getAttributes().put(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS, 100);
     Input input = dag.addOperator("Input", new Input());
-    Sum sum = dag.addOperator("Sum", new Sum());
+    Sum sum = dag.addOperator("Sum", sumOperator);
     dag.setAttribute(sum, OperatorContext.APPLICATION_WINDOW_COUNT, applicationWindowCount);
     dag.setAttribute(sum, OperatorContext.SLIDE_BY_WINDOW_COUNT, slideByWindowCount);
     Validator validate = dag.addOperator("validator", new Validator());
@@ -175,4 +219,16 @@ public class SliderTest
   {
     test(4, 2);
   }
+
+  @Test
+  public void testCombiningSlider() throws Exception
+  {
+    LogicalPlan dag = new LogicalPlan();
+    CombiningSum sum = dag.addOperator("Sum", new CombiningSum());
+    Assert.assertTrue("slider for combining unifier", dag.getMeta(sum).getMeta(sum.outputPort).getSlidingUnifier(5, 1, 1).getOperator() instanceof CombiningSlider);
+
+    test(new CombiningSum(), 5, 1);
+    test(new CombiningSum(), 5, 2);
+    test(new CombiningSum(), 4, 2);
+  }
 }
@@ -613,6 +613,25 @@ public class LogicalPlanTest {
 
   }
 
+  @Test
+  public void testSpoolingSegmentSize() {
+    LogicalPlan dag = new LogicalPlan();
+    TestGeneratorInputOperator input = dag.addOperator("input", TestGeneratorInputOperator.class);
+    TestOutputOperator output = dag.addOperator("output", new TestOutputOperator());
+    dag.addStream("s1", input.outport, output.inport);
+
+    dag.setAttribute(LogicalPlan.BUFFER_SPOOLING_SEGMENT_SIZE_MB, 2047);
+    dag.validate();
+
+    dag.setAttribute(LogicalPlan.BUFFER_SPOOLING_SEGMENT_SIZE_MB, 2048);
+    try {
+      dag.validate();
+      Assert.fail("should raise: segment size beyond the mappable size");
+    } catch (ValidationException e) {
+      Assert.assertEquals("", "BUFFER_SPOOLING_SEGMENT_SIZE_MB of 2048 is not between 0 and 2047", e.getMessage());
+    }
+  }
+
   public class DuplicatePortOperator extends GenericTestOperator {
     @SuppressWarnings("FieldNameHidesFieldInSuperclass")
     final public transient DefaultOutputPort<Object> outport1 = new DefaultOutputPort<Object>();
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+
+/**
+ * Emits batches with {@link DefaultOutputPort#emitAll} and receives them with {@link DefaultInputPort#processAll} over
+ * the streams of each locality.
+ */
+public class BatchStreamTest
+{
+  static final int BATCH_SIZE = 100;
+  static final int TUPLE_COUNT = 10000;
+  static final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+  static final AtomicInteger largestBatch = new AtomicInteger();
+
+  public static class BatchInputOperator extends BaseOperator implements InputOperator
+  {
+    public final transient DefaultOutputPort<Integer> output = new DefaultOutputPort<Integer>();
+    private final transient ArrayList<Integer> batch = new ArrayList<Integer>();
+    private int emitted;
+
+    @Override
+    public void emitTuples()
+    {
+      if (emitted == TUPLE_COUNT) {
+        BaseOperator.shutdown();
+      }
+
+      for (int i = Math.min(BATCH_SIZE, TUPLE_COUNT - emitted); i-- > 0;) {
+        batch.add(emitted++);
+      }
+      output.emitAll(batch);
+      batch.clear();
+    }
+
+  }
+
+  public static class BatchOutputOperator extends BaseOperator
+  {
+    public final transient DefaultInputPort<Integer> input = new DefaultInputPort<Integer>()
+    {
+      @Override
+      public void process(Integer tuple)
+      {
+        received.add(tuple);
+      }
+
+      @Override
+      public void processAll(List<? extends Integer> tuples)
+      {
+        received.addAll(tuples);
+        if (tuples.size() > largestBatch.get()) {
+          largestBatch.set(tuples.size());
+        }
+      }
+
+    };
+  }
+
+  @Test
+  public void testThreadLocal() throws Exception
+  {
+    run(Locality.THREAD_LOCAL);
+    Assert.assertEquals("batches are passed as emitted", BATCH_SIZE, largestBatch.get());
+  }
+
+  @Test
+  public void testContainerLocal() throws Exception
+  {
+    run(Locality.CONTAINER_LOCAL);
+  }
+
+  @Test
+  public void testContainerLocalSpsc() throws Exception
+  {
+    run(Locality.CONTAINER_LOCAL, PortContext.ReservoirType.SPSC);
+  }
+
+  @Test
+  public void testBufferServer() throws Exception
+  {
+    run(null);
+  }
+
+  private void run(Locality locality) throws Exception
+  {
+    run(locality, PortContext.ReservoirType.CIRCULAR_BUFFER);
+  }
+
+  private void run(Locality locality, PortContext.ReservoirType reservoirType) throws Exception
+  {
+    received.clear();
+    largestBatch.set(0);
+
+    LogicalPlan dag = new LogicalPlan();
+    BatchInputOperator input = dag.addOperator("input", BatchInputOperator.class);
+    BatchOutputOperator output = dag.addOperator("output", BatchOutputOperator.class);
+    dag.addStream("batches", input.output, output.input).setLocality(locality);
+    dag.setInputPortAttribute(output.input, PortContext.RESERVOIR_TYPE, reservoirType);
+
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.setHeartbeatMonitoringEnabled(false);
+    lc.run(60000);
+
+    Assert.assertEquals("received tuples", TUPLE_COUNT, received.size());
+    for (int i = 0; i < TUPLE_COUNT; i++) {
+      Assert.assertEquals("tuple " + i, i, received.get(i).intValue());
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.netlet.DefaultEventLoop;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.support.StramTestSupport;
+
+/**
+ * Tests that the publisher waits for a slow buffer server, resumes as soon as it drains and accounts for the time it
+ * is blocked.
+ */
+public class BufferServerPublisherTest
+{
+  static DefaultEventLoop eventloop;
+
+  @BeforeClass
+  public static void setup() throws IOException
+  {
+    eventloop = new DefaultEventLoop("PublisherTestEventLoop");
+    eventloop.start();
+  }
+
+  @AfterClass
+  public static void tearDown()
+  {
+    eventloop.stop();
+  }
+
+  @Test
+  public void testBackpressure() throws Exception
+  {
+    final ServerSocket server = new ServerSocket();
+    server.setReceiveBufferSize(4096);
+    server.bind(new InetSocketAddress("localhost", 0));
+    final AtomicLong received = new AtomicLong();
+    final AtomicLong drainNanos = new AtomicLong();
+    Thread reader = new Thread("SlowBufferServer")
+    {
+      @Override
+      public void run()
+      {
+        try {
+          Socket socket = server.accept();
+          try {
+            /* let the publisher fill up its send buffer before draining it */
+            sleep(500);
+            InputStream is = socket.getInputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int size;
+            while ((size = is.read(buffer)) != -1) {
+              drainNanos.compareAndSet(0, System.nanoTime());
+              received.addAndGet(size);
+            }
+          }
+          finally {
+            socket.close();
+          }
+        }
+        catch (Exception ex) {
+          logger.debug("reader exited", ex);
+        }
+      }
+
+    };
+    reader.start();
+
+    StreamContext context = new StreamContext("stream");
+    context.setSourceId("publisher");
+    context.setSinkId("subscriber");
+    context.setFinishedWindowId(-1);
+    context.setBufferServerAddress(InetSocketAddress.createUnresolved("localhost", server.getLocalPort()));
+    context.put(StreamContext.CODEC, new DefaultStatefulStreamCodec<Object>());
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+
+    BufferServerPublisher publisher = new BufferServerPublisher("publisher", 1024);
+    publisher.setup(context);
+    publisher.activate(context);
+
+    char[] chars = new char[200];
+    Arrays.fill(chars, 'x');
+    String payload = new String(chars);
+    int count = 100000;
+
+    long resumeNanos = 0;
+    publisher.put(StramTestSupport.generateBeginWindowTuple("publisher", 0));
+    for (int i = 0; i < count; i++) {
+      publisher.put(payload);
+      if (resumeNanos == 0 && publisher.getBlockedNanos(false) > 0) {
+        resumeNanos = System.nanoTime();
+      }
+    }
+    publisher.put(StramTestSupport.generateEndWindowTuple("publisher", 0));
+
+    long published = publisher.getByteCount(false);
+    long blocked = publisher.getBlockedNanos(true);
+    logger.debug("published {} bytes, blocked for {} ns", published, blocked);
+    Assert.assertTrue("producer blocked", blocked > 0);
+    /* the producer is woken up by the drain rather than by the timeout of its park */
+    Assert.assertTrue("producer resumed " + (resumeNanos - drainNanos.get()) + " ns after the drain started",
+                      resumeNanos - drainNanos.get() < BufferServerPublisher.MAX_PARK_NANOS / 10);
+    Assert.assertEquals("blocked time reset", 0, publisher.getBlockedNanos(false));
+    Assert.assertEquals("tuples", count + 2, publisher.getCount(false));
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (received.get() < published && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue("all published bytes received", received.get() >= published);
+
+    publisher.deactivate();
+    server.close();
+    reader.join(5000);
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(BufferServerPublisherTest.class);
+}
@@ -24,12 +24,23 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.DataTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.WindowIdTuple;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
+import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.tuple.CheckpointTuple;
+import com.datatorrent.stram.tuple.Tuple;
 
 /**
  *
@@ -121,5 +132,194 @@ public class BufferServerSubscriberTest
     Assert.assertEquals("10  received", 10, list.size());
   }
 
+  public static class Point
+  {
+    int x;
+    int y;
+
+    Point()
+    {
+    }
+
+    Point(int x, int y)
+    {
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return obj instanceof Point && ((Point)obj).x == x && ((Point)obj).y == y;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * x + y;
+    }
+
+  }
+
+  public static class Label
+  {
+    String text;
+
+    Label()
+    {
+    }
+
+    Label(String text)
+    {
+      this.text = text;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return obj instanceof Label && ((Label)obj).text.equals(text);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return text.hashCode();
+    }
+
+  }
+
+  @Test(timeout = 30000)
+  public void testAsyncDecoding() throws InterruptedException
+  {
+    final List<Object> received = new ArrayList<Object>();
+    Sink<Object> sink = new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+
+    };
+
+    BufferServerSubscriber bss = new BufferServerSubscriber("subscriber", 5)
+    {
+      @Override
+      public void suspendRead()
+      {
+        logger.debug("read suspended");
+      }
+
+      @Override
+      public void resumeRead()
+      {
+        logger.debug("read resumed");
+      }
+
+    };
+
+    StreamContext context = new StreamContext("stream");
+    context.setSinkId("sink");
+    context.setFinishedWindowId(-1);
+    context.put(StreamContext.CODEC, new DefaultStatefulStreamCodec<Object>());
+    context.put(PortContext.ASYNC_DECODING, true);
+    bss.setup(context);
+    SweepableReservoir reservoir = bss.acquireReservoir("sink", 3);
+    reservoir.setSink(sink);
+    bss.startDecoder(context);
+
+    /* the codec state which registers the classes is sent again after the checkpoint resets it */
+    DefaultStatefulStreamCodec<Object> codec = new DefaultStatefulStreamCodec<Object>();
+    List<Object> sent = new ArrayList<Object>();
+    int checkpoints = 0;
+    for (int windowId = 0; windowId < 5; windowId++) {
+      byte[] buffer = BeginWindowTuple.getSerializedTuple(windowId);
+      bss.onMessage(buffer, 0, buffer.length);
+      for (int i = 0; i < 20; i++) {
+        Object o = i % 2 == 0 ? new Point(windowId, i) : new Label(windowId + "/" + i);
+        DataStatePair dsp = codec.toDataStatePair(o);
+        if (dsp.state != null) {
+          buffer = DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
+          bss.onMessage(buffer, 0, buffer.length);
+        }
+        buffer = PayloadTuple.getSerializedTuple(codec.getPartition(o), dsp.data);
+        bss.onMessage(buffer, 0, buffer.length);
+        sent.add(o);
+      }
+      buffer = EndWindowTuple.getSerializedTuple(windowId);
+      bss.onMessage(buffer, 0, buffer.length);
+      if (windowId == 2) {
+        codec.resetState();
+        buffer = WindowIdTuple.getSerializedTuple(windowId);
+        buffer[0] = MessageType.CHECKPOINT_VALUE;
+        bss.onMessage(buffer, 0, buffer.length);
+      }
+    }
+
+    int endWindows = 0;
+    while (endWindows < 5) {
+      Tuple t = reservoir.sweep();
+      if (t == null) {
+        Thread.sleep(1);
+        continue;
+      }
+
+      reservoir.remove();
+      if (t.getType() == MessageType.END_WINDOW) {
+        endWindows++;
+      }
+      else if (t instanceof CheckpointTuple) {
+        checkpoints++;
+      }
+    }
+
+    bss.stopDecoder();
+    Assert.assertEquals("checkpoints", 1, checkpoints);
+    Assert.assertEquals("tuples decoded in order", sent, received);
+  }
+
+  @Test(timeout = 30000)
+  public void testAsyncDecodingFailure() throws InterruptedException
+  {
+    BufferServerSubscriber bss = new BufferServerSubscriber("subscriber", 5);
+    StreamContext context = new StreamContext("stream");
+    context.setSinkId("sink");
+    context.setFinishedWindowId(-1);
+    context.put(StreamContext.CODEC, new DefaultStatefulStreamCodec<Object>());
+    context.put(PortContext.ASYNC_DECODING, true);
+    bss.setup(context);
+    SweepableReservoir reservoir = bss.acquireReservoir("sink", 3);
+    reservoir.setSink(Sink.BLACKHOLE);
+    bss.startDecoder(context);
+
+    byte[] buffer = BeginWindowTuple.getSerializedTuple(0);
+    bss.onMessage(buffer, 0, buffer.length);
+    /* a request is not expected by the subscriber and fails the decoder */
+    buffer = WindowIdTuple.getSerializedTuple(0);
+    buffer[0] = MessageType.PURGE_REQUEST_VALUE;
+    bss.onMessage(buffer, 0, buffer.length);
+
+    try {
+      while (true) {
+        if (reservoir.sweep() != null) {
+          reservoir.remove();
+        }
+        Thread.sleep(1);
+      }
+    }
+    catch (IllegalArgumentException ex) {
+      logger.debug("decoder failure rethrown", ex);
+    }
+    finally {
+      bss.stopDecoder();
+    }
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(BufferServerSubscriberTest.class);
 }
@@ -15,6 +15,7 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,6 +34,7 @@ import com.datatorrent.api.Sink;
 import com.datatorrent.stram.engine.*;
 import com.datatorrent.stram.support.StramTestSupport;
 import com.datatorrent.stram.support.StramTestSupport.WaitCondition;
+import com.datatorrent.stram.tuple.EndWindowTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
 /**
@@ -43,8 +45,19 @@ public class InlineStreamTest
   private Object prev;
 
   @Test
-  @SuppressWarnings("SleepWhileInLoop")
   public void test() throws Exception
+  {
+    testStream(new InlineStream(1024));
+  }
+
+  @Test
+  public void testSpsc() throws Exception
+  {
+    testStream(new SpscInlineStream(1024));
+  }
+
+  @SuppressWarnings("SleepWhileInLoop")
+  private <S extends Stream & SweepableReservoir> void testStream(final S stream) throws Exception
   {
     final int totalTupleCount = 5000;
 
@@ -59,7 +72,6 @@ public class InlineStreamTest
     operator2.setup(node2.context);
 
     StreamContext streamContext = new StreamContext("node1->node2");
-    final InlineStream stream = new InlineStream(1024);
     stream.setup(streamContext);
 
     node1.connectOutputPort("output", stream);
@@ -162,6 +174,155 @@ public class InlineStreamTest
     Assert.assertEquals("active operators", 0, activeNodes.size());
   }
 
+  @Test
+  public void testSpscWrapAround() throws Exception
+  {
+    final ArrayList<Object> received = new ArrayList<Object>();
+    SpscInlineStream stream = new SpscInlineStream(5);
+    Assert.assertEquals("capacity", 8, stream.capacity());
+    stream.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+
+    });
+
+    int next = 0;
+    for (int round = 0; round < 5; round++) {
+      ArrayList<Object> batch = new ArrayList<Object>();
+      for (int i = 0; i < 6; i++) {
+        batch.add(next++);
+      }
+      Assert.assertEquals("batch added", 6, stream.offer(batch, 0));
+      Assert.assertEquals("batch added from offset", 1, stream.offer(batch, 5));
+      stream.put(new EndWindowTuple(round));
+      Assert.assertFalse("full", stream.offer(next));
+      Assert.assertEquals("size", 8, stream.size());
+      Assert.assertEquals("control tuples", 1, stream.getControlTupleCount());
+
+      Tuple t = stream.sweep();
+      Assert.assertNotNull("end window", t);
+      Assert.assertSame("end window", t, stream.remove());
+      Assert.assertTrue("idle", stream.isIdle());
+      Assert.assertEquals("control tuples", 0, stream.getControlTupleCount());
+    }
+
+    Assert.assertEquals("received", 35, received.size());
+    Assert.assertEquals("count", 35, stream.getCount(true));
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 7; i++) {
+        Assert.assertEquals("tuple order", round * 6 + Math.min(i, 5), received.get(round * 7 + i));
+      }
+    }
+  }
+
+  /**
+   * Compares the throughput of the circular buffer backed stream with the single producer single consumer stream
+   * between a producer thread and a consumer thread.
+   */
+  @Test
+  public void testThroughput() throws Exception
+  {
+    final int totalTupleCount = 2000000;
+    long circularBuffer = measure(new InlineStream(1024), totalTupleCount, false);
+    long spsc = measure(new SpscInlineStream(1024), totalTupleCount, false);
+    long spscBatches = measure(new SpscInlineStream(1024), totalTupleCount, true);
+    logger.info("ns/tuple: InlineStream {} SpscInlineStream {} SpscInlineStream in batches {}",
+                new Object[] {(double)circularBuffer / totalTupleCount, (double)spsc / totalTupleCount, (double)spscBatches / totalTupleCount});
+  }
+
+  private <S extends Stream & SweepableReservoir> long measure(final S stream, final int totalTupleCount, final boolean batches) throws Exception
+  {
+    final AtomicInteger received = new AtomicInteger();
+    stream.setSink(new Sink<Object>()
+    {
+      int count;
+
+      @Override
+      public void put(Object tuple)
+      {
+        count++;
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return count;
+      }
+
+    });
+
+    final Integer[] values = new Integer[1024];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+
+    Thread consumer = new Thread("consumer")
+    {
+      @Override
+      public void run()
+      {
+        for (;;) {
+          Tuple t = stream.sweep();
+          if (t == null) {
+            Thread.yield();
+          }
+          else {
+            stream.remove();
+            received.set(stream.getCount(false));
+            return;
+          }
+        }
+      }
+
+    };
+    consumer.start();
+
+    long start = System.nanoTime();
+    if (batches) {
+      ArrayList<Object> batch = new ArrayList<Object>(64);
+      for (int i = 0; i < totalTupleCount; i += 64) {
+        batch.clear();
+        for (int j = 0; j < 64 && i + j < totalTupleCount; j++) {
+          batch.add(values[j]);
+        }
+        for (int offset = 0; (offset += ((SpscInlineStream)stream).offer(batch, offset)) < batch.size();) {
+          Thread.yield();
+        }
+      }
+    }
+    else if (stream instanceof InlineStream) {
+      /* offer instead of put so that both streams retry the same way when they are full */
+      for (int i = 0; i < totalTupleCount; i++) {
+        while (!((InlineStream)stream).offer(values[i & (values.length - 1)])) {
+          Thread.yield();
+        }
+      }
+    }
+    else {
+      for (int i = 0; i < totalTupleCount; i++) {
+        while (!((SpscInlineStream)stream).offer(values[i & (values.length - 1)])) {
+          Thread.yield();
+        }
+      }
+    }
+    stream.put(new EndWindowTuple(0));
+    consumer.join();
+    long elapsed = System.nanoTime() - start;
+
+    Assert.assertEquals("received tuples", totalTupleCount, received.get());
+    return elapsed;
+  }
+
   final AtomicInteger counter = new AtomicInteger(0);
 
   private void launchNodeThread(final Node<?> node, final Map<Integer, Node<?>> activeNodes)
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2015 DataTorrent, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.Sink;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Checks the partition lookup of {@link PartitionAwareSink} against matching through a set of partitions, and compares
+ * the cost of the two at several mask widths.
+ */
+public class PartitionAwareSinkTest
+{
+  static final int TUPLE_COUNT = 100000;
+  static final int ITERATIONS = 20;
+  static final int[] MASKS = {0x1, 0xff, PartitionAwareSink.MAX_BITMAP_MASK, 0xfffff};
+
+  /**
+   * Codec which partitions by hashCode but is not the default codec, so the sink goes through the codec.
+   */
+  static class HashCodec implements StreamCodec<Object>
+  {
+    @Override
+    public Object fromByteArray(Slice fragment)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Slice toByteArray(Object o)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getPartition(Object o)
+    {
+      return o.hashCode();
+    }
+
+  }
+
+  static class CountingSink implements Sink<Object>
+  {
+    int count;
+
+    @Override
+    public void put(Object tuple)
+    {
+      count++;
+    }
+
+    @Override
+    public int getCount(boolean reset)
+    {
+      return count;
+    }
+
+  }
+
+  @Test
+  public void testMatches()
+  {
+    Random random = new Random(0);
+    for (int mask : MASKS) {
+      Set<Integer> partitions = getPartitions(mask);
+      /* a partition with bits outside of the mask is never matched */
+      partitions.add(mask + 1);
+      PartitionAwareSink<Object> sink = new PartitionAwareSink<Object>(new HashCodec(), partitions, mask, new CountingSink());
+      for (int i = 0; i < 10000; i++) {
+        Integer payload = random.nextInt();
+        Assert.assertEquals("payload " + payload + " with mask " + mask, partitions.contains(payload & mask), matches(sink, payload));
+      }
+      sink.put(new Tuple(MessageType.BEGIN_WINDOW, 0));
+      Assert.assertEquals("control tuple with mask " + mask, 1, sink.getCount(false));
+    }
+  }
+
+  @Test
+  public void testFullMask()
+  {
+    Set<Integer> partitions = new HashSet<Integer>();
+    partitions.add(Integer.MIN_VALUE);
+    partitions.add(-1);
+    partitions.add(5);
+    PartitionAwareSink<Object> sink = new PartitionAwareSink<Object>(null, partitions, -1, new CountingSink());
+    Assert.assertTrue("min value", matches(sink, Integer.MIN_VALUE));
+    Assert.assertTrue("-1", matches(sink, -1));
+    Assert.assertTrue("5", matches(sink, 5));
+    Assert.assertFalse("6", matches(sink, 6));
+    Assert.assertFalse("max value", matches(sink, Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void benchmark()
+  {
+    Integer[] payloads = new Integer[TUPLE_COUNT];
+    Random random = new Random(0);
+    for (int i = 0; i < TUPLE_COUNT; i++) {
+      payloads[i] = random.nextInt();
+    }
+
+    for (int mask : MASKS) {
+      Set<Integer> partitions = getPartitions(mask);
+      CountingSink legacy = new CountingSink();
+      CountingSink codec = new CountingSink();
+      CountingSink hash = new CountingSink();
+      PartitionAwareSink<Object> codecSink = new PartitionAwareSink<Object>(new HashCodec(), partitions, mask, codec);
+      PartitionAwareSink<Object> hashSink = new PartitionAwareSink<Object>(new DefaultStatefulStreamCodec<Object>(), partitions, mask, hash);
+      StreamCodec<Object> serde = new HashCodec();
+
+      long legacyNanos = 0;
+      long codecNanos = 0;
+      long hashNanos = 0;
+      for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+        long start = System.nanoTime();
+        for (Integer payload : payloads) {
+          /* the way the partitions were matched before the bitmap */
+          if (partitions.contains(serde.getPartition(payload) & mask)) {
+            legacy.put(payload);
+          }
+        }
+        long legacyEnd = System.nanoTime();
+        for (Integer payload : payloads) {
+          codecSink.put(payload);
+        }
+        long codecEnd = System.nanoTime();
+        for (Integer payload : payloads) {
+          hashSink.put(payload);
+        }
+        long hashEnd = System.nanoTime();
+
+        /* the first half of the iterations warms up all the paths */
+        if (iteration >= ITERATIONS / 2) {
+          legacyNanos += legacyEnd - start;
+          codecNanos += codecEnd - legacyEnd;
+          hashNanos += hashEnd - codecEnd;
+        }
+      }
+
+      Assert.assertEquals("matched tuples through the codec with mask " + mask, legacy.count, codec.count);
+      Assert.assertEquals("matched tuples by hashCode with mask " + mask, legacy.count, hash.count);
+      long tuples = (long)TUPLE_COUNT * (ITERATIONS - ITERATIONS / 2);
+      logger.info("mask {}: set {} ns/tuple, lookup through the codec {} ns/tuple, lookup by hashCode {} ns/tuple",
+                  Integer.toHexString(mask), (double)legacyNanos / tuples, (double)codecNanos / tuples, (double)hashNanos / tuples);
+    }
+  }
+
+  /**
+   * @return every other partition of the mask, at most 1024 of them
+   */
+  private static Set<Integer> getPartitions(int mask)
+  {
+    Set<Integer> partitions = new HashSet<Integer>();
+    int step = Math.max(2, (mask + 1) / 1024);
+    for (int partition = 0; partition <= mask; partition += step) {
+      partitions.add(partition);
+    }
+    return partitions;
+  }
+
+  private static boolean matches(PartitionAwareSink<Object> sink, Object payload)
+  {
+    sink.getCount(true);
+    sink.put(payload);
+    return sink.getCount(true) > 0;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(PartitionAwareSinkTest.class);
+}